@@ -0,0 +1,105 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.analyzer.Word2VecSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.analyzer.WordnetSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the token throughput (input words per second) of the query analyzers: {@link EnglishAnalyzer}, without
+ * query expansion, {@link WordnetSynonymAnalyzer}, expanding the words with a synonym map, and
+ * {@link Word2VecSynonymAnalyzer}, expanding the words with their nearest neighbours in the embedding space (with a
+ * warm synonym cache, as in the application).
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+
+    private static final int TEXTS = 100;
+    private static final int WORDS = 100; // words per text
+
+    @Param({"english", "wordnet", "word2vec"})
+    public String analyzer;
+
+    private Path dir;
+    private EmbeddingStoreInterface embeddings;
+    private Analyzer queryAnalyzer;
+    private List<String> texts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+        texts = data.queries(TEXTS, WORDS);
+
+        dir = Files.createTempDirectory("analyzer-benchmark");
+        embeddings = data.embeddings(dir);
+
+        switch (analyzer) {
+            case "english":
+                queryAnalyzer = new EnglishAnalyzer();
+                break;
+            case "wordnet":
+                queryAnalyzer = new WordnetSynonymAnalyzer(data.synonyms());
+                break;
+            case "word2vec":
+                queryAnalyzer = new Word2VecSynonymAnalyzer(embeddings, new ExactNearestNeighbourIndex(embeddings),
+                        BenchmarkData.MIN_ACCURACY, new SynonymCache());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown analyzer: " + analyzer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        queryAnalyzer.close();
+        embeddings.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int analyze() throws IOException {
+        int tokens = 0;
+        try (TokenStream stream = queryAnalyzer.tokenStream("title_norm", texts.get(next++ % TEXTS))) {
+            stream.reset();
+            while (stream.incrementToken()) {
+                tokens++;
+            }
+            stream.end();
+        }
+        return tokens;
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingConverter;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+import com.lamproslntz.searchengineextended.index.Indexer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.CharsRef;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Generates the synthetic data the benchmarks run on, so that they don't depend on the CISI dataset or the fastText
+ * word embeddings being downloaded. The vocabulary consists of random words, grouped in clusters of words whose
+ * embeddings are close to each other (i.e. synonyms). Documents and queries are drawn from the vocabulary with a
+ * skewed word frequency, as in natural language.
+ *
+ * @author Lampros Lountzis
+ */
+public final class BenchmarkData {
+
+    /**
+     * Number of words in the vocabulary.
+     */
+    public static final int VOCABULARY_SIZE = 5000;
+
+    /**
+     * Number of words in each cluster of synonyms.
+     */
+    public static final int CLUSTER_SIZE = 10;
+
+    /**
+     * Dimension of the word embeddings.
+     */
+    public static final int DIMENSION = 64;
+
+    /**
+     * Minimum similarity of two words of the same cluster.
+     */
+    public static final double MIN_ACCURACY = 0.9;
+
+    private final Random random;
+    private final List<String> vocabulary;
+
+    /**
+     * Initializes the synthetic data generator.
+     *
+     * @param seed seed of the random generator, so that all the runs use the same data.
+     */
+    public BenchmarkData(long seed) {
+        this.random = new Random(seed);
+
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY_SIZE) {
+            words.add(word());
+        }
+        this.vocabulary = new ArrayList<>(words);
+    }
+
+    /**
+     * Writes the word embeddings of the vocabulary and memory-maps them.
+     *
+     * @param dir directory where the embedding files are written.
+     *
+     * @return the word embeddings.
+     *
+     * @throws IOException if the embedding files cannot be written or opened.
+     */
+    public EmbeddingStoreInterface embeddings(Path dir) throws IOException {
+        Path vec = dir.resolve("embeddings.vec");
+        Path emb = dir.resolve("embeddings.emb");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(vec)) {
+            writer.write(VOCABULARY_SIZE + " " + DIMENSION);
+            writer.newLine();
+
+            float[] centre = new float[DIMENSION];
+            for (int i = 0; i < VOCABULARY_SIZE; i++) {
+                if (i % CLUSTER_SIZE == 0) { // start a new cluster of synonyms
+                    for (int d = 0; d < DIMENSION; d++) {
+                        centre[d] = (float) random.nextGaussian();
+                    }
+                }
+
+                StringBuilder line = new StringBuilder(vocabulary.get(i));
+                for (int d = 0; d < DIMENSION; d++) {
+                    line.append(' ').append(centre[d] + 0.05f * (float) random.nextGaussian());
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+
+        EmbeddingConverter.convert(vec, emb, false);
+        return MappedEmbeddingStore.open(emb);
+    }
+
+    /**
+     * Builds a synonym map of the vocabulary, in which each word has the other words of its cluster as synonyms.
+     *
+     * @return the synonym map.
+     *
+     * @throws IOException if the synonym map cannot be built.
+     */
+    public SynonymMap synonyms() throws IOException {
+        SynonymMap.Builder builder = new SynonymMap.Builder(true);
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            int cluster = i - i % CLUSTER_SIZE;
+            for (int j = cluster; j < cluster + CLUSTER_SIZE; j++) {
+                if (j != i) {
+                    builder.add(new CharsRef(vocabulary.get(i)), new CharsRef(vocabulary.get(j)), true);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Generates documents of the form: (ID, title, author, abstract).
+     *
+     * @param count number of documents.
+     * @param abstractLength number of words in the abstract of each document.
+     *
+     * @return a list of documents.
+     */
+    public List<Map<String, String>> documents(int count, int abstractLength) {
+        List<Map<String, String>> docs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, String> doc = new HashMap<>();
+            doc.put("id", String.valueOf(i + 1));
+            doc.put("title", text(8));
+            doc.put("author", word() + ", " + word());
+            doc.put("abstract", text(abstractLength));
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    /**
+     * Generates queries.
+     *
+     * @param count number of queries.
+     * @param length number of words in each query.
+     *
+     * @return a list of queries.
+     */
+    public List<String> queries(int count, int length) {
+        List<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            queries.add(text(length));
+        }
+        return queries;
+    }
+
+    /**
+     * Generates raw text, as in the fields of the CISI documents before they are cleaned: sentences of capitalized
+     * words, with punctuation, redundant spaces and line breaks.
+     *
+     * @param length number of characters.
+     *
+     * @return the text.
+     */
+    public String rawText(int length) {
+        String punctuation = ",.;:()-'\"?";
+        StringBuilder text = new StringBuilder(length + 16);
+        boolean sentenceStart = true;
+        while (text.length() < length) {
+            String word = text(1);
+            if (sentenceStart || random.nextInt(10) == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            text.append(word);
+
+            sentenceStart = random.nextInt(12) == 0;
+            if (sentenceStart) {
+                text.append(". ");
+            } else if (random.nextInt(8) == 0) {
+                text.append(punctuation.charAt(random.nextInt(punctuation.length()))).append(' ');
+            } else if (random.nextInt(15) == 0) {
+                text.append("\n  ");
+            } else {
+                text.append(' ');
+            }
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+
+    /**
+     * Builds a Lucene index of the given documents.
+     *
+     * @param dir directory where the Lucene index files are written.
+     * @param docs documents to be indexed.
+     *
+     * @throws IOException if the Lucene index cannot be built.
+     */
+    public static void index(Path dir, List<Map<String, String>> docs) throws IOException {
+        index(dir, docs, null);
+    }
+
+    /**
+     * Builds a Lucene index of the given documents, with their dense vectors.
+     *
+     * @param dir directory where the Lucene index files are written.
+     * @param docs documents to be indexed.
+     * @param embedder computes the dense vectors of the documents, or null if they aren't stored.
+     *
+     * @throws IOException if the Lucene index cannot be built.
+     */
+    public static void index(Path dir, List<Map<String, String>> docs, DocumentEmbedder embedder) throws IOException {
+        Indexer indexer = new Indexer(dir.toString(), Indexer.DEFAULT_RAM_BUFFER_SIZE_MB, embedder);
+        indexer.create();
+        indexer.index(docs);
+        indexer.close();
+    }
+
+    /**
+     * Deletes a directory created for a benchmark, with all its files.
+     *
+     * @param dir the directory.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    public static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @param length number of words.
+     *
+     * @return words of the vocabulary, separated by spaces; frequent words are drawn more often.
+     */
+    private String text(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            double r = random.nextDouble();
+            if (i > 0) text.append(' ');
+            text.append(vocabulary.get((int) (r * r * VOCABULARY_SIZE)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return a random lowercase word, of 4 to 10 letters.
+     */
+    private String word() {
+        char[] word = new char[4 + random.nextInt(7)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import com.lamproslntz.searchengineextended.index.DirectoryFactory;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a BM25 query (top 20 documents, with their stored fields) on a collection of 20000
+ * documents, with the index opened by each {@link DirectoryFactory.Type}: memory-mapped (preloaded or not), read
+ * with positional reads, copied to the heap, and cached by NRTCachingDirectory. The index files are in the page cache
+ * once warmed up, so the difference is the cost of reading them through each implementation.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DirectorySearchBenchmark {
+
+    @Param({"mmap", "mmap-preload", "nio", "byte-buffers", "nrt-caching"})
+    public String directory;
+
+    private Path dir;
+    private Searcher searcher;
+    private List<String> queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+
+        dir = Files.createTempDirectory("directory-search-benchmark");
+        BenchmarkData.index(dir, data.documents(20000, 120));
+        queries = data.queries(100, 4);
+
+        boolean preload = directory.endsWith("-preload");
+        DirectoryFactory.Type type = DirectoryFactory.Type.parse(preload ? directory.replace("-preload", "")
+                : directory);
+        searcher = new Searcher(dir.toString(), new EnglishAnalyzer(), 0, null, null, null, null,
+                new DirectoryFactory(type, preload));
+        searcher.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searcher.close();
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Cycles through the queries, so that each thread searches all of them in turn.
+     */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+
+        private int next;
+
+        String next(List<String> queries) {
+            return queries.get(next++ % queries.size());
+        }
+
+    }
+
+    @Benchmark
+    public SearchResultDTO search(QueryCursor cursor) throws IOException, ParseException {
+        return searcher.search(new QueryDTO(cursor.next(queries)), 0, 20, 0);
+    }
+
+}
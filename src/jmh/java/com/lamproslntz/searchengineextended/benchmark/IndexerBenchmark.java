@@ -0,0 +1,72 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.index.Indexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the indexing throughput (documents per second) of {@link Indexer}: single-threaded, and in bulk with a
+ * pool of worker threads. Each operation builds a new index of the documents, from creation to the final commit.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndexerBenchmark {
+
+    private static final int DOCS = 2000;
+
+    @Param({"0", "1", "4"})
+    public int threads; // 0: single-threaded index(List), otherwise bulk index(Iterable, threads)
+
+    private Path dir;
+    private List<Map<String, String>> docs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        docs = new BenchmarkData(42).documents(DOCS, 120);
+        dir = Files.createTempDirectory("indexer-benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCS)
+    public void index() throws IOException {
+        Indexer indexer = new Indexer(dir.toString());
+        indexer.create();
+        if (threads == 0) {
+            indexer.index(docs);
+        } else {
+            indexer.index((Iterable<Map<String, String>>) docs, threads);
+        }
+        indexer.close();
+    }
+
+}
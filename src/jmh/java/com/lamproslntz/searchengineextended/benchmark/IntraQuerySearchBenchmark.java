@@ -0,0 +1,110 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import com.lamproslntz.searchengineextended.index.Indexer;
+import com.lamproslntz.searchengineextended.index.IntraQueryExecutor;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a BM25 query (top 20 documents) on a collection of 40000 documents in 8 segments, with the
+ * segments searched sequentially ({@link IntraQueryExecutor.Policy#DISABLED}) and concurrently, one slice per segment
+ * ({@link IntraQueryExecutor.Policy#ALWAYS}). Run it with several threads (-t) to see the concurrency of the queries
+ * compete with the concurrency of the segments.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntraQuerySearchBenchmark {
+
+    private static final int SEGMENTS = 8;
+    private static final int SEGMENT_DOCS = 5000;
+
+    @Param({"DISABLED", "ALWAYS"})
+    public IntraQueryExecutor.Policy policy;
+
+    private Path dir;
+    private IntraQueryExecutor executor;
+    private Searcher searcher;
+    private List<String> queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+
+        dir = Files.createTempDirectory("intra-query-search-benchmark");
+        List<Map<String, String>> docs = data.documents(SEGMENTS * SEGMENT_DOCS, 120);
+        queries = data.queries(100, 4);
+
+        // one commit per segment, too few segments to be merged
+        Indexer indexer = new Indexer(dir.toString());
+        indexer.create();
+        try {
+            for (int i = 0; i < SEGMENTS; i++) {
+                indexer.index(docs.subList(i * SEGMENT_DOCS, (i + 1) * SEGMENT_DOCS));
+                indexer.commit();
+            }
+        } finally {
+            indexer.close();
+        }
+
+        executor = new IntraQueryExecutor(policy, Runtime.getRuntime().availableProcessors(), SEGMENT_DOCS, 1,
+                Integer.MAX_VALUE);
+        searcher = new Searcher(dir.toString(), new EnglishAnalyzer(), 0, null, null, executor);
+        searcher.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searcher.close();
+        executor.close();
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Cycles through the queries, so that each thread searches all of them in turn.
+     */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+
+        private int next;
+
+        String next(List<String> queries) {
+            return queries.get(next++ % queries.size());
+        }
+
+    }
+
+    @Benchmark
+    public SearchResultDTO search(QueryCursor cursor) throws IOException, ParseException {
+        return searcher.search(new QueryDTO(cursor.next(queries)), 0, 20, 0);
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.analyzer.Word2VecSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.index.DocumentVectorIndex;
+import com.lamproslntz.searchengineextended.index.KnnRanker;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import com.lamproslntz.searchengineextended.index.VectorReranker;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a query in each search mode of {@link Searcher}: BM25 with the query terms expanded by
+ * their word embedding synonyms, and two-phase retrieval, where the top BM25 candidates (without query expansion)
+ * are re-ranked by the similarity of their dense vectors to the query vector, KNN search of the document vectors,
+ * and hybrid search, fusing KNN and BM25 search by Reciprocal Rank Fusion. The synonyms are looked up by
+ * exhaustive search, without a cache, as for queries whose words haven't been seen before.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchModeBenchmark {
+
+    private static final int K = 20;
+
+    @Param({"expansion", "rerank", "knn", "hybrid"})
+    public String mode;
+
+    private Path dir;
+    private EmbeddingStoreInterface embeddings;
+    private DocumentVectorIndex vectors;
+    private Searcher searcher;
+    private List<String> queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+
+        dir = Files.createTempDirectory("search-mode-benchmark");
+        embeddings = data.embeddings(dir);
+        DocumentEmbedder embedder = new DocumentEmbedder(embeddings);
+        BenchmarkData.index(dir.resolve("index"), data.documents(2000, 120), embedder);
+        queries = data.queries(100, 4);
+
+        switch (mode) {
+            case "expansion":
+                searcher = new Searcher(dir.resolve("index").toString(), new Word2VecSynonymAnalyzer(embeddings,
+                        new ExactNearestNeighbourIndex(embeddings), BenchmarkData.MIN_ACCURACY, (SynonymCache) null), 0);
+                break;
+            case "rerank":
+                searcher = new Searcher(dir.resolve("index").toString(), new EnglishAnalyzer(), 0, null,
+                        new VectorReranker(embedder));
+                break;
+            case "knn":
+            case "hybrid":
+                DocumentVectorIndex.build(dir.resolve("index"), 1);
+                vectors = DocumentVectorIndex.open(dir.resolve("index"));
+                searcher = new Searcher(dir.resolve("index").toString(), new EnglishAnalyzer(), 0, null,
+                        new KnnRanker(embedder, vectors, mode.equals("hybrid")));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown search mode: " + mode);
+        }
+        searcher.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searcher.close();
+        if (vectors != null) {
+            vectors.close();
+        }
+        embeddings.close();
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public List<DocumentDTO> search(SearcherBenchmark.QueryCursor cursor) throws IOException, ParseException {
+        return searcher.search(new QueryDTO(cursor.next(queries)), K);
+    }
+
+}
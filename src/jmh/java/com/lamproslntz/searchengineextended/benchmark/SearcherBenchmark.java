@@ -0,0 +1,137 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.analyzer.Word2VecSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.FSDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a query, when the query analyzer, the query parser and the index searcher are reused
+ * across queries ({@link Searcher}), against building them for every query. Run with {@code -prof gc} to also
+ * measure the memory allocated per query. Both share a warm {@link SynonymCache}, so that the cost of looking up
+ * the synonyms doesn't hide the cost of building the search pipeline.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearcherBenchmark {
+
+    private static final String[] FIELDS = {"title_norm", "abstract_norm"};
+
+    @Param({"20", "50"})
+    public int k;
+
+    private Path dir;
+    private EmbeddingStoreInterface embeddings;
+    private NearestNeighbourIndexInterface neighbours;
+    private SynonymCache cache;
+    private IndexReader reader;
+    private Searcher searcher;
+    private List<String> queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+
+        dir = Files.createTempDirectory("searcher-benchmark");
+        embeddings = data.embeddings(dir);
+        neighbours = new ExactNearestNeighbourIndex(embeddings);
+        cache = new SynonymCache();
+        BenchmarkData.index(dir.resolve("index"), data.documents(2000, 120));
+        queries = data.queries(100, 4);
+
+        reader = DirectoryReader.open(FSDirectory.open(dir.resolve("index")));
+
+        searcher = new Searcher(dir.resolve("index").toString(),
+                new Word2VecSynonymAnalyzer(embeddings, neighbours, BenchmarkData.MIN_ACCURACY, cache), 0);
+        searcher.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searcher.close();
+        reader.close();
+        embeddings.close();
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Cycles through the queries, so that each thread searches all of them in turn.
+     */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+
+        private int next;
+
+        String next(List<String> queries) {
+            return queries.get(next++ % queries.size());
+        }
+
+    }
+
+    @Benchmark
+    public List<DocumentDTO> reused(QueryCursor cursor) throws IOException, ParseException {
+        return searcher.search(new QueryDTO(cursor.next(queries)), k);
+    }
+
+    @Benchmark
+    public List<DocumentDTO> perQuery(QueryCursor cursor) throws IOException, ParseException {
+        // the search pipeline as it was built for every query
+        IndexSearcher indexSearcher = new IndexSearcher(reader);
+        indexSearcher.setSimilarity(new BM25Similarity());
+        QueryParser parser = new MultiFieldQueryParser(FIELDS,
+                new Word2VecSynonymAnalyzer(embeddings, neighbours, BenchmarkData.MIN_ACCURACY, cache));
+
+        Query query = parser.parse(cursor.next(queries));
+        List<DocumentDTO> results = new ArrayList<>();
+        TopDocs hits = indexSearcher.search(query, k);
+        for (ScoreDoc scoreDoc : hits.scoreDocs) {
+            Document doc = indexSearcher.doc(scoreDoc.doc);
+            results.add(new DocumentDTO(doc, scoreDoc.score));
+        }
+
+        return results;
+    }
+
+}
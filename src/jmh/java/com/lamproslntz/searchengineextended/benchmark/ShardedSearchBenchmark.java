@@ -0,0 +1,105 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import com.lamproslntz.searchengineextended.index.SearcherInterface;
+import com.lamproslntz.searchengineextended.index.ShardedIndexer;
+import com.lamproslntz.searchengineextended.index.ShardedSearcher;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a BM25 query (top 20 documents) on a collection of 20000 documents, in a single index
+ * ({@link Searcher}) and partitioned into 2 and 4 shards searched concurrently ({@link ShardedSearcher}). The
+ * sharded searches score the documents with the same (global) statistics as the single index, so the difference is
+ * the cost of the fan-out and the merge, against the gain of searching the shards in parallel.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedSearchBenchmark {
+
+    @Param({"1", "2", "4"}) // 1: a single index
+    public int shards;
+
+    private Path dir;
+    private SearcherInterface searcher;
+    private List<String> queries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+
+        dir = Files.createTempDirectory("sharded-search-benchmark");
+        List<Map<String, String>> docs = data.documents(20000, 120);
+        queries = data.queries(100, 4);
+
+        if (shards == 1) {
+            BenchmarkData.index(dir, docs);
+            searcher = new Searcher(dir.toString(), new EnglishAnalyzer(), 0);
+        } else {
+            ShardedIndexer indexer = new ShardedIndexer(dir.toString(), shards);
+            indexer.create();
+            try {
+                indexer.index(docs, shards, null);
+                indexer.commit();
+            } finally {
+                indexer.close();
+            }
+            searcher = new ShardedSearcher(dir.toString(), new EnglishAnalyzer(), 0);
+        }
+        searcher.open();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        searcher.close();
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Cycles through the queries, so that each thread searches all of them in turn.
+     */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+
+        private int next;
+
+        String next(List<String> queries) {
+            return queries.get(next++ % queries.size());
+        }
+
+    }
+
+    @Benchmark
+    public SearchResultDTO search(QueryCursor cursor) throws IOException, ParseException {
+        return searcher.search(new QueryDTO(cursor.next(queries)), 0, 20, 0);
+    }
+
+}
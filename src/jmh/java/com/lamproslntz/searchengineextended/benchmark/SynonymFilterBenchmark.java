@@ -0,0 +1,118 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.filter.Word2VecSynonymFilter;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of expanding a token with {@link Word2VecSynonymFilter}: looking up its nearest neighbours by
+ * exhaustive search of the word embeddings (no cache), or in a warm {@link SynonymCache}, and emitting its synonyms.
+ * Run with {@code -prof gc} to measure the memory allocated per token ({@code gc.alloc.rate.norm}), which is close to
+ * zero with a warm cache.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SynonymFilterBenchmark {
+
+    private static final int TEXTS = 100;
+    private static final int WORDS = 20; // words (tokens) per text
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private Path dir;
+    private EmbeddingStoreInterface embeddings;
+    private NearestNeighbourIndexInterface neighbours;
+    private SynonymCache cache;
+    private List<String> texts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData data = new BenchmarkData(42);
+        texts = data.queries(TEXTS, WORDS);
+
+        dir = Files.createTempDirectory("synonym-filter-benchmark");
+        embeddings = data.embeddings(dir);
+        neighbours = new ExactNearestNeighbourIndex(embeddings);
+        cache = cached ? new SynonymCache() : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        embeddings.close();
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * A token stream of whitespace separated words, expanded with their synonyms, reused by each thread.
+     */
+    @State(Scope.Thread)
+    public static class Stream {
+
+        private Tokenizer tokenizer;
+        private TokenStream filter;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(SynonymFilterBenchmark benchmark) {
+            tokenizer = new WhitespaceTokenizer();
+            filter = new Word2VecSynonymFilter(tokenizer, benchmark.embeddings, benchmark.neighbours,
+                    BenchmarkData.MIN_ACCURACY, benchmark.cache);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            filter.close();
+        }
+
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(WORDS)
+    public int expand(Stream stream) throws IOException {
+        stream.tokenizer.setReader(new StringReader(texts.get(stream.next++ % TEXTS)));
+
+        int tokens = 0;
+        stream.filter.reset();
+        while (stream.filter.incrementToken()) {
+            tokens++;
+        }
+        stream.filter.end();
+        stream.filter.close();
+
+        return tokens;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.lamproslntz.searchengineextended.benchmark;
+
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link TextCleaner} on a corpus of 1 MB of raw text, split in fields of 1 KB (as the
+ * abstracts of the CISI documents): an operation cleans the whole corpus, so the score (ops/sec) is in MB/sec. The
+ * single-pass scanner is measured against the regular expressions it replaced (lowercasing, replacing the symbols
+ * and the runs of whitespace characters, trimming), and as a streaming stage, reading the corpus through
+ * {@link TextCleaner#reader(Reader)}.
+ *
+ * @author Lampros Lountzis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextCleanerBenchmark {
+
+    private static final int CORPUS_SIZE = 1 << 20; // characters, all ASCII
+    private static final int FIELD_SIZE = 1 << 10;
+
+    @Param({"regex", "scanner", "reader"})
+    public String engine;
+
+    private TextCleaner cleaner;
+    private String corpus;
+    private List<String> fields;
+    private char[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cleaner = new TextCleaner(true, true);
+        corpus = new BenchmarkData(42).rawText(CORPUS_SIZE);
+        fields = new ArrayList<>();
+        for (int i = 0; i < CORPUS_SIZE; i += FIELD_SIZE) {
+            fields.add(corpus.substring(i, i + FIELD_SIZE));
+        }
+        buffer = new char[8192];
+    }
+
+    @Benchmark
+    public void clean(Blackhole blackhole) throws IOException {
+        switch (engine) {
+            case "regex":
+                for (String field : fields) {
+                    blackhole.consume(regex(field));
+                }
+                break;
+            case "scanner":
+                for (String field : fields) {
+                    blackhole.consume(cleaner.clean(field));
+                }
+                break;
+            case "reader":
+                try (Reader reader = cleaner.reader(new StringReader(corpus))) {
+                    for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+                        blackhole.consume(buffer[n - 1]);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown cleaning engine: " + engine);
+        }
+    }
+
+    /**
+     * Cleans a text with regular expressions, as {@link TextCleaner} used to.
+     */
+    private static String regex(String text) {
+        text = text.toLowerCase(Locale.ROOT);
+        text = text.replaceAll("[^a-zA-Z0-9]", " ");
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+}
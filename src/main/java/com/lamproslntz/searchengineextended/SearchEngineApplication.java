@@ -1,5 +1,7 @@
 package com.lamproslntz.searchengineextended;
 
+import com.lamproslntz.searchengineextended.dataset.CISIDocumentReader;
+import com.lamproslntz.searchengineextended.dataset.CISIQueryReader;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.lucene.document.Document;
@@ -9,11 +11,11 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +33,7 @@ public class SearchEngineApplication {
     /**
      * Read CISI dataset documents.
      * The documents are of the form: (ID, title, author, abstract). The cross-references section is skipped.
+     * To index the documents without loading them all in memory, use {@link CISIDocumentReader} directly.
      *
      * @param path CISI documents file path.
      *
@@ -50,65 +53,10 @@ public class SearchEngineApplication {
         }
 
         List<Map<String, String>> docs = new ArrayList<>();
-        try (BufferedReader reader = Files.newBufferedReader(file)) {
-
-            String line = reader.readLine();
-            if (line == null) return null;
-            do {
-                String docID;
-                String docTitle = "";
-                String docAuthor = "";
-                String docAbstract = "";
-                Map<String, String> doc = new HashMap<>(); // docs are dictionaries with the following fields: (ID, title, author, abstract)
-
-                // extract query ID
-                docID = line.split(" ")[1];
-                doc.put("id", docID);
-
-                boolean extract = true;
-                String field = "";
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith(".I")) { // when new query ID is found, go to next doc
-                        break;
-                    }
-
-                    if (line.startsWith(".T")) { // allow to extract doc title field
-                        extract = true;
-                        field = "title";
-                        continue;
-                    } else if (line.startsWith(".A")) { // allow to extract doc author field
-                        extract = true;
-                        field = "author";
-                        continue;
-                    } else if (line.startsWith(".W")) { // allow to extract doc abstract field
-                        extract = true;
-                        field = "abstract";
-                        continue;
-                    } else if (line.startsWith(".X") || line.startsWith(".B") || line.startsWith(".C") || line.startsWith(".K")) { // don't allow to extract these doc fields
-                        extract = false;
-                        continue;
-                    }
-
-                    if (extract) {
-                        if (field.equals("title")) { // extract doc title
-                            docTitle = docTitle + " " + line;
-                            doc.put("title_norm", docTitle);
-                            doc.put("title", docTitle);
-                        } else if (field.equals("author")) { // extract doc author
-                            docAuthor = docAuthor + " " + line;
-                            doc.put("author", docAuthor);
-                        } else if (field.equals("abstract")) { // extract doc abstract
-                            docAbstract = docAbstract + " " + line;
-                            doc.put("abstract_norm", docAbstract);
-                            doc.put("abstract", docAbstract);
-                        }
-                    }
-                }
-
-                docs.add(doc);
-            } while (line != null);
-
-        } catch (IOException e) {
+        try (CISIDocumentReader reader = CISIDocumentReader.open(file)) {
+            if (!reader.hasNext()) return null;
+            reader.forEachRemaining(docs::add);
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("[ERROR] readCISIDocuments - Problem occurred while reading the documents.");
             e.printStackTrace();
             return null;
@@ -139,43 +87,10 @@ public class SearchEngineApplication {
         }
 
         List<Map<String, String>> queries = new ArrayList<>();
-        try (BufferedReader reader = Files.newBufferedReader(file)) {
-
-            String line = reader.readLine();
-            if (line == null) return null;
-            do {
-                String queryID;
-                String queryText = "";
-                Map<String, String> query = new HashMap<>(); // queries are dictionaries with the following fields: (ID, text)
-
-                // extract query ID
-                queryID = line.split(" ")[1];
-                query.put("id", queryID);
-
-                boolean extract = true;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith(".I")) { // when new query ID is found, go to next query
-                        break;
-                    }
-
-                    if (line.startsWith(".T") || line.startsWith(".W")) { // allow to extract doc title, text fields
-                        extract = true;
-                        continue;
-                    } else if (line.startsWith(".B") || line.startsWith(".A")) { // don't allow to extract these query fields
-                        extract = false;
-                        continue;
-                    }
-
-                    if (extract) { // extract query text
-                        queryText = queryText + " " + line;
-                        query.put("text", queryText);
-                    }
-                }
-
-                queries.add(query);
-            } while (line != null);
-
-        } catch (IOException e) {
+        try (CISIQueryReader reader = CISIQueryReader.open(file)) {
+            if (!reader.hasNext()) return null;
+            reader.forEachRemaining(queries::add);
+        } catch (IOException | UncheckedIOException e) {
             System.err.println("[ERROR] readCISIQueries - Problem occurred while reading the queries.");
             e.printStackTrace();
             return null;
@@ -241,7 +156,8 @@ public class SearchEngineApplication {
 
     /**
      * Write search results according to trec_eval specifications.
-     * The results file has records of the form: (query_id, iteration, doc_id, rank, similarity, run_id).
+     * The results file has records of the form: (query_id, iteration, doc_id, rank, similarity, run_id), where the
+     * rank of the top document of each query is 1.
      *
      * @param results a dictionary of the form {key: query_id, value: list of pairs (doc_id, similarity_score)}.
      * @param path results file path.
@@ -257,9 +173,10 @@ public class SearchEngineApplication {
         try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(path))) {
             String record;
             for (String queryID : results.keySet()) {
+                int rank = 0;
                 for (Pair<Document, Float> pair : results.get(queryID)) {
                     // results file contains records of the form: (query_id, iteration, doc_id, rank, similarity, run_id)
-                    record = queryID + " 0 " + pair.getKey().getField("id").stringValue() + " 0 " + pair.getValue() + " STANDARD";
+                    record = queryID + " 0 " + pair.getKey().getField("id").stringValue() + " " + (++rank) + " " + pair.getValue() + " STANDARD";
                     writer.write(record);
                     writer.newLine();
                 }
@@ -1,12 +1,16 @@
 package com.lamproslntz.searchengineextended.analyzer;
 
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
 import com.lamproslntz.searchengineextended.filter.Word2VecSynonymFilter;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import com.lamproslntz.searchengineextended.synonym.SynonymExpansion;
 import org.apache.lucene.analysis.*;
 import org.apache.lucene.analysis.en.EnglishPossessiveFilter;
 import org.apache.lucene.analysis.en.PorterStemFilter;
 import org.apache.lucene.analysis.miscellaneous.SetKeywordMarkerFilter;
 import org.apache.lucene.analysis.standard.StandardTokenizer;
-import org.deeplearning4j.models.word2vec.Word2Vec;
 
 import java.io.Reader;
 import java.util.Arrays;
@@ -14,6 +18,9 @@ import java.util.List;
 
 /**
  * Analyzer for English that can handle word synonyms using word embeddings.
+ * The synonyms are weighted by their similarity to the query terms (see {@link Word2VecSynonymFilter}), and their
+ * number is capped per term and per query. They are looked up either in the word embeddings, at query time, or in a
+ * synonym table precomputed from them.
  *
  * @author Lampros Lountzis
  */
@@ -38,46 +45,147 @@ public final class Word2VecSynonymAnalyzer extends StopwordAnalyzerBase  {
 
     private final CharArraySet stemExclusionSet;
 
-    private final Word2Vec model;
+    private final EmbeddingStoreInterface model;
+    private final NearestNeighbourIndexInterface neighbours;
     private final double minAccuracy;
+    private final SynonymCache cache;
+    private final CharArrayMap<SynonymExpansion> table;
+    private final int maxSynonyms;
+    private final int maxExpansions;
 
     /**
-     * Builds an analyzer with the default stop words: {@link #getDefaultStopSet}, and the given Word2Vec model
-     * and minimum model accuracy.
+     * Builds an analyzer with the default stop words: {@link #getDefaultStopSet}, and the given word embeddings
+     * and minimum model accuracy. The synonyms are looked up by scanning all the word embeddings.
      *
-     * @param model Word2Vec model
+     * @param model word embeddings
      * @param minAccuracy minimum model accuracy for word similarity
      */
-    public Word2VecSynonymAnalyzer(Word2Vec model, double minAccuracy) {
-        this(ENGLISH_STOP_WORDS_SET, model, minAccuracy);
+    public Word2VecSynonymAnalyzer(EmbeddingStoreInterface model, double minAccuracy) {
+        this(model, new ExactNearestNeighbourIndex(model), minAccuracy);
     }
 
     /**
-     * Builds an analyzer with the given stop words, Word2Vec model and minimum model accuracy.
+     * Builds an analyzer with the default stop words: {@link #getDefaultStopSet}, the given word embeddings,
+     * nearest neighbour index and minimum model accuracy.
+     *
+     * @param model word embeddings
+     * @param neighbours nearest neighbour index of the word embeddings, used to look up the synonyms
+     * @param minAccuracy minimum model accuracy for word similarity
+     */
+    public Word2VecSynonymAnalyzer(EmbeddingStoreInterface model, NearestNeighbourIndexInterface neighbours, double minAccuracy) {
+        this(ENGLISH_STOP_WORDS_SET, CharArraySet.EMPTY_SET, model, neighbours, minAccuracy, null);
+    }
+
+    /**
+     * Builds an analyzer with the default stop words: {@link #getDefaultStopSet}, the given word embeddings,
+     * nearest neighbour index, minimum model accuracy and synonym cache.
+     *
+     * @param model word embeddings
+     * @param neighbours nearest neighbour index of the word embeddings, used to look up the synonyms
+     * @param minAccuracy minimum model accuracy for word similarity
+     * @param cache cache of the synonyms, that may be shared with other analyzers
+     */
+    public Word2VecSynonymAnalyzer(EmbeddingStoreInterface model, NearestNeighbourIndexInterface neighbours, double minAccuracy,
+                                   SynonymCache cache) {
+        this(ENGLISH_STOP_WORDS_SET, CharArraySet.EMPTY_SET, model, neighbours, minAccuracy, cache);
+    }
+
+    /**
+     * Builds an analyzer with the default stop words: {@link #getDefaultStopSet}, that looks up the synonyms in the
+     * given synonym table.
+     *
+     * @param table expansions of the words, loaded by
+     *              {@link com.lamproslntz.searchengineextended.synonym.SynonymTable#loadExpansions}
+     */
+    public Word2VecSynonymAnalyzer(CharArrayMap<SynonymExpansion> table) {
+        this(ENGLISH_STOP_WORDS_SET, CharArraySet.EMPTY_SET, table, Word2VecSynonymFilter.DEFAULT_MAX_SYNONYMS,
+                Word2VecSynonymFilter.DEFAULT_MAX_EXPANSIONS);
+    }
+
+    /**
+     * Builds an analyzer with the given stop words, that looks up the synonyms in the given synonym table, with the
+     * given bounds of the query expansion. If a non-empty stem exclusion set is provided this analyzer will add a
+     * {@link SetKeywordMarkerFilter} before stemming.
      *
      * @param stopwords a stopword set
-     * @param model Word2Vec model
+     * @param stemExclusionSet a set of terms not to be stemmed
+     * @param table expansions of the words, loaded by
+     *              {@link com.lamproslntz.searchengineextended.synonym.SynonymTable#loadExpansions}
+     * @param maxSynonyms maximum number of synonyms a term is expanded with (at most
+     *                    {@link Word2VecSynonymFilter#MAX_SYNONYMS})
+     * @param maxExpansions maximum number of synonyms a query is expanded with
+     */
+    public Word2VecSynonymAnalyzer(CharArraySet stopwords, CharArraySet stemExclusionSet,
+                                   CharArrayMap<SynonymExpansion> table, int maxSynonyms, int maxExpansions) {
+        this(stopwords, stemExclusionSet, null, null, 0, null, table, maxSynonyms, maxExpansions);
+    }
+
+    /**
+     * Builds an analyzer with the given stop words, word embeddings and minimum model accuracy.
+     *
+     * @param stopwords a stopword set
+     * @param model word embeddings
      * @param minAccuracy minimum model accuracy for word similarity
      */
-    public Word2VecSynonymAnalyzer(CharArraySet stopwords, Word2Vec model, double minAccuracy) {
-        this(stopwords, CharArraySet.EMPTY_SET, model, minAccuracy);
+    public Word2VecSynonymAnalyzer(CharArraySet stopwords, EmbeddingStoreInterface model, double minAccuracy) {
+        this(stopwords, CharArraySet.EMPTY_SET, model, new ExactNearestNeighbourIndex(model), minAccuracy, null);
     }
 
     /**
-     * Builds an analyzer with the given stop words, Word2Vec model and minimum model accuracy.
-     * If a non-empty stem exclusion set is provided this analyzer will add a {@link SetKeywordMarkerFilter} before
-     * stemming.
+     * Builds an analyzer with the given stop words, word embeddings, nearest neighbour index, minimum model
+     * accuracy and synonym cache. If a non-empty stem exclusion set is provided this analyzer will add a
+     * {@link SetKeywordMarkerFilter} before stemming.
      *
      * @param stopwords a stopword set
      * @param stemExclusionSet a set of terms not to be stemmed
-     * @param model Word2Vec model
+     * @param model word embeddings
+     * @param neighbours nearest neighbour index of the word embeddings, used to look up the synonyms
      * @param minAccuracy minimum model accuracy for word similarity
+     * @param cache cache of the synonyms, that may be shared with other analyzers, or null
      */
-    public Word2VecSynonymAnalyzer(CharArraySet stopwords, CharArraySet stemExclusionSet, Word2Vec model, double minAccuracy) {
+    public Word2VecSynonymAnalyzer(CharArraySet stopwords, CharArraySet stemExclusionSet, EmbeddingStoreInterface model,
+                                   NearestNeighbourIndexInterface neighbours, double minAccuracy, SynonymCache cache) {
+        this(stopwords, stemExclusionSet, model, neighbours, minAccuracy, cache,
+                Word2VecSynonymFilter.DEFAULT_MAX_SYNONYMS, Word2VecSynonymFilter.DEFAULT_MAX_EXPANSIONS);
+    }
+
+    /**
+     * Builds an analyzer with the given stop words, word embeddings, nearest neighbour index, minimum model
+     * accuracy, synonym cache and bounds of the query expansion. If a non-empty stem exclusion set is provided this
+     * analyzer will add a {@link SetKeywordMarkerFilter} before stemming.
+     *
+     * @param stopwords a stopword set
+     * @param stemExclusionSet a set of terms not to be stemmed
+     * @param model word embeddings
+     * @param neighbours nearest neighbour index of the word embeddings, used to look up the synonyms
+     * @param minAccuracy minimum model accuracy for word similarity
+     * @param cache cache of the synonyms, that may be shared with other analyzers, or null
+     * @param maxSynonyms maximum number of synonyms a term is expanded with (at most
+     *                    {@link Word2VecSynonymFilter#MAX_SYNONYMS})
+     * @param maxExpansions maximum number of synonyms a query is expanded with
+     */
+    public Word2VecSynonymAnalyzer(CharArraySet stopwords, CharArraySet stemExclusionSet, EmbeddingStoreInterface model,
+                                   NearestNeighbourIndexInterface neighbours, double minAccuracy, SynonymCache cache,
+                                   int maxSynonyms, int maxExpansions) {
+        this(stopwords, stemExclusionSet, model, neighbours, minAccuracy, cache, null, maxSynonyms, maxExpansions);
+    }
+
+    private Word2VecSynonymAnalyzer(CharArraySet stopwords, CharArraySet stemExclusionSet, EmbeddingStoreInterface model,
+                                    NearestNeighbourIndexInterface neighbours, double minAccuracy, SynonymCache cache,
+                                    CharArrayMap<SynonymExpansion> table, int maxSynonyms, int maxExpansions) {
         super(stopwords);
+        if (maxSynonyms < 0 || maxSynonyms > Word2VecSynonymFilter.MAX_SYNONYMS) {
+            throw new IllegalArgumentException("maxSynonyms must be between 0 and " + Word2VecSynonymFilter.MAX_SYNONYMS
+                    + ".");
+        }
         this.stemExclusionSet = CharArraySet.unmodifiableSet(CharArraySet.copy(stemExclusionSet));
         this.model = model;
+        this.neighbours = neighbours;
         this.minAccuracy = minAccuracy;
+        this.cache = cache;
+        this.table = table;
+        this.maxSynonyms = maxSynonyms;
+        this.maxExpansions = maxExpansions;
     }
 
     /**
@@ -108,7 +216,9 @@ public final class Word2VecSynonymAnalyzer extends StopwordAnalyzerBase  {
         TokenStream result = new EnglishPossessiveFilter(source);
         result = new LowerCaseFilter(result);
         result = new StopFilter(result, stopwords);
-        result = new Word2VecSynonymFilter(result, model, minAccuracy);
+        result = table != null
+                ? new Word2VecSynonymFilter(result, table, maxSynonyms, maxExpansions)
+                : new Word2VecSynonymFilter(result, model, neighbours, minAccuracy, cache, maxSynonyms, maxExpansions);
         if(!stemExclusionSet.isEmpty()) {
             result = new SetKeywordMarkerFilter(result, stemExclusionSet);
         }
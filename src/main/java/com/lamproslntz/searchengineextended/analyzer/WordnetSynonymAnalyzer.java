@@ -13,7 +13,8 @@ import java.util.Arrays;
 import java.util.List;
 
 /**
- * Analyzer for English that can handle word synonyms using WordNet.
+ * Analyzer for English that can handle word synonyms using WordNet. Any synonym map can be used, e.g. a synonym table
+ * precomputed from word embeddings ({@link com.lamproslntz.searchengineextended.synonym.SynonymTable}).
  *
  * @author Lampros Lountzis
  */
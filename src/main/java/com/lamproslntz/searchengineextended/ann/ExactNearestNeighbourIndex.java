@@ -0,0 +1,52 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import java.util.List;
+
+/**
+ * Represents a NearestNeighbourIndex that finds the exact nearest neighbours, by comparing the query vector with
+ * every indexed vector. It needs no index structure, but the cost of a search grows linearly with the number of
+ * vectors; it is the reference the approximate indexes are evaluated against.
+ *
+ * @author Lampros Lountzis
+ */
+public class ExactNearestNeighbourIndex implements NearestNeighbourIndexInterface {
+
+    private final VectorValuesInterface vectors;
+
+    /**
+     * Initializes an ExactNearestNeighbourIndex.
+     *
+     * @param vectors the vectors to be searched.
+     */
+    public ExactNearestNeighbourIndex(VectorValuesInterface vectors) {
+        this.vectors = vectors;
+    }
+
+    public List<Neighbour> search(float[] query, int topN, double minSimilarity) {
+        if (topN <= 0) { // the heap below would otherwise be compared with while empty
+            return List.of();
+        }
+
+        // min-heap of the topN most similar vectors found so far
+        NeighbourQueue results = new NeighbourQueue(Math.min(topN, 1024) + 1, false);
+        for (int i = 0; i < vectors.size(); i++) {
+            float similarity = vectors.dot(i, query);
+            if (similarity < minSimilarity) {
+                continue;
+            }
+            if (results.size() < topN) {
+                results.push(i, similarity);
+            } else if (similarity > results.topSimilarity()) {
+                results.pop();
+                results.push(i, similarity);
+            }
+        }
+
+        return results.drain(minSimilarity);
+    }
+
+    public VectorValuesInterface getVectors() {
+        return vectors;
+    }
+
+}
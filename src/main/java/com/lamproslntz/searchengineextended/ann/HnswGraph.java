@@ -0,0 +1,115 @@
+package com.lamproslntz.searchengineextended.ann;
+
+/**
+ * Hierarchical Navigable Small World (HNSW) graph over a set of vectors, as described by Malkov and Yashunin
+ * ("Efficient and robust approximate nearest neighbor search using Hierarchical Navigable Small World graphs").
+ * Subclasses define how the neighbour lists are stored; the graph searches are shared by the builder and the
+ * (memory-mapped) index.
+ *
+ * @author Lampros Lountzis
+ */
+abstract class HnswGraph {
+
+    final VectorValuesInterface vectors;
+
+    HnswGraph(VectorValuesInterface vectors) {
+        this.vectors = vectors;
+    }
+
+    /**
+     * Copies the neighbours of a node at a layer.
+     *
+     * @param node index of the node.
+     * @param layer the layer, 0 being the bottom layer that contains all the nodes.
+     * @param dest array to copy the neighbours into, large enough for the maximum connections of the layer.
+     *
+     * @return number of neighbours.
+     */
+    abstract int neighbours(int node, int layer, int[] dest);
+
+    /**
+     * Greedy search of a layer, that moves to the neighbour most similar to the query while it improves.
+     *
+     * @param query query vector.
+     * @param entryPoint node to start from.
+     * @param layer the layer to be searched.
+     * @param buffer neighbours buffer.
+     *
+     * @return the node most similar to the query that was found.
+     */
+    int greedySearch(float[] query, int entryPoint, int layer, int[] buffer) {
+        int current = entryPoint;
+        float similarity = vectors.dot(current, query);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int count = neighbours(current, layer, buffer);
+            for (int i = 0; i < count; i++) {
+                float s = vectors.dot(buffer[i], query);
+                if (s > similarity) {
+                    similarity = s;
+                    current = buffer[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search of a layer.
+     *
+     * @param query query vector.
+     * @param entryPoints nodes to start from.
+     * @param ef size of the dynamic list of the most similar nodes found.
+     * @param layer the layer to be searched.
+     * @param visited visited nodes set, cleared before it is used.
+     * @param buffer neighbours buffer.
+     *
+     * @return a min-heap of at most ef nodes, the most similar to the query that were found.
+     */
+    NeighbourQueue searchLayer(float[] query, int[] entryPoints, int ef, int layer, VisitedSet visited, int[] buffer) {
+        NeighbourQueue candidates = new NeighbourQueue(ef, true);
+        NeighbourQueue results = new NeighbourQueue(ef + 1, false);
+
+        visited.clear();
+        for (int entryPoint : entryPoints) {
+            if (visited.visit(entryPoint)) {
+                float similarity = vectors.dot(entryPoint, query);
+                candidates.push(entryPoint, similarity);
+                results.push(entryPoint, similarity);
+            }
+        }
+        while (results.size() > ef) {
+            results.pop();
+        }
+
+        while (!candidates.isEmpty()) {
+            int candidate = candidates.topIndex();
+            float similarity = candidates.topSimilarity();
+            if (results.size() >= ef && similarity < results.topSimilarity()) {
+                break; // all the remaining candidates are less similar than the found nodes
+            }
+            candidates.pop();
+
+            int count = neighbours(candidate, layer, buffer);
+            for (int i = 0; i < count; i++) {
+                int neighbour = buffer[i];
+                if (!visited.visit(neighbour)) {
+                    continue;
+                }
+                float s = vectors.dot(neighbour, query);
+                if (results.size() < ef || s > results.topSimilarity()) {
+                    candidates.push(neighbour, s);
+                    results.push(neighbour, s);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+
+}
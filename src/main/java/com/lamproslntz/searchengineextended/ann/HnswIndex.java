@@ -0,0 +1,206 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Represents an approximate NearestNeighbourIndex, that searches an HNSW graph built offline by
+ * {@link HnswIndexBuilder}. The graph file is memory-mapped, so opening the index is immediate and the graph lives
+ * in the operating system's page cache. A search visits a few hundred vectors instead of all of them; its recall
+ * is tuned with the size of the dynamic candidate list (efSearch).
+ *
+ * @author Lampros Lountzis
+ */
+public class HnswIndex implements NearestNeighbourIndexInterface, Closeable {
+
+    /**
+     * Default size of the dynamic list of candidate neighbours during a search.
+     */
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    static final int MAGIC = 0x484e5331; // "HNS1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    private final FileChannel channel;
+    private final MappedGraph graph;
+    private final int maxLevel;
+    private final int entryPoint;
+    private volatile int efSearch = DEFAULT_EF_SEARCH;
+
+    // per thread search state, reused by all the searches of a thread
+    private final ThreadLocal<VisitedSet> visitedSets;
+    private final ThreadLocal<int[]> buffers;
+
+    private HnswIndex(FileChannel channel, VectorValuesInterface vectors) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not an HNSW graph file (or unsupported version).");
+        }
+        int size = header.getInt(8);
+        int dimension = header.getInt(12);
+        if (size != vectors.size() || dimension != vectors.dimension()) {
+            throw new IOException("The HNSW graph wasn't built from the given vectors.");
+        }
+        int m = header.getInt(16);
+        int m0 = header.getInt(20);
+        this.maxLevel = header.getInt(24);
+        this.entryPoint = header.getInt(28);
+        long layer0Offset = header.getLong(40);
+        long upperIndexOffset = header.getLong(48);
+        long upperOffset = header.getLong(56);
+
+        long layer0Size = (long) size * (m0 + 1) * Integer.BYTES;
+        if (layer0Size > Integer.MAX_VALUE) {
+            throw new IOException("The HNSW graph bottom layer exceeds the maximum mapping size (2GB).");
+        }
+        IntBuffer layer0 = map(channel, layer0Offset, layer0Size).asIntBuffer();
+        IntBuffer upperIndex = map(channel, upperIndexOffset, (long) size * Integer.BYTES).asIntBuffer();
+        long upperSize = channel.size() - upperOffset;
+        if (upperSize > Integer.MAX_VALUE) {
+            throw new IOException("The HNSW graph upper layers exceed the maximum mapping size (2GB).");
+        }
+        IntBuffer upper = map(channel, upperOffset, upperSize).asIntBuffer();
+        this.graph = new MappedGraph(vectors, m, m0, layer0, upperIndex, upper);
+
+        this.visitedSets = ThreadLocal.withInitial(() -> new VisitedSet(size));
+        this.buffers = ThreadLocal.withInitial(() -> new int[m0 + 1]);
+    }
+
+    /**
+     * Opens (memory-maps) a graph file, built by {@link HnswIndexBuilder}.
+     *
+     * @param path graph file path.
+     * @param vectors the vectors the graph was built from.
+     *
+     * @return the index.
+     *
+     * @throws IOException if the file cannot be opened, or isn't a graph of the given vectors.
+     */
+    public static HnswIndex open(Path path, VectorValuesInterface vectors) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new HnswIndex(channel, vectors);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Searches the graph. At most max(efSearch, topN) candidates are kept, so topN should not be much larger
+     * than efSearch.
+     *
+     * @param query query vector, of unit length.
+     * @param topN maximum number of neighbours to be returned.
+     * @param minSimilarity minimum (cosine) similarity of the returned neighbours to the query vector.
+     *
+     * @return at most topN neighbours whose similarity is at least minSimilarity, the most similar first.
+     */
+    public List<Neighbour> search(float[] query, int topN, double minSimilarity) {
+        if (entryPoint == -1 || topN <= 0) { // empty graph, or no neighbours requested
+            return List.of();
+        }
+
+        int[] buffer = buffers.get();
+        int entry = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            entry = graph.greedySearch(query, entry, layer, buffer);
+        }
+
+        NeighbourQueue results = graph.searchLayer(query, new int[]{entry}, Math.max(efSearch, topN), 0,
+                visitedSets.get(), buffer);
+        while (results.size() > topN) {
+            results.pop();
+        }
+
+        return results.drain(minSimilarity);
+    }
+
+    public VectorValuesInterface getVectors() {
+        return graph.vectors;
+    }
+
+    /**
+     * @return size of the dynamic list of candidate neighbours during a search.
+     */
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Sets the size of the dynamic list of candidate neighbours during a search. Larger values increase the recall
+     * and the cost of a search.
+     *
+     * @param efSearch size of the dynamic list of candidate neighbours.
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Releases the graph file. The mapped memory is released by the JVM, once the index is garbage collected.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The memory-mapped graph. Each neighbour list is stored as: (number of neighbours, neighbour_1, ...,
+     * neighbour_max).
+     */
+    private static final class MappedGraph extends HnswGraph {
+
+        private final int m;
+        private final int m0;
+        private final IntBuffer layer0;
+        private final IntBuffer upperIndex;
+        private final IntBuffer upper;
+
+        private MappedGraph(VectorValuesInterface vectors, int m, int m0, IntBuffer layer0, IntBuffer upperIndex,
+                            IntBuffer upper) {
+            super(vectors);
+            this.m = m;
+            this.m0 = m0;
+            this.layer0 = layer0;
+            this.upperIndex = upperIndex;
+            this.upper = upper;
+        }
+
+        @Override
+        int neighbours(int node, int layer, int[] dest) {
+            IntBuffer lists;
+            int offset;
+            if (layer == 0) {
+                lists = layer0;
+                offset = node * (m0 + 1);
+            } else {
+                lists = upper;
+                offset = upperIndex.get(node) + (layer - 1) * (m + 1);
+            }
+
+            int count = lists.get(offset);
+            for (int i = 0; i < count; i++) {
+                dest[i] = lists.get(offset + 1 + i);
+            }
+            return count;
+        }
+
+    }
+
+}
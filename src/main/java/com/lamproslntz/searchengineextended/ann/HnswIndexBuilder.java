@@ -0,0 +1,379 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Builds an HNSW graph over a set of vectors and writes it to a file, that is memory-mapped by {@link HnswIndex}.
+ * The graph is built offline, in memory, by inserting the vectors from multiple threads; each node's neighbour
+ * lists are guarded by the node's lock.
+ *
+ * Usage: HnswIndexBuilder embeddings.emb output.hnsw [M] [efConstruction] [threads]
+ *
+ * @author Lampros Lountzis
+ */
+public final class HnswIndexBuilder {
+
+    /**
+     * Default maximum number of connections per node, at the upper layers (twice as many at the bottom layer).
+     */
+    public static final int DEFAULT_M = 16;
+
+    /**
+     * Default size of the dynamic list of candidate neighbours while inserting a node.
+     */
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+
+    private final VectorValuesInterface vectors;
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final int[] levels;
+    private final int[][][] links; // per node and layer: (number of neighbours, neighbour_1, ..., neighbour_max)
+    private final OnHeapGraph graph;
+
+    private final ReentrantLock entryLock = new ReentrantLock();
+    private volatile int entryPoint = -1;
+    private volatile int maxLevel = -1;
+
+    /**
+     * Initializes an HnswIndexBuilder.
+     *
+     * @param vectors the vectors to be indexed, of unit length.
+     * @param m maximum number of connections per node at the upper layers (2m at the bottom layer).
+     * @param efConstruction size of the dynamic list of candidate neighbours while inserting a node.
+     * @param seed seed of the random generator that assigns the nodes to layers.
+     */
+    public HnswIndexBuilder(VectorValuesInterface vectors, int m, int efConstruction, long seed) {
+        this.vectors = vectors;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levels = new int[vectors.size()];
+        this.links = new int[vectors.size()][][];
+        this.graph = new OnHeapGraph();
+
+        // the level of each node follows an exponentially decaying distribution
+        Random random = new Random(seed);
+        double levelMultiplier = 1 / Math.log(m);
+        for (int node = 0; node < levels.length; node++) {
+            levels[node] = Math.min(Byte.MAX_VALUE, (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier));
+            links[node] = new int[levels[node] + 1][];
+            for (int layer = 0; layer <= levels[node]; layer++) {
+                links[node][layer] = new int[(layer == 0 ? m0 : m) + 1];
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("[ERROR] HnswIndexBuilder - usage: HnswIndexBuilder embeddings.emb output.hnsw [M] [efConstruction] [threads]");
+            System.exit(1);
+        }
+
+        int m = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_M;
+        int efConstruction = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_EF_CONSTRUCTION;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        try (MappedEmbeddingStore embeddings = MappedEmbeddingStore.open(Paths.get(args[0]))) {
+            long start = System.nanoTime();
+            HnswIndexBuilder builder = new HnswIndexBuilder(embeddings, m, efConstruction, 42);
+            builder.build(threads);
+            builder.write(Paths.get(args[1]));
+            System.out.println("Indexed " + embeddings.size() + " vectors in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        }
+    }
+
+    /**
+     * Builds the graph, by inserting all the vectors.
+     *
+     * @param threads number of threads inserting vectors concurrently.
+     *
+     * @throws InterruptedException if the build is interrupted.
+     */
+    public void build(int threads) throws InterruptedException {
+        if (vectors.size() == 0) {
+            return;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                futures[t] = executor.submit(() -> {
+                    VisitedSet visited = new VisitedSet(vectors.size());
+                    int[] buffer = new int[m0 + 1];
+                    float[] query = new float[vectors.dimension()];
+                    float[] base = new float[vectors.dimension()];
+                    float[] scratch = new float[vectors.dimension()];
+                    int node;
+                    while ((node = next.getAndIncrement()) < vectors.size()) {
+                        insert(node, visited, buffer, query, base, scratch);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("HNSW graph build failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the graph to a file.
+     * The file (little-endian) consists of a 64 byte header: (magic, version, size, dimension, M, M0, max level,
+     * entry point, section offsets), the level of each node, the bottom layer neighbour lists of all the nodes, the
+     * offsets of the upper layer neighbour lists and the upper layer neighbour lists.
+     *
+     * @param path graph file path.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        int size = vectors.size();
+        long levelsOffset = HnswIndex.HEADER_SIZE;
+        long layer0Offset = align(levelsOffset + size);
+        long upperIndexOffset = align(layer0Offset + (long) size * (m0 + 1) * Integer.BYTES);
+        long upperOffset = align(upperIndexOffset + (long) size * Integer.BYTES);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+            out.putInt(HnswIndex.MAGIC);
+            out.putInt(HnswIndex.VERSION);
+            out.putInt(size);
+            out.putInt(vectors.dimension());
+            out.putInt(m);
+            out.putInt(m0);
+            out.putInt(maxLevel);
+            out.putInt(entryPoint);
+            out.putLong(levelsOffset);
+            out.putLong(layer0Offset);
+            out.putLong(upperIndexOffset);
+            out.putLong(upperOffset);
+            flush(channel, out);
+
+            channel.position(levelsOffset);
+            for (int level : levels) {
+                ensure(channel, out, 1);
+                out.put((byte) level);
+            }
+            flush(channel, out);
+
+            channel.position(layer0Offset);
+            for (int node = 0; node < size; node++) {
+                for (int value : links[node][0]) {
+                    ensure(channel, out, Integer.BYTES);
+                    out.putInt(value);
+                }
+            }
+            flush(channel, out);
+
+            channel.position(upperIndexOffset);
+            int upper = 0;
+            for (int node = 0; node < size; node++) {
+                ensure(channel, out, Integer.BYTES);
+                out.putInt(levels[node] > 0 ? upper : -1);
+                upper += levels[node] * (m + 1);
+            }
+            flush(channel, out);
+
+            channel.position(upperOffset);
+            for (int node = 0; node < size; node++) {
+                for (int layer = 1; layer <= levels[node]; layer++) {
+                    for (int value : links[node][layer]) {
+                        ensure(channel, out, Integer.BYTES);
+                        out.putInt(value);
+                    }
+                }
+            }
+            flush(channel, out);
+        }
+    }
+
+    private void insert(int node, VisitedSet visited, int[] buffer, float[] query, float[] base, float[] scratch) {
+        vectors.vector(node, query);
+        int level = levels[node];
+
+        // the entry point lock is kept for the whole insertion, only if the node becomes the new entry point
+        entryLock.lock();
+        boolean locked = true;
+        try {
+            int entry = entryPoint;
+            int top = maxLevel;
+            if (entry == -1) { // first node
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+            if (level <= top) {
+                entryLock.unlock();
+                locked = false;
+            }
+
+            for (int layer = top; layer > level; layer--) {
+                entry = graph.greedySearch(query, entry, layer, buffer);
+            }
+
+            int[] entryPoints = {entry};
+            for (int layer = Math.min(top, level); layer >= 0; layer--) {
+                NeighbourQueue found = graph.searchLayer(query, entryPoints, efConstruction, layer, visited, buffer);
+
+                // candidates, the most similar first
+                int count = found.size();
+                int[] candidates = new int[count];
+                float[] similarities = new float[count];
+                for (int i = count - 1; i >= 0; i--) {
+                    candidates[i] = found.topIndex();
+                    similarities[i] = found.topSimilarity();
+                    found.pop();
+                }
+
+                int[] selected = selectNeighbours(candidates, similarities, count, m, scratch);
+                int[] list = links[node][layer];
+                synchronized (links[node]) {
+                    list[0] = selected.length;
+                    System.arraycopy(selected, 0, list, 1, selected.length);
+                }
+                for (int neighbour : selected) {
+                    link(neighbour, node, layer, base, scratch);
+                }
+
+                entryPoints = candidates;
+            }
+
+            if (level > top) {
+                entryPoint = node;
+                maxLevel = level;
+            }
+        } finally {
+            if (locked) {
+                entryLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds a connection from a node to a new neighbour. If the neighbour list is full, it is pruned with the
+     * neighbour selection heuristic.
+     */
+    private void link(int node, int neighbour, int layer, float[] base, float[] scratch) {
+        int maxConnections = layer == 0 ? m0 : m;
+        synchronized (links[node]) {
+            int[] list = links[node][layer];
+            if (list[0] < maxConnections) {
+                list[++list[0]] = neighbour;
+                return;
+            }
+
+            // candidates are the current neighbours and the new one, the most similar to the node first
+            vectors.vector(node, base);
+            NeighbourQueue queue = new NeighbourQueue(maxConnections + 1, true);
+            for (int i = 1; i <= list[0]; i++) {
+                queue.push(list[i], vectors.dot(list[i], base));
+            }
+            queue.push(neighbour, vectors.dot(neighbour, base));
+
+            int count = queue.size();
+            int[] candidates = new int[count];
+            float[] similarities = new float[count];
+            for (int i = 0; i < count; i++) {
+                candidates[i] = queue.topIndex();
+                similarities[i] = queue.topSimilarity();
+                queue.pop();
+            }
+
+            int[] selected = selectNeighbours(candidates, similarities, count, maxConnections, scratch);
+            list[0] = selected.length;
+            System.arraycopy(selected, 0, list, 1, selected.length);
+        }
+    }
+
+    /**
+     * Neighbour selection heuristic: a candidate is selected only if it is more similar to the base node than to
+     * any of the already selected neighbours, which keeps the graph connected across clusters.
+     *
+     * @param candidates candidate neighbours, the most similar to the base node first.
+     * @param similarities similarities of the candidates to the base node.
+     * @param count number of candidates.
+     * @param max maximum number of neighbours to be selected.
+     * @param scratch vector buffer.
+     *
+     * @return the selected neighbours.
+     */
+    private int[] selectNeighbours(int[] candidates, float[] similarities, int count, int max, float[] scratch) {
+        int[] selected = new int[Math.min(count, max)];
+        int size = 0;
+        for (int i = 0; i < count && size < selected.length; i++) {
+            vectors.vector(candidates[i], scratch);
+            boolean diverse = true;
+            for (int j = 0; j < size && diverse; j++) {
+                diverse = vectors.dot(selected[j], scratch) <= similarities[i];
+            }
+            if (diverse) {
+                selected[size++] = candidates[i];
+            }
+        }
+
+        return size == selected.length ? selected : Arrays.copyOf(selected, size);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static void ensure(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * The graph being built; neighbour lists are read under the node's lock, as other threads may be updating them.
+     */
+    private final class OnHeapGraph extends HnswGraph {
+
+        private OnHeapGraph() {
+            super(HnswIndexBuilder.this.vectors);
+        }
+
+        @Override
+        int neighbours(int node, int layer, int[] dest) {
+            synchronized (links[node]) {
+                int[] list = links[node][layer];
+                System.arraycopy(list, 1, dest, 0, list[0]);
+                return list[0];
+            }
+        }
+
+    }
+
+}
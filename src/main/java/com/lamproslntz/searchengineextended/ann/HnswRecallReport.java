@@ -0,0 +1,105 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the results of an {@link HnswIndex} against the exact nearest neighbours, for a sample of the
+ * vocabulary words used as queries. For each efSearch value, it reports the recall (fraction of the exact
+ * neighbours that were found) and the search latency, so that efSearch can be tuned.
+ *
+ * Usage: HnswRecallReport embeddings.emb graph.hnsw [queries] [topN] [minSimilarity] [efSearch,efSearch,...]
+ *
+ * @author Lampros Lountzis
+ */
+public final class HnswRecallReport {
+
+    private HnswRecallReport() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("[ERROR] HnswRecallReport - usage: HnswRecallReport embeddings.emb graph.hnsw [queries] [topN] [minSimilarity] [efSearch,efSearch,...]");
+            System.exit(1);
+        }
+
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int topN = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        double minSimilarity = args.length > 4 ? Double.parseDouble(args[4]) : -1;
+        int[] efSearches = args.length > 5
+                ? Arrays.stream(args[5].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[]{16, 32, 64, 128, 256};
+
+        try (MappedEmbeddingStore embeddings = MappedEmbeddingStore.open(Paths.get(args[0]));
+             HnswIndex hnsw = HnswIndex.open(Paths.get(args[1]), embeddings)) {
+            ExactNearestNeighbourIndex exact = new ExactNearestNeighbourIndex(embeddings);
+
+            // the queries are the vectors of randomly sampled vocabulary words
+            Random random = new Random(42);
+            float[][] vectors = new float[queries][];
+            for (int q = 0; q < queries; q++) {
+                vectors[q] = embeddings.vector(random.nextInt(embeddings.size()), new float[embeddings.dimension()]);
+            }
+
+            List<List<Neighbour>> expected = new ArrayList<>();
+            long[] latencies = new long[queries];
+            for (int q = 0; q < queries; q++) {
+                long start = System.nanoTime();
+                expected.add(exact.search(vectors[q], topN, minSimilarity));
+                latencies[q] = System.nanoTime() - start;
+            }
+
+            System.out.printf("%-12s %10s %12s %12s%n", "index", "recall", "mean (us)", "p99 (us)");
+            System.out.printf("%-12s %10.4f %12.1f %12.1f%n", "exact", 1.0, mean(latencies), percentile(latencies, 0.99));
+
+            for (int efSearch : efSearches) {
+                hnsw.setEfSearch(efSearch);
+                // warm up the mapped graph, so that the first efSearch value isn't penalized
+                for (int q = 0; q < Math.min(queries, 100); q++) {
+                    hnsw.search(vectors[q], topN, minSimilarity);
+                }
+
+                long found = 0;
+                long total = 0;
+                for (int q = 0; q < queries; q++) {
+                    long start = System.nanoTime();
+                    List<Neighbour> approximate = hnsw.search(vectors[q], topN, minSimilarity);
+                    latencies[q] = System.nanoTime() - start;
+
+                    Set<Integer> indices = new HashSet<>();
+                    for (Neighbour neighbour : approximate) {
+                        indices.add(neighbour.getIndex());
+                    }
+                    for (Neighbour neighbour : expected.get(q)) {
+                        if (indices.contains(neighbour.getIndex())) {
+                            found++;
+                        }
+                    }
+                    total += expected.get(q).size();
+                }
+
+                double recall = total == 0 ? 1.0 : (double) found / total;
+                System.out.printf("%-12s %10.4f %12.1f %12.1f%n", "ef=" + efSearch, recall, mean(latencies),
+                        percentile(latencies, 0.99));
+            }
+        }
+    }
+
+    private static double mean(long[] latencies) {
+        return Arrays.stream(latencies).average().orElse(0) / 1000;
+    }
+
+    private static double percentile(long[] latencies, double percentile) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1000.0;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import java.util.List;
+
+/**
+ * A NearestNeighbourIndex finds the vectors of a {@link VectorValuesInterface} that are the most similar to a query
+ * vector. Implementations may be exact or approximate; they must be safe to use from multiple threads.
+ *
+ * @author Lampros Lountzis
+ */
+public interface NearestNeighbourIndexInterface {
+
+    /**
+     * Specifies the nearest neighbour search.
+     *
+     * @param query query vector, of unit length.
+     * @param topN maximum number of neighbours to be returned.
+     * @param minSimilarity minimum (cosine) similarity of the returned neighbours to the query vector.
+     *
+     * @return at most topN neighbours whose similarity is at least minSimilarity, the most similar first.
+     */
+    List<Neighbour> search(float[] query, int topN, double minSimilarity);
+
+    /**
+     * @return the indexed vectors.
+     */
+    VectorValuesInterface getVectors();
+
+}
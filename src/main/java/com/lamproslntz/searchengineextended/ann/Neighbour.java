@@ -0,0 +1,53 @@
+package com.lamproslntz.searchengineextended.ann;
+
+/**
+ * Encapsulates a nearest neighbour search result.
+ * A neighbour consists of the index of a vector and its (cosine) similarity to the query vector.
+ *
+ * @author Lampros Lountzis
+ */
+public class Neighbour {
+
+    private final int index;
+    private final float similarity;
+
+    public Neighbour(int index, float similarity) {
+        this.index = index;
+        this.similarity = similarity;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public float getSimilarity() {
+        return similarity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Neighbour neighbour = (Neighbour) o;
+
+        if (getIndex() != neighbour.getIndex()) return false;
+        return Float.compare(getSimilarity(), neighbour.getSimilarity()) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getIndex();
+        result = 31 * result + Float.hashCode(getSimilarity());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Neighbour { " +
+                "index=" + index +
+                ", similarity=" + similarity +
+                " }";
+    }
+
+}
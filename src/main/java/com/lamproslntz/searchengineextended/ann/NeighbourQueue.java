@@ -0,0 +1,119 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A binary heap of (vector index, similarity) pairs, that keeps either the most similar (max-heap) or the least
+ * similar (min-heap) pair on top. Pairs are stored in primitive arrays, so that no objects are allocated per pair.
+ *
+ * @author Lampros Lountzis
+ */
+final class NeighbourQueue {
+
+    private final boolean maxHeap;
+    private int[] indices;
+    private float[] similarities;
+    private int size;
+
+    NeighbourQueue(int initialCapacity, boolean maxHeap) {
+        this.maxHeap = maxHeap;
+        this.indices = new int[Math.max(1, initialCapacity)];
+        this.similarities = new float[Math.max(1, initialCapacity)];
+    }
+
+    void push(int index, float similarity) {
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+            similarities = Arrays.copyOf(similarities, size * 2);
+        }
+
+        // sift up
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(similarity, similarities[parent])) {
+                break;
+            }
+            indices[i] = indices[parent];
+            similarities[i] = similarities[parent];
+            i = parent;
+        }
+        indices[i] = index;
+        similarities[i] = similarity;
+    }
+
+    void pop() {
+        int index = indices[--size];
+        float similarity = similarities[size];
+
+        // sift down
+        int i = 0;
+        int child;
+        while ((child = 2 * i + 1) < size) {
+            if (child + 1 < size && before(similarities[child + 1], similarities[child])) {
+                child++;
+            }
+            if (!before(similarities[child], similarity)) {
+                break;
+            }
+            indices[i] = indices[child];
+            similarities[i] = similarities[child];
+            i = child;
+        }
+        indices[i] = index;
+        similarities[i] = similarity;
+    }
+
+    int topIndex() {
+        return indices[0];
+    }
+
+    float topSimilarity() {
+        return similarities[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drains the queue.
+     *
+     * @param minSimilarity minimum similarity of the returned neighbours.
+     *
+     * @return the neighbours in the queue whose similarity is at least minSimilarity, the most similar first.
+     */
+    List<Neighbour> drain(double minSimilarity) {
+        Neighbour[] drained = new Neighbour[size];
+        int count = size;
+        while (!isEmpty()) {
+            // the top of a min-heap is the least similar, the top of a max-heap the most similar
+            int position = maxHeap ? count - size : size - 1;
+            drained[position] = new Neighbour(topIndex(), topSimilarity());
+            pop();
+        }
+
+        List<Neighbour> neighbours = new ArrayList<>(count);
+        for (Neighbour neighbour : drained) {
+            if (neighbour.getSimilarity() >= minSimilarity) {
+                neighbours.add(neighbour);
+            }
+        }
+        return neighbours;
+    }
+
+    private boolean before(float a, float b) {
+        return maxHeap ? a > b : a < b;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.lamproslntz.searchengineextended.ann;
+
+/**
+ * A set of vectors of the same dimension, identified by their index in the range [0, size()). The vectors are
+ * expected to be of unit length, so that the dot product of two vectors is their cosine similarity.
+ *
+ * @author Lampros Lountzis
+ */
+public interface VectorValuesInterface {
+
+    /**
+     * @return number of vectors.
+     */
+    int size();
+
+    /**
+     * @return number of dimensions of the vectors.
+     */
+    int dimension();
+
+    /**
+     * Copies a vector.
+     *
+     * @param index index of a vector.
+     * @param dest array of at least dimension() elements to copy the vector into.
+     *
+     * @return the dest array.
+     */
+    float[] vector(int index, float[] dest);
+
+    /**
+     * Computes the dot product of a vector with the given vector.
+     *
+     * @param index index of a vector.
+     * @param vector vector of dimension() elements.
+     *
+     * @return the dot product; the cosine similarity if the given vector is of unit length.
+     */
+    float dot(int index, float[] vector);
+
+}
@@ -0,0 +1,42 @@
+package com.lamproslntz.searchengineextended.ann;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the vectors visited by a graph search. Clearing the set is O(1), as each search uses a new epoch number,
+ * so the same set can be reused by all the searches of a thread.
+ *
+ * @author Lampros Lountzis
+ */
+final class VisitedSet {
+
+    private final int[] epochs;
+    private int epoch = 1;
+
+    VisitedSet(int size) {
+        this.epochs = new int[size];
+    }
+
+    /**
+     * Marks a vector as visited.
+     *
+     * @param index index of the vector.
+     *
+     * @return true if the vector hadn't been visited yet.
+     */
+    boolean visit(int index) {
+        if (epochs[index] == epoch) {
+            return false;
+        }
+        epochs[index] = epoch;
+        return true;
+    }
+
+    void clear() {
+        if (++epoch == 0) { // wrapped around, reset all the marks
+            Arrays.fill(epochs, 0);
+            epoch = 1;
+        }
+    }
+
+}
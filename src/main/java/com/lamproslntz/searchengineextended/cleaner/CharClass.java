@@ -0,0 +1,114 @@
+package com.lamproslntz.searchengineextended.cleaner;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Represents a set of characters (code points), e.g. the symbols to be removed by a {@link TextCleaner}. The
+ * membership of the characters of the Basic Multilingual Plane is computed once, when the set is built, and kept in
+ * a bitmap (8 KB), so it is tested in constant time, without a regular expression; the membership of supplementary
+ * characters is computed on demand. A set is immutable and thread-safe.
+ *
+ * @author Lampros Lountzis
+ */
+public final class CharClass {
+
+    /**
+     * The characters that are not ASCII letters or digits, i.e. the regular expression {@code [^a-zA-Z0-9]}.
+     */
+    public static final CharClass NON_ALPHANUMERIC = matching(c -> !(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'
+            || c >= '0' && c <= '9'));
+
+    private static final int BMP_SIZE = Character.MAX_VALUE + 1;
+
+    private final long[] bmp;
+    private final IntPredicate supplementary;
+
+    private CharClass(long[] bmp, IntPredicate supplementary) {
+        this.bmp = bmp;
+        this.supplementary = supplementary;
+    }
+
+    /**
+     * Builds the set of the characters that satisfy a predicate.
+     *
+     * @param predicate tests whether a code point is in the set.
+     *
+     * @return the set.
+     */
+    public static CharClass matching(IntPredicate predicate) {
+        long[] bmp = new long[BMP_SIZE / Long.SIZE];
+        for (int c = 0; c < BMP_SIZE; c++) {
+            if (predicate.test(c)) {
+                bmp[c >>> 6] |= 1L << c;
+            }
+        }
+        return new CharClass(bmp, predicate);
+    }
+
+    /**
+     * Builds the set of the given characters.
+     *
+     * @param chars the characters of the set.
+     *
+     * @return the set.
+     */
+    public static CharClass anyOf(CharSequence chars) {
+        int[] codePoints = chars.codePoints().sorted().distinct().toArray();
+        return matching(c -> Arrays.binarySearch(codePoints, c) >= 0);
+    }
+
+    /**
+     * Builds the set of the characters that match a regular expression, e.g. a character class such as
+     * {@code [^a-zA-Z0-9]}. Each character is matched on its own, so the expression should match single characters.
+     *
+     * @param regex the regular expression.
+     *
+     * @return the set.
+     *
+     * @throws PatternSyntaxException if the regular expression is invalid.
+     */
+    public static CharClass regex(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return matching(c -> pattern.matcher(new String(Character.toChars(c))).matches());
+    }
+
+    /**
+     * @param codePoint a code point.
+     *
+     * @return true if the code point is in the set.
+     */
+    public boolean contains(int codePoint) {
+        if (codePoint < BMP_SIZE) {
+            return (bmp[codePoint >>> 6] & (1L << codePoint)) != 0;
+        }
+        return supplementary.test(codePoint);
+    }
+
+    /**
+     * @param other a set of characters.
+     *
+     * @return the set of the characters in this set or in the other.
+     */
+    public CharClass union(CharClass other) {
+        long[] union = new long[bmp.length];
+        for (int i = 0; i < union.length; i++) {
+            union[i] = bmp[i] | other.bmp[i];
+        }
+        return new CharClass(union, supplementary.or(other.supplementary));
+    }
+
+    /**
+     * @return the set of the characters not in this set.
+     */
+    public CharClass complement() {
+        long[] complement = new long[bmp.length];
+        for (int i = 0; i < complement.length; i++) {
+            complement[i] = ~bmp[i];
+        }
+        return new CharClass(complement, supplementary.negate());
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.lamproslntz.searchengineextended.cleaner;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a text cleaned by a {@link TextCleaner}, as it is read from the underlying reader. The result is the same
+ * as {@link TextCleaner#clean(String)} of the whole text: the spaces (and control characters) that follow the last
+ * character read so far are held back until a character other than a space follows, and dropped at the end of the
+ * text.
+ *
+ * @author Lampros Lountzis
+ */
+final class CleaningReader extends FilterReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final TextCleaner cleaner;
+    private final char[] input = new char[BUFFER_SIZE];
+    private final StringBuilder pending = new StringBuilder(); // spaces after the last character, held back
+    private char[] output = new char[BUFFER_SIZE + 1];
+    private int outputLength = 0;
+    private int outputPos = 0;
+    private char highSurrogate = 0; // the first half of a character split between two reads
+    private boolean content = false;
+    private boolean space = false;
+    private boolean eof = false;
+
+    CleaningReader(Reader in, TextCleaner cleaner) {
+        super(in);
+        this.cleaner = cleaner;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] c = new char[1];
+        return read(c, 0, 1) == -1 ? -1 : c[0];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (outputPos == outputLength) {
+            if (eof) {
+                return -1;
+            }
+            fill();
+        }
+
+        int n = Math.min(len, outputLength - outputPos);
+        System.arraycopy(output, outputPos, cbuf, off, n);
+        outputPos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        char[] buffer = new char[(int) Math.min(n, BUFFER_SIZE)];
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return outputPos < outputLength || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported.");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported.");
+    }
+
+    /**
+     * Reads and cleans the next characters of the text.
+     */
+    private void fill() throws IOException {
+        outputLength = 0;
+        outputPos = 0;
+
+        int start = 0;
+        if (highSurrogate != 0) {
+            input[start++] = highSurrogate;
+            highSurrogate = 0;
+        }
+
+        int read = in.read(input, start, input.length - start);
+        if (read == -1) {
+            eof = true;
+            if (start > 0) { // an unpaired high surrogate at the end of the text
+                append(cleaner.map(input[0]));
+            }
+            return;
+        }
+
+        int end = start + read;
+        for (int i = 0; i < end; ) {
+            char c = input[i];
+            if (Character.isHighSurrogate(c)) {
+                if (i + 1 == end) { // the low surrogate hasn't been read yet
+                    highSurrogate = c;
+                    break;
+                }
+                if (Character.isLowSurrogate(input[i + 1])) {
+                    append(cleaner.map(Character.toCodePoint(c, input[i + 1])));
+                    i += 2;
+                    continue;
+                }
+            }
+            append(cleaner.map(c));
+            i++;
+        }
+    }
+
+    private void append(int mapped) {
+        if (mapped == TextCleaner.SPACE) {
+            if (space) { // collapse runs of spaces
+                return;
+            }
+            space = true;
+            mapped = ' ';
+        } else {
+            space = false;
+        }
+
+        if (mapped <= ' ') {
+            if (content) { // drop leading spaces, hold back the others
+                pending.append((char) mapped);
+            }
+            return;
+        }
+
+        if (outputLength + pending.length() + 2 > output.length) {
+            output = Arrays.copyOf(output, Math.max(output.length * 2, outputLength + pending.length() + 2));
+        }
+        if (pending.length() > 0) {
+            pending.getChars(0, pending.length(), output, outputLength);
+            outputLength += pending.length();
+            pending.setLength(0);
+        }
+        outputLength += Character.toChars(mapped, output, outputLength);
+        content = true;
+    }
+
+}
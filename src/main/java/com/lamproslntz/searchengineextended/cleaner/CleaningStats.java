@@ -0,0 +1,101 @@
+package com.lamproslntz.searchengineextended.cleaner;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encapsulates the statistics of cleaning documents in parallel, i.e. the number of cleaned documents and
+ * characters, the (wall) time it took to clean them, and the time spent cleaning them summed over the threads.
+ *
+ * @author Lampros Lountzis
+ */
+public class CleaningStats {
+
+    private final long documents;
+    private final long characters;
+    private final long elapsedNanos;
+    private final long cleaningNanos;
+
+    public CleaningStats(long documents, long characters, long elapsedNanos, long cleaningNanos) {
+        this.documents = documents;
+        this.characters = characters;
+        this.elapsedNanos = elapsedNanos;
+        this.cleaningNanos = cleaningNanos;
+    }
+
+    /**
+     * @return number of cleaned documents.
+     */
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return number of characters of the cleaned fields, before cleaning.
+     */
+    public long getCharacters() {
+        return characters;
+    }
+
+    /**
+     * @return time (in milliseconds) it took to clean the documents.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return time (in milliseconds) spent cleaning the documents, summed over the threads.
+     */
+    public long getCleaningMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(cleaningNanos);
+    }
+
+    /**
+     * @return cleaning throughput, in millions of characters per second.
+     */
+    public double getMegacharsPerSecond() {
+        return elapsedNanos > 0 ? characters * 1e3 / elapsedNanos : 0;
+    }
+
+    /**
+     * @return average number of threads cleaning the documents, i.e. the cleaning time over the elapsed time.
+     */
+    public double getEffectiveParallelism() {
+        return elapsedNanos > 0 ? (double) cleaningNanos / elapsedNanos : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CleaningStats that = (CleaningStats) o;
+
+        if (documents != that.documents) return false;
+        if (characters != that.characters) return false;
+        if (elapsedNanos != that.elapsedNanos) return false;
+        return cleaningNanos == that.cleaningNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(documents);
+        result = 31 * result + Long.hashCode(characters);
+        result = 31 * result + Long.hashCode(elapsedNanos);
+        result = 31 * result + Long.hashCode(cleaningNanos);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CleaningStats { " +
+                "documents=" + documents +
+                ", characters=" + characters +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", cleaningMillis=" + getCleaningMillis() +
+                ", megacharsPerSecond=" + String.format("%.1f", getMegacharsPerSecond()) +
+                ", effectiveParallelism=" + String.format("%.2f", getEffectiveParallelism()) +
+                " }";
+    }
+
+}
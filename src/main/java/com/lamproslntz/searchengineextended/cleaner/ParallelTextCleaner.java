@@ -0,0 +1,180 @@
+package com.lamproslntz.searchengineextended.cleaner;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a TextCleaner module, that cleans large sets of documents in parallel. The documents are split into
+ * chunks of consecutive documents, cleaned by a thread-safe {@link TextCleanerInterface} (e.g. {@link TextCleaner})
+ * on the threads of a {@link ForkJoinPool}; sets of at most one chunk are cleaned by the calling thread. Each
+ * document is cleaned in place by a single thread, so the result is the same as cleaning them sequentially,
+ * regardless of the parallelism.
+ * <p>
+ * The cleaner keeps the statistics of the cleaned documents ({@link #getStats()}): the time spent in the calls, and
+ * the time spent cleaning the chunks, summed over the threads.
+ *
+ * @author Lampros Lountzis
+ */
+public class ParallelTextCleaner implements TextCleanerInterface, Closeable {
+
+    /**
+     * Default number of documents in a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    private final TextCleanerInterface cleaner;
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private final int chunkSize;
+
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder characters = new LongAdder();
+    private final LongAdder elapsedNanos = new LongAdder();
+    private final LongAdder cleaningNanos = new LongAdder();
+
+    /**
+     * Initializes a ParallelTextCleaner, with a pool of its own threads, that cleans chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} documents.
+     *
+     * @param cleaner thread-safe cleaner of the documents.
+     * @param parallelism number of threads.
+     */
+    public ParallelTextCleaner(TextCleanerInterface cleaner, int parallelism) {
+        this(cleaner, new ForkJoinPool(parallelism), true, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Initializes a ParallelTextCleaner.
+     *
+     * @param cleaner thread-safe cleaner of the documents.
+     * @param pool the threads cleaning the documents, e.g. {@link ForkJoinPool#commonPool()}; it isn't shut down
+     *             when the cleaner is closed.
+     * @param chunkSize number of documents in a chunk.
+     */
+    public ParallelTextCleaner(TextCleanerInterface cleaner, ForkJoinPool pool, int chunkSize) {
+        this(cleaner, pool, false, chunkSize);
+    }
+
+    private ParallelTextCleaner(TextCleanerInterface cleaner, ForkJoinPool pool, boolean ownPool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive.");
+        }
+        this.cleaner = cleaner;
+        this.pool = pool;
+        this.ownPool = ownPool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Cleans document fields, in parallel.
+     *
+     * @param text documents and their fields, as a list of dictionaries.
+     * @param fields document fields to be cleaned.
+     */
+    @Override
+    public void clean(List<Map<String, String>> text, String[] fields) {
+        long start = System.nanoTime();
+        List<Map<String, String>> docs = text instanceof RandomAccess ? text : new ArrayList<>(text);
+        if (docs.size() <= chunkSize) {
+            new CleaningTask(docs, fields, 0, docs.size()).compute();
+        } else {
+            pool.invoke(new CleaningTask(docs, fields, 0, docs.size()));
+        }
+        elapsedNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Cleans a text (e.g. a user query), on the calling thread.
+     *
+     * @param text the text to be cleaned.
+     *
+     * @return the cleaned text.
+     */
+    @Override
+    public String clean(String text) {
+        return cleaner.clean(text);
+    }
+
+    /**
+     * @return the statistics of the documents cleaned so far.
+     */
+    public CleaningStats getStats() {
+        return new CleaningStats(documents.sum(), characters.sum(), elapsedNanos.sum(), cleaningNanos.sum());
+    }
+
+    /**
+     * @return number of threads cleaning the documents.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * @return number of documents in a chunk.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Shuts down the threads of the cleaner, unless they were given to it.
+     */
+    @Override
+    public void close() {
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Cleans the documents in [from, to), splitting them in halves down to a chunk.
+     */
+    private class CleaningTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Map<String, String>> docs;
+        private final String[] fields;
+        private final int from;
+        private final int to;
+
+        CleaningTask(List<Map<String, String>> docs, String[] fields, int from, int to) {
+            this.docs = docs;
+            this.fields = fields;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CleaningTask(docs, fields, from, mid), new CleaningTask(docs, fields, mid, to));
+                return;
+            }
+
+            List<Map<String, String>> chunk = docs.subList(from, to);
+            long chars = 0;
+            for (Map<String, String> doc : chunk) {
+                for (String field : fields) {
+                    String value = doc.get(field);
+                    chars += value != null ? value.length() : 0;
+                }
+            }
+
+            long start = System.nanoTime();
+            cleaner.clean(chunk, fields);
+            cleaningNanos.add(System.nanoTime() - start);
+            documents.add(chunk.size());
+            characters.add(chars);
+        }
+
+    }
+
+}
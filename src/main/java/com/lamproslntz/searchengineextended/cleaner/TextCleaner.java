@@ -1,44 +1,78 @@
 package com.lamproslntz.searchengineextended.cleaner;
 
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.regex.PatternSyntaxException;
 
 /**
  * Represents a TextCleaner module, for cleaning a set of documents. Each document consists of a set of fields, which
  * will be cleaned by lowercasing the text, removing symbols from it and redundant spaces.
+ * <p>
+ * The text is cleaned in a single pass over its characters: each character is lowercased, replaced by a space if it
+ * is a symbol (a {@link CharClass}) or a whitespace character, and runs of spaces are collapsed into one, while the
+ * leading and trailing spaces (and control characters) are dropped. This is equivalent to lowercasing the text,
+ * replacing the symbols and the runs of whitespace characters with a space and trimming it, without a regular
+ * expression or intermediate strings. Texts can be cleaned in batch ({@link #clean(String)},
+ * {@link #clean(char[], int, int)}), or streamed ({@link #reader(Reader)}). A TextCleaner is thread-safe.
  *
  * @author Lampros Lountzis
  */
 public class TextCleaner implements TextCleanerInterface {
 
+    /**
+     * Mapping of the characters to be replaced by a space.
+     */
+    static final int SPACE = -1;
+
+    private static final TextCleaner FIXER = new TextCleaner(false, false);
+
     private final boolean TO_LOWERCASE;
     private final boolean REMOVE_SYMBOLS;
-    private final String SYMBOLS;
+    private final CharClass SYMBOLS;
+    private final int[] ASCII; // mapping of the ASCII characters
+    private final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[256]);
 
     /**
      * Initializes TextCleaner.
      *
      * @param toLowercase boolean flag for whether to lowercase text.
-     * @param removeSymbols boolean flag for whether to remove symbols.
+     * @param removeSymbols boolean flag for whether to remove symbols (any character but an ASCII letter or digit).
      */
     public TextCleaner(boolean toLowercase, boolean removeSymbols) {
-        this.TO_LOWERCASE = toLowercase;
-        this.REMOVE_SYMBOLS = removeSymbols;
-        this.SYMBOLS = "[^a-zA-Z0-9]";
+        this(toLowercase, removeSymbols, CharClass.NON_ALPHANUMERIC);
     }
 
     /**
      * Initializes TextCleaner.
      *
      * @param toLowercase boolean flag for whether to lowercase text.
-     * @param symbols string of symbols to be removed, as a regex.
+     * @param symbols string of symbols to be removed, as a regex matching single characters (e.g. a character class).
      */
     public TextCleaner(boolean toLowercase, String symbols) {
+        this(toLowercase, true, compile(symbols));
+    }
+
+    /**
+     * Initializes TextCleaner.
+     *
+     * @param toLowercase boolean flag for whether to lowercase text.
+     * @param symbols symbols to be removed.
+     */
+    public TextCleaner(boolean toLowercase, CharClass symbols) {
+        this(toLowercase, true, symbols);
+    }
+
+    private TextCleaner(boolean toLowercase, boolean removeSymbols, CharClass symbols) {
         this.TO_LOWERCASE = toLowercase;
-        this.REMOVE_SYMBOLS = true;
+        this.REMOVE_SYMBOLS = removeSymbols && symbols != null;
         this.SYMBOLS = symbols;
+
+        this.ASCII = new int[128];
+        for (int c = 0; c < ASCII.length; c++) {
+            ASCII[c] = mapSlow(c);
+        }
     }
 
     /**
@@ -54,25 +88,108 @@ public class TextCleaner implements TextCleanerInterface {
     public void clean(List<Map<String, String>> text, String[] fields) {
         for (Map<String, String> txt : text) {
             for (String field : fields) { // for each obj field to be cleaned
-                if (txt.containsKey(field)) { // if the field exists, clean it
-                    if (TO_LOWERCASE) {
-                        txt.put(field, txt.get(field).toLowerCase(Locale.ROOT));
+                String value = txt.get(field);
+                if (value != null) { // if the field exists, clean it
+                    String cleaned = clean(value);
+                    if (cleaned != value) { // the same string, if already clean
+                        txt.put(field, cleaned);
                     }
+                }
+            }
+        }
+    }
 
-                    if (REMOVE_SYMBOLS) {
-                        try {
-                            txt.put(field, txt.get(field).replaceAll(SYMBOLS, " "));
-                        } catch (PatternSyntaxException e) {
-                            System.out.println("[ERROR] cleaner.TextCleaner.clean - Invalid regular expression pattern.");
-                        }
-                    }
+    /**
+     * Cleans a text (e.g. a user query).
+     * The following operations take place:
+     *  * lowercasing text,
+     *  * removal of symbols,
+     *  * removal of redundant spaces.
+     *
+     * @param text the text to be cleaned.
+     *
+     * @return the cleaned text; the given text itself, if it is already clean.
+     */
+    public String clean(String text) {
+        int length = text.length();
+        char[] buffer = BUFFER.get();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+            BUFFER.set(buffer);
+        }
 
-                    // remove redundant spaces
-                    txt.put(field, txt.get(field).replaceAll("\\s+", " "));
-                    txt.put(field, txt.get(field).trim());
+        text.getChars(0, length, buffer, 0);
+        int cleaned = clean(buffer, 0, length);
+        if (cleaned == length && text.contentEquals(CharBuffer.wrap(buffer, 0, length))) {
+            return text;
+        }
+        return new String(buffer, 0, cleaned);
+    }
+
+    /**
+     * Cleans a text in place.
+     *
+     * @param buffer buffer holding the text to be cleaned.
+     * @param offset offset of the text in the buffer.
+     * @param length length of the text.
+     *
+     * @return length of the cleaned text, that starts at the same offset; at most the given length.
+     */
+    public int clean(char[] buffer, int offset, int length) {
+        int end = offset + length;
+        int out = offset; // the cleaned text is never longer, so it can be written over the text
+        int contentEnd = offset; // end of the cleaned text, without trailing spaces
+        boolean space = false;
+
+        for (int i = offset; i < end; ) {
+            char c = buffer[i];
+            int mapped;
+            if (c < 128) {
+                mapped = ASCII[c];
+                i++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(buffer[i + 1])) {
+                mapped = mapSlow(Character.toCodePoint(c, buffer[i + 1]));
+                i += 2;
+            } else {
+                mapped = mapSlow(c);
+                if (Character.isSupplementaryCodePoint(mapped)) { // no room to write it over the text
+                    mapped = c;
                 }
+                i++;
+            }
+
+            if (mapped == SPACE) {
+                if (space) { // collapse runs of spaces
+                    continue;
+                }
+                space = true;
+                mapped = ' ';
+            } else {
+                space = false;
+            }
+
+            if (mapped <= ' ' && out == offset) { // drop leading spaces
+                continue;
+            }
+            out += Character.toChars(mapped, buffer, out);
+            if (mapped > ' ') {
+                contentEnd = out;
             }
         }
+
+        return contentEnd - offset; // drop trailing spaces
+    }
+
+    /**
+     * Streams a cleaned text: the characters of the given reader are cleaned as they are read, without holding the
+     * whole text in memory.
+     *
+     * @param reader reader of the text to be cleaned.
+     *
+     * @return reader of the cleaned text; closing it closes the given reader.
+     */
+    public Reader reader(Reader reader) {
+        return new CleaningReader(reader, this);
     }
 
     /**
@@ -84,14 +201,39 @@ public class TextCleaner implements TextCleanerInterface {
      * @param fields document fields to be fixed.
      */
     public void fix(List<Map<String, String>> text, String[] fields) {
-        for (Map<String, String> txt : text) {
-            for (String field : fields) { // for each obj field to be fixed
-                if (txt.containsKey(field)) { // if the field exists, fix it
-                    // remove redundant spaces
-                    txt.put(field, txt.get(field).replaceAll("\\s+", " "));
-                    txt.put(field, txt.get(field).trim());
-                }
-            }
+        FIXER.clean(text, fields);
+    }
+
+    /**
+     * Maps a character of the text to its cleaned character.
+     *
+     * @param codePoint a character of the text.
+     *
+     * @return the cleaned (e.g. lowercased) character, or {@link #SPACE} if it is replaced by a space.
+     */
+    int map(int codePoint) {
+        return codePoint < 128 ? ASCII[codePoint] : mapSlow(codePoint);
+    }
+
+    private int mapSlow(int codePoint) {
+        // the whitespace characters of the regex \s
+        if (codePoint == ' ' || codePoint >= '\t' && codePoint <= '\r') {
+            return SPACE;
+        }
+
+        int mapped = TO_LOWERCASE ? Character.toLowerCase(codePoint) : codePoint;
+        if (REMOVE_SYMBOLS && SYMBOLS.contains(mapped)) {
+            return SPACE;
+        }
+        return mapped;
+    }
+
+    private static CharClass compile(String symbols) {
+        try {
+            return CharClass.regex(symbols);
+        } catch (PatternSyntaxException e) {
+            System.out.println("[ERROR] cleaner.TextCleaner - Invalid regular expression pattern.");
+            return null;
         }
     }
 
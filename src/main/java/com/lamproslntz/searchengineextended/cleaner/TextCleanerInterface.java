@@ -6,7 +6,8 @@ import java.util.Map;
 /**
  * A TextCleaner cleans a set of documents. Each document consists of a set of fields (e.g. ID, title, author, etc.)
  * each of which can be changed (cleaned) by the TextCleaner. In order to define the cleaning behaviour, subclasses
- * must define the clean({@link List}<{@link Map}<{@link String}, {@link String}>>, {@link String}) method.
+ * must define the clean({@link List}<{@link Map}<{@link String}, {@link String}>>, {@link String}) and
+ * clean({@link String}) methods.
  *
  * @author Lampros Lountzis
  */
@@ -20,4 +21,13 @@ public interface TextCleanerInterface {
      */
     void clean(List<Map<String, String>> text, String[] fields);
 
+    /**
+     * Specifies the operation of cleaning a text.
+     *
+     * @param text the text to be cleaned.
+     *
+     * @return the cleaned text.
+     */
+    String clean(String text);
+
 }
\ No newline at end of file
@@ -0,0 +1,398 @@
+package com.lamproslntz.searchengineextended.config;
+
+import com.lamproslntz.searchengineextended.analyzer.Word2VecSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.distributed.DistributedSearcher;
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.HnswIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingConverter;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+import com.lamproslntz.searchengineextended.index.DirectoryFactory;
+import com.lamproslntz.searchengineextended.index.DocumentVectorIndex;
+import com.lamproslntz.searchengineextended.index.IntraQueryExecutor;
+import com.lamproslntz.searchengineextended.index.KnnRanker;
+import com.lamproslntz.searchengineextended.index.RankerInterface;
+import com.lamproslntz.searchengineextended.index.ResultCache;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import com.lamproslntz.searchengineextended.index.SearcherInterface;
+import com.lamproslntz.searchengineextended.index.SearcherWarmer;
+import com.lamproslntz.searchengineextended.index.ShardedIndexer;
+import com.lamproslntz.searchengineextended.index.ShardedSearcher;
+import com.lamproslntz.searchengineextended.index.VectorReranker;
+import com.lamproslntz.searchengineextended.service.SearchService;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import com.lamproslntz.searchengineextended.synonym.SynonymTable;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Configures the search components that are shared by the controllers for the whole life of the application.
+ *
+ * @author Lampros Lountzis
+ */
+@Configuration
+public class SearchEngineConfiguration {
+
+    private final Logger logger = LoggerFactory.getLogger(SearchEngineConfiguration.class);
+
+    /**
+     * Memory-maps the fastText word embeddings (wiki-news-300d-1M.emb). If the binary embedding file doesn't exist
+     * yet, it is converted once from the text file (wiki-news-300d-1M.vec); the conversion only replaces the binary
+     * file once it's complete, so an interrupted start-up converts it again instead of opening a partial file.
+     *
+     * @return the word embeddings.
+     *
+     * @throws IOException if the word embeddings cannot be converted or opened.
+     */
+    @Bean(destroyMethod = "close")
+    public EmbeddingStoreInterface embeddings() throws IOException {
+        Path emb = Paths.get("src/main/resources/fasttext-en/wiki-news-300d-1M.emb");
+        if (!Files.exists(emb)) {
+            logger.info("Converting word embeddings to " + emb + " (only done once)...");
+            EmbeddingConverter.convert(Paths.get("src/main/resources/fasttext-en/wiki-news-300d-1M.vec"), emb, false);
+        }
+
+        logger.info("Opening word embeddings...");
+        return MappedEmbeddingStore.open(emb);
+    }
+
+    /**
+     * Opens the HNSW graph of the word embeddings (wiki-news-300d-1M.hnsw), built offline by
+     * {@link com.lamproslntz.searchengineextended.ann.HnswIndexBuilder}. If the graph doesn't exist, the synonyms
+     * are looked up by scanning all the word embeddings.
+     *
+     * @param embeddings the word embeddings.
+     *
+     * @return the nearest neighbour index of the word embeddings.
+     *
+     * @throws IOException if the HNSW graph cannot be opened.
+     */
+    @Bean
+    public NearestNeighbourIndexInterface neighbours(EmbeddingStoreInterface embeddings) throws IOException {
+        Path hnsw = Paths.get("src/main/resources/fasttext-en/wiki-news-300d-1M.hnsw");
+        if (!Files.exists(hnsw)) {
+            logger.warn("No HNSW graph found at " + hnsw + ", synonyms are looked up by exhaustive search...");
+            return new ExactNearestNeighbourIndex(embeddings);
+        }
+
+        logger.info("Opening HNSW graph of the word embeddings...");
+        return HnswIndex.open(hnsw, embeddings);
+    }
+
+    /**
+     * Creates the cache of the word2vec synonyms, that is shared by all the requests.
+     *
+     * @return the synonym cache.
+     */
+    @Bean
+    public SynonymCache synonymCache() {
+        return new SynonymCache();
+    }
+
+    /**
+     * Builds the query analyzer. If a synonym table of the word embeddings (wiki-news-300d-1M.synonyms) has been
+     * built offline by {@link com.lamproslntz.searchengineextended.synonym.SynonymTableBuilder}, the synonyms are
+     * looked up in the table, otherwise they are computed at query time from the word embeddings; either way, they're
+     * weighted by their similarity.
+     *
+     * @param embeddings the word embeddings.
+     * @param neighbours the nearest neighbour index of the word embeddings.
+     * @param synonymCache the cache of the synonyms computed at query time.
+     *
+     * @return the query analyzer.
+     *
+     * @throws IOException if the synonym table cannot be loaded.
+     */
+    @Bean
+    public Analyzer queryAnalyzer(EmbeddingStoreInterface embeddings, NearestNeighbourIndexInterface neighbours,
+                                  SynonymCache synonymCache) throws IOException {
+        Path table = Paths.get("src/main/resources/fasttext-en/wiki-news-300d-1M.synonyms");
+        if (Files.exists(table)) {
+            logger.info("Loading synonym table " + table + "...");
+            return new Word2VecSynonymAnalyzer(SynonymTable.loadExpansions(table));
+        }
+
+        return new Word2VecSynonymAnalyzer(embeddings, neighbours, 0.98, synonymCache);
+    }
+
+    /**
+     * Creates the cache of the query results, that is shared by all the requests.
+     *
+     * @return the result cache.
+     */
+    @Bean
+    public ResultCache resultCache() {
+        return new ResultCache();
+    }
+
+    /**
+     * Creates the executor that searches the segments of the local index concurrently within a query. It is configured
+     * by the search.intra-query.* properties: the policy (disabled, always or adaptive), the number of threads
+     * (default: the number of processors), the size of the slices of segments, and the maximum number of running
+     * queries for a query to be searched concurrently by the adaptive policy (default: half the number of processors).
+     *
+     * @param policy decides which queries are searched concurrently.
+     * @param threads number of threads searching the slices, or a non-positive value for the number of processors.
+     * @param maxDocsPerSlice maximum number of documents of a slice of segments.
+     * @param maxSegmentsPerSlice maximum number of segments of a slice.
+     * @param maxConcurrentQueries maximum number of running queries, for a query to be searched concurrently by the
+     *                             adaptive policy, or a non-positive value for half the number of processors.
+     *
+     * @return the intra-query executor.
+     */
+    @Bean(destroyMethod = "close")
+    public IntraQueryExecutor intraQueryExecutor(@Value("${search.intra-query.policy:adaptive}") String policy,
+                                                 @Value("${search.intra-query.threads:0}") int threads,
+                                                 @Value("${search.intra-query.max-docs-per-slice:" + IntraQueryExecutor.DEFAULT_MAX_DOCS_PER_SLICE + "}") int maxDocsPerSlice,
+                                                 @Value("${search.intra-query.max-segments-per-slice:" + IntraQueryExecutor.DEFAULT_MAX_SEGMENTS_PER_SLICE + "}") int maxSegmentsPerSlice,
+                                                 @Value("${search.intra-query.max-concurrent-queries:0}") int maxConcurrentQueries) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (threads <= 0) {
+            threads = processors;
+        }
+        if (maxConcurrentQueries <= 0) {
+            maxConcurrentQueries = Math.max(1, processors / 2);
+        }
+
+        IntraQueryExecutor executor = new IntraQueryExecutor(IntraQueryExecutor.Policy.parse(policy),
+                threads, maxDocsPerSlice, maxSegmentsPerSlice, maxConcurrentQueries);
+        logger.info("Searching the segments of a query concurrently (" + executor.getPolicy() + ", " + threads
+                + " threads)...");
+        return executor;
+    }
+
+    /**
+     * Creates the factory of the directory hosting the files of the local index (or of each of its shards). It is
+     * configured by the search.index.* properties: the implementation of the directory (fs, mmap, nio, byte-buffers or
+     * nrt-caching), whether the memory-mapped files are preloaded into memory, and the sizes of the segments cached in
+     * memory by nrt-caching.
+     *
+     * @param type implementation of the directory.
+     * @param preload true if the files are preloaded into memory as they're opened, if the directory memory-maps them.
+     * @param nrtMaxMergeSizeMB maximum size (in MB) of a newly flushed segment, for it to be cached by nrt-caching.
+     * @param nrtMaxCachedMB maximum size (in MB) of all the segments cached by nrt-caching.
+     *
+     * @return the directory factory.
+     */
+    @Bean
+    public DirectoryFactory directoryFactory(@Value("${search.index.directory:fs}") String type,
+                                             @Value("${search.index.preload:false}") boolean preload,
+                                             @Value("${search.index.nrt-max-merge-size-mb:" + DirectoryFactory.DEFAULT_NRT_MAX_MERGE_SIZE_MB + "}") double nrtMaxMergeSizeMB,
+                                             @Value("${search.index.nrt-max-cached-mb:" + DirectoryFactory.DEFAULT_NRT_MAX_CACHED_MB + "}") double nrtMaxCachedMB) {
+        return new DirectoryFactory(DirectoryFactory.Type.parse(type), preload, nrtMaxMergeSizeMB, nrtMaxCachedMB);
+    }
+
+    /**
+     * Creates the warmer of the searchers of the local index (or of each of its shards). It is configured by the
+     * search.warm-up.* properties: the file of the representative queries replayed on each new searcher (CISI.QRY, or
+     * a log of queries, one per line), and the number of threads replaying them (default: the number of processors).
+     *
+     * @param queries path of the warm-up queries file, or empty to replay no queries.
+     * @param threads number of threads replaying the queries, or a non-positive value for the number of processors.
+     *
+     * @return the searcher warmer.
+     *
+     * @throws IOException if the warm-up queries cannot be read.
+     */
+    @Bean
+    public SearcherWarmer searcherWarmer(@Value("${search.warm-up.queries:}") String queries,
+                                         @Value("${search.warm-up.threads:0}") int threads) throws IOException {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        List<String> warmUpQueries = List.of();
+        if (!queries.isBlank()) {
+            logger.info("Loading warm-up queries " + queries + "...");
+            warmUpQueries = SearcherWarmer.readQueries(Paths.get(queries));
+        }
+        return new SearcherWarmer(warmUpQueries, threads);
+    }
+
+    /**
+     * Opens the vector index of the documents of the local index (built by {@link DocumentVectorIndex}), if the
+     * documents are ranked by KNN or hybrid search (search.ranker). It is opened when the Searcher of the local index
+     * needs it, as a sharded or remote index has no vector index of its own.
+     *
+     * @param ranker ranking of the documents: bm25, rerank, knn or hybrid.
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     *
+     * @return the vector index of the documents, or null if they aren't ranked by KNN search.
+     *
+     * @throws IOException if the vector index doesn't exist, or cannot be opened.
+     */
+    @Bean(destroyMethod = "close")
+    @Lazy
+    public DocumentVectorIndex documentVectors(@Value("${search.ranker:bm25}") String ranker,
+                                               @Value("${search.index.dir:src/main/resources/index}") String indexDir)
+            throws IOException {
+        String name = parseRanker(ranker);
+        if (!name.equals("knn") && !name.equals("hybrid")) {
+            return null;
+        }
+
+        logger.info("Opening the vector index of the documents of " + indexDir + "...");
+        return DocumentVectorIndex.open(Paths.get(indexDir));
+    }
+
+    /**
+     * Opens a Searcher for searching the Lucene index in search.index.dir, with the directory implementation of
+     * search.index.directory, that expands the queries using the given query analyzer and caches their results,
+     * searching the segments of a query concurrently and warming up each searcher. The documents are ranked by BM25;
+     * or in two phases, where the top search.ranker.depth BM25 documents, retrieved without query expansion, are
+     * re-ranked by the similarity of their dense vectors to the query vector; or by KNN search of their dense vectors,
+     * alone or fused with BM25 (search.ranker: bm25, rerank, knn or hybrid; the top search.ranker.depth documents of
+     * each search are fused). If the index has been built in shards by {@link ShardedIndexer}, the shards are searched
+     * concurrently (and warmed up) by a {@link ShardedSearcher} instead (without caching). If the
+     * search.remote-shards property lists the addresses of shard servers, the shards are searched remotely by a
+     * {@link DistributedSearcher}, hedging the requests after search.hedge-delay-ms milliseconds.
+     * <p>
+     * The Searcher is opened (and warmed up) in the background, so that the application can report that it isn't
+     * ready yet (see {@link com.lamproslntz.searchengineextended.controller.HealthController}), and the searches
+     * are rejected until it is. The Searcher is closed when the application shuts down.
+     *
+     * @param queryAnalyzer the query analyzer.
+     * @param resultCache the cache of the query results.
+     * @param intraQueryExecutor searches the segments of the local index concurrently within a query.
+     * @param searcherWarmer warms up the searchers of the local index, or of each of its shards.
+     * @param directoryFactory opens the directory hosting the files of the local index, or of each of its shards.
+     * @param embeddings the word embeddings, the document vectors were computed with.
+     * @param documentVectors the vector index of the documents of the local index, if ranked by KNN search.
+     * @param ranker ranking of the documents: bm25, rerank, knn or hybrid.
+     * @param rankerDepth number of BM25 documents re-ranked, if re-ranked by their dense vectors; or number of
+     *                    documents retrieved by each of KNN and BM25 search, if ranked by KNN search.
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param remoteShards the shard servers, separated by semicolons, each one as the URIs of its replicas, separated
+     *                     by commas; or empty to search the local index.
+     * @param hedgeDelayMillis time (in milliseconds) after which an unanswered shard request is hedged.
+     *
+     * @return a Searcher, being opened.
+     */
+    @Bean(destroyMethod = "close")
+    public SearcherInterface searcher(Analyzer queryAnalyzer, ResultCache resultCache,
+                                      IntraQueryExecutor intraQueryExecutor, SearcherWarmer searcherWarmer,
+                                      DirectoryFactory directoryFactory, EmbeddingStoreInterface embeddings,
+                                      ObjectProvider<DocumentVectorIndex> documentVectors,
+                                      @Value("${search.ranker:bm25}") String ranker,
+                                      @Value("${search.ranker.depth:" + KnnRanker.DEFAULT_DEPTH + "}") int rankerDepth,
+                                      @Value("${search.index.dir:src/main/resources/index}") String indexDir,
+                                      @Value("${search.remote-shards:}") String remoteShards,
+                                      @Value("${search.hedge-delay-ms:" + DistributedSearcher.DEFAULT_HEDGE_DELAY_MILLIS + "}") long hedgeDelayMillis) {
+        SearcherInterface searcher;
+        if (!remoteShards.isBlank()) {
+            DistributedSearcher distributedSearcher = new DistributedSearcher(
+                    DistributedSearcher.parseShards(remoteShards), hedgeDelayMillis,
+                    DistributedSearcher.DEFAULT_TIMEOUT_MILLIS);
+            logger.info("Searching " + distributedSearcher.getShards() + " remote shards...");
+            searcher = distributedSearcher;
+        } else if (ShardedIndexer.isSharded(Paths.get(indexDir))) {
+            searcher = new ShardedSearcher(indexDir, queryAnalyzer, Searcher.DEFAULT_REFRESH_INTERVAL, searcherWarmer,
+                    directoryFactory);
+            logger.info("Opening sharded Lucene index " + indexDir + " (" + directoryFactory
+                    + "), warming up each shard with " + searcherWarmer.getQueries().size() + " queries...");
+        } else {
+            String name = parseRanker(ranker);
+            Analyzer analyzer = queryAnalyzer;
+            RankerInterface documentRanker = null;
+            switch (name) {
+                case "rerank":
+                    // the BM25 candidates are retrieved without query expansion, as the dense vectors replace it
+                    analyzer = new EnglishAnalyzer();
+                    documentRanker = new VectorReranker(new DocumentEmbedder(embeddings), rankerDepth,
+                            VectorReranker.DEFAULT_WEIGHT);
+                    break;
+                case "knn":
+                case "hybrid":
+                    documentRanker = new KnnRanker(new DocumentEmbedder(embeddings), documentVectors.getObject(),
+                            name.equals("hybrid"), rankerDepth, KnnRanker.DEFAULT_RRF_K);
+                    break;
+                default:
+                    break;
+            }
+
+            searcher = new Searcher(indexDir, analyzer, Searcher.DEFAULT_REFRESH_INTERVAL, resultCache,
+                    documentRanker, intraQueryExecutor, searcherWarmer, directoryFactory);
+            logger.info("Opening Lucene index " + indexDir + " (" + directoryFactory + ", ranked by " + name
+                    + "), warming up with " + searcherWarmer.getQueries().size() + " queries...");
+        }
+        if (!parseRanker(ranker).equals("bm25") && !(searcher instanceof Searcher)) {
+            logger.warn("The " + ranker + " ranker only applies to a local, unsharded index; ranking by BM25...");
+        }
+
+        SearcherInterface opening = searcher;
+        Thread opener = new Thread(() -> {
+            try {
+                opening.open();
+                logger.info("The Searcher is ready.");
+            } catch (IOException | RuntimeException e) {
+                logger.error("An exception was thrown: Could not open Lucene index...", e);
+            }
+        }, "searcher-open");
+        opener.setDaemon(true);
+        opener.start();
+
+        return searcher;
+    }
+
+    /**
+     * Creates the service that runs the searches of the web requests on a bounded pool of threads. The pool is
+     * configured by the search.threads (default: the number of processors), search.queue-capacity and
+     * search.timeout-ms properties.
+     *
+     * @param searcher a Searcher, open or being opened.
+     * @param threads number of threads searching the index, or a non-positive value for the number of processors.
+     * @param queueCapacity maximum number of searches waiting for a thread.
+     * @param timeoutMillis time (in milliseconds) a search may take, or a non-positive value for no timeout.
+     *
+     * @return the search service.
+     */
+    @Bean(destroyMethod = "close")
+    public SearchService searchService(SearcherInterface searcher,
+                                       @Value("${search.threads:0}") int threads,
+                                       @Value("${search.queue-capacity:" + SearchService.DEFAULT_QUEUE_CAPACITY + "}") int queueCapacity,
+                                       @Value("${search.timeout-ms:" + SearchService.DEFAULT_TIMEOUT_MILLIS + "}") long timeoutMillis) {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        logger.info("Starting " + threads + " search threads...");
+        return new SearchService(searcher, threads, queueCapacity, timeoutMillis);
+    }
+
+    /**
+     * @param ranker ranking of the documents: bm25, rerank, knn or hybrid (case-insensitive).
+     *
+     * @return the name of the ranking, trimmed and lowercased.
+     *
+     * @throws IllegalArgumentException if there is no ranking of that name.
+     */
+    private static String parseRanker(String ranker) {
+        String name = ranker.trim().toLowerCase(Locale.ROOT);
+        switch (name) {
+            case "bm25":
+            case "rerank":
+            case "knn":
+            case "hybrid":
+                return name;
+            default:
+                throw new IllegalArgumentException("Unknown ranker: " + ranker + " (bm25, rerank, knn or hybrid).");
+        }
+    }
+
+}
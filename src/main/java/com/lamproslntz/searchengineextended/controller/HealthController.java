@@ -0,0 +1,66 @@
+package com.lamproslntz.searchengineextended.controller;
+
+import com.lamproslntz.searchengineextended.index.SearcherWarmer;
+import com.lamproslntz.searchengineextended.service.SearchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller for the health checks of the application, e.g. for a load balancer. The application is live as soon as
+ * it serves requests, but only ready for searches once the index has been opened and warmed up.
+ *
+ * @author Lampros Lountzis
+ */
+@RestController
+public class HealthController {
+
+    private final SearchService searchService;
+    private final SearcherWarmer searcherWarmer;
+
+    /**
+     * Initializes the controller with the search service and the searcher warmer that are shared for the whole life
+     * of the application.
+     *
+     * @param searchService the search service.
+     * @param searcherWarmer the searcher warmer.
+     */
+    public HealthController(SearchService searchService, SearcherWarmer searcherWarmer) {
+        this.searchService = searchService;
+        this.searcherWarmer = searcherWarmer;
+    }
+
+    /**
+     * Returns whether the application is live.
+     *
+     * @return the liveness of the application (always up).
+     */
+    @GetMapping("/health")
+    public Map<String, Object> health() {
+        return Map.of("status", "UP");
+    }
+
+    /**
+     * Returns whether the application is ready to serve searches: with 200 once the index has been opened and warmed
+     * up, otherwise with 503. The warm-up of the searchers is reported too.
+     *
+     * @return the readiness of the application.
+     */
+    @GetMapping("/health/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        boolean ready = searchService.isReady();
+
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", ready ? "UP" : "OUT_OF_SERVICE");
+        health.put("warmUpQueries", searcherWarmer.getQueries().size());
+        health.put("warmUps", searcherWarmer.getWarmUpCount());
+        health.put("lastWarmUpMillis", searcherWarmer.getLastWarmUpMillis());
+
+        return ResponseEntity.status(ready ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(health);
+    }
+
+}
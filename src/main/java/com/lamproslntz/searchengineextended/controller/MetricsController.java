@@ -0,0 +1,122 @@
+package com.lamproslntz.searchengineextended.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lamproslntz.searchengineextended.index.IntraQueryExecutor;
+import com.lamproslntz.searchengineextended.index.ResultCache;
+import com.lamproslntz.searchengineextended.service.SearchService;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Controller for exposing the metrics of the search components.
+ *
+ * @author Lampros Lountzis
+ */
+@RestController
+public class MetricsController {
+
+    private final SynonymCache synonymCache;
+    private final ResultCache resultCache;
+    private final SearchService searchService;
+    private final IntraQueryExecutor intraQueryExecutor;
+
+    /**
+     * Initializes the controller with the caches, the search service and the intra-query executor that are shared
+     * for the whole life of the application.
+     *
+     * @param synonymCache the synonym cache.
+     * @param resultCache the result cache.
+     * @param searchService the search service.
+     * @param intraQueryExecutor the intra-query executor.
+     */
+    public MetricsController(SynonymCache synonymCache, ResultCache resultCache, SearchService searchService,
+                             IntraQueryExecutor intraQueryExecutor) {
+        this.synonymCache = synonymCache;
+        this.resultCache = resultCache;
+        this.searchService = searchService;
+        this.intraQueryExecutor = intraQueryExecutor;
+    }
+
+    /**
+     * Returns the hit/miss/eviction counters and the size of the synonym cache.
+     *
+     * @return the synonym cache metrics.
+     */
+    @GetMapping("/metrics/synonym-cache")
+    public Map<String, Object> synonymCache() {
+        return metrics(synonymCache.stats(), synonymCache.size());
+    }
+
+    /**
+     * Returns the hit/miss/eviction counters and the size of the result cache.
+     *
+     * @return the result cache metrics.
+     */
+    @GetMapping("/metrics/result-cache")
+    public Map<String, Object> resultCache() {
+        return metrics(resultCache.stats(), resultCache.size());
+    }
+
+    /**
+     * Returns the load of the search threads: the running and waiting searches, and the counters of the completed,
+     * rejected and timed out searches.
+     *
+     * @return the search service metrics.
+     */
+    @GetMapping("/metrics/search")
+    public Map<String, Object> search() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("threads", searchService.getThreads());
+        metrics.put("active", searchService.getActiveCount());
+        metrics.put("queued", searchService.getQueueSize());
+        metrics.put("queueCapacity", searchService.getQueueCapacity());
+        metrics.put("completed", searchService.getCompletedCount());
+        metrics.put("rejected", searchService.getRejectedCount());
+        metrics.put("timedOut", searchService.getTimedOutCount());
+
+        return metrics;
+    }
+
+    /**
+     * Returns the load of the intra-query concurrency: the running queries, the counters of the queries searched
+     * concurrently and sequentially, and the time the slices of segments took.
+     *
+     * @return the intra-query executor metrics.
+     */
+    @GetMapping("/metrics/intra-query")
+    public Map<String, Object> intraQuery() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("policy", intraQueryExecutor.getPolicy());
+        metrics.put("threads", intraQueryExecutor.getThreads());
+        metrics.put("running", intraQueryExecutor.getRunningCount());
+        metrics.put("concurrent", intraQueryExecutor.getConcurrentCount());
+        metrics.put("sequential", intraQueryExecutor.getSequentialCount());
+        metrics.put("slices", intraQueryExecutor.getSliceCount());
+        metrics.put("meanSliceMillis", intraQueryExecutor.getMeanSliceMillis());
+        metrics.put("maxSliceMillis", intraQueryExecutor.getMaxSliceMillis());
+
+        return metrics;
+    }
+
+    /**
+     * @param stats the counters of a cache.
+     * @param size the size of the cache.
+     *
+     * @return the cache metrics.
+     */
+    private Map<String, Object> metrics(CacheStats stats, long size) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", stats.hitCount());
+        metrics.put("misses", stats.missCount());
+        metrics.put("evictions", stats.evictionCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("size", size);
+
+        return metrics;
+    }
+
+}
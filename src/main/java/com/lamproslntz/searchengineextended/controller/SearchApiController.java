@@ -0,0 +1,119 @@
+package com.lamproslntz.searchengineextended.controller;
+
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.service.SearchService;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Controller for the JSON search API. The searches run asynchronously on the {@link SearchService}, so the request
+ * threads are released while the index is searched.
+ * <p>
+ * GET /api/search?q=query&amp;k=20&amp;offset=0 responds with a page of results ({@link
+ * com.lamproslntz.searchengineextended.dto.SearchResultDTO}), partial if the search timed out; with 400 if the
+ * parameters or the query are invalid; with 429 if too many searches are waiting, and with 503 if the index isn't
+ * ready yet (being opened or warmed up), to be retried later.
+ *
+ * @author Lampros Lountzis
+ */
+@RestController
+public class SearchApiController {
+
+    /**
+     * Maximum number of documents of a page.
+     */
+    public static final int MAX_K = 100;
+
+    /**
+     * Maximum rank of the documents of a page (offset + k).
+     */
+    public static final int MAX_RANK = 1000;
+
+    private final SearchService searchService;
+    private final Logger logger = LoggerFactory.getLogger(SearchApiController.class);
+
+    /**
+     * Initializes the controller with the SearchService that is shared for the whole life of the application.
+     *
+     * @param searchService the search service.
+     */
+    public SearchApiController(SearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    /**
+     * Searches index for a page of relevant documents with respect to the user query.
+     *
+     * @param q user query.
+     * @param k number of documents to be retrieved.
+     * @param offset number of top documents to be skipped.
+     *
+     * @return the page of results, once searched, or an error.
+     */
+    @GetMapping("/api/search")
+    public CompletableFuture<ResponseEntity<Object>> search(@RequestParam("q") String q,
+                                                            @RequestParam(value = "k", defaultValue = "20") int k,
+                                                            @RequestParam(value = "offset", defaultValue = "0") int offset) {
+        if (q.isBlank()) {
+            return CompletableFuture.completedFuture(error(HttpStatus.BAD_REQUEST, "The query is empty."));
+        }
+        if (k < 1 || k > MAX_K) {
+            return CompletableFuture.completedFuture(error(HttpStatus.BAD_REQUEST, "k must be in [1, " + MAX_K + "]."));
+        }
+        if (offset < 0 || offset > MAX_RANK - k) { // k is in range, so this cannot overflow
+            return CompletableFuture.completedFuture(error(HttpStatus.BAD_REQUEST,
+                    "offset must be non-negative, and offset + k at most " + MAX_RANK + "."));
+        }
+
+        if (!searchService.isReady()) {
+            ResponseEntity<Object> response = ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "The index isn't ready yet, retry later."));
+            return CompletableFuture.completedFuture(response);
+        }
+
+        try {
+            return searchService.search(new QueryDTO(q), offset, k).handle((result, e) -> {
+                if (e == null) {
+                    return ResponseEntity.ok(result);
+                }
+
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof ParseException) {
+                    return error(HttpStatus.BAD_REQUEST, "Could not parse query.");
+                }
+                logger.error("An exception was thrown: Could not search Lucene index...", cause);
+                return error(HttpStatus.INTERNAL_SERVER_ERROR, "Could not search the index.");
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Too many searches waiting, rejecting the query: \"" + q + "\"...");
+            ResponseEntity<Object> response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "Too many searches, retry later."));
+            return CompletableFuture.completedFuture(response);
+        }
+    }
+
+    /**
+     * @param status the status of the response.
+     * @param message the error message.
+     *
+     * @return an error response.
+     */
+    private static ResponseEntity<Object> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).body(Map.of("error", message));
+    }
+
+}
@@ -2,17 +2,17 @@ package com.lamproslntz.searchengineextended.controller;
 
 import com.lamproslntz.searchengineextended.dto.DocumentDTO;
 import com.lamproslntz.searchengineextended.dto.QueryDTO;
-import com.lamproslntz.searchengineextended.index.Searcher;
+import com.lamproslntz.searchengineextended.service.SearchService;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
-import org.deeplearning4j.models.word2vec.Word2Vec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.ModelAndView;
 
-import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller for handling query submission and look-up.
@@ -22,55 +22,66 @@ import java.util.List;
 @RestController
 public class SearchController {
 
-    private final Searcher searcher;
+    private final SearchService searchService;
     private Logger logger = LoggerFactory.getLogger(SearchController.class);
 
     /**
-     * Loads Word2Vec model based on fastText word embeddings (wiki-news-300d-1M.vec),
-     * and initializes a Searcher object for searching a Lucene index.
+     * Initializes the controller with the SearchService that is shared for the whole life of the application.
+     *
+     * @param searchService the search service.
      */
-    public SearchController() {
-        Word2Vec model = WordVectorSerializer.readWord2VecModel("src/main/resources/fasttext-en/wiki-news-300d-1M.vec");
-        this.searcher = new Searcher("src/main/resources/index", model, 0.98);
+    public SearchController(SearchService searchService) {
+        this.searchService = searchService;
     }
 
     /**
-     * Searches index for relevant documents with respect to the user query. The Searcher returns
-     * the top 20 relevant documents and updates the results section (in index.html).
+     * Searches index for relevant documents with respect to the user query. The search runs asynchronously on the
+     * {@link SearchService}, as the JSON search API; once done, the top 20 relevant documents update the results
+     * section (in index.html).
      *
      * @param queryDTO user query.
      *
-     * @return updated page view (index.html) with the relevant documents (data) from the Model.
+     * @return updated page view (index.html) with the relevant documents (data) from the Model, once searched.
      */
     @PostMapping("/search")
-    public ModelAndView search(@ModelAttribute("userQuery") QueryDTO queryDTO) {
-        try {
-            logger.info("Opening Lucene index...");
-            searcher.open();
-        } catch (IOException e) {
-            logger.error("An exception was thrown: Could not open Lucene index...", e);
-        }
+    public CompletableFuture<ModelAndView> search(@ModelAttribute("userQuery") QueryDTO queryDTO) {
+        logger.info("Searching Lucene index for documents relevant to the query: \"" + queryDTO.getQuery() + "\"...");
 
-       List<DocumentDTO> results = null;
-        try {
-            logger.info("Searching Lucene index for documents relevant to the query: \"" + queryDTO.getQuery() + "\"...");
-            results = searcher.search(queryDTO, 20);
-        } catch (IOException e) {
-            logger.error("An exception was thrown: Could not search Lucene index...", e);
-        } catch (ParseException e) {
-            logger.error("An exception was thrown: Could not parse query...", e);
+        if (!searchService.isReady()) {
+            logger.warn("The index isn't ready yet, rejecting the query...");
+            return CompletableFuture.completedFuture(page(null));
         }
 
+        CompletableFuture<List<DocumentDTO>> results;
         try {
-            logger.info("Closing Lucene index...");
-            searcher.close();
-        } catch (IOException e) {
-            logger.error("An exception was thrown: Could not close Lucene index...", e);
-            e.printStackTrace();
+            results = searchService.search(queryDTO, 0, 20).handle((result, e) -> {
+                if (e != null) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof ParseException) {
+                        logger.error("An exception was thrown: Could not parse query...", cause);
+                    } else {
+                        logger.error("An exception was thrown: Could not search Lucene index...", cause);
+                    }
+                    return null;
+                }
+                return result.getResults();
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Too many searches waiting, rejecting the query...");
+            results = CompletableFuture.completedFuture(null);
         }
 
+        return results.thenApply(this::page);
+    }
+
+    /**
+     * @param documents the relevant documents, or null if the query couldn't be searched.
+     *
+     * @return updated page view (index.html) with the relevant documents.
+     */
+    private ModelAndView page(List<DocumentDTO> documents) {
         ModelAndView page = new ModelAndView("index");
-        page.addObject("results", results);
+        page.addObject("results", documents);
 
         logger.info("Refreshing index.html page with the search results...");
 
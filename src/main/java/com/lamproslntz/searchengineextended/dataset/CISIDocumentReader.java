@@ -0,0 +1,146 @@
+package com.lamproslntz.searchengineextended.dataset;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the CISI dataset documents one at a time, so that a collection of any size can be indexed without loading it
+ * in memory. The documents are of the form: (ID, title, author, abstract), and are returned as dictionaries with the
+ * fields (id, title, title_norm, author, abstract, abstract_norm). The cross-references section is skipped.
+ * <p>
+ * The lines of each field are appended to builders that are reused for all the documents, so parsing a document
+ * takes time linear in its length.
+ *
+ * @author Lampros Lountzis
+ */
+public class CISIDocumentReader implements Iterator<Map<String, String>>, Iterable<Map<String, String>>, Closeable {
+
+    private final BufferedReader reader;
+    private final StringBuilder title = new StringBuilder();
+    private final StringBuilder author = new StringBuilder();
+    private final StringBuilder abstractText = new StringBuilder();
+    private String line; // first line of the next document, or null at the end of the file
+
+    /**
+     * Initializes a CISIDocumentReader.
+     *
+     * @param reader reader of the CISI documents (CISI.ALL).
+     *
+     * @throws IOException if the documents cannot be read.
+     */
+    public CISIDocumentReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        this.line = reader.readLine();
+    }
+
+    /**
+     * Opens the CISI documents file for reading.
+     *
+     * @param path CISI documents file path.
+     *
+     * @return a reader of the CISI documents.
+     *
+     * @throws IOException if the file cannot be opened.
+     */
+    public static CISIDocumentReader open(Path path) throws IOException {
+        return new CISIDocumentReader(Files.newBufferedReader(path));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return line != null;
+    }
+
+    /**
+     * Reads the next document.
+     *
+     * @return the next document, as a dictionary.
+     *
+     * @throws UncheckedIOException if the document cannot be read.
+     */
+    @Override
+    public Map<String, String> next() {
+        if (line == null) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            return readDocument();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns this reader, so that the documents can be read in a for-each loop (only once).
+     *
+     * @return this reader.
+     */
+    @Override
+    public Iterator<Map<String, String>> iterator() {
+        return this;
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Map<String, String> readDocument() throws IOException {
+        Map<String, String> doc = new HashMap<>(); // docs are dictionaries with the following fields: (ID, title, author, abstract)
+
+        // extract doc ID
+        doc.put("id", line.split(" ")[1]);
+
+        title.setLength(0);
+        author.setLength(0);
+        abstractText.setLength(0);
+
+        StringBuilder field = null; // field whose lines are extracted
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(".I")) { // when new doc ID is found, go to next doc
+                break;
+            }
+
+            if (line.startsWith(".T")) { // allow to extract doc title field
+                field = title;
+            } else if (line.startsWith(".A")) { // allow to extract doc author field
+                field = author;
+            } else if (line.startsWith(".W")) { // allow to extract doc abstract field
+                field = abstractText;
+            } else if (line.startsWith(".X") || line.startsWith(".B") || line.startsWith(".C") || line.startsWith(".K")) { // don't allow to extract these doc fields
+                field = null;
+            } else if (field != null) {
+                field.append(' ').append(line);
+            }
+        }
+
+        if (title.length() > 0) {
+            doc.put("title", title.toString());
+            doc.put("title_norm", doc.get("title"));
+        }
+        if (author.length() > 0) {
+            doc.put("author", author.toString());
+        }
+        if (abstractText.length() > 0) {
+            doc.put("abstract", abstractText.toString());
+            doc.put("abstract_norm", doc.get("abstract"));
+        }
+
+        return doc;
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.lamproslntz.searchengineextended.dataset;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the CISI dataset queries one at a time. The queries are of the form: (ID, text), and are returned as
+ * dictionaries with the fields (id, text). The title and text sections of a query make up its text; its author
+ * and source sections are skipped.
+ *
+ * @author Lampros Lountzis
+ */
+public class CISIQueryReader implements Iterator<Map<String, String>>, Iterable<Map<String, String>>, Closeable {
+
+    private final BufferedReader reader;
+    private final StringBuilder text = new StringBuilder();
+    private String line; // first line of the next query, or null at the end of the file
+
+    /**
+     * Initializes a CISIQueryReader.
+     *
+     * @param reader reader of the CISI queries (CISI.QRY).
+     *
+     * @throws IOException if the queries cannot be read.
+     */
+    public CISIQueryReader(BufferedReader reader) throws IOException {
+        this.reader = reader;
+        this.line = reader.readLine();
+    }
+
+    /**
+     * Opens the CISI queries file for reading.
+     *
+     * @param path CISI queries file path.
+     *
+     * @return a reader of the CISI queries.
+     *
+     * @throws IOException if the file cannot be opened.
+     */
+    public static CISIQueryReader open(Path path) throws IOException {
+        return new CISIQueryReader(Files.newBufferedReader(path));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return line != null;
+    }
+
+    /**
+     * Reads the next query.
+     *
+     * @return the next query, as a dictionary.
+     *
+     * @throws UncheckedIOException if the query cannot be read.
+     */
+    @Override
+    public Map<String, String> next() {
+        if (line == null) {
+            throw new NoSuchElementException();
+        }
+
+        try {
+            return readQuery();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns this reader, so that the queries can be read in a for-each loop (only once).
+     *
+     * @return this reader.
+     */
+    @Override
+    public Iterator<Map<String, String>> iterator() {
+        return this;
+    }
+
+    /**
+     * Closes the underlying file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Map<String, String> readQuery() throws IOException {
+        Map<String, String> query = new HashMap<>(); // queries are dictionaries with the following fields: (ID, text)
+
+        // extract query ID
+        query.put("id", line.split(" ")[1]);
+
+        text.setLength(0);
+
+        boolean extract = true;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(".I")) { // when new query ID is found, go to next query
+                break;
+            }
+
+            if (line.startsWith(".T") || line.startsWith(".W")) { // allow to extract query title, text fields
+                extract = true;
+            } else if (line.startsWith(".B") || line.startsWith(".A")) { // don't allow to extract these query fields
+                extract = false;
+            } else if (extract) { // extract query text
+                text.append(' ').append(line);
+            }
+        }
+
+        if (text.length() > 0) {
+            query.put("text", text.toString());
+        }
+
+        return query;
+    }
+
+}
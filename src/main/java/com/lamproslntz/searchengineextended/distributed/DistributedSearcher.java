@@ -0,0 +1,390 @@
+package com.lamproslntz.searchengineextended.distributed;
+
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import com.lamproslntz.searchengineextended.index.SearcherInterface;
+import com.lamproslntz.searchengineextended.index.ShardStatistics;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Represents a distributed Searcher module, that coordinates the search of the shards of an index served by remote
+ * {@link ShardServer}s (e.g. processes on other machines, or on other ports of the same machine). A query is
+ * scattered to all the shards and their top documents are gathered and merged in two rounds, as by
+ * {@link com.lamproslntz.searchengineextended.index.ShardedSearcher}: first the statistics of the query terms are
+ * summed over the shards, then each shard scores its documents with these global statistics, so that the BM25 scores
+ * of all the shards are consistent and can be merged with {@link TopDocs#merge(int, int, TopDocs[], boolean)}.
+ * <p>
+ * Each search has a deadline. Each shard may have several replicas: a failed request is retried on the next replica,
+ * and a request that hasn't been answered after the hedge delay is hedged, i.e. sent to another replica as well, so
+ * that a single slow replica doesn't delay the whole search. The shards that haven't answered by the deadline (or
+ * whose replicas have all failed) are left out, and the results of the other shards are returned as partial.
+ * <p>
+ * The query is cleaned by the coordinator and parsed by each shard, so all the shard servers must use the same
+ * query analyzer. The index may change between the two rounds of a query (e.g. a shard refreshed), in which case the
+ * statistics of the changed terms are slightly off for that query.
+ *
+ * @author Lampros Lountzis
+ */
+public class DistributedSearcher implements SearcherInterface {
+
+    /**
+     * Default time (in milliseconds) after which an unanswered shard request is hedged.
+     */
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 50;
+
+    /**
+     * Default time (in milliseconds) a search may take, when it is searched without a timeout.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    private static final double COLLECTION_TIME_FRACTION = 0.8; // of the remaining time, the rest is for the network
+
+    private final List<List<URI>> SHARD_URIS;
+    private final long HEDGE_DELAY_MILLIS;
+    private final long TIMEOUT_MILLIS;
+    private final TextCleanerInterface CLEANER;
+    private volatile List<ShardClient> shards;
+    private ScheduledExecutorService scheduler;
+
+    private final LongAdder skippedShards = new LongAdder();
+    private final LongAdder partialSearches = new LongAdder();
+
+    private final Logger logger = LoggerFactory.getLogger(DistributedSearcher.class);
+
+    /**
+     * Initializes a DistributedSearcher, that hedges the shard requests after {@link #DEFAULT_HEDGE_DELAY_MILLIS}
+     * milliseconds.
+     *
+     * @param shards base URIs of the replicas of each shard, e.g. [[http://localhost:9000, http://localhost:9100],
+     *               [http://localhost:9001, http://localhost:9101]].
+     */
+    public DistributedSearcher(List<List<URI>> shards) {
+        this(shards, DEFAULT_HEDGE_DELAY_MILLIS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Initializes a DistributedSearcher.
+     *
+     * @param shards base URIs of the replicas of each shard.
+     * @param hedgeDelayMillis time (in milliseconds) after which an unanswered shard request is hedged, or a
+     *                         non-positive value to never hedge.
+     * @param timeoutMillis time (in milliseconds) a search may take, when it is searched without a timeout.
+     */
+    public DistributedSearcher(List<List<URI>> shards, long hedgeDelayMillis, long timeoutMillis) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("The index must have at least one shard.");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("The search timeout must be positive.");
+        }
+
+        this.SHARD_URIS = List.copyOf(shards);
+        this.HEDGE_DELAY_MILLIS = hedgeDelayMillis;
+        this.TIMEOUT_MILLIS = timeoutMillis;
+        this.CLEANER = new TextCleaner(true, true);
+    }
+
+    /**
+     * Parses the addresses of the shard servers.
+     *
+     * @param spec the shards, separated by semicolons, each one as the base URIs of its replicas, separated by
+     *             commas, e.g. "http://localhost:9000,http://localhost:9100;http://localhost:9001".
+     *
+     * @return base URIs of the replicas of each shard.
+     *
+     * @throws IllegalArgumentException if a URI is invalid.
+     */
+    public static List<List<URI>> parseShards(String spec) {
+        List<List<URI>> shards = new ArrayList<>();
+        for (String shard : spec.split(";")) {
+            if (!shard.isBlank()) {
+                shards.add(Arrays.stream(shard.split(","))
+                        .map(String::trim)
+                        .filter(uri -> !uri.isEmpty())
+                        .map(URI::create)
+                        .collect(Collectors.toList()));
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Searches the shards, as {@link #search(QueryDTO, int, int, long)} without a timeout.
+     *
+     * @param userQuery the user's query.
+     * @param k number of top documents to be retrieved.
+     *
+     * @return list of top k retrieved documents, with respect to the user's query.
+     *
+     * @throws IOException if no shard can be searched.
+     * @throws ParseException if the user's query cannot be parsed.
+     */
+    public List<DocumentDTO> search(QueryDTO userQuery, int k) throws IOException, ParseException {
+        SearchResultDTO result = search(userQuery, 0, k, 0);
+        return result != null ? result.getResults() : null;
+    }
+
+    /**
+     * Searches the shards for a page of relevant documents with respect to the user query. The top offset + k
+     * documents of each shard are retrieved concurrently and merged, and the last k of the top offset + k merged
+     * documents are returned. The results are partial if a shard has been left out, or has timed out collecting its
+     * documents.
+     *
+     * @param userQuery the user's query.
+     * @param offset number of top documents to be skipped.
+     * @param k number of documents to be retrieved, after the skipped ones.
+     * @param timeoutMillis time (in milliseconds) the search may take, or a non-positive value for the default
+     *                      timeout of this Searcher.
+     *
+     * @return the page of retrieved documents, or null if the Searcher isn't open.
+     *
+     * @throws IOException if no shard can be searched.
+     * @throws ParseException if the user's query cannot be parsed.
+     */
+    public SearchResultDTO search(QueryDTO userQuery, int offset, int k, long timeoutMillis)
+            throws IOException, ParseException {
+        List<ShardClient> shards = this.shards;
+        if (shards == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis > 0 ? timeoutMillis : TIMEOUT_MILLIS);
+        String text = CLEANER.clean(userQuery.getQuery());
+        int n = offset + k;
+
+        // first round: sum the statistics of the query terms and the searched fields over the shards
+        byte[] statisticsRequest = ShardProtocol.statisticsRequest(text);
+        List<CompletableFuture<byte[]>> statisticsResponses = new ArrayList<>(shards.size());
+        for (ShardClient shard : shards) {
+            statisticsResponses.add(shard.send(ShardProtocol.STATISTICS_PATH, statisticsRequest, deadline));
+        }
+        ShardStatistics statistics = new ShardStatistics();
+        List<ShardClient> answered = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byte[] response = await(statisticsResponses.get(i), shards.get(i), deadline);
+            if (response != null) {
+                statistics.add(ShardProtocol.readStatistics(response));
+                answered.add(shards.get(i));
+            }
+        }
+        if (answered.isEmpty()) {
+            throw new IOException("No shard has answered.");
+        }
+
+        // second round: search the shards that have answered with the global statistics
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        long collectionMillis = Math.max(1, (long) (remainingMillis * COLLECTION_TIME_FRACTION));
+        byte[] searchRequest = ShardProtocol.searchRequest(text, n, collectionMillis, statistics);
+        List<CompletableFuture<byte[]>> searchResponses = new ArrayList<>(answered.size());
+        for (ShardClient shard : answered) {
+            searchResponses.add(shard.send(ShardProtocol.SEARCH_PATH, searchRequest, deadline));
+        }
+        boolean partial = answered.size() < shards.size();
+        List<ShardProtocol.ShardHits> shardHits = new ArrayList<>(answered.size());
+        for (int i = 0; i < answered.size(); i++) {
+            byte[] response = await(searchResponses.get(i), answered.get(i), deadline);
+            if (response != null) {
+                ShardProtocol.ShardHits hits = ShardProtocol.ShardHits.fromBytes(response);
+                shardHits.add(hits);
+                partial |= hits.partial;
+            } else {
+                partial = true;
+            }
+        }
+
+        // the top documents of each shard are merged by score, the shard of each document is kept as its shard index
+        TopDocs[] topDocs = new TopDocs[shardHits.size()];
+        for (int i = 0; i < topDocs.length; i++) {
+            ShardProtocol.ShardHits hits = shardHits.get(i);
+            ScoreDoc[] scoreDocs = new ScoreDoc[hits.docs.length];
+            for (int j = 0; j < scoreDocs.length; j++) {
+                scoreDocs[j] = new ScoreDoc(j, hits.scores[j]);
+            }
+            topDocs[i] = new TopDocs(new TotalHits(hits.totalHits, TotalHits.Relation.EQUAL_TO), scoreDocs);
+        }
+        TopDocs merged = TopDocs.merge(0, n, topDocs, true);
+
+        ScoreDoc[] scoreDocs = merged.scoreDocs;
+        List<DocumentDTO> results = new ArrayList<>(Math.max(0, scoreDocs.length - offset));
+        for (int i = offset; i < scoreDocs.length; i++) {
+            results.add(shardHits.get(scoreDocs[i].shardIndex).docs[scoreDocs[i].doc]);
+        }
+
+        if (partial) {
+            partialSearches.increment();
+        }
+        return new SearchResultDTO(userQuery.getQuery(), offset, k, merged.totalHits.value, results, partial,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Waits for the response of a shard until the deadline.
+     *
+     * @param response the response of the shard.
+     * @param shard the shard.
+     * @param deadline time ({@link System#nanoTime()}) by which the shard must answer.
+     *
+     * @return body of the response, or null if the shard has failed or hasn't answered in time (it is left out).
+     *
+     * @throws ParseException if the shard cannot parse the query.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    private byte[] await(CompletableFuture<byte[]> response, ShardClient shard, long deadline)
+            throws ParseException, InterruptedIOException {
+        try {
+            return response.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching the shards.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ParseException) {
+                throw (ParseException) e.getCause();
+            }
+            logger.warn("Leaving out the shard " + shard.getReplicas() + ": " + e.getCause());
+        } catch (TimeoutException e) {
+            logger.warn("Leaving out the shard " + shard.getReplicas() + ": it hasn't answered in time.");
+        }
+
+        skippedShards.increment();
+        return null;
+    }
+
+    /**
+     * Opens the connections to the shard servers. The servers need not be up yet; the shards that can't be reached
+     * are left out of the searches.
+     */
+    public synchronized void open() {
+        if (shards != null) { // already open
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(TIMEOUT_MILLIS))
+                .build();
+
+        List<ShardClient> shards = new ArrayList<>(SHARD_URIS.size());
+        for (List<URI> replicas : SHARD_URIS) {
+            shards.add(new ShardClient(replicas, client, scheduler, HEDGE_DELAY_MILLIS));
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * @return true if the connections to the shard servers are open; the shards that can't be reached are left out
+     * of the searches.
+     */
+    public boolean isReady() {
+        return shards != null;
+    }
+
+    /**
+     * Stops searching the shards. The running searches complete, or time out.
+     */
+    public synchronized void close() {
+        shards = null;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return number of shards.
+     */
+    public int getShards() {
+        return SHARD_URIS.size();
+    }
+
+    /**
+     * @return time (in milliseconds) after which an unanswered shard request is hedged.
+     */
+    public long getHedgeDelayMillis() {
+        return HEDGE_DELAY_MILLIS;
+    }
+
+    /**
+     * @return number of hedged shard requests.
+     */
+    public long getHedgedCount() {
+        List<ShardClient> shards = this.shards;
+        return shards != null ? shards.stream().mapToLong(ShardClient::getHedgedCount).sum() : 0;
+    }
+
+    /**
+     * @return number of shard requests to a replica that have failed, and have been retried or left out.
+     */
+    public long getFailedAttemptCount() {
+        List<ShardClient> shards = this.shards;
+        return shards != null ? shards.stream().mapToLong(ShardClient::getFailedAttemptCount).sum() : 0;
+    }
+
+    /**
+     * @return number of times a shard has been left out of a search.
+     */
+    public long getSkippedShardCount() {
+        return skippedShards.sum();
+    }
+
+    /**
+     * @return number of searches with partial results.
+     */
+    public long getPartialCount() {
+        return partialSearches.sum();
+    }
+
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length < 3) {
+            System.err.println("[ERROR] DistributedSearcher - usage: DistributedSearcher query k shard... "
+                    + "(shard: replica URIs separated by commas)");
+            System.exit(1);
+        }
+
+        int k = Integer.parseInt(args[1]);
+        DistributedSearcher searcher = new DistributedSearcher(
+                parseShards(String.join(";", Arrays.asList(args).subList(2, args.length))));
+        searcher.open();
+        try {
+            SearchResultDTO result = searcher.search(new QueryDTO(args[0]), 0, k, 0);
+            for (DocumentDTO doc : result.getResults()) {
+                System.out.println(doc.getId() + "\t" + doc.getScore() + "\t" + doc.getTitle());
+            }
+            System.out.println(result.getTotalHits() + " hits in " + result.getTookMillis() + " ms"
+                    + (result.isPartial() ? " (partial)." : "."));
+        } finally {
+            searcher.close();
+        }
+    }
+
+}
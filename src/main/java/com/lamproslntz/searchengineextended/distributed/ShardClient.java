@@ -0,0 +1,181 @@
+package com.lamproslntz.searchengineextended.distributed;
+
+import org.apache.lucene.queryparser.classic.ParseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the requests of one shard to its replicas (one or more {@link ShardServer}s of the same shard). The replicas
+ * are used in turn. If a request fails, it is retried right away on the next replica; if it hasn't been answered
+ * after the hedge delay, a second (hedged) request is sent to the next replica, and the first answer wins. Requests
+ * are never sent after the deadline of the search.
+ *
+ * @author Lampros Lountzis
+ */
+class ShardClient {
+
+    private final List<URI> replicas;
+    private final HttpClient client;
+    private final ScheduledExecutorService scheduler;
+    private final long hedgeDelayMillis;
+    private final int maxAttempts;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+
+    /**
+     * @param replicas base URIs of the replicas of the shard, e.g. http://localhost:9000.
+     * @param client the HTTP client, shared by all the shards.
+     * @param scheduler schedules the hedged requests, shared by all the shards.
+     * @param hedgeDelayMillis time (in milliseconds) after which an unanswered request is hedged, or a non-positive
+     *                         value to never hedge.
+     */
+    ShardClient(List<URI> replicas, HttpClient client, ScheduledExecutorService scheduler, long hedgeDelayMillis) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("A shard must have at least one replica.");
+        }
+
+        this.replicas = List.copyOf(replicas);
+        this.client = client;
+        this.scheduler = scheduler;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.maxAttempts = Math.max(2, replicas.size()); // a single replica is hedged against itself
+    }
+
+    /**
+     * Sends a request to the replicas of the shard.
+     *
+     * @param path path of the request.
+     * @param body body of the request.
+     * @param deadline time ({@link System#nanoTime()}) by which the request must be answered.
+     *
+     * @return body of the first successful response; it completes exceptionally with a {@link CompletionException}
+     * caused by a {@link ParseException} if the shard cannot parse the query, or by an {@link IOException} if no
+     * replica has answered successfully.
+     */
+    CompletableFuture<byte[]> send(String path, byte[] body, long deadline) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        Call call = new Call(path, body, deadline, next.getAndIncrement(), result);
+        call.attempt();
+
+        if (hedgeDelayMillis > 0) {
+            scheduler.schedule(() -> {
+                if (!result.isDone() && call.attempt()) {
+                    hedged.increment();
+                }
+            }, hedgeDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * @return base URIs of the replicas of the shard.
+     */
+    List<URI> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return number of hedged requests.
+     */
+    long getHedgedCount() {
+        return hedged.sum();
+    }
+
+    /**
+     * @return number of requests to a replica that have failed (including the ones that timed out).
+     */
+    long getFailedAttemptCount() {
+        return failedAttempts.sum();
+    }
+
+    /**
+     * The attempts of a request, to one replica after the other.
+     */
+    private final class Call {
+
+        private final String path;
+        private final byte[] body;
+        private final long deadline;
+        private final int first;
+        private final CompletableFuture<byte[]> result;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Call(String path, byte[] body, long deadline, int first, CompletableFuture<byte[]> result) {
+            this.path = path;
+            this.body = body;
+            this.deadline = deadline;
+            this.first = first;
+            this.result = result;
+        }
+
+        /**
+         * Sends the request to the next replica, unless all the attempts have been made or the deadline has passed.
+         *
+         * @return true if the request has been sent.
+         */
+        private boolean attempt() {
+            long remainingNanos = deadline - System.nanoTime();
+            int attempt = attempts.getAndIncrement();
+            if (attempt >= maxAttempts || remainingNanos <= 0) {
+                if (running.get() == 0) {
+                    fail();
+                }
+                return false;
+            }
+
+            URI replica = replicas.get(Math.floorMod(first + attempt, replicas.size()));
+            HttpRequest request = HttpRequest.newBuilder(replica.resolve(path))
+                    .timeout(Duration.ofNanos(remainingNanos))
+                    .header("Content-Type", "application/octet-stream")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+
+            running.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, e) -> {
+                running.decrementAndGet();
+                if (e == null && response.statusCode() == 200) {
+                    result.complete(response.body());
+                } else if (e == null && response.statusCode() == 400) { // no replica can parse the query
+                    result.completeExceptionally(new ParseException(
+                            new String(response.body(), StandardCharsets.UTF_8)));
+                } else {
+                    failedAttempts.increment();
+                    failure.compareAndSet(null, e != null ? e : new IOException("The shard " + replica
+                            + " answered with status " + response.statusCode() + "."));
+                    if (!result.isDone()) { // fail over to the next replica
+                        attempt();
+                    }
+                }
+            });
+            return true;
+        }
+
+        private void fail() {
+            Throwable e = failure.get();
+            if (e instanceof CompletionException && e.getCause() != null) {
+                e = e.getCause();
+            }
+            result.completeExceptionally(e instanceof IOException ? e
+                    : new IOException("No replica of the shard " + replicas + " has answered.", e));
+        }
+
+    }
+}
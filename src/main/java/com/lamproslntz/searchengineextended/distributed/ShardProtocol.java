@@ -0,0 +1,142 @@
+package com.lamproslntz.searchengineextended.distributed;
+
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.index.ShardStatistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol between the {@link DistributedSearcher} and the {@link ShardServer}s, over HTTP. A query is
+ * searched in two requests, both POSTed with a binary body (big-endian, strings as a length and UTF-8 bytes):
+ * <ul>
+ *     <li>{@value #STATISTICS_PATH}: the query; the response is the {@link ShardStatistics} of its terms in the
+ *     shard,</li>
+ *     <li>{@value #SEARCH_PATH}: the query, the number of top documents, the time (in milliseconds) the documents may
+ *     be collected for and the statistics summed over all the shards; the response is the {@link ShardHits} of the
+ *     shard.</li>
+ * </ul>
+ * A query that cannot be parsed is answered with 400 and the error message; {@value #HEALTH_PATH} is answered with
+ * 200 while the shard is open.
+ *
+ * @author Lampros Lountzis
+ */
+final class ShardProtocol {
+
+    static final String STATISTICS_PATH = "/shard/statistics";
+    static final String SEARCH_PATH = "/shard/search";
+    static final String HEALTH_PATH = "/shard/health";
+
+    private ShardProtocol() {
+    }
+
+    static byte[] statisticsRequest(String query) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, query);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static byte[] searchRequest(String query, int n, long timeoutMillis, ShardStatistics statistics)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, query);
+        out.writeInt(n);
+        out.writeLong(timeoutMillis);
+        statistics.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static byte[] statisticsResponse(ShardStatistics statistics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        statistics.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static ShardStatistics readStatistics(byte[] body) throws IOException {
+        return ShardStatistics.readFrom(new DataInputStream(new ByteArrayInputStream(body)));
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The top documents of a shard, with their stored fields, the number of matching documents and whether the
+     * shard timed out.
+     */
+    static final class ShardHits {
+
+        final long totalHits;
+        final boolean partial;
+        final float[] scores;
+        final DocumentDTO[] docs;
+
+        ShardHits(long totalHits, boolean partial, float[] scores, DocumentDTO[] docs) {
+            this.totalHits = totalHits;
+            this.partial = partial;
+            this.scores = scores;
+            this.docs = docs;
+        }
+
+        byte[] toBytes() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(totalHits);
+            out.writeBoolean(partial);
+            out.writeInt(docs.length);
+            for (int i = 0; i < docs.length; i++) {
+                out.writeFloat(scores[i]);
+                writeString(out, docs[i].getId());
+                writeString(out, docs[i].getTitle());
+                writeString(out, docs[i].getAuthor());
+                writeString(out, docs[i].getContent());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        static ShardHits fromBytes(byte[] body) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            long totalHits = in.readLong();
+            boolean partial = in.readBoolean();
+            int count = in.readInt();
+            float[] scores = new float[count];
+            DocumentDTO[] docs = new DocumentDTO[count];
+            for (int i = 0; i < count; i++) {
+                scores[i] = in.readFloat();
+                docs[i] = new DocumentDTO(readString(in), readString(in), readString(in), readString(in),
+                        String.valueOf(scores[i]));
+            }
+            return new ShardHits(totalHits, partial, scores, docs);
+        }
+
+    }
+}
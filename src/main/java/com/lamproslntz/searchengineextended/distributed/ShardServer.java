@@ -0,0 +1,348 @@
+package com.lamproslntz.searchengineextended.distributed;
+
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.evaluation.AnalyzerConfig;
+import com.lamproslntz.searchengineextended.index.DirectoryFactory;
+import com.lamproslntz.searchengineextended.index.ShardStatistics;
+import com.lamproslntz.searchengineextended.index.TimeLimitedCollectorManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the search of one shard of a sharded index (built by
+ * {@link com.lamproslntz.searchengineextended.index.ShardedIndexer}) over HTTP, to a {@link DistributedSearcher}.
+ * The shard is searched in two requests (see {@link ShardProtocol}): the statistics of the query terms in the shard,
+ * then the top documents of the shard scored with the statistics summed over all the shards, so that the scores of
+ * all the shards can be merged.
+ * <p>
+ * The shard is opened once with a {@link SearcherManager}, by a {@link DirectoryFactory}, and refreshed periodically
+ * by a background thread. The requests are served by a fixed pool of threads. Several servers of the same shard
+ * (replicas) may run at once, so that the coordinator can fail over, or hedge slow requests. The requests aren't
+ * authenticated, so a server listens to the loopback address unless it is given the address of another interface.
+ *
+ * @author Lampros Lountzis
+ */
+public class ShardServer implements Closeable {
+
+    private static final String[] FIELDS = {"title_norm", "abstract_norm"}; // the searchable fields
+    private static final int TOTAL_HITS_THRESHOLD = 1000; // hits counted accurately, as by IndexSearcher
+
+    private final Logger logger = LoggerFactory.getLogger(ShardServer.class);
+
+    private final Similarity similarity = new BM25Similarity();
+    private final ThreadLocal<QueryParser> parser;
+    private final Directory dir;
+    private final SearcherManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService refresher;
+
+    /**
+     * Opens a shard, with the default directory implementation of the platform, and starts serving it on the loopback
+     * address.
+     *
+     * @param shardDir the directory path where the Lucene index files of the shard are hosted.
+     * @param port port to listen to, or 0 for any free port.
+     * @param threads number of threads serving the requests.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries; it must be the same for all
+     *                 the shards of the index.
+     * @param refreshInterval interval (in milliseconds) between two consecutive refresh attempts of the shard,
+     *                        or a non-positive value to disable the background refresh.
+     *
+     * @throws IOException if the shard cannot be opened, or the port cannot be listened to.
+     */
+    public ShardServer(Path shardDir, int port, int threads, Analyzer analyzer, long refreshInterval)
+            throws IOException {
+        this(shardDir, port, threads, analyzer, refreshInterval, DirectoryFactory.DEFAULT);
+    }
+
+    /**
+     * Opens a shard, with the directory implementation of the given directory factory, and starts serving it on the
+     * loopback address.
+     *
+     * @param shardDir the directory path where the Lucene index files of the shard are hosted.
+     * @param port port to listen to, or 0 for any free port.
+     * @param threads number of threads serving the requests.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries; it must be the same for all
+     *                 the shards of the index.
+     * @param refreshInterval interval (in milliseconds) between two consecutive refresh attempts of the shard,
+     *                        or a non-positive value to disable the background refresh.
+     * @param directoryFactory opens the directory hosting the files of the shard.
+     *
+     * @throws IOException if the shard cannot be opened, or the port cannot be listened to.
+     */
+    public ShardServer(Path shardDir, int port, int threads, Analyzer analyzer, long refreshInterval,
+                       DirectoryFactory directoryFactory) throws IOException {
+        this(shardDir, InetAddress.getLoopbackAddress(), port, threads, analyzer, refreshInterval, directoryFactory);
+    }
+
+    /**
+     * Opens a shard, with the directory implementation of the given directory factory, and starts serving it.
+     *
+     * @param shardDir the directory path where the Lucene index files of the shard are hosted.
+     * @param bindAddress address to listen to, e.g. the loopback address, or the wildcard address for all the
+     *                    interfaces.
+     * @param port port to listen to, or 0 for any free port.
+     * @param threads number of threads serving the requests.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries; it must be the same for all
+     *                 the shards of the index.
+     * @param refreshInterval interval (in milliseconds) between two consecutive refresh attempts of the shard,
+     *                        or a non-positive value to disable the background refresh.
+     * @param directoryFactory opens the directory hosting the files of the shard.
+     *
+     * @throws IOException if the shard cannot be opened, or the port cannot be listened to.
+     */
+    public ShardServer(Path shardDir, InetAddress bindAddress, int port, int threads, Analyzer analyzer,
+                       long refreshInterval, DirectoryFactory directoryFactory) throws IOException {
+        this.parser = ThreadLocal.withInitial(() -> new MultiFieldQueryParser(FIELDS, analyzer));
+        this.dir = directoryFactory.open(shardDir);
+        try {
+            this.manager = new SearcherManager(dir, null);
+            this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        } catch (IOException | RuntimeException e) {
+            dir.close();
+            throw e;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-server-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(ShardProtocol.STATISTICS_PATH, exchange -> handle(exchange, this::statistics));
+        server.createContext(ShardProtocol.SEARCH_PATH, exchange -> handle(exchange, this::search));
+        server.createContext(ShardProtocol.HEALTH_PATH, exchange -> handle(exchange, body -> new byte[0]));
+        server.start();
+
+        if (refreshInterval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "shard-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * @param body the query.
+     *
+     * @return the statistics of the query terms in the shard.
+     */
+    private byte[] statistics(byte[] body) throws IOException, ParseException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Query query = parser.get().parse(ShardProtocol.readString(in));
+
+        IndexSearcher searcher = manager.acquire();
+        try {
+            return ShardProtocol.statisticsResponse(ShardStatistics.of(searcher.getIndexReader(), query));
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * @param body the query, the number of top documents, the collection timeout and the global statistics.
+     *
+     * @return the top documents of the shard.
+     */
+    private byte[] search(byte[] body) throws IOException, ParseException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Query query = parser.get().parse(ShardProtocol.readString(in));
+        int n = in.readInt();
+        long timeoutMillis = in.readLong();
+        ShardStatistics statistics = ShardStatistics.readFrom(in);
+        long deadline = TimeLimitedCollectorManager.deadline(timeoutMillis);
+
+        IndexSearcher searcher = manager.acquire();
+        try {
+            IndexSearcher globalSearcher = statistics.newSearcher(searcher.getIndexReader(), similarity);
+            TopDocs topDocs;
+            boolean partial = false;
+            if (timeoutMillis > 0) {
+                // the segments left once the timeout has expired are skipped
+                TimeLimitedCollectorManager collectors = new TimeLimitedCollectorManager(n, TOTAL_HITS_THRESHOLD,
+                        deadline);
+                topDocs = globalSearcher.search(query, collectors);
+                partial = collectors.isPartial();
+            } else {
+                TopScoreDocCollector collector = TopScoreDocCollector.create(n, TOTAL_HITS_THRESHOLD);
+                globalSearcher.search(query, collector);
+                topDocs = collector.topDocs();
+            }
+
+            float[] scores = new float[topDocs.scoreDocs.length];
+            DocumentDTO[] docs = new DocumentDTO[topDocs.scoreDocs.length];
+            for (int i = 0; i < docs.length; i++) {
+                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                scores[i] = scoreDoc.score;
+                docs[i] = new DocumentDTO(searcher.doc(scoreDoc.doc), scoreDoc.score);
+            }
+            return new ShardProtocol.ShardHits(topDocs.totalHits.value, partial, scores, docs).toBytes();
+        } finally {
+            manager.release(searcher);
+        }
+    }
+
+    /**
+     * Answers a request: with 200 and the response body, with 400 and the error message if the query cannot be
+     * parsed, or with 500 if the shard cannot be searched.
+     *
+     * @param exchange the request and its response.
+     * @param handler computes the response body from the request body.
+     *
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            byte[] request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = in.readAllBytes();
+            }
+
+            int status;
+            byte[] response;
+            try {
+                response = handler.handle(request);
+                status = 200;
+            } catch (ParseException e) {
+                response = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                status = 400;
+            } catch (IOException | RuntimeException e) {
+                logger.error("An exception was thrown: Could not search the shard...", e);
+                response = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                status = 500;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(status, response.length > 0 ? response.length : -1);
+            if (response.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Background refresh task. Failures are logged, so that the next scheduled refresh is still run.
+     */
+    private void refresh() {
+        try {
+            manager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            logger.error("An exception was thrown: Could not refresh the shard...", e);
+        }
+    }
+
+    /**
+     * @return the address the server listens to.
+     */
+    public InetAddress getAddress() {
+        return server.getAddress().getAddress();
+    }
+
+    /**
+     * @return the port the server listens to.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops serving the shard, and frees the persistent resources used by it.
+     *
+     * @throws IOException if the shard cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        try {
+            manager.close();
+        } finally {
+            dir.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("[ERROR] ShardServer - usage: ShardServer shardDir [host:]port [threads [config [directory]]]");
+            System.exit(1);
+        }
+
+        // listen to the loopback address, unless given a host (e.g. 0.0.0.0 for all the interfaces)
+        int colon = args[1].lastIndexOf(':');
+        InetAddress bindAddress = colon >= 0 ? InetAddress.getByName(args[1].substring(0, colon))
+                : InetAddress.getLoopbackAddress();
+        int port = Integer.parseInt(args[1].substring(colon + 1));
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        AnalyzerConfig config = AnalyzerConfig.parse(args.length > 3 ? args[3] : "baseline");
+        DirectoryFactory directoryFactory = args.length > 4
+                ? new DirectoryFactory(DirectoryFactory.Type.parse(args[4]), true) : DirectoryFactory.DEFAULT;
+
+        ShardServer server = new ShardServer(Paths.get(args[0]), bindAddress, port, threads, config.getAnalyzer(),
+                1000, directoryFactory);
+        System.out.println("Serving shard " + args[0] + " on " + server.getAddress().getHostAddress() + ":"
+                + server.getPort() + " (" + config + ", " + directoryFactory + ").");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                config.close();
+            } catch (IOException e) {
+                server.logger.error("An exception was thrown: Could not stop the shard server...", e);
+            }
+        }));
+    }
+
+    /**
+     * Computes the response body of a request from its body.
+     */
+    @FunctionalInterface
+    private interface Handler {
+
+        byte[] handle(byte[] body) throws IOException, ParseException;
+
+    }
+}
@@ -0,0 +1,132 @@
+package com.lamproslntz.searchengineextended.dto;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Encapsulates a page of search results.
+ * A page consists of the user query, the offset of its first document in the ranking, the requested number of
+ * documents, the total number of matching documents, the retrieved documents, whether they are partial (the search
+ * timed out before all the matching documents were scored) and the time (in milliseconds) the search took.
+ *
+ * @author Lampros Lountzis
+ */
+public class SearchResultDTO {
+
+    private String query;
+    private int offset;
+    private int k;
+    private long totalHits;
+    private List<DocumentDTO> results;
+    private boolean partial;
+    private long tookMillis;
+
+    public SearchResultDTO(String query, int offset, int k, long totalHits, List<DocumentDTO> results,
+                           boolean partial, long tookMillis) {
+        this.query = query;
+        this.offset = offset;
+        this.k = k;
+        this.totalHits = totalHits;
+        this.results = results;
+        this.partial = partial;
+        this.tookMillis = tookMillis;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public void setK(int k) {
+        this.k = k;
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public void setTotalHits(long totalHits) {
+        this.totalHits = totalHits;
+    }
+
+    public List<DocumentDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<DocumentDTO> results) {
+        this.results = results;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+
+    public long getTookMillis() {
+        return tookMillis;
+    }
+
+    public void setTookMillis(long tookMillis) {
+        this.tookMillis = tookMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SearchResultDTO that = (SearchResultDTO) o;
+
+        if (getOffset() != that.getOffset()) return false;
+        if (getK() != that.getK()) return false;
+        if (getTotalHits() != that.getTotalHits()) return false;
+        if (isPartial() != that.isPartial()) return false;
+        if (getTookMillis() != that.getTookMillis()) return false;
+        if (!Objects.equals(getQuery(), that.getQuery())) return false;
+        return Objects.equals(getResults(), that.getResults());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hashCode(getQuery());
+        result = 31 * result + getOffset();
+        result = 31 * result + getK();
+        result = 31 * result + Long.hashCode(getTotalHits());
+        result = 31 * result + Objects.hashCode(getResults());
+        result = 31 * result + Boolean.hashCode(isPartial());
+        result = 31 * result + Long.hashCode(getTookMillis());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResultDTO { " +
+                "query='" + query + '\'' +
+                ", offset=" + offset +
+                ", k=" + k +
+                ", totalHits=" + totalHits +
+                ", results=" + results +
+                ", partial=" + partial +
+                ", tookMillis=" + tookMillis +
+                " }";
+    }
+
+}
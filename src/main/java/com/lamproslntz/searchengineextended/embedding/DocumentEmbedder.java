@@ -0,0 +1,101 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.IOException;
+
+/**
+ * Computes dense vectors of texts (documents or queries) from word embeddings. The vector of a text is the mean of
+ * the word embeddings of its words, normalized to unit length, so that the dot product of two text vectors is their
+ * cosine similarity. Words that aren't in the vocabulary are skipped.
+ * <p>
+ * The texts are tokenized, lowercased and stripped of English stop words, but not stemmed, so that their words can
+ * be looked up in the vocabulary of the word embeddings. An embedder is thread-safe.
+ *
+ * @author Lampros Lountzis
+ */
+public class DocumentEmbedder {
+
+    private final EmbeddingStoreInterface embeddings;
+    private final Analyzer analyzer;
+
+    /**
+     * Initializes a DocumentEmbedder.
+     *
+     * @param embeddings word embeddings.
+     */
+    public DocumentEmbedder(EmbeddingStoreInterface embeddings) {
+        this.embeddings = embeddings;
+        this.analyzer = new StandardAnalyzer(EnglishAnalyzer.ENGLISH_STOP_WORDS_SET);
+    }
+
+    /**
+     * Computes the vector of a text.
+     *
+     * @param text the text.
+     *
+     * @return the unit length vector of the text, or null if none of its words is in the vocabulary.
+     *
+     * @throws IOException if the text cannot be tokenized.
+     */
+    public float[] embed(String text) throws IOException {
+        int dimension = embeddings.dimension();
+        float[] sum = new float[dimension];
+        float[] vector = new float[dimension];
+        int words = 0;
+
+        try (TokenStream stream = analyzer.tokenStream("text", text)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                int index = embeddings.indexOf(termAtt.buffer(), 0, termAtt.length());
+                if (index != -1) {
+                    embeddings.vector(index, vector);
+                    for (int d = 0; d < dimension; d++) {
+                        sum[d] += vector[d];
+                    }
+                    words++;
+                }
+            }
+            stream.end();
+        }
+
+        if (words == 0) {
+            return null;
+        }
+
+        // the mean of the word vectors has the same direction as their sum
+        double norm = 0;
+        for (int d = 0; d < dimension; d++) {
+            norm += sum[d] * sum[d];
+        }
+        if (norm == 0) {
+            return null;
+        }
+
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int d = 0; d < dimension; d++) {
+            sum[d] *= scale;
+        }
+        return sum;
+    }
+
+    /**
+     * @return number of dimensions of the text vectors.
+     */
+    public int dimension() {
+        return embeddings.dimension();
+    }
+
+    /**
+     * @return the word embeddings.
+     */
+    public EmbeddingStoreInterface getEmbeddings() {
+        return embeddings;
+    }
+
+}
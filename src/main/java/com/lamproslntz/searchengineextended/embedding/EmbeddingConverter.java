@@ -0,0 +1,100 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Converts word embeddings from the text format of word2vec/fastText (.vec) to the binary format read by
+ * {@link MappedEmbeddingStore}. The conversion is done once, offline; it reads the text file in a single pass and
+ * normalizes the vectors to unit length, with an {@link EmbeddingWriter}.
+ *
+ * Usage: EmbeddingConverter input.vec output.emb [--half]
+ *
+ * @author Lampros Lountzis
+ */
+public final class EmbeddingConverter {
+
+    private EmbeddingConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("[ERROR] EmbeddingConverter - usage: EmbeddingConverter input.vec output.emb [--half]");
+            System.exit(1);
+        }
+
+        boolean half = args.length > 2 && args[2].equals("--half");
+        long start = System.nanoTime();
+        int size = convert(Paths.get(args[0]), Paths.get(args[1]), half);
+        System.out.println("Converted " + size + " word vectors in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Converts a word embeddings text file (.vec) to a binary embedding file.
+     * The text file starts with a line of the form: (number of words, dimension), followed by one line per word of
+     * the form: (word, value_1, ..., value_dimension). Lines that don't have the declared dimension are skipped.
+     * The binary file is written next to its path (path + ".tmp") and moved into place once complete, so that an
+     * interrupted conversion never leaves a partial file behind, to be opened as if it were complete.
+     *
+     * @param vecPath word embeddings text file path.
+     * @param embPath binary embedding file path.
+     * @param half if true, the vectors are stored as half-precision floats, otherwise as floats.
+     *
+     * @return number of words converted.
+     *
+     * @throws IOException if the files cannot be read/written, or the text file is malformed.
+     */
+    public static int convert(Path vecPath, Path embPath, boolean half) throws IOException {
+        Path tmpPath = embPath.resolveSibling(embPath.getFileName() + ".tmp");
+        int size;
+        try {
+            size = write(vecPath, tmpPath, half);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+
+        Files.move(tmpPath, embPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return size;
+    }
+
+    private static int write(Path vecPath, Path embPath, boolean half) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(vecPath)) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException(vecPath + " is empty.");
+            }
+            String[] tokens = line.trim().split(" ");
+            if (tokens.length != 2) {
+                throw new IOException(vecPath + " doesn't start with a (number of words, dimension) line.");
+            }
+            int dimension = Integer.parseInt(tokens[1]);
+
+            try (EmbeddingWriter writer = EmbeddingWriter.create(embPath, dimension, half)) {
+                float[] vector = new float[dimension];
+                int lineNumber = 1;
+
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    tokens = line.trim().split(" ");
+                    if (tokens.length != dimension + 1) {
+                        System.err.println("[WARNING] EmbeddingConverter - skipping malformed line " + lineNumber + ".");
+                        continue;
+                    }
+
+                    for (int i = 0; i < dimension; i++) {
+                        vector[i] = Float.parseFloat(tokens[i + 1]);
+                    }
+                    writer.add(tokens[0], vector);
+                }
+
+                return writer.size();
+            }
+        }
+    }
+
+}
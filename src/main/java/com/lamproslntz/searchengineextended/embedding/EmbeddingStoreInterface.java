@@ -0,0 +1,55 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+import com.lamproslntz.searchengineextended.ann.VectorValuesInterface;
+
+import java.io.Closeable;
+import java.util.Collection;
+
+/**
+ * An EmbeddingStore gives access to a vocabulary of words and their word embeddings (vectors). Each word of the
+ * vocabulary is identified by its index, in the range [0, size()). The vectors are normalized to unit length, so the
+ * cosine similarity of two words is the dot product of their vectors.
+ *
+ * @author Lampros Lountzis
+ */
+public interface EmbeddingStoreInterface extends VectorValuesInterface, Closeable {
+
+    /**
+     * Specifies the look-up of a word in the vocabulary.
+     *
+     * @param word the word to look up.
+     *
+     * @return index of the word, or -1 if the word isn't in the vocabulary.
+     */
+    int indexOf(String word);
+
+    /**
+     * Specifies the look-up of a word, given as a slice of a character array, in the vocabulary.
+     *
+     * @param buffer characters of the word.
+     * @param offset offset of the word's first character in the buffer.
+     * @param length number of characters of the word.
+     *
+     * @return index of the word, or -1 if the word isn't in the vocabulary.
+     */
+    int indexOf(char[] buffer, int offset, int length);
+
+    /**
+     * @param index index of a word in the vocabulary.
+     *
+     * @return the word at the given index.
+     */
+    String wordAt(int index);
+
+    /**
+     * Finds the words of the vocabulary that are similar to the given word, by scanning the whole vocabulary.
+     * The given word is included in the result, if it is in the vocabulary.
+     *
+     * @param word the word whose similar words are looked up.
+     * @param minAccuracy minimum cosine similarity of the returned words to the given word.
+     *
+     * @return the similar words, or an empty collection if the word isn't in the vocabulary.
+     */
+    Collection<String> similarWordsInVocabTo(String word, double minAccuracy);
+
+}
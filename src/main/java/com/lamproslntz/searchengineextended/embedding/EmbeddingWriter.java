@@ -0,0 +1,220 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a binary embedding file, read by {@link MappedEmbeddingStore}, one (word, vector) pair at a time. The
+ * vectors are normalized to unit length and written right away, while the words are collected; the words, their hash
+ * table and the header are written when the writer is closed. Any set of named vectors can be written, e.g. word
+ * embeddings ({@link EmbeddingConverter}) or the dense vectors of documents, named by their ID.
+ *
+ * @author Lampros Lountzis
+ */
+public class EmbeddingWriter implements Closeable {
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final int dimension;
+    private final boolean half;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final StringBuilder words = new StringBuilder();
+    private int[] wordOffsets = new int[1024];
+    private int size = 0;
+
+    private EmbeddingWriter(FileChannel channel, int dimension, boolean half) throws IOException {
+        this.channel = channel;
+        this.dimension = dimension;
+        this.half = half;
+
+        // the vectors are written first, right after the header
+        channel.position(MappedEmbeddingStore.HEADER_SIZE);
+    }
+
+    /**
+     * Creates a binary embedding file, replacing any existing file.
+     *
+     * @param path binary embedding file path.
+     * @param dimension number of dimensions of the vectors.
+     * @param half if true, the vectors are stored as half-precision floats, otherwise as floats.
+     *
+     * @return a writer of the file.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    public static EmbeddingWriter create(Path path, int dimension, boolean half) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new EmbeddingWriter(channel, dimension, half);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a vector, normalized to unit length.
+     *
+     * @param word name of the vector; only its first occurrence can be looked up.
+     * @param vector vector of dimension elements.
+     *
+     * @throws IOException if the vector cannot be written.
+     */
+    public void add(String word, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("The vector of " + word + " has " + vector.length
+                    + " dimensions, instead of " + dimension + ".");
+        }
+
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+
+        int bytesPerValue = half ? Short.BYTES : Float.BYTES;
+        if (out.remaining() < dimension * bytesPerValue) {
+            flush();
+        }
+        for (int i = 0; i < dimension; i++) {
+            float value = norm == 0 ? 0 : (float) (vector[i] / norm);
+            if (half) {
+                out.putShort(HalfFloat.fromFloat(value));
+            } else {
+                out.putFloat(value);
+            }
+        }
+
+        if (size + 1 == wordOffsets.length) {
+            wordOffsets = Arrays.copyOf(wordOffsets, wordOffsets.length * 2);
+        }
+        words.append(word);
+        wordOffsets[++size] = words.length();
+    }
+
+    /**
+     * @return number of vectors written.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the words, their hash table and the header, and closes the file.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            int bytesPerValue = half ? Short.BYTES : Float.BYTES;
+
+            // word offsets, words and hash table follow the vectors, aligned to 8 bytes
+            long vectorsOffset = MappedEmbeddingStore.HEADER_SIZE;
+            long wordOffsetsOffset = align(vectorsOffset + (long) size * dimension * bytesPerValue);
+            long wordsOffset = align(wordOffsetsOffset + (size + 1L) * Integer.BYTES);
+            long hashOffset = align(wordsOffset + (long) words.length() * Character.BYTES);
+
+            channel.position(wordOffsetsOffset);
+            for (int i = 0; i <= size; i++) {
+                if (out.remaining() < Integer.BYTES) {
+                    flush();
+                }
+                out.putInt(wordOffsets[i]);
+            }
+            flush();
+
+            channel.position(wordsOffset);
+            for (int i = 0; i < words.length(); i++) {
+                if (out.remaining() < Character.BYTES) {
+                    flush();
+                }
+                out.putChar(words.charAt(i));
+            }
+            flush();
+
+            int[] hashTable = buildHashTable();
+            channel.position(hashOffset);
+            for (int slot : hashTable) {
+                if (out.remaining() < Integer.BYTES) {
+                    flush();
+                }
+                out.putInt(slot);
+            }
+            flush();
+
+            // finally, the header
+            out.putInt(MappedEmbeddingStore.MAGIC);
+            out.putInt(MappedEmbeddingStore.VERSION);
+            out.putInt(size);
+            out.putInt(dimension);
+            out.putInt(bytesPerValue);
+            out.putInt(hashTable.length);
+            out.putLong(vectorsOffset);
+            out.putLong(wordOffsetsOffset);
+            out.putLong(wordsOffset);
+            out.putLong(hashOffset);
+            while (out.position() < MappedEmbeddingStore.HEADER_SIZE) {
+                out.put((byte) 0);
+            }
+            channel.position(0);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Builds an open addressing (linear probing) hash table, that maps the words to their index. Duplicate words
+     * are mapped to their first occurrence.
+     */
+    private int[] buildHashTable() {
+        // at most half of the slots are used, to keep the probe sequences short
+        int slots = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+        int mask = slots - 1;
+        int[] table = new int[slots];
+        Arrays.fill(table, -1);
+
+        char[] chars = new char[words.length()];
+        words.getChars(0, words.length(), chars, 0);
+        for (int index = 0; index < size; index++) {
+            int offset = wordOffsets[index];
+            int length = wordOffsets[index + 1] - offset;
+            int slot = MappedEmbeddingStore.hash(chars, offset, length) & mask;
+            boolean duplicate = false;
+            while (table[slot] != -1 && !duplicate) {
+                int other = table[slot];
+                duplicate = Arrays.equals(chars, offset, offset + length,
+                        chars, wordOffsets[other], wordOffsets[other + 1]);
+                slot = (slot + 1) & mask;
+            }
+            if (!duplicate) {
+                table[slot] = index;
+            }
+        }
+
+        return table;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+}
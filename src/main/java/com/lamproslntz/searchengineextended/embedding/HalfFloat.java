@@ -0,0 +1,84 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+/**
+ * Conversions between 32-bit floats and IEEE 754 half-precision (16-bit) floats.
+ *
+ * @author Lampros Lountzis
+ */
+final class HalfFloat {
+
+    private HalfFloat() {
+    }
+
+    /**
+     * Converts a float to a half-precision float, rounding to the nearest representable value.
+     *
+     * @param value the float value.
+     *
+     * @return the bits of the half-precision float.
+     */
+    static short fromFloat(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = ((bits >>> 23) & 0xff) - 127 + 15;
+        int mantissa = bits & 0x7fffff;
+
+        if (exponent >= 0x1f) { // overflow, infinity or NaN
+            if (((bits >>> 23) & 0xff) == 0xff && mantissa != 0) {
+                return (short) (sign | 0x7e00);
+            }
+            return (short) (sign | 0x7c00);
+        }
+        if (exponent <= 0) { // subnormal or zero
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - exponent;
+            int half = mantissa >>> shift;
+            if (((mantissa >>> (shift - 1)) & 1) != 0) { // round half up
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        int half = sign | (exponent << 10) | (mantissa >>> 13);
+        if ((mantissa & 0x1000) != 0) { // round half up, a carry into the exponent is still correct
+            half++;
+        }
+        return (short) half;
+    }
+
+    /**
+     * Converts a half-precision float to a float.
+     *
+     * @param half the bits of the half-precision float.
+     *
+     * @return the float value.
+     */
+    static float toFloat(short half) {
+        int bits = half & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+
+        if (exponent == 0x1f) { // infinity or NaN
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            if (mantissa == 0) { // zero
+                return Float.intBitsToFloat(sign);
+            }
+            // subnormal, normalize it
+            exponent = 1;
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3ff;
+        }
+
+        return Float.intBitsToFloat(sign | ((exponent + 127 - 15) << 23) | (mantissa << 13));
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents an EmbeddingStore that is memory-mapped from a binary embedding file, built once by
+ * {@link EmbeddingConverter}. Opening the store only maps the file, so the vectors live in the operating system's
+ * page cache instead of the Java heap and are read lazily, the first time they are used.
+ * <p>
+ * The embedding file (little-endian) consists of:
+ *  * a 64 byte header: (magic, version, size, dimension, bytes per value, hash slots, section offsets),
+ *  * the unit length vectors, as a contiguous matrix of floats or half-precision floats (one row per word),
+ *  * the offsets of the words in the character table,
+ *  * the characters of all the words (UTF-16),
+ *  * an open addressing hash table, that maps words to their index.
+ * <p>
+ * The store is immutable and safe to use from multiple threads.
+ *
+ * @author Lampros Lountzis
+ */
+public class MappedEmbeddingStore implements EmbeddingStoreInterface {
+
+    static final int MAGIC = 0x454d4231; // "EMB1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    private final FileChannel channel;
+    private final int size;
+    private final int dimension;
+    private final int rowsPerChunk;
+    private final FloatBuffer[] floatRows;
+    private final ShortBuffer[] halfRows;
+    private final IntBuffer wordOffsets;
+    private final CharBuffer words;
+    private final IntBuffer hashTable;
+    private final int hashMask;
+
+    private MappedEmbeddingStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = map(channel, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("Not an embedding file (or unsupported version).");
+        }
+        this.size = header.getInt(8);
+        this.dimension = header.getInt(12);
+        int bytesPerValue = header.getInt(16);
+        int hashSlots = header.getInt(20);
+        long vectorsOffset = header.getLong(24);
+        long wordOffsetsOffset = header.getLong(32);
+        long wordsOffset = header.getLong(40);
+        long hashOffset = header.getLong(48);
+
+        // a single mapping can't exceed 2GB, so the matrix is mapped in chunks of whole rows
+        long rowBytes = (long) dimension * bytesPerValue;
+        this.rowsPerChunk = (int) Math.max(1, Integer.MAX_VALUE / rowBytes);
+        int chunks = size == 0 ? 0 : (size - 1) / rowsPerChunk + 1;
+        this.floatRows = bytesPerValue == Float.BYTES ? new FloatBuffer[chunks] : null;
+        this.halfRows = bytesPerValue == Short.BYTES ? new ShortBuffer[chunks] : null;
+        if (floatRows == null && halfRows == null) {
+            throw new IOException("Unsupported vector precision: " + bytesPerValue + " bytes per value.");
+        }
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int rows = Math.min(rowsPerChunk, size - chunk * rowsPerChunk);
+            ByteBuffer buffer = map(channel, vectorsOffset + chunk * rowsPerChunk * rowBytes, rows * rowBytes);
+            if (floatRows != null) {
+                floatRows[chunk] = buffer.asFloatBuffer();
+            } else {
+                halfRows[chunk] = buffer.asShortBuffer();
+            }
+        }
+
+        this.wordOffsets = map(channel, wordOffsetsOffset, (size + 1L) * Integer.BYTES).asIntBuffer();
+        this.words = map(channel, wordsOffset, (long) wordOffsets.get(size) * Character.BYTES).asCharBuffer();
+        this.hashTable = map(channel, hashOffset, (long) hashSlots * Integer.BYTES).asIntBuffer();
+        this.hashMask = hashSlots - 1;
+    }
+
+    /**
+     * Opens (memory-maps) an embedding file, built by {@link EmbeddingConverter}.
+     *
+     * @param path embedding file path.
+     *
+     * @return the embedding store.
+     *
+     * @throws IOException if the file cannot be opened, or isn't an embedding file.
+     */
+    public static MappedEmbeddingStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MappedEmbeddingStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int indexOf(String word) {
+        char[] chars = word.toCharArray();
+        return indexOf(chars, 0, chars.length);
+    }
+
+    public int indexOf(char[] buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & hashMask;
+        int index;
+        while ((index = hashTable.get(slot)) != -1) { // linear probing, until an empty slot is found
+            if (wordEquals(index, buffer, offset, length)) {
+                return index;
+            }
+            slot = (slot + 1) & hashMask;
+        }
+
+        return -1;
+    }
+
+    public String wordAt(int index) {
+        int start = wordOffsets.get(index);
+        int end = wordOffsets.get(index + 1);
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = words.get(start + i);
+        }
+        return new String(chars);
+    }
+
+    public float[] vector(int index, float[] dest) {
+        int base = (index % rowsPerChunk) * dimension;
+        if (floatRows != null) {
+            FloatBuffer rows = floatRows[index / rowsPerChunk];
+            for (int i = 0; i < dimension; i++) {
+                dest[i] = rows.get(base + i);
+            }
+        } else {
+            ShortBuffer rows = halfRows[index / rowsPerChunk];
+            for (int i = 0; i < dimension; i++) {
+                dest[i] = HalfFloat.toFloat(rows.get(base + i));
+            }
+        }
+        return dest;
+    }
+
+    public float dot(int index, float[] vector) {
+        int base = (index % rowsPerChunk) * dimension;
+        float dot = 0;
+        if (floatRows != null) {
+            FloatBuffer rows = floatRows[index / rowsPerChunk];
+            for (int i = 0; i < dimension; i++) {
+                dot += rows.get(base + i) * vector[i];
+            }
+        } else {
+            ShortBuffer rows = halfRows[index / rowsPerChunk];
+            for (int i = 0; i < dimension; i++) {
+                dot += HalfFloat.toFloat(rows.get(base + i)) * vector[i];
+            }
+        }
+        return dot;
+    }
+
+    public Collection<String> similarWordsInVocabTo(String word, double minAccuracy) {
+        int index = indexOf(word);
+        if (index == -1) {
+            return Collections.emptyList();
+        }
+
+        float[] query = vector(index, new float[dimension]);
+        List<String> similar = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (dot(i, query) >= minAccuracy) {
+                similar.add(wordAt(i));
+            }
+        }
+
+        return similar;
+    }
+
+    /**
+     * Releases the embedding file. The mapped memory is released by the JVM, once the store is garbage collected.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Hash function of the words, shared with {@link EmbeddingConverter} that builds the hash table.
+     *
+     * @param buffer characters of the word.
+     * @param offset offset of the word's first character in the buffer.
+     * @param length number of characters of the word.
+     *
+     * @return hash code of the word.
+     */
+    static int hash(char[] buffer, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++) {
+            h = 31 * h + buffer[i];
+        }
+        // spread the bits, as the table size is a power of 2
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private boolean wordEquals(int index, char[] buffer, int offset, int length) {
+        int start = wordOffsets.get(index);
+        if (wordOffsets.get(index + 1) - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (words.get(start + i) != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+}
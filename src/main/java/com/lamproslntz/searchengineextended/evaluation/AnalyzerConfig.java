@@ -0,0 +1,218 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import com.lamproslntz.searchengineextended.analyzer.Word2VecSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.analyzer.WordnetSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.HnswIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+import com.lamproslntz.searchengineextended.index.DocumentVectorIndex;
+import com.lamproslntz.searchengineextended.index.KnnRanker;
+import com.lamproslntz.searchengineextended.index.RankerInterface;
+import com.lamproslntz.searchengineextended.index.VectorReranker;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import com.lamproslntz.searchengineextended.synonym.SynonymTable;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.analysis.synonym.WordnetSynonymParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Represents a query analyzer configuration to be evaluated, together with the resources (e.g. word embeddings) it
+ * uses. A configuration is described by a specification of one of the forms:
+ * <ul>
+ *     <li>{@code baseline}: {@link EnglishAnalyzer}, without query expansion,</li>
+ *     <li>{@code wordnet=wn_s.pl}: {@link WordnetSynonymAnalyzer} with the WordNet synonyms (prolog format),</li>
+ *     <li>{@code synonyms=table}: {@link Word2VecSynonymAnalyzer} with a precomputed word embedding synonym table,</li>
+ *     <li>{@code word2vec=embeddings.emb[,minAccuracy[,graph.hnsw]]}: {@link Word2VecSynonymAnalyzer}, looking up
+ *     the synonyms in the HNSW graph if one is given, otherwise by exhaustive search,</li>
+ *     <li>{@code rerank=embeddings.emb[,depth[,weight]]}: {@link EnglishAnalyzer}, without query expansion, and a
+ *     {@link VectorReranker} of the top candidates; the index must have been built with the same embeddings,</li>
+ *     <li>{@code knn=embeddings.emb,indexDir[,depth]}: {@link EnglishAnalyzer} and a {@link KnnRanker}, that
+ *     retrieves the documents by KNN search of the {@link DocumentVectorIndex} of the index,</li>
+ *     <li>{@code hybrid=embeddings.emb,indexDir[,depth]}: as {@code knn}, fusing KNN search with BM25 search by
+ *     Reciprocal Rank Fusion.</li>
+ * </ul>
+ *
+ * @author Lampros Lountzis
+ */
+public class AnalyzerConfig implements Closeable {
+
+    /**
+     * Default minimum similarity of the word embedding synonyms.
+     */
+    public static final double DEFAULT_MIN_ACCURACY = 0.98;
+
+    private final String name;
+    private final Analyzer analyzer;
+    private final RankerInterface ranker;
+    private final List<Closeable> resources;
+
+    private AnalyzerConfig(String name, Analyzer analyzer, List<Closeable> resources) {
+        this(name, analyzer, null, resources);
+    }
+
+    private AnalyzerConfig(String name, Analyzer analyzer, RankerInterface ranker, List<Closeable> resources) {
+        this.name = name;
+        this.analyzer = analyzer;
+        this.ranker = ranker;
+        this.resources = resources;
+    }
+
+    /**
+     * Builds the query analyzer of a configuration, opening the resources it uses.
+     *
+     * @param spec specification of the configuration.
+     *
+     * @return the configuration.
+     *
+     * @throws IOException if a resource cannot be opened.
+     * @throws IllegalArgumentException if the specification is invalid.
+     */
+    public static AnalyzerConfig parse(String spec) throws IOException {
+        String[] parts = spec.split("=", 2);
+        String type = parts[0];
+        String[] args = parts.length > 1 ? parts[1].split(",") : new String[0];
+
+        List<Closeable> resources = new ArrayList<>();
+        try {
+            switch (type) {
+                case "baseline":
+                    return new AnalyzerConfig("base", new EnglishAnalyzer(), resources);
+                case "wordnet":
+                    requireArgs(spec, args, 1);
+                    return new AnalyzerConfig("wordnet", new WordnetSynonymAnalyzer(wordnet(args[0])), resources);
+                case "synonyms":
+                    requireArgs(spec, args, 1);
+                    return new AnalyzerConfig("synonyms", new Word2VecSynonymAnalyzer(SynonymTable.loadExpansions(Paths.get(args[0]))), resources);
+                case "word2vec":
+                    requireArgs(spec, args, 1);
+                    double minAccuracy = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_MIN_ACCURACY;
+
+                    MappedEmbeddingStore embeddings = MappedEmbeddingStore.open(Paths.get(args[0]));
+                    resources.add(embeddings);
+                    NearestNeighbourIndexInterface neighbours;
+                    if (args.length > 2) {
+                        HnswIndex graph = HnswIndex.open(Paths.get(args[2]), embeddings);
+                        resources.add(graph);
+                        neighbours = graph;
+                    } else {
+                        neighbours = new ExactNearestNeighbourIndex(embeddings);
+                    }
+
+                    return new AnalyzerConfig("w2v-" + minAccuracy,
+                            new Word2VecSynonymAnalyzer(embeddings, neighbours, minAccuracy, new SynonymCache()), resources);
+                case "rerank":
+                    requireArgs(spec, args, 1);
+                    int depth = args.length > 1 ? Integer.parseInt(args[1]) : VectorReranker.DEFAULT_DEPTH;
+                    float weight = args.length > 2 ? Float.parseFloat(args[2]) : VectorReranker.DEFAULT_WEIGHT;
+
+                    MappedEmbeddingStore documentEmbeddings = MappedEmbeddingStore.open(Paths.get(args[0]));
+                    resources.add(documentEmbeddings);
+
+                    return new AnalyzerConfig("rerank-" + depth + "-" + weight, new EnglishAnalyzer(),
+                            new VectorReranker(new DocumentEmbedder(documentEmbeddings), depth, weight), resources);
+                case "knn":
+                case "hybrid":
+                    requireArgs(spec, args, 2);
+                    int knnDepth = args.length > 2 ? Integer.parseInt(args[2]) : KnnRanker.DEFAULT_DEPTH;
+
+                    MappedEmbeddingStore queryEmbeddings = MappedEmbeddingStore.open(Paths.get(args[0]));
+                    resources.add(queryEmbeddings);
+                    DocumentVectorIndex vectors = DocumentVectorIndex.open(Paths.get(args[1]));
+                    resources.add(vectors);
+
+                    return new AnalyzerConfig(type + "-" + knnDepth, new EnglishAnalyzer(),
+                            new KnnRanker(new DocumentEmbedder(queryEmbeddings), vectors, type.equals("hybrid"),
+                                    knnDepth, KnnRanker.DEFAULT_RRF_K), resources);
+                default:
+                    throw new IllegalArgumentException("Unknown analyzer configuration: " + spec + ".");
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Closeable resource : resources) {
+                resource.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return short name of the configuration, e.g. to name its run file.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the query analyzer.
+     */
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    /**
+     * @return ranker of the documents of each query, or null if they are ranked by BM25 only.
+     */
+    public RankerInterface getRanker() {
+        return ranker;
+    }
+
+    /**
+     * Closes the query analyzer and the resources it uses.
+     *
+     * @throws IOException if a resource cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        analyzer.close();
+        for (Closeable resource : resources) {
+            resource.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AnalyzerConfig { " +
+                "name='" + name + '\'' +
+                " }";
+    }
+
+    private static void requireArgs(String spec, String[] args, int count) {
+        if (args.length < count || Arrays.stream(args, 0, count).anyMatch(String::isEmpty)) {
+            throw new IllegalArgumentException("Missing file of analyzer configuration: " + spec + ".");
+        }
+    }
+
+    /**
+     * Parses the WordNet synonyms.
+     *
+     * @param path WordNet synonyms file path (wn_s.pl).
+     *
+     * @return the synonym map.
+     *
+     * @throws IOException if the file cannot be read or parsed.
+     */
+    private static SynonymMap wordnet(String path) throws IOException {
+        WordnetSynonymParser parser = new WordnetSynonymParser(true, true, new StandardAnalyzer(CharArraySet.EMPTY_SET));
+        try (Reader reader = Files.newBufferedReader(Paths.get(path))) {
+            parser.parse(reader);
+        } catch (ParseException e) {
+            throw new IOException("Could not parse WordNet synonyms " + path + ".", e);
+        }
+        return parser.build();
+    }
+
+}
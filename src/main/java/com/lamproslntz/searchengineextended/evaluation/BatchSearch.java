@@ -0,0 +1,180 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import com.lamproslntz.searchengineextended.dataset.CISIQueryReader;
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.index.Searcher;
+import com.lamproslntz.searchengineextended.index.SearcherInterface;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches a batch of queries concurrently, with a pool of threads sharing one {@link SearcherInterface}, and writes
+ * their results (e.g. to a trec_eval run file) as soon as each query completes.
+ * <p>
+ * Run as a command, it searches all the CISI queries with each of the given query analyzer configurations (see
+ * {@link AnalyzerConfig}), writing one run file per configuration, and reports the wall time and the throughput
+ * (queries/sec) of each configuration.
+ *
+ * @author Lampros Lountzis
+ */
+public class BatchSearch {
+
+    private final SearcherInterface searcher;
+    private final int k;
+    private final int threads;
+
+    /**
+     * Initializes a BatchSearch.
+     *
+     * @param searcher an open Searcher, shared by all the threads.
+     * @param k number of top documents to be retrieved for each query.
+     * @param threads number of threads searching queries concurrently.
+     */
+    public BatchSearch(SearcherInterface searcher, int k, int threads) {
+        this.searcher = searcher;
+        this.k = k;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("[ERROR] BatchSearch - usage: BatchSearch indexDir CISI.QRY outputDir k threads config...");
+            System.err.println("[ERROR] BatchSearch - configs: baseline, wordnet=wn_s.pl, synonyms=table, "
+                    + "word2vec=embeddings.emb[,minAccuracy[,graph.hnsw]], rerank=embeddings.emb[,depth[,weight]], "
+                    + "knn=embeddings.emb,indexDir[,depth], hybrid=embeddings.emb,indexDir[,depth]");
+            System.exit(1);
+        }
+
+        String indexDir = args[0];
+        Path outputDir = Paths.get(args[2]);
+        int k = Integer.parseInt(args[3]);
+        int threads = Integer.parseInt(args[4]);
+
+        List<Map<String, String>> queries = new ArrayList<>();
+        try (CISIQueryReader reader = CISIQueryReader.open(Paths.get(args[1]))) {
+            reader.forEachRemaining(queries::add);
+        }
+        Files.createDirectories(outputDir);
+
+        for (int i = 5; i < args.length; i++) {
+            try (AnalyzerConfig config = AnalyzerConfig.parse(args[i])) {
+                Searcher searcher = new Searcher(indexDir, config.getAnalyzer(), 0, null, config.getRanker());
+                searcher.open();
+
+                Path path = outputDir.resolve("results-" + config.getName() + "-" + k + ".txt");
+                try (RunFile runFile = new RunFile(path, config.getName())) {
+                    BatchSearchStats stats = new BatchSearch(searcher, k, threads).run(queries, runFile);
+                    System.out.println(config.getName() + ": searched " + stats.getQueries() + " queries in "
+                            + stats.getElapsedMillis() + " ms (" + String.format("%.1f", stats.getQueriesPerSecond())
+                            + " queries/sec, mean latency " + String.format("%.2f", stats.getMeanLatencyMillis())
+                            + " ms, p99 latency " + String.format("%.2f", stats.getP99LatencyMillis()) + " ms), "
+                            + stats.getFailed() + " failed; results written to " + path + ".");
+                } finally {
+                    searcher.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches the given queries concurrently, and writes the results of each query to the sink (e.g. a run file)
+     * as soon as it completes (so the queries are written in order of completion). Queries without text are skipped,
+     * and queries that cannot be parsed are reported and counted as failed.
+     *
+     * @param queries queries, as dictionaries with the fields (id, text).
+     * @param sink consumer of the results, called from the calling thread only.
+     *
+     * @return the number of searched queries, the wall time and the latency of each query.
+     *
+     * @throws IOException if the index cannot be searched, or the results cannot be written.
+     */
+    public BatchSearchStats run(List<Map<String, String>> queries, ResultSinkInterface sink) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-search-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<QueryResult> completed = new ExecutorCompletionService<>(workers);
+
+        long start = System.nanoTime();
+        try {
+            int submitted = 0;
+            for (Map<String, String> query : queries) {
+                String text = query.get("text");
+                if (text == null || text.isBlank()) {
+                    continue;
+                }
+
+                String id = query.get("id");
+                completed.submit(() -> {
+                    long queryStart = System.nanoTime();
+                    List<DocumentDTO> results = searcher.search(new QueryDTO(text), k);
+                    return new QueryResult(id, results, System.nanoTime() - queryStart);
+                });
+                submitted++;
+            }
+
+            // write the results of the queries in order of completion
+            long[] latencyNanos = new long[submitted];
+            int searched = 0;
+            int failed = 0;
+            for (int i = 0; i < submitted; i++) {
+                Future<QueryResult> future = completed.take();
+                try {
+                    QueryResult result = future.get();
+                    sink.write(result.id, result.results);
+                    latencyNanos[searched++] = result.latencyNanos;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    System.err.println("[ERROR] BatchSearch - could not search query: " + e.getCause().getMessage());
+                    failed++;
+                }
+            }
+
+            long[] searchedLatencyNanos = new long[searched];
+            System.arraycopy(latencyNanos, 0, searchedLatencyNanos, 0, searched);
+            return new BatchSearchStats(searched, failed, System.nanoTime() - start, searchedLatencyNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching queries.");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * The results of a query and the time it took to search it.
+     */
+    private static final class QueryResult {
+
+        private final String id;
+        private final List<DocumentDTO> results;
+        private final long latencyNanos;
+
+        private QueryResult(String id, List<DocumentDTO> results, long latencyNanos) {
+            this.id = id;
+            this.results = results;
+            this.latencyNanos = latencyNanos;
+        }
+
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encapsulates the statistics of a batch search run, i.e. the number of searched queries, the time it took to search
+ * all of them (wall time) and the latency of each query.
+ *
+ * @author Lampros Lountzis
+ */
+public class BatchSearchStats {
+
+    private final int queries;
+    private final int failed;
+    private final long elapsedNanos;
+    private final long[] latencyNanos;
+
+    /**
+     * @param queries number of searched queries.
+     * @param failed number of queries that could not be searched.
+     * @param elapsedNanos time (in nanoseconds) it took to search all the queries.
+     * @param latencyNanos latency (in nanoseconds) of each searched query.
+     */
+    public BatchSearchStats(int queries, int failed, long elapsedNanos, long[] latencyNanos) {
+        this.queries = queries;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.latencyNanos = latencyNanos.clone();
+        Arrays.sort(this.latencyNanos);
+    }
+
+    /**
+     * @return number of searched queries.
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return number of queries that could not be searched.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return time (in milliseconds) it took to search all the queries.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return search throughput, in queries per second.
+     */
+    public double getQueriesPerSecond() {
+        return elapsedNanos > 0 ? queries * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * @return mean latency of a query, in milliseconds.
+     */
+    public double getMeanLatencyMillis() {
+        return latencyNanos.length > 0 ? Arrays.stream(latencyNanos).average().orElse(0) / 1e6 : 0;
+    }
+
+    /**
+     * @return 99th percentile of the latency of a query, in milliseconds.
+     */
+    public double getP99LatencyMillis() {
+        if (latencyNanos.length == 0) {
+            return 0;
+        }
+        return latencyNanos[(int) Math.ceil(0.99 * latencyNanos.length) - 1] / 1e6;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BatchSearchStats that = (BatchSearchStats) o;
+
+        if (queries != that.queries) return false;
+        if (failed != that.failed) return false;
+        if (elapsedNanos != that.elapsedNanos) return false;
+        return Arrays.equals(latencyNanos, that.latencyNanos);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = queries;
+        result = 31 * result + failed;
+        result = 31 * result + Long.hashCode(elapsedNanos);
+        result = 31 * result + Arrays.hashCode(latencyNanos);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchSearchStats { " +
+                "queries=" + queries +
+                ", failed=" + failed +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", queriesPerSecond=" + String.format("%.1f", getQueriesPerSecond()) +
+                ", meanLatencyMillis=" + String.format("%.2f", getMeanLatencyMillis()) +
+                ", p99LatencyMillis=" + String.format("%.2f", getP99LatencyMillis()) +
+                " }";
+    }
+
+}
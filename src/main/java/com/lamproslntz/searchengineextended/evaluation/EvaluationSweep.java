@@ -0,0 +1,91 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import com.lamproslntz.searchengineextended.dataset.CISIQueryReader;
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.index.Searcher;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a sweep of query analyzer configurations (see {@link AnalyzerConfig}) and cut-offs k on the CISI queries,
+ * in one JVM run, without writing run files or calling trec_eval. The queries of each configuration are searched once
+ * concurrently, for the largest k, and the top documents of each ranking are evaluated for every k. For each
+ * configuration and k, P@k, R@k, MAP and nDCG@k are reported, together with the throughput of the configuration.
+ * <p>
+ * Only the queries of a configuration are searched in parallel: the configurations are evaluated one after another,
+ * so that the throughput of each one is measured without the others competing for the same cores (and memory).
+ *
+ * @author Lampros Lountzis
+ */
+public final class EvaluationSweep {
+
+    private EvaluationSweep() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 6) {
+            System.err.println("[ERROR] EvaluationSweep - usage: EvaluationSweep indexDir CISI.QRY CISI.REL threads k1,k2,... config...");
+            System.err.println("[ERROR] EvaluationSweep - configs: baseline, wordnet=wn_s.pl, synonyms=table, "
+                    + "word2vec=embeddings.emb[,minAccuracy[,graph.hnsw]], rerank=embeddings.emb[,depth[,weight]], "
+                    + "knn=embeddings.emb,indexDir[,depth], hybrid=embeddings.emb,indexDir[,depth]");
+            System.exit(1);
+        }
+
+        String indexDir = args[0];
+        Qrels qrels = Qrels.read(Paths.get(args[2]));
+        int threads = Integer.parseInt(args[3]);
+        int[] ks = Arrays.stream(args[4].split(",")).mapToInt(Integer::parseInt).sorted().toArray();
+
+        List<Map<String, String>> queries = new ArrayList<>();
+        try (CISIQueryReader reader = CISIQueryReader.open(Paths.get(args[1]))) {
+            reader.forEachRemaining(queries::add);
+        }
+
+        System.out.println("config\tk\tP@k\tR@k\tMAP\tnDCG@k\tqueries/sec");
+        for (int i = 5; i < args.length; i++) {
+            try (AnalyzerConfig config = AnalyzerConfig.parse(args[i])) {
+                Searcher searcher = new Searcher(indexDir, config.getAnalyzer(), 0, null, config.getRanker());
+                searcher.open();
+
+                Map<String, int[]> run = new HashMap<>();
+                BatchSearchStats stats;
+                try {
+                    stats = new BatchSearch(searcher, ks[ks.length - 1], threads).run(queries,
+                            (queryId, results) -> run.put(queryId, ranking(results)));
+                } finally {
+                    searcher.close();
+                }
+
+                for (int k : ks) {
+                    Metrics metrics = Evaluator.evaluate(run, qrels, k);
+                    System.out.println(config.getName() + "\t" + k
+                            + "\t" + String.format("%.4f", metrics.getPrecision())
+                            + "\t" + String.format("%.4f", metrics.getRecall())
+                            + "\t" + String.format("%.4f", metrics.getAveragePrecision())
+                            + "\t" + String.format("%.4f", metrics.getNdcg())
+                            + "\t" + String.format("%.1f", stats.getQueriesPerSecond()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param results the retrieved documents, ordered by decreasing score.
+     *
+     * @return the IDs of the retrieved documents, in the same order.
+     */
+    private static int[] ranking(List<DocumentDTO> results) {
+        int[] ranking = new int[results.size()];
+        for (int i = 0; i < ranking.length; i++) {
+            ranking[i] = Integer.parseInt(results.get(i).getId());
+        }
+        return ranking;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the retrieval effectiveness metrics of a ranking, given the relevant documents of its query, in the same
+ * way as trec_eval does for a run cut off at k documents. Rankings and relevant documents are arrays of document IDs,
+ * so that many rankings (e.g. of a parameter sweep) can be evaluated cheaply in one JVM.
+ *
+ * @author Lampros Lountzis
+ */
+public final class Evaluator {
+
+    private Evaluator() {
+    }
+
+    /**
+     * Evaluates the top k documents of a ranking.
+     *
+     * @param ranking retrieved document IDs, ordered by decreasing score.
+     * @param relevant relevant document IDs, sorted in ascending order.
+     * @param k number of top documents to be evaluated.
+     *
+     * @return P@k, R@k, AP and nDCG@k of the ranking.
+     */
+    public static Metrics evaluate(int[] ranking, int[] relevant, int k) {
+        if (relevant.length == 0) {
+            return new Metrics(0, 0, 0, 0);
+        }
+
+        int n = Math.min(k, ranking.length);
+        int hits = 0;
+        double precisionSum = 0;
+        double dcg = 0;
+        for (int i = 0; i < n; i++) {
+            if (Arrays.binarySearch(relevant, ranking[i]) >= 0) {
+                hits++;
+                precisionSum += (double) hits / (i + 1);
+                dcg += 1 / log2(i + 2);
+            }
+        }
+
+        // ideal ranking: all the relevant documents first
+        double idcg = 0;
+        for (int i = 0; i < Math.min(k, relevant.length); i++) {
+            idcg += 1 / log2(i + 2);
+        }
+
+        return new Metrics((double) hits / k, (double) hits / relevant.length, precisionSum / relevant.length,
+                dcg / idcg);
+    }
+
+    /**
+     * Evaluates the top k documents of the rankings of a run, and aggregates their metrics. As trec_eval does, only
+     * the queries that have both a ranking and relevant documents are evaluated.
+     *
+     * @param run retrieved document IDs of each query, ordered by decreasing score.
+     * @param qrels relevance judgements of the queries.
+     * @param k number of top documents to be evaluated.
+     *
+     * @return mean P@k, R@k, AP (i.e. MAP) and nDCG@k of the run.
+     */
+    public static Metrics evaluate(Map<String, int[]> run, Qrels qrels, int k) {
+        List<Metrics> metrics = new ArrayList<>(run.size());
+        for (Map.Entry<String, int[]> ranking : run.entrySet()) {
+            if (qrels.isJudged(ranking.getKey())) {
+                metrics.add(evaluate(ranking.getValue(), qrels.relevant(ranking.getKey()), k));
+            }
+        }
+
+        return Metrics.mean(metrics);
+    }
+
+    private static double log2(int x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+}
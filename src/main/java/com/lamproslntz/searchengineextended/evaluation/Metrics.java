@@ -0,0 +1,110 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import java.util.List;
+
+/**
+ * Encapsulates the retrieval effectiveness metrics of a ranking cut off at k documents: precision (P@k), recall
+ * (R@k), average precision (AP, whose mean over the queries is MAP) and normalized discounted cumulative gain
+ * (nDCG@k), with binary relevance.
+ *
+ * @author Lampros Lountzis
+ */
+public class Metrics {
+
+    private final double precision;
+    private final double recall;
+    private final double averagePrecision;
+    private final double ndcg;
+
+    public Metrics(double precision, double recall, double averagePrecision, double ndcg) {
+        this.precision = precision;
+        this.recall = recall;
+        this.averagePrecision = averagePrecision;
+        this.ndcg = ndcg;
+    }
+
+    /**
+     * Aggregates the metrics of a set of queries.
+     *
+     * @param metrics the metrics of each query.
+     *
+     * @return the mean of each metric over the queries (so the mean average precision is MAP).
+     */
+    public static Metrics mean(List<Metrics> metrics) {
+        if (metrics.isEmpty()) {
+            return new Metrics(0, 0, 0, 0);
+        }
+
+        double precision = 0, recall = 0, averagePrecision = 0, ndcg = 0;
+        for (Metrics m : metrics) {
+            precision += m.precision;
+            recall += m.recall;
+            averagePrecision += m.averagePrecision;
+            ndcg += m.ndcg;
+        }
+
+        int n = metrics.size();
+        return new Metrics(precision / n, recall / n, averagePrecision / n, ndcg / n);
+    }
+
+    /**
+     * @return fraction of the top k documents that are relevant.
+     */
+    public double getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return fraction of the relevant documents that are in the top k documents.
+     */
+    public double getRecall() {
+        return recall;
+    }
+
+    /**
+     * @return average precision of the top k documents, over all the relevant documents.
+     */
+    public double getAveragePrecision() {
+        return averagePrecision;
+    }
+
+    /**
+     * @return normalized discounted cumulative gain of the top k documents.
+     */
+    public double getNdcg() {
+        return ndcg;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Metrics that = (Metrics) o;
+
+        if (Double.compare(that.precision, precision) != 0) return false;
+        if (Double.compare(that.recall, recall) != 0) return false;
+        if (Double.compare(that.averagePrecision, averagePrecision) != 0) return false;
+        return Double.compare(that.ndcg, ndcg) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Double.hashCode(precision);
+        result = 31 * result + Double.hashCode(recall);
+        result = 31 * result + Double.hashCode(averagePrecision);
+        result = 31 * result + Double.hashCode(ndcg);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Metrics { " +
+                "precision=" + String.format("%.4f", precision) +
+                ", recall=" + String.format("%.4f", recall) +
+                ", averagePrecision=" + String.format("%.4f", averagePrecision) +
+                ", ndcg=" + String.format("%.4f", ndcg) +
+                " }";
+    }
+
+}
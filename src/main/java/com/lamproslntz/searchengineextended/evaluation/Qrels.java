@@ -0,0 +1,104 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the relevance judgements (qrels) of a set of queries, i.e. the IDs of the documents relevant to each
+ * query. The judgements are read either from the CISI query relevance file (CISI.REL), with records of the form
+ * (query_id, doc_id, ...), or from a trec_eval qrels file, with records of the form
+ * (query_id, iteration, doc_id, relevance).
+ *
+ * @author Lampros Lountzis
+ */
+public class Qrels {
+
+    private static final int[] NONE = new int[0];
+
+    private final Map<String, int[]> relevant;
+
+    private Qrels(Map<String, int[]> relevant) {
+        this.relevant = relevant;
+    }
+
+    /**
+     * Reads relevance judgements. Files with the .REL extension are read as CISI query relevance files, any other
+     * file as a trec_eval qrels file.
+     *
+     * @param path relevance judgements file path.
+     *
+     * @return the relevance judgements.
+     *
+     * @throws IOException if the file cannot be read.
+     */
+    public static Qrels read(Path path) throws IOException {
+        boolean cisi = path.getFileName().toString().endsWith(".REL");
+
+        Map<String, int[]> relevant = new HashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // split each line on whitespace and/or tab
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens.length < (cisi ? 2 : 4)) {
+                    continue;
+                }
+                if (!cisi && Integer.parseInt(tokens[3]) <= 0) { // not relevant
+                    continue;
+                }
+
+                String queryId = tokens[0];
+                int docId = Integer.parseInt(cisi ? tokens[1] : tokens[2]);
+
+                int[] docs = relevant.getOrDefault(queryId, NONE);
+                int count = counts.getOrDefault(queryId, 0);
+                if (count == docs.length) {
+                    docs = Arrays.copyOf(docs, Math.max(8, 2 * count));
+                    relevant.put(queryId, docs);
+                }
+                docs[count] = docId;
+                counts.put(queryId, count + 1);
+            }
+        }
+
+        // sort the relevant documents of each query, so that they can be looked up with a binary search
+        for (Map.Entry<String, int[]> entry : relevant.entrySet()) {
+            int[] docs = Arrays.stream(entry.getValue(), 0, counts.get(entry.getKey())).sorted().distinct().toArray();
+            entry.setValue(docs);
+        }
+
+        return new Qrels(relevant);
+    }
+
+    /**
+     * @param queryId the query ID.
+     *
+     * @return the IDs of the documents relevant to the query, sorted in ascending order (empty if none).
+     */
+    public int[] relevant(String queryId) {
+        return relevant.getOrDefault(queryId, NONE);
+    }
+
+    /**
+     * @param queryId the query ID.
+     *
+     * @return true if the query has relevant documents, otherwise, false.
+     */
+    public boolean isJudged(String queryId) {
+        return relevant.containsKey(queryId);
+    }
+
+    /**
+     * @return number of queries with relevant documents.
+     */
+    public int size() {
+        return relevant.size();
+    }
+
+}
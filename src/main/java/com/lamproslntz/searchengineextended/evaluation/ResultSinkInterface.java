@@ -0,0 +1,27 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A ResultSink consumes the results of the queries of a batch search, one query at a time (e.g. writes them to a
+ * trec_eval run file, or keeps them in memory to be evaluated). In order to define the consuming behaviour,
+ * subclasses must define the write({@link String}, {@link List}<{@link DocumentDTO}>) method.
+ *
+ * @author Lampros Lountzis
+ */
+public interface ResultSinkInterface {
+
+    /**
+     * Specifies the operation of consuming the results of a query.
+     *
+     * @param queryId the query ID.
+     * @param results the retrieved documents, ordered by decreasing score.
+     *
+     * @throws IOException if the results cannot be consumed.
+     */
+    void write(String queryId, List<DocumentDTO> results) throws IOException;
+
+}
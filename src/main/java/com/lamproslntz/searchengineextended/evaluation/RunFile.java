@@ -0,0 +1,64 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes search results according to trec_eval specifications, one query at a time.
+ * The run file has records of the form: (query_id, iteration, doc_id, rank, similarity, run_id), where the rank of
+ * the top document of each query is 1.
+ *
+ * @author Lampros Lountzis
+ */
+public class RunFile implements ResultSinkInterface, Closeable {
+
+    private final BufferedWriter writer;
+    private final String runId;
+
+    /**
+     * Creates a run file, replacing any existing file.
+     *
+     * @param path run file path.
+     * @param runId name of the run, written in every record.
+     *
+     * @throws IOException if the file cannot be created.
+     */
+    public RunFile(Path path, String runId) throws IOException {
+        this.writer = Files.newBufferedWriter(path);
+        this.runId = runId;
+    }
+
+    /**
+     * Writes the results of a query.
+     *
+     * @param queryId the query ID.
+     * @param results the retrieved documents, ordered by decreasing score.
+     *
+     * @throws IOException if the results cannot be written.
+     */
+    public synchronized void write(String queryId, List<DocumentDTO> results) throws IOException {
+        int rank = 0;
+        for (DocumentDTO doc : results) {
+            // run file contains records of the form: (query_id, iteration, doc_id, rank, similarity, run_id)
+            writer.write(queryId + " 0 " + doc.getId() + " " + (++rank) + " " + doc.getScore() + " " + runId);
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Flushes and closes the run file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+}
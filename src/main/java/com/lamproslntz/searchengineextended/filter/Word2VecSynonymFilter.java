@@ -1,23 +1,42 @@
 package com.lamproslntz.searchengineextended.filter;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.ann.Neighbour;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.synonym.SynonymCache;
+import com.lamproslntz.searchengineextended.synonym.SynonymExpansion;
+import org.apache.lucene.analysis.CharArrayMap;
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.synonym.SynonymGraphFilter;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
-import org.apache.lucene.util.CharsRef;
-import org.apache.lucene.util.CharsRefBuilder;
-import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.apache.lucene.search.BoostAttribute;
+import org.apache.lucene.util.AttributeSource;
 
 /**
  * Word2Vec based synonym filter.
- * Extends token text with synonyms based on word embeddings.
+ * Extends token text with synonyms based on word embeddings. The synonyms of a token are its nearest neighbours in
+ * the embedding space, looked up with a {@link NearestNeighbourIndexInterface}. If a {@link SynonymCache} is given,
+ * the synonyms of a token are looked up only the first time the token is seen. Alternatively, the synonyms can be
+ * looked up in a table precomputed offline (see {@link com.lamproslntz.searchengineextended.synonym.SynonymTable}).
+ * <p>
+ * Each token is followed by its synonyms, stacked on it (position increment 0, position length 1), so the output is
+ * a valid token graph. The synonyms inherit the other attributes (e.g. offsets) of their token. Expanding a token
+ * whose synonyms are cached doesn't allocate: the term is looked up as a slice of the term buffer, and the attributes
+ * of the token are saved to, and restored from, a single copy of the attributes that is reused for every token.
+ * <p>
+ * Each synonym is weighted by its similarity to the token, with a {@link BoostAttribute}, so that the query parser
+ * builds a {@link org.apache.lucene.search.SynonymQuery} in which a synonym counts less than the token itself. To
+ * bound the cost of the query, each token is extended with at most {@code maxSynonyms} synonyms (the most similar
+ * ones), and the whole token stream with at most {@code maxExpansions} synonyms; once this budget is spent, the
+ * remaining tokens aren't extended.
  *
  * @author Lampros Lountzis
  */
@@ -26,72 +45,191 @@ public final class Word2VecSynonymFilter extends TokenFilter {
   private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
   private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
   private final PositionIncrementAttribute positionIncrementAttribute = addAttribute(PositionIncrementAttribute.class);
-
-  private final Word2Vec word2Vec;
+  private final PositionLengthAttribute positionLengthAttribute = addAttribute(PositionLengthAttribute.class);
+  private final BoostAttribute boostAtt = addAttribute(BoostAttribute.class);
+
+  /**
+   * Default maximum number of synonyms a token is extended with.
+   */
+  public static final int DEFAULT_MAX_SYNONYMS = 10;
+
+  /**
+   * Upper bound of the maximum number of synonyms a token is extended with, as each word is looked up with a nearest
+   * neighbour search of that many neighbours.
+   */
+  public static final int MAX_SYNONYMS = 1000;
+
+  /**
+   * Default maximum number of synonyms a token stream (i.e. a query) is extended with.
+   */
+  public static final int DEFAULT_MAX_EXPANSIONS = 256;
+
+  private final EmbeddingStoreInterface embeddings;
+  private final NearestNeighbourIndexInterface neighbours;
   private final double minAccuracy;
-  private final List<PendingOutput> outputs = new LinkedList<>();
-  private int positions = 0;
+  private final SynonymCache cache;
+  private final CharArrayMap<SynonymExpansion> table;
+  private final int maxSynonyms;
+  private final int maxExpansions;
+  private final float[] vector;
+
+  private AttributeSource saved; // attributes of the token being expanded, created on the first expansion
+  private SynonymExpansion pending = SynonymExpansion.EMPTY; // synonyms of the token being expanded
+  private int next = 0; // index of the next pending synonym
+  private int count = 0; // number of pending synonyms to be emitted
+  private int remaining; // number of synonyms the rest of the token stream can be extended with
+
+  public Word2VecSynonymFilter(TokenStream input, EmbeddingStoreInterface embeddings,
+                               NearestNeighbourIndexInterface neighbours, double minAccuracy) {
+    this(input, embeddings, neighbours, minAccuracy, null);
+  }
+
+  public Word2VecSynonymFilter(TokenStream input, EmbeddingStoreInterface embeddings,
+                               NearestNeighbourIndexInterface neighbours, double minAccuracy, SynonymCache cache) {
+    this(input, embeddings, neighbours, minAccuracy, cache, DEFAULT_MAX_SYNONYMS, DEFAULT_MAX_EXPANSIONS);
+  }
 
-  public Word2VecSynonymFilter(TokenStream input, Word2Vec word2Vec, double minAccuracy) {
+  public Word2VecSynonymFilter(TokenStream input, EmbeddingStoreInterface embeddings,
+                               NearestNeighbourIndexInterface neighbours, double minAccuracy, SynonymCache cache,
+                               int maxSynonyms, int maxExpansions) {
+    this(input, embeddings, neighbours, minAccuracy, cache, null, maxSynonyms, maxExpansions);
+  }
+
+  /**
+   * Looks up the synonyms of each token in a precomputed synonym table, instead of the word embeddings.
+   *
+   * @param input the token stream to be extended.
+   * @param table expansions of the words, with their synonyms sorted by descending similarity.
+   * @param maxSynonyms maximum number of synonyms a token is extended with (at most {@link #MAX_SYNONYMS}).
+   * @param maxExpansions maximum number of synonyms the token stream is extended with.
+   */
+  public Word2VecSynonymFilter(TokenStream input, CharArrayMap<SynonymExpansion> table, int maxSynonyms,
+                               int maxExpansions) {
+    this(input, null, null, 0, null, table, maxSynonyms, maxExpansions);
+  }
+
+  private Word2VecSynonymFilter(TokenStream input, EmbeddingStoreInterface embeddings,
+                                NearestNeighbourIndexInterface neighbours, double minAccuracy, SynonymCache cache,
+                                CharArrayMap<SynonymExpansion> table, int maxSynonyms, int maxExpansions) {
     super(input);
-    this.word2Vec = word2Vec;
+    if (maxSynonyms < 0 || maxSynonyms > MAX_SYNONYMS) {
+      throw new IllegalArgumentException("maxSynonyms must be between 0 and " + MAX_SYNONYMS + ".");
+    }
+    if (maxExpansions < 0) {
+      throw new IllegalArgumentException("maxExpansions must not be negative.");
+    }
+    this.embeddings = embeddings;
+    this.neighbours = neighbours;
     this.minAccuracy = minAccuracy;
+    this.cache = cache;
+    this.table = table;
+    this.maxSynonyms = maxSynonyms;
+    this.maxExpansions = maxExpansions;
+    this.remaining = maxExpansions;
+    this.vector = embeddings != null ? new float[embeddings.dimension()] : null;
   }
 
   @Override
   public boolean incrementToken() throws IOException {
-    if (!outputs.isEmpty()) {
-      PendingOutput output = outputs.remove(0);
+    if (next < count) {
+      saved.copyTo(this);
 
-      restoreState(output.state);
-
-      termAtt.copyBuffer(output.charsRef.chars, output.charsRef.offset, output.charsRef.length);
+      char[] synonym = pending.synonym(next);
+      termAtt.copyBuffer(synonym, 0, synonym.length);
 
       typeAtt.setType(SynonymGraphFilter.TYPE_SYNONYM);
-      positionIncrementAttribute.setPositionIncrement(output.posIncr);
+      positionIncrementAttribute.setPositionIncrement(0);
+      positionLengthAttribute.setPositionLength(1);
+      boostAtt.setBoost(Math.min(1f, pending.similarity(next++)));
 
       return true;
     }
 
-    if (!SynonymGraphFilter.TYPE_SYNONYM.equals(typeAtt.type())) {
-      positions++;
-      positionIncrementAttribute.setPositionIncrement(positions);
-      String word = new String(termAtt.buffer()).trim();
-      Collection<String> list = word2Vec.similarWordsInVocabTo(word, minAccuracy);
+    if (!input.incrementToken()) {
+      return false;
+    }
 
-      for (String syn : list) {
-        if (!syn.equals(word)) {
-          CharsRefBuilder charsRefBuilder = new CharsRefBuilder();
-          CharsRef cr = charsRefBuilder.append(syn).get();
+    next = 0;
+    count = 0;
+    if (remaining == 0) {
+      return true;
+    }
+
+    if (table != null) {
+      SynonymExpansion expansion = table.get(termAtt.buffer(), 0, termAtt.length());
+      pending = expansion != null ? expansion : SynonymExpansion.EMPTY;
+    } else {
+      pending = cache != null
+              ? cache.get(termAtt.buffer(), 0, termAtt.length(), minAccuracy, maxSynonyms, this::expand)
+              : expand(termAtt.buffer(), termAtt.length());
+    }
 
-          State state = captureState();
-          outputs.add(new PendingOutput(state, cr, positions));
-        }
+    // the synonyms are sorted by descending similarity, and only positive boosts are valid
+    count = Math.min(pending.size(), Math.min(maxSynonyms, remaining));
+    while (count > 0 && pending.similarity(count - 1) <= 0) {
+      count--;
+    }
+    remaining -= count;
+
+    if (count > 0) {
+      if (saved == null) { // the attributes of the whole chain are known once the first token is read
+        saved = cloneAttributes();
       }
+      copyTo(saved);
     }
 
-    return !outputs.isEmpty() || input.incrementToken();
+    return true;
+  }
+
+  @Override
+  public void reset() throws IOException {
+    super.reset();
+    pending = SynonymExpansion.EMPTY;
+    next = 0;
+    count = 0;
+    remaining = maxExpansions;
   }
 
   @Override
   public void end() throws IOException {
     super.end();
-    outputs.clear();
-    positions = 0;
+    pending = SynonymExpansion.EMPTY;
+    next = 0;
+    count = 0;
   }
 
-  private class PendingOutput {
-
-    private final State state;
-    private final CharsRef charsRef;
-    private final int posIncr;
+  private SynonymExpansion expand(String word) {
+    return expand(word.toCharArray(), word.length());
+  }
 
-    private PendingOutput(State state, CharsRef charsRef, int posIncr) {
-      this.state = state;
-      this.charsRef = charsRef;
-      this.posIncr = posIncr;
+  /**
+   * Looks up the synonyms of a word, i.e. its (at most maxSynonyms) nearest neighbours in the embedding space.
+   *
+   * @param buffer characters of the word to be expanded, starting at offset 0.
+   * @param length number of characters of the word.
+   *
+   * @return the expansion of the word.
+   */
+  private SynonymExpansion expand(char[] buffer, int length) {
+    int index = embeddings.indexOf(buffer, 0, length);
+    if (index == -1) {
+      return SynonymExpansion.EMPTY;
     }
 
+    // the word itself is its own nearest neighbour, so one more neighbour is looked up
+    embeddings.vector(index, vector);
+    List<Neighbour> similar = neighbours.search(vector, maxSynonyms + 1, minAccuracy);
+
+    char[][] synonyms = new char[similar.size()][];
+    float[] similarities = new float[similar.size()];
+    int count = 0;
+    for (Neighbour neighbour : similar) {
+      if (neighbour.getIndex() != index && count < maxSynonyms) {
+        synonyms[count] = embeddings.wordAt(neighbour.getIndex()).toCharArray();
+        similarities[count++] = neighbour.getSimilarity();
+      }
+    }
+    return new SynonymExpansion(Arrays.copyOf(synonyms, count), Arrays.copyOf(similarities, count));
   }
 
 }
@@ -0,0 +1,211 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lamproslntz.searchengineextended.cleaner.ParallelTextCleaner;
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies a feed of document changes to a Lucene index, so that small deltas of the collection are indexed without
+ * rebuilding the whole index. The feed is a JSON lines file, with one change per line:
+ * <pre>
+ * {"op": "upsert", "doc": {"id": "1", "title": "...", "author": "...", "abstract": "..."}}
+ * {"op": "delete", "id": "2"}
+ * </pre>
+ * An upsert replaces the indexed document with the same ID (or adds the document, if there is none) and a delete
+ * removes it; the normalized title and abstract of an upserted document are cleaned as in the {@link IndexBuilder},
+ * so that it is matched like the documents indexed in bulk. Consecutive upserts are updated in batches of up to
+ * {@value #BATCH_SIZE} documents, cleaned in parallel by a {@link ParallelTextCleaner}, so that large deltas aren't
+ * bound by cleaning their documents one at a time; the changes are still applied in the order of the feed. All the
+ * changes of a feed are committed at once, after the last change has been applied; if a change is invalid, none are
+ * committed. If the index stores the dense vectors of the documents, the same word embeddings must be given, so that
+ * the vectors of the upserted documents are stored as well; the {@link DocumentVectorIndex} of KNN search has to be
+ * rebuilt to find them.
+ *
+ * @author Lampros Lountzis
+ */
+public final class ChangeFeed {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int BATCH_SIZE = 1000; // upserts updated (and cleaned) at once
+
+    private ChangeFeed() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("[ERROR] ChangeFeed - usage: ChangeFeed indexDir changes.jsonl [embeddings.emb]");
+            System.exit(1);
+        }
+
+        MappedEmbeddingStore embeddings = args.length > 2 ? MappedEmbeddingStore.open(Paths.get(args[2])) : null;
+        DocumentEmbedder embedder = embeddings != null ? new DocumentEmbedder(embeddings) : null;
+
+        Indexer indexer = new Indexer(args[0], Indexer.DEFAULT_RAM_BUFFER_SIZE_MB, embedder);
+        indexer.open();
+
+        long start = System.nanoTime();
+        int changes;
+        ParallelTextCleaner cleaner = new ParallelTextCleaner(new TextCleaner(true, true),
+                Runtime.getRuntime().availableProcessors());
+        try {
+            try {
+                changes = apply(Paths.get(args[1]), indexer, cleaner);
+            } catch (IOException | RuntimeException e) {
+                indexer.rollback(); // leave the index as it was before the feed
+                throw e;
+            }
+            indexer.close();
+        } finally {
+            cleaner.close();
+            if (embeddings != null) {
+                embeddings.close();
+            }
+        }
+
+        System.out.println("Applied " + changes + " changes in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Applies the changes of a feed to a Lucene index, and commits them. Consecutive upserts are updated in batches.
+     *
+     * @param feed path of the change feed (JSON lines).
+     * @param indexer an open Indexer.
+     * @param cleaner cleaner of the normalized fields of a batch of upserted documents (e.g. a
+     *                {@link ParallelTextCleaner}), or null if they are indexed as they are.
+     *
+     * @return number of applied changes.
+     *
+     * @throws IOException if the feed cannot be read, has an invalid change, or the changes cannot be indexed.
+     */
+    public static int apply(Path feed, IndexerInterface indexer, TextCleanerInterface cleaner) throws IOException {
+        int changes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(feed)) {
+            List<Map<String, String>> upserts = new ArrayList<>();
+            int firstUpsert = 0; // line number of the first upsert of the batch
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                try {
+                    JsonNode change = MAPPER.readTree(line);
+                    if (change.path("op").asText().equals("upsert")) {
+                        if (upserts.isEmpty()) {
+                            firstUpsert = lineNumber;
+                        }
+                        upserts.add(upsert(change));
+                    } else {
+                        // the upserts before the change are applied first
+                        update(upserts, indexer, cleaner, feed, firstUpsert, lineNumber - 1);
+                        delete(change, indexer);
+                    }
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    throw new IOException("Invalid change at line " + lineNumber + " of " + feed + ".", e);
+                }
+                changes++;
+
+                if (upserts.size() == BATCH_SIZE) {
+                    update(upserts, indexer, cleaner, feed, firstUpsert, lineNumber);
+                }
+            }
+            update(upserts, indexer, cleaner, feed, firstUpsert, lineNumber);
+        }
+
+        indexer.commit();
+        return changes;
+    }
+
+    /**
+     * Updates a batch of upserted documents, and clears it.
+     *
+     * @param upserts the upserted documents, in the order of the feed.
+     * @param indexer an open Indexer.
+     * @param cleaner cleaner of the normalized fields of the upserted documents, or null.
+     * @param feed path of the change feed.
+     * @param from line number of the first upsert of the batch.
+     * @param to line number of the last upsert of the batch.
+     *
+     * @throws IOException if an upserted document is invalid, or the documents cannot be indexed.
+     */
+    private static void update(List<Map<String, String>> upserts, IndexerInterface indexer,
+                               TextCleanerInterface cleaner, Path feed, int from, int to) throws IOException {
+        if (upserts.isEmpty()) {
+            return;
+        }
+
+        try {
+            indexer.update(upserts, cleaner);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid upsert at lines " + from + "-" + to + " of " + feed + ".", e);
+        }
+        upserts.clear();
+    }
+
+    /**
+     * @param change an upsert, as a JSON object.
+     *
+     * @return the upserted document, as a dictionary; the null fields are left out.
+     *
+     * @throws IllegalArgumentException if the document has no ID, or a field isn't a string, a number or a boolean.
+     */
+    private static Map<String, String> upsert(JsonNode change) {
+        JsonNode doc = change.path("doc");
+        if (!doc.isObject() || !doc.hasNonNull("id")) {
+            throw new IllegalArgumentException("An upsert requires a document with an ID.");
+        }
+
+        Map<String, String> fields = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = doc.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = it.next();
+            JsonNode value = field.getValue();
+            if (value.isNull()) {
+                continue;
+            }
+            if (!value.isValueNode()) {
+                throw new IllegalArgumentException("The field " + field.getKey() + " of an upsert isn't a scalar.");
+            }
+            fields.put(field.getKey(), value.asText());
+        }
+        return fields;
+    }
+
+    /**
+     * Applies a delete to a Lucene index.
+     *
+     * @param change the change, as a JSON object.
+     * @param indexer an open Indexer.
+     *
+     * @throws IOException if the change cannot be indexed.
+     */
+    private static void delete(JsonNode change, IndexerInterface indexer) throws IOException {
+        String op = change.path("op").asText();
+        if (!op.equals("delete")) {
+            throw new IllegalArgumentException("Unknown operation: " + op + ".");
+        }
+        if (!change.hasNonNull("id")) {
+            throw new IllegalArgumentException("A delete requires an ID.");
+        }
+        indexer.delete(Collections.singletonList(change.get("id").asText()));
+    }
+
+}
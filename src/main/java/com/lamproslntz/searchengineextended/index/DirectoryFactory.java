@@ -0,0 +1,183 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Opens the {@link Directory} hosting the files of a Lucene index, of a configurable implementation, so that it can be
+ * chosen per deployment:
+ * <ul>
+ *     <li>{@link Type#FS}: the default implementation of the platform ({@link FSDirectory#open(Path)}),</li>
+ *     <li>{@link Type#MMAP}: {@link MMapDirectory}, optionally preloading the files into memory as they're opened,</li>
+ *     <li>{@link Type#NIO}: {@link NIOFSDirectory}, reading the files with positional reads, e.g. where the address
+ *     space is too small to memory-map the index,</li>
+ *     <li>{@link Type#BYTE_BUFFERS}: {@link ByteBuffersDirectory}, a copy of the index in the heap, for small
+ *     collections such as CISI; it is only a snapshot for searching, so an index can't be written to it,</li>
+ *     <li>{@link Type#NRT_CACHING}: {@link NRTCachingDirectory} over {@link FSDirectory#open(Path)}, caching the
+ *     small newly flushed segments in memory until they're committed, for frequent small commits.</li>
+ * </ul>
+ *
+ * @author Lampros Lountzis
+ */
+public class DirectoryFactory {
+
+    /**
+     * Implementation of the directory.
+     */
+    public enum Type {
+        FS, MMAP, NIO, BYTE_BUFFERS, NRT_CACHING;
+
+        /**
+         * @param name name of the implementation, e.g. mmap or nrt-caching (case-insensitive).
+         *
+         * @return the implementation.
+         *
+         * @throws IllegalArgumentException if there is no implementation of that name.
+         */
+        public static Type parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * The default directory factory, which opens the default implementation of the platform.
+     */
+    public static final DirectoryFactory DEFAULT = new DirectoryFactory(Type.FS, false);
+
+    /**
+     * Default maximum size (in MB) of a newly flushed segment, for it to be cached by {@link Type#NRT_CACHING}.
+     */
+    public static final double DEFAULT_NRT_MAX_MERGE_SIZE_MB = 5;
+
+    /**
+     * Default maximum size (in MB) of all the segments cached by {@link Type#NRT_CACHING}.
+     */
+    public static final double DEFAULT_NRT_MAX_CACHED_MB = 60;
+
+    private final Type type;
+    private final boolean preload;
+    private final double nrtMaxMergeSizeMB;
+    private final double nrtMaxCachedMB;
+
+    /**
+     * Initializes a DirectoryFactory, that caches up to {@link #DEFAULT_NRT_MAX_CACHED_MB} MB of segments of up to
+     * {@link #DEFAULT_NRT_MAX_MERGE_SIZE_MB} MB each, if the directory caches the new segments.
+     *
+     * @param type implementation of the directory.
+     * @param preload true if the files are preloaded into memory as they're opened, if the directory memory-maps them.
+     */
+    public DirectoryFactory(Type type, boolean preload) {
+        this(type, preload, DEFAULT_NRT_MAX_MERGE_SIZE_MB, DEFAULT_NRT_MAX_CACHED_MB);
+    }
+
+    /**
+     * Initializes a DirectoryFactory.
+     *
+     * @param type implementation of the directory.
+     * @param preload true if the files are preloaded into memory as they're opened, if the directory memory-maps them.
+     * @param nrtMaxMergeSizeMB maximum size (in MB) of a newly flushed segment, for it to be cached by
+     *                          {@link Type#NRT_CACHING}.
+     * @param nrtMaxCachedMB maximum size (in MB) of all the segments cached by {@link Type#NRT_CACHING}.
+     */
+    public DirectoryFactory(Type type, boolean preload, double nrtMaxMergeSizeMB, double nrtMaxCachedMB) {
+        if (nrtMaxMergeSizeMB < 0 || nrtMaxCachedMB < 0) {
+            throw new IllegalArgumentException("The sizes of the NRT cache must be non-negative.");
+        }
+
+        this.type = type;
+        this.preload = preload;
+        this.nrtMaxMergeSizeMB = nrtMaxMergeSizeMB;
+        this.nrtMaxCachedMB = nrtMaxCachedMB;
+    }
+
+    /**
+     * Opens the directory hosting the files of a Lucene index. An in-memory directory ({@link Type#BYTE_BUFFERS}) is
+     * a copy of the files of the index on disk (empty if there are none), so it doesn't see the later changes.
+     *
+     * @param path the directory path where the Lucene index files are hosted.
+     *
+     * @return the directory.
+     *
+     * @throws IOException if the directory cannot be opened.
+     */
+    public Directory open(Path path) throws IOException {
+        switch (type) {
+            case MMAP:
+                return mmap(path);
+            case NIO:
+                return new NIOFSDirectory(path);
+            case BYTE_BUFFERS:
+                return copyToHeap(path);
+            case NRT_CACHING:
+                return new NRTCachingDirectory(fs(path), nrtMaxMergeSizeMB, nrtMaxCachedMB);
+            default:
+                return fs(path);
+        }
+    }
+
+    /**
+     * @return true if the directory is only a copy of the index in memory, which can't persist any changes.
+     */
+    public boolean isInMemory() {
+        return type == Type.BYTE_BUFFERS;
+    }
+
+    private MMapDirectory mmap(Path path) throws IOException {
+        MMapDirectory dir = new MMapDirectory(path);
+        dir.setPreload(preload);
+        return dir;
+    }
+
+    private Directory fs(Path path) throws IOException {
+        FSDirectory dir = FSDirectory.open(path);
+        if (dir instanceof MMapDirectory) {
+            ((MMapDirectory) dir).setPreload(preload);
+        }
+        return dir;
+    }
+
+    private Directory copyToHeap(Path path) throws IOException {
+        ByteBuffersDirectory dir = new ByteBuffersDirectory();
+        if (Files.isDirectory(path)) {
+            try (Directory fs = FSDirectory.open(path)) {
+                for (String file : fs.listAll()) {
+                    if (!file.equals(IndexWriter.WRITE_LOCK_NAME)) {
+                        dir.copyFrom(fs, file, file, IOContext.READONCE);
+                    }
+                }
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * @return implementation of the directory.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the files are preloaded into memory as they're opened, if the directory memory-maps them.
+     */
+    public boolean isPreload() {
+        return preload;
+    }
+
+    @Override
+    public String toString() {
+        return type.name().toLowerCase(Locale.ROOT).replace('_', '-') + (preload ? " (preloaded)" : "");
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.ann.HnswIndex;
+import com.lamproslntz.searchengineextended.ann.HnswIndexBuilder;
+import com.lamproslntz.searchengineextended.ann.Neighbour;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingWriter;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents the vector index of the documents of a Lucene index, for approximate nearest neighbour (KNN) search of
+ * their dense vectors. It consists of two files, kept in the directory of the Lucene index (which ignores them):
+ * the document vectors, named by the IDs of their documents (documents_N.emb, read by {@link MappedEmbeddingStore}),
+ * and their HNSW graph (documents_N.hnsw, read by {@link HnswIndex}). Both files are memory-mapped, so the vector
+ * index lives in the operating system's page cache rather than the Java heap, and scales to millions of documents.
+ * <p>
+ * Each build writes a new generation N of both files, and then commits it by atomically replacing the
+ * {@link #GENERATION_FILE}, which names the current generation. So the vectors and the graph are always opened from
+ * the same build, even while the vector index is being rebuilt: a graph is never searched over the vectors of
+ * another build (e.g. of the same size, after an update), which would return the wrong documents.
+ * <p>
+ * The vector index is built from the document vectors stored in the Lucene index by an {@link Indexer} with a
+ * {@link com.lamproslntz.searchengineextended.embedding.DocumentEmbedder}. It is a snapshot: documents added or
+ * updated after it was built are only found by KNN search once it has been rebuilt, while deleted documents are
+ * skipped, as their IDs are no longer in the Lucene index.
+ *
+ * Usage: DocumentVectorIndex indexDir [threads]
+ *
+ * @author Lampros Lountzis
+ */
+public class DocumentVectorIndex implements Closeable {
+
+    /**
+     * Name of the file holding the current generation of the vector index, in the directory of the Lucene index.
+     */
+    public static final String GENERATION_FILE = "documents.gen";
+
+    private static final String FILE_PREFIX = "documents_";
+    private static final String VECTORS_EXTENSION = ".emb";
+    private static final String GRAPH_EXTENSION = ".hnsw";
+
+    private final MappedEmbeddingStore vectors;
+    private final HnswIndex graph;
+
+    private DocumentVectorIndex(MappedEmbeddingStore vectors, HnswIndex graph) {
+        this.vectors = vectors;
+        this.graph = graph;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("[ERROR] DocumentVectorIndex - usage: DocumentVectorIndex indexDir [threads]");
+            System.exit(1);
+        }
+
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        long start = System.nanoTime();
+        int size = build(Paths.get(args[0]), threads);
+        System.out.println("Indexed " + size + " document vectors in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Builds the vector index of the documents of a Lucene index, from the last commit, replacing any previous one.
+     * The new generation of the files is written next to the current one, and committed once both files are
+     * complete; searchers that have the previous generation open are not disturbed, and it is kept until the next
+     * build, for the searchers that are opening it meanwhile. The older generations are deleted.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param threads number of threads building the HNSW graph.
+     *
+     * @return number of indexed document vectors.
+     *
+     * @throws IOException if the Lucene index cannot be read, or the vector index cannot be written.
+     */
+    public static int build(Path indexDir, int threads) throws IOException {
+        long current = Files.exists(indexDir.resolve(GENERATION_FILE)) ? generation(indexDir) : 0;
+        long generation = current + 1;
+        Path vectorsFile = vectorsFile(indexDir, generation);
+        Path graphFile = graphFile(indexDir, generation);
+
+        int size;
+        try {
+            size = write(indexDir, vectorsFile, graphFile, threads);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(vectorsFile);
+            Files.deleteIfExists(graphFile);
+            throw e;
+        }
+
+        // commit the new generation
+        Path generationTmp = indexDir.resolve(GENERATION_FILE + ".tmp");
+        Files.writeString(generationTmp, Long.toString(generation), StandardCharsets.UTF_8);
+        Files.move(generationTmp, indexDir.resolve(GENERATION_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        deleteGenerationsBefore(indexDir, current);
+        return size;
+    }
+
+    /**
+     * Writes the document vectors of a Lucene index and their HNSW graph.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param vectorsFile the document vectors file path.
+     * @param graphFile the HNSW graph file path.
+     * @param threads number of threads building the HNSW graph.
+     *
+     * @return number of document vectors.
+     *
+     * @throws IOException if the Lucene index cannot be read, or the files cannot be written.
+     */
+    private static int write(Path indexDir, Path vectorsFile, Path graphFile, int threads) throws IOException {
+        try (Directory dir = FSDirectory.open(indexDir); IndexReader reader = DirectoryReader.open(dir)) {
+            EmbeddingWriter writer = null;
+            try {
+                for (LeafReaderContext context : reader.leaves()) {
+                    Bits liveDocs = context.reader().getLiveDocs();
+                    BinaryDocValues docVectors = DocValues.getBinary(context.reader(), DocumentVectors.FIELD);
+                    for (int doc = docVectors.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docVectors.nextDoc()) {
+                        if (liveDocs != null && !liveDocs.get(doc)) { // skip deleted documents
+                            continue;
+                        }
+
+                        float[] vector = DocumentVectors.decode(docVectors.binaryValue());
+                        if (writer == null) {
+                            writer = EmbeddingWriter.create(vectorsFile, vector.length, false);
+                        }
+                        writer.add(context.reader().document(doc, Set.of("id")).get("id"), vector);
+                    }
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+
+            if (writer == null) {
+                throw new IOException("The Lucene index at " + indexDir + " doesn't store document vectors.");
+            }
+        }
+
+        try (MappedEmbeddingStore vectors = MappedEmbeddingStore.open(vectorsFile)) {
+            HnswIndexBuilder builder = new HnswIndexBuilder(vectors, HnswIndexBuilder.DEFAULT_M,
+                    HnswIndexBuilder.DEFAULT_EF_CONSTRUCTION, 42);
+            builder.build(threads);
+            builder.write(graphFile);
+            return vectors.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while building the HNSW graph of the document vectors.");
+        }
+    }
+
+    /**
+     * Opens (memory-maps) the current generation of the vector index of the documents of a Lucene index.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     *
+     * @return the vector index.
+     *
+     * @throws IOException if the vector index doesn't exist, or cannot be opened.
+     */
+    public static DocumentVectorIndex open(Path indexDir) throws IOException {
+        long generation = generation(indexDir);
+        MappedEmbeddingStore vectors = MappedEmbeddingStore.open(vectorsFile(indexDir, generation));
+        try {
+            return new DocumentVectorIndex(vectors, HnswIndex.open(graphFile(indexDir, generation), vectors));
+        } catch (IOException | RuntimeException e) {
+            vectors.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the current generation of the vector index.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     *
+     * @return the current generation.
+     *
+     * @throws IOException if the vector index doesn't exist, or its generation file is malformed.
+     */
+    private static long generation(Path indexDir) throws IOException {
+        Path path = indexDir.resolve(GENERATION_FILE);
+        String generation;
+        try {
+            generation = Files.readString(path, StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            throw new IOException("There is no vector index of the documents at " + indexDir + ".", e);
+        }
+
+        try {
+            return Long.parseLong(generation);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed generation file " + path + ".", e);
+        }
+    }
+
+    /**
+     * Deletes the files of the generations older than the given one.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param generation the oldest generation to be kept.
+     *
+     * @throws IOException if the directory cannot be listed.
+     */
+    private static void deleteGenerationsBefore(Path indexDir, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexDir, FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int extension = name.lastIndexOf('.');
+                try {
+                    if (extension > FILE_PREFIX.length()
+                            && Long.parseLong(name.substring(FILE_PREFIX.length(), extension)) < generation) {
+                        Files.deleteIfExists(file); // searchers that have it memory-mapped can still read it
+                    }
+                } catch (NumberFormatException e) {
+                    // not a file of the vector index
+                }
+            }
+        }
+    }
+
+    private static Path vectorsFile(Path indexDir, long generation) {
+        return indexDir.resolve(FILE_PREFIX + generation + VECTORS_EXTENSION);
+    }
+
+    private static Path graphFile(Path indexDir, long generation) {
+        return indexDir.resolve(FILE_PREFIX + generation + GRAPH_EXTENSION);
+    }
+
+    /**
+     * Searches the documents whose vectors are the most similar to the query vector.
+     *
+     * @param query query vector, of unit length.
+     * @param topN maximum number of documents to be returned.
+     *
+     * @return at most topN neighbours, the most similar first; their index is resolved to a document ID by
+     * {@link #id(int)}.
+     */
+    public List<Neighbour> search(float[] query, int topN) {
+        return graph.search(query, topN, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * @param index index of a document vector.
+     *
+     * @return ID of the document.
+     */
+    public String id(int index) {
+        return vectors.wordAt(index);
+    }
+
+    /**
+     * @return number of document vectors.
+     */
+    public int size() {
+        return vectors.size();
+    }
+
+    /**
+     * @return number of dimensions of the document vectors.
+     */
+    public int dimension() {
+        return vectors.dimension();
+    }
+
+    /**
+     * @return the HNSW graph of the document vectors, e.g. to tune its efSearch.
+     */
+    public HnswIndex getGraph() {
+        return graph;
+    }
+
+    /**
+     * Releases the vector index files.
+     *
+     * @throws IOException if a file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        graph.close();
+        vectors.close();
+    }
+
+}
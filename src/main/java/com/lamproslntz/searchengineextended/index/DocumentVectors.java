@@ -0,0 +1,77 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.util.BytesRef;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes the dense vectors of the documents, that are stored as binary doc values in the {@link #FIELD} field of
+ * the Lucene index. A vector is stored as its float components, in little-endian order. Being doc values, the
+ * vectors are kept in the segments of their documents: they are replaced, deleted and merged with them.
+ *
+ * @author Lampros Lountzis
+ */
+final class DocumentVectors {
+
+    /**
+     * Name of the binary doc values field of the document vectors.
+     */
+    static final String FIELD = "vector";
+
+    private static final VarHandle FLOATS = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private DocumentVectors() {
+    }
+
+    /**
+     * @param vector a document vector.
+     *
+     * @return the encoded vector.
+     */
+    static BytesRef encode(float[] vector) {
+        byte[] bytes = new byte[vector.length * Float.BYTES];
+        for (int d = 0; d < vector.length; d++) {
+            FLOATS.set(bytes, d * Float.BYTES, vector[d]);
+        }
+        return new BytesRef(bytes);
+    }
+
+    /**
+     * Decodes a document vector.
+     *
+     * @param bytes an encoded vector.
+     *
+     * @return the vector.
+     */
+    static float[] decode(BytesRef bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        for (int d = 0; d < vector.length; d++) {
+            vector[d] = (float) FLOATS.get(bytes.bytes, bytes.offset + d * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * Computes the dot product of an encoded document vector with the given vector, without decoding it.
+     *
+     * @param bytes an encoded vector.
+     * @param vector vector of the same dimension.
+     *
+     * @return the dot product; the cosine similarity, as both vectors are of unit length.
+     */
+    static float dot(BytesRef bytes, float[] vector) {
+        if (bytes.length != vector.length * Float.BYTES) {
+            throw new IllegalArgumentException("The document vector has " + bytes.length / Float.BYTES
+                    + " dimensions, instead of " + vector.length + ".");
+        }
+
+        float dot = 0;
+        for (int d = 0; d < vector.length; d++) {
+            dot += (float) FLOATS.get(bytes.bytes, bytes.offset + d * Float.BYTES) * vector[d];
+        }
+        return dot;
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import com.lamproslntz.searchengineextended.dataset.CISIDocumentReader;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Builds the Lucene index of the CISI dataset documents offline. The documents are streamed from the CISI.ALL file
+ * straight into a bulk {@link Indexer}, so only the documents being indexed are held in memory. If word embeddings
+ * are given, the dense vectors of the documents are stored as well, for re-ranking, and their
+ * {@link DocumentVectorIndex} is built, for KNN search.
+ *
+ * @author Lampros Lountzis
+ */
+public final class IndexBuilder {
+
+    private IndexBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("[ERROR] IndexBuilder - usage: IndexBuilder CISI.ALL indexDir [threads [embeddings.emb]]");
+            System.exit(1);
+        }
+
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        MappedEmbeddingStore embeddings = args.length > 3 ? MappedEmbeddingStore.open(Paths.get(args[3])) : null;
+        DocumentEmbedder embedder = embeddings != null ? new DocumentEmbedder(embeddings) : null;
+
+        Indexer indexer = new Indexer(args[1], Indexer.DEFAULT_RAM_BUFFER_SIZE_MB, embedder);
+        indexer.create();
+        try (CISIDocumentReader docs = CISIDocumentReader.open(Paths.get(args[0]))) {
+            IndexingStats stats = indexer.index(docs, threads, new TextCleaner(true, true));
+            System.out.println("Indexed " + stats.getDocuments() + " documents in " + stats.getElapsedMillis() + " ms ("
+                    + String.format("%.1f", stats.getDocumentsPerSecond()) + " docs/sec).");
+            System.out.println("Worker time: " + stats.getCleaningMillis() + " ms cleaning, "
+                    + stats.getIndexingMillis() + " ms indexing.");
+            indexer.commit();
+
+            if (embedder != null) {
+                long start = System.nanoTime();
+                int size = DocumentVectorIndex.build(Paths.get(args[1]), threads);
+                System.out.println("Indexed " + size + " document vectors in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            }
+        } finally {
+            indexer.close();
+            if (embeddings != null) {
+                embeddings.close();
+            }
+        }
+    }
+
+}
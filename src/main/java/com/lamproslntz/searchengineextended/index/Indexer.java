@@ -1,51 +1,186 @@
 package com.lamproslntz.searchengineextended.index;
 
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.*;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Represents an Indexer module, that builds a Lucene index in the local file system. The documents to be indexed should
  * consist of the following fields: (ID, title, normalized tile, author, abstract, normalized abstract). Also, for
  * document analysis {@link EnglishAnalyzer} is used and for document-query similarity {@link BM25Similarity} is used.
+ * <p>
+ * Large collections can be indexed in bulk by a pool of worker threads, that analyze the documents and add them to
+ * the (thread-safe) {@link IndexWriter} concurrently. The index writer buffers {@link #DEFAULT_RAM_BUFFER_SIZE_MB} MB
+ * of documents in memory before flushing a segment, and merges segments less often than Lucene's defaults, in favour
+ * of indexing throughput.
+ * <p>
+ * The ID of each document is indexed as a single term, so that an existing index can be opened with {@link #open()}
+ * and updated incrementally: documents are replaced or deleted by their ID.
+ * <p>
+ * If a {@link DocumentEmbedder} is given, the dense vector of each document (of its normalized title and abstract)
+ * is stored as a binary doc value, so that the results of a query can be re-ranked by a {@link VectorReranker}.
  *
  * @author Lampros Lountzis
  */
 public class Indexer implements IndexerInterface {
 
+    /**
+     * Default size (in MB) of the documents buffered in memory, before they are flushed to a new segment.
+     */
+    public static final double DEFAULT_RAM_BUFFER_SIZE_MB = 256;
+
+    /**
+     * Number of documents handed to a worker thread at once, when indexing in bulk.
+     */
+    private static final int BATCH_SIZE = 256;
+
+    private static final String[] NORM_FIELDS = {"title_norm", "abstract_norm"}; // the fields cleaned before indexing
+
     private final String INDEX_DIR;
+    private final double RAM_BUFFER_SIZE_MB;
+    private final DocumentEmbedder EMBEDDER;
+    private final DirectoryFactory DIRECTORY;
+    private Directory dir;
     private IndexWriter writer;
 
     /**
-     * Initializes an Indexer.
+     * Initializes an Indexer, that buffers {@link #DEFAULT_RAM_BUFFER_SIZE_MB} MB of documents in memory.
      *
      * @param indexDir the directory path where the Lucene index files will be hosted.
      */
     public Indexer(String indexDir) {
+        this(indexDir, DEFAULT_RAM_BUFFER_SIZE_MB);
+    }
+
+    /**
+     * Initializes an Indexer.
+     *
+     * @param indexDir the directory path where the Lucene index files will be hosted.
+     * @param ramBufferSizeMB size (in MB) of the documents buffered in memory, before they are flushed to a new segment.
+     */
+    public Indexer(String indexDir, double ramBufferSizeMB) {
+        this(indexDir, ramBufferSizeMB, null);
+    }
+
+    /**
+     * Initializes an Indexer, that stores the dense vectors of the documents.
+     *
+     * @param indexDir the directory path where the Lucene index files will be hosted.
+     * @param ramBufferSizeMB size (in MB) of the documents buffered in memory, before they are flushed to a new segment.
+     * @param embedder computes the dense vectors of the documents, or null if they aren't stored.
+     */
+    public Indexer(String indexDir, double ramBufferSizeMB, DocumentEmbedder embedder) {
+        this(indexDir, ramBufferSizeMB, embedder, DirectoryFactory.DEFAULT);
+    }
+
+    /**
+     * Initializes an Indexer, that stores the dense vectors of the documents and opens the Lucene index with the given
+     * directory factory (e.g. caching the small segments of frequent commits in memory).
+     *
+     * @param indexDir the directory path where the Lucene index files will be hosted.
+     * @param ramBufferSizeMB size (in MB) of the documents buffered in memory, before they are flushed to a new segment.
+     * @param embedder computes the dense vectors of the documents, or null if they aren't stored.
+     * @param directoryFactory opens the directory hosting the Lucene index files; it must persist them.
+     */
+    public Indexer(String indexDir, double ramBufferSizeMB, DocumentEmbedder embedder,
+                   DirectoryFactory directoryFactory) {
+        if (directoryFactory.isInMemory()) {
+            throw new IllegalArgumentException("An in-memory directory cannot persist the Lucene index.");
+        }
+
         this.INDEX_DIR = indexDir;
+        this.RAM_BUFFER_SIZE_MB = ramBufferSizeMB;
+        this.EMBEDDER = embedder;
+        this.DIRECTORY = directoryFactory;
     }
 
     /**
      * Creates a Lucene index.
-     * The index files are hosted in the file system, {@link EnglishAnalyzer} is used for text analysis
+     * The index files are hosted in the directory opened by the directory factory (by default, in the file system),
+     * {@link EnglishAnalyzer} is used for text analysis
      * and {@link BM25Similarity} is used for document-query similarity.
      *
      * @throws IOException if the directory cannot host the index files.
      */
     public void create() throws IOException {
+        // create a new index in the directory, removing any previously indexed documents
+        open(IndexWriterConfig.OpenMode.CREATE);
+    }
+
+    /**
+     * Opens the Lucene index for incremental updates, creating it if it doesn't exist.
+     * The previously indexed documents are kept, and may be updated or deleted by their ID.
+     *
+     * @throws IOException if the directory cannot host the index files, or the existing index doesn't index the IDs
+     * of its documents (so they could neither be replaced nor deleted).
+     */
+    public void open() throws IOException {
+        open(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        try {
+            checkIdIndexed();
+        } catch (IOException | RuntimeException e) {
+            rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks that the ID of the previously indexed documents is indexed as a term, as an update or a delete looks the
+     * documents up by it; an index built without it would silently get duplicates instead of replaced documents.
+     *
+     * @throws IOException if the index cannot be read, or has documents without an indexed ID.
+     */
+    private void checkIdIndexed() throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            if (reader.numDocs() == 0) {
+                return;
+            }
+
+            FieldInfo id = FieldInfos.getMergedFieldInfos(reader).fieldInfo("id");
+            if (id == null || id.getIndexOptions() == IndexOptions.NONE) {
+                throw new IOException("The Lucene index at " + INDEX_DIR + " doesn't index the ID of its documents,"
+                        + " so they cannot be updated or deleted; rebuild it with the IndexBuilder.");
+            }
+        }
+    }
+
+    /**
+     * Opens an index writer on the Lucene index.
+     *
+     * @param openMode whether to create a new index or append to an existing one.
+     *
+     * @throws IOException if the directory cannot host the index files.
+     */
+    private void open(IndexWriterConfig.OpenMode openMode) throws IOException {
         // create directory in file system for index
-        Directory dir = FSDirectory.open(Paths.get(INDEX_DIR));
+        dir = DIRECTORY.open(Paths.get(INDEX_DIR));
 
         // analyzer for the normalization of documents
         Analyzer analyzer = new EnglishAnalyzer();
@@ -53,11 +188,19 @@ public class Indexer implements IndexerInterface {
         // similarity function for document-query similarity and scoring
         Similarity similarity = new BM25Similarity();
 
+        // merge policy that merges larger batches of segments at once, and never into compound files
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setSegmentsPerTier(20);
+        mergePolicy.setMaxMergeAtOnce(20);
+        mergePolicy.setNoCFSRatio(0.0);
+
         // configure index writer with similarity function, analyzer and creation mode
-        // create a new index in the directory, removing any previously indexed documents
         IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
         writerConfig.setSimilarity(similarity);
-        writerConfig.setOpenMode(IndexWriterConfig.OpenMode.CREATE);
+        writerConfig.setOpenMode(openMode);
+        writerConfig.setRAMBufferSizeMB(RAM_BUFFER_SIZE_MB);
+        writerConfig.setMergePolicy(mergePolicy);
+        writerConfig.setUseCompoundFile(false);
 
         // create the index writer with the configurations
         writer = new IndexWriter(dir, writerConfig);
@@ -70,6 +213,27 @@ public class Indexer implements IndexerInterface {
      */
     public void close() throws IOException {
         writer.close();
+        dir.close();
+    }
+
+    /**
+     * Discards the changes made to this Lucene index since the last commit, and frees the persistent resources
+     * used by it.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void rollback() throws IOException {
+        writer.rollback();
+        dir.close();
+    }
+
+    /**
+     * Commits the changes made to this Lucene index, making them durable and visible to the searchers.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void commit() throws IOException {
+        writer.commit();
     }
 
     /**
@@ -84,25 +248,249 @@ public class Indexer implements IndexerInterface {
      */
     public void index(List<Map<String, String>> docs) throws IOException {
         for (Map<String, String> doc : docs) {
-            Document luceneDoc = new Document();
-
-            // create the fields of the doc and add them to the doc object
-            // the fields of each document are (ID, title, title_norm, author, abstract, abstract_norm)
-            luceneDoc.add(new StoredField("id", doc.get("id"))); // not indexed, just stored for retrieval
-            luceneDoc.add(new StoredField("title", doc.get("title"))); //  not indexed, just stored for retrieval
-            luceneDoc.add(new TextField("title_norm", doc.get("title"), Field.Store.NO)); // indexed, analyzed, not stored
-            luceneDoc.add(new StoredField("author", doc.get("author"))); // not indexed, just stored for retrieval
-            luceneDoc.add(new StoredField("abstract", doc.get("abstract"))); //  not indexed, just stored for retrieval
-            luceneDoc.add(new TextField("abstract_norm", doc.get("abstract"), Field.Store.NO)); // indexed, analyzed, not stored
-
-            writer.addDocument(luceneDoc);
+            writer.addDocument(toLuceneDocument(doc));
         }
     }
 
+    /**
+     * Updates given documents of this Lucene index.
+     * Any indexed document with the same ID as a given document is replaced by it; the other documents are added.
+     *
+     * @param docs documents to be updated, as a list of dictionaries.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void update(List<Map<String, String>> docs) throws IOException {
+        for (Map<String, String> doc : docs) {
+            writer.updateDocument(new Term("id", doc.get("id")), toLuceneDocument(doc));
+        }
+    }
+
+    /**
+     * Updates given documents of this Lucene index, cleaning their normalized title and abstract as the documents
+     * indexed in bulk are cleaned; a document without a normalized title (abstract) gets the cleaned title (abstract).
+     * Any indexed document with the same ID as a given document is replaced by it; the other documents are added.
+     *
+     * @param docs documents to be updated, as a list of dictionaries.
+     * @param cleaner cleaner of the normalized title and abstract fields, or null if they are indexed as they are.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void update(List<Map<String, String>> docs, TextCleanerInterface cleaner) throws IOException {
+        if (cleaner != null) {
+            for (Map<String, String> doc : docs) {
+                if (!doc.containsKey("title_norm") && doc.get("title") != null) {
+                    doc.put("title_norm", doc.get("title"));
+                }
+                if (!doc.containsKey("abstract_norm") && doc.get("abstract") != null) {
+                    doc.put("abstract_norm", doc.get("abstract"));
+                }
+            }
+            cleaner.clean(docs, NORM_FIELDS);
+        }
+        update(docs);
+    }
+
+    /**
+     * Deletes the documents with the given IDs from this Lucene index.
+     *
+     * @param ids IDs of the documents to be deleted.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void delete(List<String> ids) throws IOException {
+        Term[] terms = new Term[ids.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = new Term("id", ids.get(i));
+        }
+        writer.deleteDocuments(terms);
+    }
+
+    /**
+     * Indexes given documents into this Lucene index, using a pool of worker threads.
+     * The documents are read from the calling thread and handed to the workers in batches; the workers create the
+     * Lucene documents and add them to the index concurrently. At most two batches per worker are waiting to be
+     * indexed at any time, so the documents may be read lazily (e.g. streamed from a file).
+     *
+     * @param docs documents to be indexed, as dictionaries.
+     * @param threads number of worker threads.
+     *
+     * @return the number of indexed documents and the time it took to index them.
+     *
+     * @throws IOException if the Indexer is closed, or a document cannot be indexed.
+     */
+    public IndexingStats index(Iterable<Map<String, String>> docs, int threads) throws IOException {
+        return index(docs, threads, null);
+    }
+
+    /**
+     * Indexes given documents into this Lucene index, using a pool of worker threads.
+     * The documents are read from the calling thread and handed to the workers in batches; the workers clean the
+     * normalized fields of the documents, create the Lucene documents and add them to the index concurrently.
+     * At most two batches per worker are waiting to be indexed at any time, so the documents may be read lazily
+     * (e.g. streamed from a file).
+     *
+     * @param docs documents to be indexed, as dictionaries.
+     * @param threads number of worker threads.
+     * @param cleaner cleaner of the normalized title and abstract fields, or null if they are indexed as they are.
+     *
+     * @return the number of indexed documents and the time it took to index them.
+     *
+     * @throws IOException if the Indexer is closed, or a document cannot be indexed.
+     */
+    public IndexingStats index(Iterable<Map<String, String>> docs, int threads, TextCleanerInterface cleaner)
+            throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "indexer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore pending = new Semaphore(2 * threads); // bounds the batches waiting to be indexed
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Progress progress = new Progress();
+
+        long start = System.nanoTime();
+        try {
+            List<Map<String, String>> batch = new ArrayList<>(BATCH_SIZE);
+            for (Map<String, String> doc : docs) {
+                batch.add(doc);
+                if (batch.size() == BATCH_SIZE) {
+                    submit(workers, batch, cleaner, pending, failure, progress);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+                if (failure.get() != null) { // stop reading documents once a batch has failed
+                    break;
+                }
+            }
+            if (!batch.isEmpty() && failure.get() == null) {
+                submit(workers, batch, cleaner, pending, failure, progress);
+            }
+
+            // wait for the workers to index the remaining batches
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing documents.");
+        } finally {
+            workers.shutdownNow();
+        }
+
+        Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw new IOException("Could not index documents.", e);
+        }
+
+        return new IndexingStats(progress.documents.get(), System.nanoTime() - start, progress.cleaningNanos.get(),
+                progress.indexingNanos.get());
+    }
+
+    /**
+     * Hands a batch of documents to a worker thread, waiting while too many batches are waiting to be indexed.
+     *
+     * @param workers the worker threads.
+     * @param batch documents to be indexed.
+     * @param cleaner cleaner of the normalized fields, or null.
+     * @param pending permits for the batches waiting to be indexed.
+     * @param failure first exception thrown while indexing a batch.
+     * @param progress number of indexed documents, and time spent in each stage.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void submit(ExecutorService workers, List<Map<String, String>> batch, TextCleanerInterface cleaner,
+                        Semaphore pending, AtomicReference<Exception> failure, Progress progress)
+            throws InterruptedException {
+        pending.acquire();
+        workers.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                if (cleaner != null) {
+                    cleaner.clean(batch, NORM_FIELDS);
+                }
+                long cleaned = System.nanoTime();
+                for (Map<String, String> doc : batch) {
+                    writer.addDocument(toLuceneDocument(doc));
+                }
+                progress.cleaningNanos.addAndGet(cleaned - start);
+                progress.indexingNanos.addAndGet(System.nanoTime() - cleaned);
+                progress.documents.addAndGet(batch.size());
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    /**
+     * Creates a Lucene document.
+     * Each indexed document, consists of an ID, a title, an author and an abstract (information to be displayed
+     * to the user). Also, a normalized title field and a normalized abstract field have been included; their text
+     * is the (cleaned) title_norm and abstract_norm of the document, if it has them, otherwise its title and abstract.
+     * If the Indexer has an embedder, the dense vector of the normalized title and abstract is added as well.
+     *
+     * @param doc document, as a dictionary.
+     *
+     * @return the Lucene document.
+     *
+     * @throws IOException if the dense vector of the document cannot be computed.
+     */
+    private Document toLuceneDocument(Map<String, String> doc) throws IOException {
+        Document luceneDoc = new Document();
+
+        // create the fields of the doc and add them to the doc object
+        // the fields of each document are (ID, title, title_norm, author, abstract, abstract_norm)
+        luceneDoc.add(new StringField("id", doc.get("id"), Field.Store.YES)); // indexed as a single term, stored for retrieval
+        luceneDoc.add(new StoredField("title", doc.get("title"))); //  not indexed, just stored for retrieval
+        String titleNorm = doc.getOrDefault("title_norm", doc.get("title"));
+        String abstractNorm = doc.getOrDefault("abstract_norm", doc.get("abstract"));
+        luceneDoc.add(new TextField("title_norm", titleNorm, Field.Store.NO)); // indexed, analyzed, not stored
+        luceneDoc.add(new StoredField("author", doc.get("author"))); // not indexed, just stored for retrieval
+        luceneDoc.add(new StoredField("abstract", doc.get("abstract"))); //  not indexed, just stored for retrieval
+        luceneDoc.add(new TextField("abstract_norm", abstractNorm, Field.Store.NO)); // indexed, analyzed, not stored
+
+        if (EMBEDDER != null) {
+            float[] vector = EMBEDDER.embed(titleNorm + " " + abstractNorm);
+            if (vector != null) { // documents without any word in the vocabulary have no vector
+                luceneDoc.add(new BinaryDocValuesField(DocumentVectors.FIELD, DocumentVectors.encode(vector))); // not indexed, not stored
+            }
+        }
+
+        return luceneDoc;
+    }
+
     /**
      * @return the directory path where the Lucene index files are hosted.
      */
     public String getIndexDirectory() {
         return INDEX_DIR;
     }
+
+    /**
+     * @return size (in MB) of the documents buffered in memory, before they are flushed to a new segment.
+     */
+    public double getRamBufferSizeMB() {
+        return RAM_BUFFER_SIZE_MB;
+    }
+
+    /**
+     * @return the embedder of the dense vectors of the documents, or null if they aren't stored.
+     */
+    public DocumentEmbedder getEmbedder() {
+        return EMBEDDER;
+    }
+
+    /**
+     * Counts the documents indexed by the worker threads, and the time they spend in each stage of indexing.
+     */
+    private static final class Progress {
+
+        private final AtomicLong documents = new AtomicLong();
+        private final AtomicLong cleaningNanos = new AtomicLong();
+        private final AtomicLong indexingNanos = new AtomicLong();
+
+    }
 }
@@ -1,13 +1,18 @@
 package com.lamproslntz.searchengineextended.index;
 
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
+
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 /**
  * An Indexer indexes all files in a directory and leaves behind a searchable Lucene index.
- * In order to define the indexing behaviour, subclasses must define create(), close() and
- * index({@link List}<{@link Map}<{@link String}, {@link String}>>) methods.
+ * In order to define the indexing behaviour, subclasses must define create(), open(), close(), commit(),
+ * index({@link List}<{@link Map}<{@link String}, {@link String}>>),
+ * update({@link List}<{@link Map}<{@link String}, {@link String}>>),
+ * update({@link List}<{@link Map}<{@link String}, {@link String}>>, {@link TextCleanerInterface})
+ * and delete({@link List}<{@link String}>) methods.
  *
  * @author Lampros Lountzis
  */
@@ -21,6 +26,13 @@ public interface IndexerInterface {
      */
     void create() throws IOException;
 
+    /**
+     * Specifies the policy used to open an existing Lucene index for incremental updates.
+     *
+     * @throws IOException if the directory cannot host the index files.
+     */
+    void open() throws IOException;
+
     /**
      * Specifies the policy for freeing persistent resources used by this Indexer.
      *
@@ -28,6 +40,13 @@ public interface IndexerInterface {
      */
     void close() throws IOException;
 
+    /**
+     * Specifies the policy for making the changes to the Lucene index durable and visible to the searchers.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    void commit() throws IOException;
+
     /**
      * Specifies the operation of indexing documents and their field.
      *
@@ -37,4 +56,33 @@ public interface IndexerInterface {
      */
     void index(List<Map<String, String>> docs) throws IOException;
 
+    /**
+     * Specifies the operation of replacing indexed documents with the given documents, matched by their ID.
+     *
+     * @param docs documents to be updated, as a list of dictionaries.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    void update(List<Map<String, String>> docs) throws IOException;
+
+    /**
+     * Specifies the operation of replacing indexed documents with the given documents, matched by their ID, after
+     * cleaning their normalized fields.
+     *
+     * @param docs documents to be updated, as a list of dictionaries.
+     * @param cleaner cleaner of the normalized fields, or null if they are indexed as they are.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    void update(List<Map<String, String>> docs, TextCleanerInterface cleaner) throws IOException;
+
+    /**
+     * Specifies the operation of deleting indexed documents by their ID.
+     *
+     * @param ids IDs of the documents to be deleted.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    void delete(List<String> ids) throws IOException;
+
 }
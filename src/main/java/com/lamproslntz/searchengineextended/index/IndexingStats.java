@@ -0,0 +1,99 @@
+package com.lamproslntz.searchengineextended.index;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encapsulates the statistics of a bulk indexing run, i.e. the number of indexed documents and the time it took to
+ * index them, as well as the time the worker threads spent in each stage: cleaning the documents, and creating and
+ * adding the Lucene documents to the index.
+ *
+ * @author Lampros Lountzis
+ */
+public class IndexingStats {
+
+    private final long documents;
+    private final long elapsedNanos;
+    private final long cleaningNanos;
+    private final long indexingNanos;
+
+    public IndexingStats(long documents, long elapsedNanos) {
+        this(documents, elapsedNanos, 0, 0);
+    }
+
+    public IndexingStats(long documents, long elapsedNanos, long cleaningNanos, long indexingNanos) {
+        this.documents = documents;
+        this.elapsedNanos = elapsedNanos;
+        this.cleaningNanos = cleaningNanos;
+        this.indexingNanos = indexingNanos;
+    }
+
+    /**
+     * @return number of indexed documents.
+     */
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return time (in milliseconds) it took to index the documents.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return time (in milliseconds) spent cleaning the documents, summed over the worker threads.
+     */
+    public long getCleaningMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(cleaningNanos);
+    }
+
+    /**
+     * @return time (in milliseconds) spent creating and adding the Lucene documents to the index, summed over the
+     * worker threads.
+     */
+    public long getIndexingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(indexingNanos);
+    }
+
+    /**
+     * @return indexing throughput, in documents per second.
+     */
+    public double getDocumentsPerSecond() {
+        return elapsedNanos > 0 ? documents * 1e9 / elapsedNanos : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        IndexingStats that = (IndexingStats) o;
+
+        if (documents != that.documents) return false;
+        if (elapsedNanos != that.elapsedNanos) return false;
+        if (cleaningNanos != that.cleaningNanos) return false;
+        return indexingNanos == that.indexingNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(documents);
+        result = 31 * result + Long.hashCode(elapsedNanos);
+        result = 31 * result + Long.hashCode(cleaningNanos);
+        result = 31 * result + Long.hashCode(indexingNanos);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexingStats { " +
+                "documents=" + documents +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", cleaningMillis=" + getCleaningMillis() +
+                ", indexingMillis=" + getIndexingMillis() +
+                ", documentsPerSecond=" + String.format("%.1f", getDocumentsPerSecond()) +
+                " }";
+    }
+
+}
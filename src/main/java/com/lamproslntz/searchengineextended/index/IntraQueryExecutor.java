@@ -0,0 +1,360 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Weight;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Searches the segments of an index concurrently within a single query (intra-query concurrency), so that a query
+ * over a large index uses several cores. The segments are grouped into slices by their number of documents, as by
+ * Lucene: a segment of more than maxDocsPerSlice documents is a slice on its own, the smaller segments are grouped
+ * until a slice has more than maxDocsPerSlice documents or maxSegmentsPerSlice segments. Each slice is searched by a
+ * thread of a dedicated pool (the last one by the thread running the query), and the top documents of the slices are
+ * merged.
+ * <p>
+ * Searching a query concurrently only pays off while there are idle cores; under a high load, the cores are better
+ * used searching different queries (inter-query concurrency). The {@link Policy} decides which queries are searched
+ * concurrently: all of them, none, or (adaptively) only while at most maxConcurrentQueries queries are running.
+ * <p>
+ * The time each slice takes is measured, for both concurrent and sequential queries (a sequential query is a single
+ * slice of all the segments).
+ *
+ * @author Lampros Lountzis
+ */
+public class IntraQueryExecutor implements Closeable {
+
+    /**
+     * Decides which queries are searched concurrently.
+     */
+    public enum Policy {
+        /**
+         * No query is searched concurrently.
+         */
+        DISABLED,
+        /**
+         * Every query is searched concurrently.
+         */
+        ALWAYS,
+        /**
+         * A query is searched concurrently while at most maxConcurrentQueries queries (including it) are running.
+         */
+        ADAPTIVE;
+
+        /**
+         * @param name name of the policy, e.g. disabled or adaptive (case-insensitive).
+         *
+         * @return the policy.
+         *
+         * @throws IllegalArgumentException if there is no policy of that name.
+         */
+        public static Policy parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Default maximum number of documents of a slice of segments, as Lucene's.
+     */
+    public static final int DEFAULT_MAX_DOCS_PER_SLICE = 250_000;
+
+    /**
+     * Default maximum number of segments of a slice, as Lucene's.
+     */
+    public static final int DEFAULT_MAX_SEGMENTS_PER_SLICE = 5;
+
+    private final Policy policy;
+    private final int threads;
+    private final int maxDocsPerSlice;
+    private final int maxSegmentsPerSlice;
+    private final int maxConcurrentQueries;
+    private final ExecutorService pool;
+    private final Executor sliceExecutor;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder concurrentQueries = new LongAdder();
+    private final LongAdder sequentialQueries = new LongAdder();
+    private final LongAdder slices = new LongAdder();
+    private final LongAdder sliceNanos = new LongAdder();
+    private final LongAccumulator maxSliceNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Initializes an IntraQueryExecutor, that slices the segments by {@link #DEFAULT_MAX_DOCS_PER_SLICE} documents and
+     * {@link #DEFAULT_MAX_SEGMENTS_PER_SLICE} segments.
+     *
+     * @param policy decides which queries are searched concurrently.
+     * @param threads number of threads searching the slices.
+     * @param maxConcurrentQueries maximum number of running queries, for a query to be searched concurrently by the
+     *                             {@link Policy#ADAPTIVE} policy.
+     */
+    public IntraQueryExecutor(Policy policy, int threads, int maxConcurrentQueries) {
+        this(policy, threads, DEFAULT_MAX_DOCS_PER_SLICE, DEFAULT_MAX_SEGMENTS_PER_SLICE, maxConcurrentQueries);
+    }
+
+    /**
+     * Initializes an IntraQueryExecutor.
+     *
+     * @param policy decides which queries are searched concurrently.
+     * @param threads number of threads searching the slices.
+     * @param maxDocsPerSlice maximum number of documents of a slice of segments (unless a single segment has more).
+     * @param maxSegmentsPerSlice maximum number of segments of a slice.
+     * @param maxConcurrentQueries maximum number of running queries, for a query to be searched concurrently by the
+     *                             {@link Policy#ADAPTIVE} policy.
+     */
+    public IntraQueryExecutor(Policy policy, int threads, int maxDocsPerSlice, int maxSegmentsPerSlice,
+                              int maxConcurrentQueries) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of intra-query threads must be positive.");
+        }
+        if (maxDocsPerSlice < 1 || maxSegmentsPerSlice < 1) {
+            throw new IllegalArgumentException("The size of a slice must be positive.");
+        }
+        if (maxConcurrentQueries < 1) {
+            throw new IllegalArgumentException("The maximum number of concurrent queries must be positive.");
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.policy = policy;
+        this.threads = threads;
+        this.maxDocsPerSlice = maxDocsPerSlice;
+        this.maxSegmentsPerSlice = maxSegmentsPerSlice;
+        this.maxConcurrentQueries = maxConcurrentQueries;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "intra-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sliceExecutor = new SliceExecutor(this);
+    }
+
+    /**
+     * Creates a searcher of a reader, that searches the slices of its segments concurrently (unless the policy is
+     * {@link Policy#DISABLED}). It is meant to be shared by all the queries of the reader, through a {@link Searcher}
+     * that applies the policy to each query.
+     *
+     * @param reader the reader of the index.
+     *
+     * @return the searcher of the reader.
+     */
+    public IndexSearcher newSearcher(IndexReader reader) {
+        return new SlicedSearcher(reader, policy != Policy.DISABLED ? sliceExecutor : null, this);
+    }
+
+    /**
+     * Starts a query, deciding whether it is searched concurrently. Every call must be followed by {@link #exit()},
+     * once the query is done.
+     *
+     * @param searcher the searcher created by {@link #newSearcher(IndexReader)}.
+     *
+     * @return the searcher of the query: the given searcher, if the query is searched concurrently, otherwise a
+     * searcher of the same reader (and similarity) that searches the segments sequentially.
+     */
+    IndexSearcher enter(IndexSearcher searcher) {
+        int queries = running.incrementAndGet();
+        boolean concurrent = policy == Policy.ALWAYS || (policy == Policy.ADAPTIVE && queries <= maxConcurrentQueries);
+        if (concurrent && searcher.getExecutor() != null) {
+            concurrentQueries.increment();
+            return searcher;
+        }
+
+        sequentialQueries.increment();
+        IndexSearcher sequential = new SlicedSearcher(searcher.getIndexReader(), null, this);
+        sequential.setSimilarity(searcher.getSimilarity());
+        return sequential;
+    }
+
+    /**
+     * Ends a query started by {@link #enter(IndexSearcher)}.
+     */
+    void exit() {
+        running.decrementAndGet();
+    }
+
+    /**
+     * Groups the segments of an index into slices, by their number of documents.
+     *
+     * @param leaves the segments.
+     *
+     * @return the slices.
+     */
+    private IndexSearcher.LeafSlice[] slices(List<LeafReaderContext> leaves) {
+        List<LeafReaderContext> sorted = new ArrayList<>(leaves);
+        sorted.sort(Comparator.comparingInt((LeafReaderContext leaf) -> leaf.reader().maxDoc()).reversed());
+
+        List<IndexSearcher.LeafSlice> slices = new ArrayList<>();
+        List<LeafReaderContext> group = new ArrayList<>();
+        long docs = 0;
+        for (LeafReaderContext leaf : sorted) {
+            if (leaf.reader().maxDoc() > maxDocsPerSlice) { // a large segment is a slice on its own
+                slices.add(new IndexSearcher.LeafSlice(leaf));
+                continue;
+            }
+
+            group.add(leaf);
+            docs += leaf.reader().maxDoc();
+            if (docs > maxDocsPerSlice || group.size() >= maxSegmentsPerSlice) {
+                slices.add(new IndexSearcher.LeafSlice(group.toArray(new LeafReaderContext[0])));
+                group.clear();
+                docs = 0;
+            }
+        }
+        if (!group.isEmpty()) {
+            slices.add(new IndexSearcher.LeafSlice(group.toArray(new LeafReaderContext[0])));
+        }
+
+        return slices.toArray(new IndexSearcher.LeafSlice[0]);
+    }
+
+    /**
+     * @return decides which queries are searched concurrently.
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return number of threads searching the slices.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return maximum number of documents of a slice of segments.
+     */
+    public int getMaxDocsPerSlice() {
+        return maxDocsPerSlice;
+    }
+
+    /**
+     * @return maximum number of segments of a slice.
+     */
+    public int getMaxSegmentsPerSlice() {
+        return maxSegmentsPerSlice;
+    }
+
+    /**
+     * @return maximum number of running queries, for a query to be searched concurrently by the adaptive policy.
+     */
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    /**
+     * @return number of queries running.
+     */
+    public int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * @return number of queries searched concurrently.
+     */
+    public long getConcurrentCount() {
+        return concurrentQueries.sum();
+    }
+
+    /**
+     * @return number of queries searched sequentially.
+     */
+    public long getSequentialCount() {
+        return sequentialQueries.sum();
+    }
+
+    /**
+     * @return number of slices searched.
+     */
+    public long getSliceCount() {
+        return slices.sum();
+    }
+
+    /**
+     * @return average time (in milliseconds) a slice took.
+     */
+    public double getMeanSliceMillis() {
+        long count = slices.sum();
+        return count > 0 ? sliceNanos.sum() / 1e6 / count : 0;
+    }
+
+    /**
+     * @return maximum time (in milliseconds) a slice took.
+     */
+    public double getMaxSliceMillis() {
+        return maxSliceNanos.get() / 1e6;
+    }
+
+    /**
+     * Stops the threads searching the slices.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Runs the slices on the pool of threads. The searchers find the slicing configuration through it, as the slices
+     * are computed before the fields of a searcher are initialized.
+     */
+    private static final class SliceExecutor implements Executor {
+
+        private final IntraQueryExecutor owner;
+
+        private SliceExecutor(IntraQueryExecutor owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            owner.pool.execute(command);
+        }
+
+    }
+
+    /**
+     * Slices the segments by their number of documents, and measures the time each slice takes.
+     */
+    private static final class SlicedSearcher extends IndexSearcher {
+
+        private final IntraQueryExecutor owner;
+
+        private SlicedSearcher(IndexReader reader, Executor executor, IntraQueryExecutor owner) {
+            super(reader, executor);
+            this.owner = owner;
+        }
+
+        @Override
+        protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+            Executor executor = getExecutor();
+            return executor instanceof SliceExecutor ? ((SliceExecutor) executor).owner.slices(leaves)
+                    : super.slices(leaves);
+        }
+
+        @Override
+        protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+            long start = System.nanoTime();
+            try {
+                super.search(leaves, weight, collector);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                owner.slices.increment();
+                owner.sliceNanos.add(elapsed);
+                owner.maxSliceNanos.accumulate(elapsed);
+            }
+        }
+
+    }
+}
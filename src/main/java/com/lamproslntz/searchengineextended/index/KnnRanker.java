@@ -0,0 +1,220 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.ann.Neighbour;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Retrieves the top documents of a query by approximate nearest neighbour (KNN) search of their dense vectors in a
+ * {@link DocumentVectorIndex}, with the query vector computed by a {@link DocumentEmbedder}; the vector index must
+ * have been built from an index of the same embedder.
+ * <p>
+ * Pure KNN search ranks the documents by the cosine similarity of their vectors to the query vector. Hybrid search
+ * fuses the top {@link #getDepth()} documents of BM25 and of KNN search by Reciprocal Rank Fusion (RRF): the score of
+ * a document is the sum of {@code 1 / (rrfK + rank)} over the rankings it appears in, so neither the BM25 scores nor
+ * the cosine similarities have to be normalized. The documents found by KNN search are resolved by their ID to the
+ * documents of the searcher; documents deleted since the vector index was built are skipped.
+ *
+ * @author Lampros Lountzis
+ */
+public class KnnRanker implements RankerInterface {
+
+    /**
+     * Default number of documents retrieved by each of KNN and BM25 search.
+     */
+    public static final int DEFAULT_DEPTH = 100;
+
+    /**
+     * Default rank constant of Reciprocal Rank Fusion.
+     */
+    public static final int DEFAULT_RRF_K = 60;
+
+    private final DocumentEmbedder embedder;
+    private final DocumentVectorIndex vectors;
+    private final boolean hybrid;
+    private final int depth;
+    private final int rrfK;
+
+    /**
+     * Initializes a KnnRanker, that retrieves the top {@link #DEFAULT_DEPTH} documents of each search and fuses them
+     * with a {@link #DEFAULT_RRF_K} rank constant.
+     *
+     * @param embedder computes the query vectors; the same embedder the document vectors were computed with.
+     * @param vectors the vector index of the documents.
+     * @param hybrid if true, KNN search is fused with BM25 search, otherwise the documents are ranked by KNN search
+     *               only.
+     */
+    public KnnRanker(DocumentEmbedder embedder, DocumentVectorIndex vectors, boolean hybrid) {
+        this(embedder, vectors, hybrid, DEFAULT_DEPTH, DEFAULT_RRF_K);
+    }
+
+    /**
+     * Initializes a KnnRanker.
+     *
+     * @param embedder computes the query vectors; the same embedder the document vectors were computed with.
+     * @param vectors the vector index of the documents.
+     * @param hybrid if true, KNN search is fused with BM25 search, otherwise the documents are ranked by KNN search
+     *               only.
+     * @param depth number of documents retrieved by each search, at least k.
+     * @param rrfK rank constant of Reciprocal Rank Fusion; the larger, the more the lower ranks count.
+     */
+    public KnnRanker(DocumentEmbedder embedder, DocumentVectorIndex vectors, boolean hybrid, int depth, int rrfK) {
+        if (embedder.dimension() != vectors.dimension()) {
+            throw new IllegalArgumentException("The document vectors have " + vectors.dimension()
+                    + " dimensions, instead of " + embedder.dimension() + ".");
+        }
+        if (depth < 1) {
+            throw new IllegalArgumentException("The search depth must be positive.");
+        }
+        if (rrfK < 0) {
+            throw new IllegalArgumentException("The rank constant must not be negative.");
+        }
+        this.embedder = embedder;
+        this.vectors = vectors;
+        this.hybrid = hybrid;
+        this.depth = depth;
+        this.rrfK = rrfK;
+    }
+
+    /**
+     * Retrieves the top documents of a query by KNN search, fused with BM25 search if hybrid.
+     *
+     * @param searcher the searcher of the current version of the index.
+     * @param query the parsed query, for the BM25 search.
+     * @param text the (cleaned) query text, for the query vector.
+     * @param k number of top documents to be retrieved.
+     *
+     * @return the top k documents; if none of the query words has an embedding, the top k documents of BM25 search
+     * if hybrid, otherwise no documents.
+     *
+     * @throws IOException if the index cannot be searched.
+     */
+    @Override
+    public TopDocs search(IndexSearcher searcher, Query query, String text, int k) throws IOException {
+        int n = Math.max(k, depth);
+        float[] vector = embedder.embed(text);
+        ScoreDoc[] knn = vector != null ? knn(searcher, vector, n) : new ScoreDoc[0];
+        if (!hybrid) {
+            return new TopDocs(new TotalHits(knn.length, TotalHits.Relation.EQUAL_TO),
+                    Arrays.copyOf(knn, Math.min(k, knn.length)));
+        }
+
+        TopDocs bm25 = searcher.search(query, n);
+        if (knn.length == 0) {
+            return new TopDocs(bm25.totalHits, Arrays.copyOf(bm25.scoreDocs, Math.min(k, bm25.scoreDocs.length)));
+        }
+
+        Map<Integer, ScoreDoc> fused = new HashMap<>();
+        fuse(fused, bm25.scoreDocs);
+        fuse(fused, knn);
+        ScoreDoc[] scoreDocs = fused.values().toArray(new ScoreDoc[0]);
+        Arrays.sort(scoreDocs, (a, b) -> a.score != b.score ? Float.compare(b.score, a.score) : Integer.compare(a.doc, b.doc));
+
+        return new TopDocs(new TotalHits(scoreDocs.length, TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO),
+                Arrays.copyOf(scoreDocs, Math.min(k, scoreDocs.length)));
+    }
+
+    /**
+     * Searches the vector index, and resolves the IDs of the neighbours to the live documents of the searcher.
+     *
+     * @return the found documents, scored by their cosine similarity, the most similar first.
+     */
+    private ScoreDoc[] knn(IndexSearcher searcher, float[] vector, int n) throws IOException {
+        List<Neighbour> neighbours = vectors.search(vector, n);
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        TermsEnum[] termsEnums = new TermsEnum[leaves.size()];
+        PostingsEnum postings = null;
+
+        List<ScoreDoc> scoreDocs = new ArrayList<>(neighbours.size());
+        for (Neighbour neighbour : neighbours) {
+            BytesRef id = new BytesRef(vectors.id(neighbour.getIndex()));
+            int doc = -1;
+            for (int leaf = 0; leaf < leaves.size() && doc == -1; leaf++) {
+                LeafReaderContext context = leaves.get(leaf);
+                if (termsEnums[leaf] == null) {
+                    Terms terms = context.reader().terms("id");
+                    if (terms == null) {
+                        continue;
+                    }
+                    termsEnums[leaf] = terms.iterator();
+                }
+                if (!termsEnums[leaf].seekExact(id)) {
+                    continue;
+                }
+
+                // an ID has a single live document; older versions of it are deleted
+                Bits liveDocs = context.reader().getLiveDocs();
+                postings = termsEnums[leaf].postings(postings, PostingsEnum.NONE);
+                for (int d = postings.nextDoc(); d != DocIdSetIterator.NO_MORE_DOCS; d = postings.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(d)) {
+                        doc = context.docBase + d;
+                        break;
+                    }
+                }
+            }
+
+            if (doc != -1) {
+                scoreDocs.add(new ScoreDoc(doc, neighbour.getSimilarity()));
+            }
+        }
+
+        return scoreDocs.toArray(new ScoreDoc[0]);
+    }
+
+    /**
+     * Adds the reciprocal ranks of a ranking to the fused scores.
+     */
+    private void fuse(Map<Integer, ScoreDoc> fused, ScoreDoc[] ranking) {
+        for (int rank = 0; rank < ranking.length; rank++) {
+            float score = 1f / (rrfK + rank + 1);
+            fused.computeIfAbsent(ranking[rank].doc, doc -> new ScoreDoc(doc, 0)).score += score;
+        }
+    }
+
+    /**
+     * @return true if KNN search is fused with BM25 search.
+     */
+    public boolean isHybrid() {
+        return hybrid;
+    }
+
+    /**
+     * @return number of documents retrieved by each search.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return rank constant of Reciprocal Rank Fusion.
+     */
+    public int getRrfK() {
+        return rrfK;
+    }
+
+    /**
+     * @return the vector index of the documents.
+     */
+    public DocumentVectorIndex getVectors() {
+        return vectors;
+    }
+
+}
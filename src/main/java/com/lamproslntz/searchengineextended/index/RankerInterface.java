@@ -0,0 +1,32 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+
+/**
+ * A Ranker retrieves and ranks the top documents of a query, in place of a plain BM25 search of the parsed query.
+ * It is used by a {@link Searcher}, e.g. to re-rank the BM25 results by their dense vectors, or to retrieve documents
+ * by the similarity of their dense vectors to the query vector.
+ *
+ * @author Lampros Lountzis
+ */
+public interface RankerInterface {
+
+    /**
+     * Specifies the retrieval and ranking of the top documents of a query.
+     *
+     * @param searcher the searcher of the current version of the index.
+     * @param query the parsed query, for a BM25 search.
+     * @param text the (cleaned) query text.
+     * @param k number of top documents to be retrieved.
+     *
+     * @return the top k documents, of the given searcher.
+     *
+     * @throws IOException if the index cannot be searched.
+     */
+    TopDocs search(IndexSearcher searcher, Query query, String text, int k) throws IOException;
+
+}
@@ -0,0 +1,183 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.time.Duration;
+
+/**
+ * Represents a cache of search results, to be shared by all the threads searching an index with a {@link Searcher}.
+ * Entries are keyed by the normalized query text, the number of retrieved documents and the version of the index
+ * reader the query was run against, so that results of an older version of the index are never returned. Only the
+ * IDs and the scores of the retrieved documents are cached; their stored fields are loaded when the results are
+ * returned.
+ * <p>
+ * The cache is bounded by an (approximate) number of bytes, and entries expire some time after they are cached.
+ *
+ * @author Lampros Lountzis
+ */
+public class ResultCache {
+
+    /**
+     * Default maximum size (in bytes) of the cached results.
+     */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 16 * 1024 * 1024;
+
+    /**
+     * Default time after which cached results expire.
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private final Cache<Key, Hits> cache;
+
+    /**
+     * Initializes a ResultCache, of at most {@link #DEFAULT_MAXIMUM_WEIGHT} bytes, whose results expire after
+     * {@link #DEFAULT_TIME_TO_LIVE}.
+     */
+    public ResultCache() {
+        this(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Initializes a ResultCache.
+     *
+     * @param maximumWeight maximum size (in bytes) of the cached results.
+     * @param timeToLive time after which cached results expire.
+     */
+    public ResultCache(long maximumWeight, Duration timeToLive) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, Hits hits) -> key.weight() + hits.weight())
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @param query the normalized query text.
+     * @param k number of top documents retrieved.
+     * @param version version of the index reader the query was run against.
+     *
+     * @return the cached results, or null if they aren't cached.
+     */
+    Hits get(String query, int k, long version) {
+        return cache.getIfPresent(new Key(query, k, version));
+    }
+
+    /**
+     * Caches the results of a query.
+     *
+     * @param query the normalized query text.
+     * @param k number of top documents retrieved.
+     * @param version version of the index reader the query was run against.
+     * @param hits the results.
+     */
+    void put(String query, int k, long version, Hits hits) {
+        cache.put(new Key(query, k, version), hits);
+    }
+
+    /**
+     * Removes all the cached results, e.g. because the index has changed.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return approximate number of cached results.
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit/miss/eviction counters of the cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Encapsulates the IDs and the scores of the documents retrieved for a query, ordered by decreasing score.
+     */
+    static final class Hits {
+
+        private final int[] docIds;
+        private final float[] scores;
+        private final long totalHits;
+
+        Hits(TopDocs topDocs) {
+            ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+            this.totalHits = topDocs.totalHits.value;
+            this.docIds = new int[scoreDocs.length];
+            this.scores = new float[scoreDocs.length];
+            for (int i = 0; i < scoreDocs.length; i++) {
+                docIds[i] = scoreDocs[i].doc;
+                scores[i] = scoreDocs[i].score;
+            }
+        }
+
+        int size() {
+            return docIds.length;
+        }
+
+        int docId(int i) {
+            return docIds[i];
+        }
+
+        float score(int i) {
+            return scores[i];
+        }
+
+        long totalHits() {
+            return totalHits;
+        }
+
+        private int weight() {
+            return 56 + 8 * docIds.length;
+        }
+
+    }
+
+    private static final class Key {
+
+        private final String query;
+        private final int k;
+        private final long version;
+
+        private Key(String query, int k, long version) {
+            this.query = query;
+            this.k = k;
+            this.version = version;
+        }
+
+        private int weight() {
+            return 64 + 2 * query.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (k != key.k) return false;
+            if (version != key.version) return false;
+            return query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = query.hashCode();
+            result = 31 * result + k;
+            result = 31 * result + Long.hashCode(version);
+            return result;
+        }
+
+    }
+
+}
@@ -1,10 +1,15 @@
 package com.lamproslntz.searchengineextended.index;
 
 import com.lamproslntz.searchengineextended.analyzer.Word2VecSynonymAnalyzer;
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
 import com.lamproslntz.searchengineextended.dto.DocumentDTO;
 import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
@@ -13,54 +18,231 @@ import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-
-import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a Searcher module, that searches a Lucene index given a user query. The searcher queries the normalized
  * title and abstract fields with the help of {@link MultiFieldQueryParser} and {@link BM25Similarity} is used for
- * document-query similarity. During query time, the query terms are expanded with their synonyms, based on word
- * embeddings, using {@link Word2VecSynonymAnalyzer}.
+ * document-query similarity. During query time, the query terms are expanded with their synonyms by the query
+ * analyzer; by default, based on word embeddings, using {@link Word2VecSynonymAnalyzer}.
+ * <p>
+ * The Lucene index is opened once and shared by all the threads using this Searcher, with the help of a
+ * {@link SearcherManager}. Each search acquires a reference to the current {@link IndexSearcher} and releases it
+ * when done, while a background thread periodically refreshes the searcher so that changes committed to the index
+ * become visible without blocking the running queries.
+ * <p>
+ * The query analyzer and the similarity function are built once and shared by all the queries, so that Lucene can
+ * reuse the analysis components of each thread. The query parser, which is not thread-safe, is built once per
+ * thread.
+ * <p>
+ * Optionally, the results of the queries are cached in a {@link ResultCache}, keyed by the cleaned query text.
+ * The cache is cleared whenever the searcher is refreshed to a new version of the index.
+ * <p>
+ * Optionally, the top documents are retrieved and ranked by a {@link RankerInterface} instead of BM25 alone: in two
+ * phases, where the top BM25 candidates are re-ranked by the similarity of their dense vectors to the query vector
+ * ({@link VectorReranker}), or by approximate nearest neighbour search of the dense vectors, optionally fused with
+ * BM25 ({@link KnnRanker}). The query analyzer should then not expand the queries (e.g.
+ * {@link org.apache.lucene.analysis.en.EnglishAnalyzer}), as the dense vectors replace the query expansion.
+ * <p>
+ * Optionally, the segments of the index are searched concurrently within each query by an
+ * {@link IntraQueryExecutor}, so that a query over a large index uses several cores.
+ * <p>
+ * Optionally, each searcher is warmed up by a {@link SearcherWarmer} before it serves any query: when the index is
+ * opened, the Searcher is only ready once its first searcher has been warmed up; when the index is refreshed, the
+ * queries keep using the previous searcher until the new one has been warmed up.
  *
  * @author Lampros Lountzis
  */
 public class Searcher implements SearcherInterface {
 
+    /**
+     * Default interval (in milliseconds) between two consecutive index refresh attempts.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+    private static final String[] FIELDS = {"title_norm", "abstract_norm"}; // the searchable fields
+    private static final int TOTAL_HITS_THRESHOLD = 1000; // hits counted accurately, as by IndexSearcher
+
     private final String INDEX_DIR;
-    private IndexReader reader;
+    private final DirectoryFactory DIRECTORY;
+    private final long REFRESH_INTERVAL;
+    private Directory dir;
+    private volatile SearcherManager manager;
+    private volatile boolean ready;
+    private ScheduledExecutorService refresher;
+
+    private final Analyzer ANALYZER;
+    private final Similarity SIMILARITY;
+    private final ThreadLocal<QueryParser> PARSER;
+    private final TextCleanerInterface CLEANER;
+    private final ResultCache CACHE;
+    private final RankerInterface RANKER;
+    private final IntraQueryExecutor EXECUTOR;
+    private final SearcherWarmer WARMER;
+
+    private final Logger logger = LoggerFactory.getLogger(Searcher.class);
 
-    private final Word2Vec MODEL;
-    private final double MIN_ACCURACY;
+    /**
+     * Initializes a Searcher, that refreshes the Lucene index every {@link #DEFAULT_REFRESH_INTERVAL} milliseconds.
+     * The synonyms are looked up by scanning all the word embeddings.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param model word embeddings.
+     * @param minAccuracy word similarity minimum accuracy for the word embeddings.
+     */
+    public Searcher(String indexDir, EmbeddingStoreInterface model, double minAccuracy) {
+        this(indexDir, model, new ExactNearestNeighbourIndex(model), minAccuracy, DEFAULT_REFRESH_INTERVAL);
+    }
 
     /**
      * Initializes a Searcher.
      *
      * @param indexDir the directory path where the Lucene index files are hosted.
-     * @param model Word2Vec model.
-     * @param minAccuracy word similarity minimum accuracy for Word2Vec model.
+     * @param model word embeddings.
+     * @param neighbours nearest neighbour index of the word embeddings, used to look up the synonyms.
+     * @param minAccuracy word similarity minimum accuracy for the word embeddings.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     */
+    public Searcher(String indexDir, EmbeddingStoreInterface model, NearestNeighbourIndexInterface neighbours,
+                    double minAccuracy, long refreshInterval) {
+        this(indexDir, new Word2VecSynonymAnalyzer(model, neighbours, minAccuracy), refreshInterval);
+    }
+
+    /**
+     * Initializes a Searcher, that uses the given analyzer for query analysis.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     */
+    public Searcher(String indexDir, Analyzer analyzer, long refreshInterval) {
+        this(indexDir, analyzer, refreshInterval, null);
+    }
+
+    /**
+     * Initializes a Searcher, that uses the given analyzer for query analysis and caches the query results.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param cache cache of the query results, or null to disable caching.
+     */
+    public Searcher(String indexDir, Analyzer analyzer, long refreshInterval, ResultCache cache) {
+        this(indexDir, analyzer, refreshInterval, cache, null);
+    }
+
+    /**
+     * Initializes a Searcher, that uses the given analyzer for query analysis, caches the query results and
+     * retrieves them with a ranker.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param analyzer analyzer used for the normalization of the queries, for the BM25 search.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param cache cache of the query results, or null to disable caching.
+     * @param ranker retriever and ranker of the top documents of each query, or null to rank them by BM25.
+     */
+    public Searcher(String indexDir, Analyzer analyzer, long refreshInterval, ResultCache cache,
+                    RankerInterface ranker) {
+        this(indexDir, analyzer, refreshInterval, cache, ranker, null);
+    }
+
+    /**
+     * Initializes a Searcher, that uses the given analyzer for query analysis, caches the query results, retrieves
+     * them with a ranker and searches the segments of the index concurrently within each query.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param analyzer analyzer used for the normalization of the queries, for the BM25 search.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param cache cache of the query results, or null to disable caching.
+     * @param ranker retriever and ranker of the top documents of each query, or null to rank them by BM25.
+     * @param executor searches the segments of the index concurrently within a query, or null to search them
+     *                 sequentially.
+     */
+    public Searcher(String indexDir, Analyzer analyzer, long refreshInterval, ResultCache cache,
+                    RankerInterface ranker, IntraQueryExecutor executor) {
+        this(indexDir, analyzer, refreshInterval, cache, ranker, executor, null);
+    }
+
+    /**
+     * Initializes a Searcher, that uses the given analyzer for query analysis, caches the query results, retrieves
+     * them with a ranker, searches the segments of the index concurrently within each query and warms up each
+     * searcher before it serves any query.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param analyzer analyzer used for the normalization of the queries, for the BM25 search.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param cache cache of the query results, or null to disable caching.
+     * @param ranker retriever and ranker of the top documents of each query, or null to rank them by BM25.
+     * @param executor searches the segments of the index concurrently within a query, or null to search them
+     *                 sequentially.
+     * @param warmer warms up each searcher before it serves any query, or null to disable the warm-up.
      */
-    public Searcher(String indexDir, Word2Vec model, double minAccuracy) {
+    public Searcher(String indexDir, Analyzer analyzer, long refreshInterval, ResultCache cache,
+                    RankerInterface ranker, IntraQueryExecutor executor, SearcherWarmer warmer) {
+        this(indexDir, analyzer, refreshInterval, cache, ranker, executor, warmer, DirectoryFactory.DEFAULT);
+    }
+
+    /**
+     * Initializes a Searcher, as {@link #Searcher(String, Analyzer, long, ResultCache, RankerInterface,
+     * IntraQueryExecutor, SearcherWarmer)}, that opens the Lucene index with the given directory factory.
+     *
+     * @param indexDir the directory path where the Lucene index files are hosted.
+     * @param analyzer analyzer used for the normalization of the queries, for the BM25 search.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param cache cache of the query results, or null to disable caching.
+     * @param ranker retriever and ranker of the top documents of each query, or null to rank them by BM25.
+     * @param executor searches the segments of the index concurrently within a query, or null to search them
+     *                 sequentially.
+     * @param warmer warms up each searcher before it serves any query, or null to disable the warm-up.
+     * @param directoryFactory opens the directory hosting the Lucene index files, e.g. memory-mapped or in memory.
+     */
+    public Searcher(String indexDir, Analyzer analyzer, long refreshInterval, ResultCache cache,
+                    RankerInterface ranker, IntraQueryExecutor executor, SearcherWarmer warmer,
+                    DirectoryFactory directoryFactory) {
         this.INDEX_DIR = indexDir;
-        this.MODEL = model;
-        this.MIN_ACCURACY = minAccuracy;
+        this.DIRECTORY = directoryFactory;
+        this.ANALYZER = analyzer;
+        this.REFRESH_INTERVAL = refreshInterval;
+        this.SIMILARITY = new BM25Similarity();
+        // create a query parser on the searchable fields, for each thread searching the index
+        this.PARSER = ThreadLocal.withInitial(() -> new MultiFieldQueryParser(FIELDS, ANALYZER));
+        this.CLEANER = new TextCleaner(true, true);
+        this.CACHE = cache;
+        this.RANKER = ranker;
+        this.EXECUTOR = executor;
+        this.WARMER = warmer;
     }
 
     /**
      * Searches a Lucene index.
      * The document look-up is done using the title and the abstract normalized fields with the help of
-     * {@link MultiFieldQueryParser}, {@link Word2VecSynonymAnalyzer} is used for query analysis
-     * (query terms are expanded with their synonyms based on word embeddings), {@link BM25Similarity} is
-     * used for document-query similarity.
+     * {@link MultiFieldQueryParser}, the query analyzer is used for query analysis (query terms are expanded
+     * with their synonyms), {@link BM25Similarity} is used for document-query similarity. The query is cleaned
+     * (lowercased, without symbols and redundant spaces) before being parsed. If the Searcher has a ranker, the top
+     * documents are retrieved and ranked by it.
      *
      * @param userQuery the user's query.
      * @param k number of top documents to be retrieved.
@@ -71,31 +253,82 @@ public class Searcher implements SearcherInterface {
      * @throws ParseException if the user's query cannot be parsed.
      */
     public List<DocumentDTO> search(QueryDTO userQuery, int k) throws IOException, ParseException {
-        String[] fields = {"title_norm", "abstract_norm"}; // the searchable fields
-
-        if (reader != null) {
-            // analyzer used for the normalization of the query
-            Analyzer analyzer = new Word2VecSynonymAnalyzer(MODEL, MIN_ACCURACY);
-
-            // create a searcher for searching the index, and configure it
-            IndexSearcher searcher = new IndexSearcher(reader);
-            searcher.setSimilarity(new BM25Similarity());
-
-            // create a query parser on the searchable field
-            QueryParser parser = new MultiFieldQueryParser(fields, analyzer);
-
-            // parse the query (query is a dictionary with (ID, text))
-            Query query = parser.parse(userQuery.getQuery());
-            // results are of the form: [(doc, score), (doc, score), ...]
-            List<DocumentDTO> results = new ArrayList<>();
-            // hits returned by searching the index
-            TopDocs hits = searcher.search(query, k);
-            for (ScoreDoc scoreDoc : hits.scoreDocs) {
-                Document doc = searcher.doc(scoreDoc.doc);
-                results.add(new DocumentDTO(doc, scoreDoc.score));
-            }
+        SearchResultDTO result = search(userQuery, 0, k, 0);
+        return result != null ? result.getResults() : null;
+    }
+
+    /**
+     * Searches index for a page of relevant documents with respect to the user query, as {@link #search(QueryDTO, int)}.
+     * The top offset + k documents are retrieved, and the last k of them are returned.
+     * <p>
+     * If a timeout is given, the documents are collected until it expires, and the documents scored so far are
+     * returned as partial results (they aren't cached). The timeout applies to BM25 search; if the Searcher has a
+     * ranker, the documents are always retrieved in full.
+     *
+     * @param userQuery the user's query.
+     * @param offset number of top documents to be skipped.
+     * @param k number of documents to be retrieved, after the skipped ones.
+     * @param timeoutMillis time (in milliseconds) the documents are collected for, or a non-positive value for no
+     *                      timeout.
+     *
+     * @return the page of retrieved documents, or null if the Searcher isn't open.
+     *
+     * @throws IOException if the Lucene index cannot be searched.
+     * @throws ParseException if the user's query cannot be parsed.
+     */
+    public SearchResultDTO search(QueryDTO userQuery, int offset, int k, long timeoutMillis)
+            throws IOException, ParseException {
+        SearcherManager manager = this.manager;
+        if (manager != null) {
+            long start = System.nanoTime();
+            String text = CLEANER.clean(userQuery.getQuery());
+            int n = offset + k;
+
+            // acquire the current searcher, it must be released once the search is done
+            IndexSearcher searcher = manager.acquire();
+            // the searcher of this query, that searches the segments concurrently or not
+            IndexSearcher querySearcher = EXECUTOR != null ? EXECUTOR.enter(searcher) : searcher;
+            try {
+                // the cached results are only valid for the version of the index they were retrieved from
+                long version = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+                ResultCache.Hits hits = CACHE != null ? CACHE.get(text, n, version) : null;
+                boolean partial = false;
+                if (hits == null) {
+                    // parse the query and search the index
+                    Query query = PARSER.get().parse(text);
+                    TopDocs topDocs;
+                    if (RANKER != null) {
+                        topDocs = RANKER.search(querySearcher, query, text, n);
+                    } else if (timeoutMillis > 0) {
+                        TimeLimitedCollectorManager collectors = new TimeLimitedCollectorManager(n,
+                                TOTAL_HITS_THRESHOLD, TimeLimitedCollectorManager.deadline(timeoutMillis));
+                        topDocs = querySearcher.search(query, collectors);
+                        partial = collectors.isPartial();
+                    } else {
+                        topDocs = querySearcher.search(query, n);
+                    }
 
-            return results;
+                    hits = new ResultCache.Hits(topDocs);
+                    if (CACHE != null && !partial) {
+                        CACHE.put(text, n, version, hits);
+                    }
+                }
+
+                // results are of the form: [(doc, score), (doc, score), ...]
+                List<DocumentDTO> results = new ArrayList<>(Math.max(0, hits.size() - offset));
+                for (int i = offset; i < hits.size(); i++) {
+                    Document doc = searcher.doc(hits.docId(i));
+                    results.add(new DocumentDTO(doc, hits.score(i)));
+                }
+
+                return new SearchResultDTO(userQuery.getQuery(), offset, k, hits.totalHits(), results, partial,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } finally {
+                if (EXECUTOR != null) {
+                    EXECUTOR.exit();
+                }
+                manager.release(searcher);
+            }
         }
 
         return null;
@@ -103,21 +336,122 @@ public class Searcher implements SearcherInterface {
 
     /**
      * Opens the Lucene index to be used by this Searcher.
+     * The index is opened once, by the directory factory, and kept open until {@link #close()} is called. If a warmer
+     * has been given, the searcher is warmed up before this method returns, so the Searcher is only ready
+     * afterwards. If a refresh interval has been given, a background thread starts checking the index for
+     * changes.
+     *
+     * @throws IOException if the Lucene index cannot be opened or warmed up.
+     */
+    public synchronized void open() throws IOException {
+        if (manager != null) { // the index is already open
+            return;
+        }
+
+        dir = DIRECTORY.open(Paths.get(INDEX_DIR));
+        try {
+            manager = new SearcherManager(dir, new SearcherFactory() {
+                @Override
+                public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                    // create a searcher for each generation of the index, and configure it
+                    IndexSearcher searcher = EXECUTOR != null ? EXECUTOR.newSearcher(reader)
+                            : new IndexSearcher(reader);
+                    searcher.setSimilarity(SIMILARITY);
+                    // warm it up before any query uses it
+                    if (WARMER != null) {
+                        WARMER.warm(searcher, text -> PARSER.get().parse(CLEANER.clean(text)));
+                    }
+                    return searcher;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            dir.close();
+            dir = null;
+            throw e;
+        }
+
+        if (CACHE != null) {
+            // results of the previous version of the index won't be looked up again
+            manager.addListener(new ReferenceManager.RefreshListener() {
+                @Override
+                public void beforeRefresh() {
+                }
+
+                @Override
+                public void afterRefresh(boolean didRefresh) {
+                    if (didRefresh) {
+                        CACHE.invalidateAll();
+                    }
+                }
+            });
+        }
+
+        if (REFRESH_INTERVAL > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "searcher-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+
+        ready = true;
+    }
+
+    /**
+     * @return true if the Lucene index is open, and its searcher has been warmed up.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Refreshes the Lucene index, if it has changed since it was last opened or refreshed.
+     * The running queries are not blocked; they keep using the searcher they have acquired, while new queries use
+     * the refreshed searcher as soon as the refresh completes.
      *
-     * @throws IOException if the Lucene index cannot be opened.
+     * @throws IOException if the Lucene index cannot be refreshed.
      */
-    public void open() throws IOException {
-        Directory dir = FSDirectory.open(Paths.get(INDEX_DIR));
-        reader = DirectoryReader.open(dir);
+    public void maybeRefresh() throws IOException {
+        SearcherManager manager = this.manager;
+        if (manager != null) {
+            manager.maybeRefresh();
+        }
     }
 
     /**
      * Frees persistent resources used by this Searcher.
+     * The index files are released once the queries that are still running have completed.
      *
      * @throws IOException if the Searcher is closed.
      */
-    public void close() throws IOException {
-        reader.close();
+    public synchronized void close() throws IOException {
+        ready = false;
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+
+        if (manager != null) {
+            manager.close();
+            manager = null;
+        }
+
+        if (dir != null) {
+            dir.close();
+            dir = null;
+        }
+    }
+
+    /**
+     * Background refresh task. Failures are logged, so that the next scheduled refresh is still run.
+     */
+    private void refresh() {
+        try {
+            maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            logger.error("An exception was thrown: Could not refresh Lucene index...", e);
+        }
     }
 
     /**
@@ -128,16 +462,52 @@ public class Searcher implements SearcherInterface {
     }
 
     /**
-     * @return Word2Vec model.
+     * @return opens the directory hosting the Lucene index files.
+     */
+    public DirectoryFactory getDirectoryFactory() {
+        return DIRECTORY;
+    }
+
+    /**
+     * @return interval (in milliseconds) between two consecutive index refresh attempts.
+     */
+    public long getRefreshInterval() {
+        return REFRESH_INTERVAL;
+    }
+
+    /**
+     * @return analyzer used for the normalization (and expansion) of the queries.
+     */
+    public Analyzer getAnalyzer() {
+        return ANALYZER;
+    }
+
+    /**
+     * @return cache of the query results, or null if caching is disabled.
+     */
+    public ResultCache getCache() {
+        return CACHE;
+    }
+
+    /**
+     * @return retriever and ranker of the top documents of each query, or null if they are ranked by BM25.
+     */
+    public RankerInterface getRanker() {
+        return RANKER;
+    }
+
+    /**
+     * @return searches the segments of the index concurrently within a query, or null if they are searched
+     * sequentially.
      */
-    public Word2Vec getModel() {
-        return MODEL;
+    public IntraQueryExecutor getExecutor() {
+        return EXECUTOR;
     }
 
     /**
-     * @return word similarity minimum accuracy for Word2Vec model.
+     * @return warms up each searcher before it serves any query, or null if the warm-up is disabled.
      */
-    public double getMinAccuracy() {
-        return MIN_ACCURACY;
+    public SearcherWarmer getWarmer() {
+        return WARMER;
     }
 }
@@ -2,6 +2,7 @@ package com.lamproslntz.searchengineextended.index;
 
 import com.lamproslntz.searchengineextended.dto.QueryDTO;
 import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
 import org.apache.lucene.queryparser.classic.ParseException;
 
 import java.io.IOException;
@@ -9,8 +10,8 @@ import java.util.List;
 
 /**
  * A Searcher is used to search for documents in the Lucene index, with respect to a query.
- * In order to define the searching behaviour, subclasses must define open(), close()
- * and search({@link List}<{@link DocumentDTO}>) methods.
+ * In order to define the searching behaviour, subclasses must define open(), isReady(), close(),
+ * search({@link QueryDTO}, int) and search({@link QueryDTO}, int, int, long) methods.
  *
  * @author Lampros Lountzis
  */
@@ -31,6 +32,23 @@ public interface SearcherInterface {
      */
     List<DocumentDTO> search(QueryDTO userQuery, int k) throws IOException, ParseException;
 
+    /**
+     * Specifies the policy used to search a Lucene index for a page of documents, within a timeout.
+     *
+     * @param userQuery the user's query.
+     * @param offset number of top documents to be skipped.
+     * @param k number of documents to be retrieved, after the skipped ones.
+     * @param timeoutMillis time (in milliseconds) the documents are collected for, or a non-positive value for no
+     *                      timeout.
+     *
+     * @return the page of retrieved documents, or null if the Searcher isn't open.
+     *
+     * @throws IOException if the Lucene index cannot be searched.
+     * @throws ParseException if the user's query cannot be parsed.
+     */
+    SearchResultDTO search(QueryDTO userQuery, int offset, int k, long timeoutMillis)
+            throws IOException, ParseException;
+
     /**
      * Specifies the policy for opening the Lucene index to be used by this Searcher.
      *
@@ -38,6 +56,14 @@ public interface SearcherInterface {
      */
     void open() throws IOException;
 
+    /**
+     * Specifies whether this Searcher is ready to serve searches, e.g. once the Lucene index has been opened (and
+     * warmed up).
+     *
+     * @return true if the Searcher is ready.
+     */
+    boolean isReady();
+
     /**
      * Specifies the policy for freeing persistent resources used by this Searcher.
      *
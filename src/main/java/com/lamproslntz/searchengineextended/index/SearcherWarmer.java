@@ -0,0 +1,225 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.dataset.CISIQueryReader;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warms up the searchers of a Lucene index before they serve any query, so that the first queries after the index
+ * is opened (or refreshed to a new version) aren't slowed down by cold postings, norms and stored fields. The
+ * representative queries (e.g. the CISI queries, or queries recorded from the logs) are replayed by several threads
+ * at once, and the stored fields of their top documents are loaded, as a user search would.
+ * <p>
+ * The index files can also be preloaded into memory when they're opened, by the {@link DirectoryFactory} of the
+ * index.
+ *
+ * @author Lampros Lountzis
+ */
+public class SearcherWarmer {
+
+    /**
+     * Default number of top documents retrieved (and loaded) for each warm-up query.
+     */
+    public static final int DEFAULT_TOP_K = 20;
+
+    private final List<String> queries;
+    private final int threads;
+    private final int k;
+
+    private final LongAdder warmUps = new LongAdder();
+    private final LongAdder warmUpNanos = new LongAdder();
+    private volatile long lastWarmUpNanos;
+
+    /**
+     * Initializes a SearcherWarmer, that retrieves the top {@link #DEFAULT_TOP_K} documents of each query.
+     *
+     * @param queries representative queries, replayed on each new searcher.
+     * @param threads number of threads replaying the queries.
+     */
+    public SearcherWarmer(List<String> queries, int threads) {
+        this(queries, threads, DEFAULT_TOP_K);
+    }
+
+    /**
+     * Initializes a SearcherWarmer.
+     *
+     * @param queries representative queries, replayed on each new searcher.
+     * @param threads number of threads replaying the queries.
+     * @param k number of top documents retrieved (and loaded) for each query.
+     */
+    public SearcherWarmer(List<String> queries, int threads, int k) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of warm-up threads must be positive.");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("The number of top documents must be positive.");
+        }
+
+        this.queries = List.copyOf(queries);
+        this.threads = threads;
+        this.k = k;
+    }
+
+    /**
+     * Reads the warm-up queries from a file: either the CISI queries (CISI.QRY), or a log of queries, one per line.
+     *
+     * @param path the queries file path.
+     *
+     * @return the queries.
+     *
+     * @throws IOException if the queries cannot be read.
+     */
+    public static List<String> readQueries(Path path) throws IOException {
+        List<String> queries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            reader.mark(2);
+            boolean cisi = reader.read() == '.' && reader.read() == 'I';
+            reader.reset();
+
+            if (cisi) {
+                for (Map<String, String> query : new CISIQueryReader(reader)) {
+                    queries.add(query.get("text").strip());
+                }
+            } else {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isBlank()) {
+                        queries.add(line.strip());
+                    }
+                }
+            }
+        }
+
+        return queries;
+    }
+
+    /**
+     * Replays the queries on a searcher, on several threads at once, and loads the stored fields of their top
+     * documents. The queries that cannot be parsed are skipped.
+     *
+     * @param searcher the searcher to be warmed up.
+     * @param parser parses the text of a query.
+     *
+     * @throws IOException if the index cannot be searched.
+     */
+    void warm(IndexSearcher searcher, Parser parser) throws IOException {
+        long start = System.nanoTime();
+        if (!queries.isEmpty()) {
+            AtomicInteger next = new AtomicInteger();
+            Callable<Void> replay = () -> {
+                int i;
+                while ((i = next.getAndIncrement()) < queries.size()) {
+                    Query query;
+                    try {
+                        query = parser.parse(queries.get(i));
+                    } catch (ParseException e) {
+                        continue;
+                    }
+
+                    TopDocs topDocs = searcher.search(query, k);
+                    for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                        searcher.doc(scoreDoc.doc);
+                    }
+                }
+                return null;
+            };
+
+            int poolSize = Math.min(threads, queries.size());
+            AtomicInteger threadCount = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+                Thread thread = new Thread(runnable, "searcher-warm-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Callable<Void>> replays = new ArrayList<>(poolSize);
+                for (int i = 0; i < poolSize; i++) {
+                    replays.add(replay);
+                }
+                for (Future<Void> future : pool.invokeAll(replays)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("The warm-up was interrupted.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Could not warm up the searcher.", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        warmUps.increment();
+        warmUpNanos.add(elapsed);
+        lastWarmUpNanos = elapsed;
+    }
+
+    /**
+     * @return representative queries, replayed on each new searcher.
+     */
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    /**
+     * @return number of threads replaying the queries.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return number of searchers warmed up.
+     */
+    public long getWarmUpCount() {
+        return warmUps.sum();
+    }
+
+    /**
+     * @return average time (in milliseconds) a warm-up took.
+     */
+    public double getMeanWarmUpMillis() {
+        long count = warmUps.sum();
+        return count > 0 ? warmUpNanos.sum() / 1e6 / count : 0;
+    }
+
+    /**
+     * @return time (in milliseconds) the last warm-up took.
+     */
+    public long getLastWarmUpMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastWarmUpNanos);
+    }
+
+    /**
+     * Parses the text of a warm-up query, as the queries of the users are parsed.
+     */
+    @FunctionalInterface
+    interface Parser {
+
+        Query parse(String text) throws ParseException;
+
+    }
+}
@@ -0,0 +1,208 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents the statistics of the terms of a query (document frequency and total term frequency) and of their
+ * fields (number of documents, and sums of the term frequencies), in one shard of an index or summed over all the
+ * shards. A shard searched with the statistics summed over all the shards ({@link #newSearcher(IndexReader,
+ * Similarity)}) scores its documents as a single index of all the documents would, so that the top documents of the
+ * shards can be merged by score.
+ * <p>
+ * The statistics can be written to and read from a binary stream, to be exchanged with remote shards.
+ *
+ * @author Lampros Lountzis
+ */
+public final class ShardStatistics {
+
+    private final Map<Term, long[]> terms = new HashMap<>(); // term -> {docFreq, totalTermFreq}
+    private final Map<String, long[]> fields = new HashMap<>(); // field -> {maxDoc, docCount, sumTotalTermFreq, sumDocFreq}
+
+    /**
+     * Initializes empty statistics, to which the statistics of the shards are added.
+     */
+    public ShardStatistics() {
+    }
+
+    /**
+     * Computes the statistics of the terms of a query in a shard.
+     *
+     * @param reader the reader of the shard.
+     * @param query the parsed query.
+     *
+     * @return the statistics of the query terms and their fields in the shard.
+     *
+     * @throws IOException if the shard cannot be read.
+     */
+    public static ShardStatistics of(IndexReader reader, Query query) throws IOException {
+        Set<Term> terms = new HashSet<>();
+        query.visit(QueryVisitor.termCollector(terms));
+        return of(reader, terms);
+    }
+
+    /**
+     * Computes the statistics of given terms in a shard.
+     *
+     * @param reader the reader of the shard.
+     * @param terms the query terms.
+     *
+     * @return the statistics of the terms and their fields in the shard.
+     *
+     * @throws IOException if the shard cannot be read.
+     */
+    public static ShardStatistics of(IndexReader reader, Set<Term> terms) throws IOException {
+        ShardStatistics statistics = new ShardStatistics();
+        for (Term term : terms) {
+            TermStates states = TermStates.build(reader.getContext(), term, true);
+            statistics.terms.put(term, new long[]{states.docFreq(), states.totalTermFreq()});
+
+            if (!statistics.fields.containsKey(term.field())) {
+                statistics.fields.put(term.field(), new long[]{reader.maxDoc(), reader.getDocCount(term.field()),
+                        reader.getSumTotalTermFreq(term.field()), reader.getSumDocFreq(term.field())});
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Adds the statistics of a shard to these statistics.
+     *
+     * @param shard the statistics of a shard.
+     */
+    public void add(ShardStatistics shard) {
+        shard.terms.forEach((term, stats) -> terms.merge(term, stats, ShardStatistics::sum));
+        shard.fields.forEach((field, stats) -> fields.merge(field, stats, ShardStatistics::sum));
+    }
+
+    /**
+     * @param term a term.
+     *
+     * @return the statistics of the term, or null if it isn't known or doesn't occur in any document.
+     */
+    public TermStatistics termStatistics(Term term) {
+        long[] stats = terms.get(term);
+        return stats != null && stats[0] > 0 ? new TermStatistics(term.bytes(), stats[0], stats[1]) : null;
+    }
+
+    /**
+     * @param field a field.
+     *
+     * @return the statistics of the field, or null if it isn't known or no document has it.
+     */
+    public CollectionStatistics collectionStatistics(String field) {
+        long[] stats = fields.get(field);
+        return stats != null && stats[1] > 0 ? new CollectionStatistics(field, stats[0], stats[1], stats[2], stats[3])
+                : null;
+    }
+
+    /**
+     * Creates a searcher of a shard, that scores the documents with these statistics instead of the statistics of
+     * the shard. Terms and fields that aren't known (e.g. the terms of rewritten queries) keep the statistics of the
+     * shard. The searcher is cheap to create, and is meant to be used for a single query.
+     *
+     * @param reader the reader of the shard.
+     * @param similarity the similarity function of the documents and the query.
+     *
+     * @return the searcher of the shard.
+     */
+    public IndexSearcher newSearcher(IndexReader reader, Similarity similarity) {
+        IndexSearcher searcher = new IndexSearcher(reader) {
+            @Override
+            public TermStatistics termStatistics(Term term, int docFreq, long totalTermFreq) throws IOException {
+                TermStatistics stats = ShardStatistics.this.termStatistics(term);
+                return stats != null ? stats : super.termStatistics(term, docFreq, totalTermFreq);
+            }
+
+            @Override
+            public CollectionStatistics collectionStatistics(String field) throws IOException {
+                CollectionStatistics stats = ShardStatistics.this.collectionStatistics(field);
+                return stats != null ? stats : super.collectionStatistics(field);
+            }
+        };
+        searcher.setSimilarity(similarity);
+        return searcher;
+    }
+
+    /**
+     * Writes these statistics to a binary stream.
+     *
+     * @param out the stream.
+     *
+     * @throws IOException if the statistics cannot be written.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(terms.size());
+        for (Map.Entry<Term, long[]> entry : terms.entrySet()) {
+            out.writeUTF(entry.getKey().field());
+            BytesRef bytes = entry.getKey().bytes();
+            out.writeInt(bytes.length);
+            out.write(bytes.bytes, bytes.offset, bytes.length);
+            for (long stat : entry.getValue()) {
+                out.writeLong(stat);
+            }
+        }
+
+        out.writeInt(fields.size());
+        for (Map.Entry<String, long[]> entry : fields.entrySet()) {
+            out.writeUTF(entry.getKey());
+            for (long stat : entry.getValue()) {
+                out.writeLong(stat);
+            }
+        }
+    }
+
+    /**
+     * Reads statistics written by {@link #writeTo(DataOutput)} from a binary stream.
+     *
+     * @param in the stream.
+     *
+     * @return the statistics.
+     *
+     * @throws IOException if the statistics cannot be read.
+     */
+    public static ShardStatistics readFrom(DataInput in) throws IOException {
+        ShardStatistics statistics = new ShardStatistics();
+
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            String field = in.readUTF();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            statistics.terms.put(new Term(field, new BytesRef(bytes)), new long[]{in.readLong(), in.readLong()});
+        }
+
+        int fieldCount = in.readInt();
+        for (int i = 0; i < fieldCount; i++) {
+            String field = in.readUTF();
+            statistics.fields.put(field, new long[]{in.readLong(), in.readLong(), in.readLong(), in.readLong()});
+        }
+
+        return statistics;
+    }
+
+    private static long[] sum(long[] a, long[] b) {
+        long[] sum = new long[a.length];
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,556 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
+import com.lamproslntz.searchengineextended.dataset.CISIDocumentReader;
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Represents a sharded Indexer module, that partitions the documents across a number of Lucene indexes (shards).
+ * Each shard is an ordinary index, hosted in the shard-0, shard-1, ... subdirectory of the index directory and
+ * written by its own {@link Indexer}; a document is routed to a shard by the hash of its ID, so that it is always
+ * updated or deleted in the shard it was indexed in.
+ * <p>
+ * Large collections are indexed in bulk by all the shards in parallel: the documents are read from the calling
+ * thread and routed to the shards, each of which indexes them with its own pool of worker threads. The shards are
+ * searched together by a {@link ShardedSearcher}.
+ *
+ * @author Lampros Lountzis
+ */
+public class ShardedIndexer implements IndexerInterface {
+
+    /**
+     * Prefix of the names of the shard subdirectories, followed by the number of the shard.
+     */
+    public static final String SHARD_PREFIX = "shard-";
+
+    private static final int QUEUE_CAPACITY = 1024; // documents routed to a shard, waiting to be indexed
+    private static final Map<String, String> END = new HashMap<>(); // marks the end of the documents of a shard
+
+    private final String INDEX_DIR;
+    private final Indexer[] SHARDS;
+
+    /**
+     * Initializes a ShardedIndexer, whose shards buffer {@link Indexer#DEFAULT_RAM_BUFFER_SIZE_MB} MB of documents
+     * in memory in total.
+     *
+     * @param indexDir the directory path where the shard directories will be hosted.
+     * @param shards number of shards.
+     */
+    public ShardedIndexer(String indexDir, int shards) {
+        this(indexDir, shards, Indexer.DEFAULT_RAM_BUFFER_SIZE_MB, null);
+    }
+
+    /**
+     * Initializes a ShardedIndexer.
+     *
+     * @param indexDir the directory path where the shard directories will be hosted.
+     * @param shards number of shards.
+     * @param ramBufferSizeMB size (in MB) of the documents buffered in memory by all the shards, before they are
+     *                        flushed to new segments; each shard buffers an equal part of it.
+     * @param embedder computes the dense vectors of the documents, or null if they aren't stored.
+     */
+    public ShardedIndexer(String indexDir, int shards, double ramBufferSizeMB, DocumentEmbedder embedder) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("The number of shards must be positive.");
+        }
+
+        this.INDEX_DIR = indexDir;
+        this.SHARDS = new Indexer[shards];
+        for (int i = 0; i < shards; i++) {
+            SHARDS[i] = new Indexer(shardDirectory(Paths.get(indexDir), i).toString(), ramBufferSizeMB / shards,
+                    embedder);
+        }
+    }
+
+    /**
+     * Creates the Lucene indexes of the shards, removing any previously indexed documents. The directories of any
+     * shards beyond the number of shards of this Indexer (left by a previous build) are deleted.
+     *
+     * @throws IOException if the directories cannot host the index files.
+     */
+    public void create() throws IOException {
+        List<Path> existing = shardDirectories(Paths.get(INDEX_DIR));
+        for (int i = SHARDS.length; i < existing.size(); i++) {
+            deleteDirectory(existing.get(i));
+        }
+
+        for (int i = 0; i < SHARDS.length; i++) {
+            try {
+                SHARDS[i].create();
+            } catch (IOException | RuntimeException e) {
+                rollback(i);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Opens the Lucene indexes of the shards for incremental updates, creating them if they don't exist.
+     *
+     * @throws IOException if the directories cannot host the index files, or the index has been built with a
+     * different number of shards (the documents would be routed to the wrong shards).
+     */
+    public void open() throws IOException {
+        List<Path> existing = shardDirectories(Paths.get(INDEX_DIR));
+        if (!existing.isEmpty() && existing.size() != SHARDS.length) {
+            throw new IOException("The index " + INDEX_DIR + " has " + existing.size() + " shards, not "
+                    + SHARDS.length + ".");
+        }
+
+        for (int i = 0; i < SHARDS.length; i++) {
+            try {
+                SHARDS[i].open();
+            } catch (IOException | RuntimeException e) {
+                rollback(i);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Frees persistent resources used by the shards. All the shards are closed, even if some of them fail.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Indexer shard : SHARDS) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Discards the changes made to the shards since the last commit, and frees the persistent resources used by them.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void rollback() throws IOException {
+        rollback(SHARDS.length);
+    }
+
+    /**
+     * Commits the changes made to the shards, making them durable and visible to the searchers. Each shard is
+     * committed on its own, so if a commit fails, the shards committed before it keep the changes.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void commit() throws IOException {
+        for (Indexer shard : SHARDS) {
+            shard.commit();
+        }
+    }
+
+    /**
+     * Indexes given documents into the shards they are routed to.
+     *
+     * @param docs documents to be indexed, as a list of dictionaries.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void index(List<Map<String, String>> docs) throws IOException {
+        List<List<Map<String, String>>> partitions = partition(docs);
+        for (int i = 0; i < SHARDS.length; i++) {
+            SHARDS[i].index(partitions.get(i));
+        }
+    }
+
+    /**
+     * Updates given documents of the shards they are routed to.
+     * Any indexed document with the same ID as a given document is replaced by it; the other documents are added.
+     *
+     * @param docs documents to be updated, as a list of dictionaries.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void update(List<Map<String, String>> docs) throws IOException {
+        List<List<Map<String, String>>> partitions = partition(docs);
+        for (int i = 0; i < SHARDS.length; i++) {
+            SHARDS[i].update(partitions.get(i));
+        }
+    }
+
+    /**
+     * Updates given documents of the shards they are routed to, cleaning their normalized title and abstract with
+     * {@link Indexer#update(List, TextCleanerInterface)}.
+     * Any indexed document with the same ID as a given document is replaced by it; the other documents are added.
+     *
+     * @param docs documents to be updated, as a list of dictionaries.
+     * @param cleaner cleaner of the normalized title and abstract fields, or null if they are indexed as they are.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void update(List<Map<String, String>> docs, TextCleanerInterface cleaner) throws IOException {
+        List<List<Map<String, String>>> partitions = partition(docs);
+        for (int i = 0; i < SHARDS.length; i++) {
+            SHARDS[i].update(partitions.get(i), cleaner);
+        }
+    }
+
+    /**
+     * Deletes the documents with the given IDs from the shards they are routed to.
+     *
+     * @param ids IDs of the documents to be deleted.
+     *
+     * @throws IOException if the Indexer is closed.
+     */
+    public void delete(List<String> ids) throws IOException {
+        List<List<String>> partitions = new ArrayList<>(SHARDS.length);
+        for (int i = 0; i < SHARDS.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (String id : ids) {
+            partitions.get(shardOf(id, SHARDS.length)).add(id);
+        }
+
+        for (int i = 0; i < SHARDS.length; i++) {
+            SHARDS[i].delete(partitions.get(i));
+        }
+    }
+
+    /**
+     * Indexes given documents into the shards in parallel.
+     * The documents are read from the calling thread and routed to the shards; each shard indexes its documents with
+     * {@link Indexer#index(Iterable, int, TextCleanerInterface)}, using an equal part of the worker threads (at least
+     * one). At most {@value #QUEUE_CAPACITY} documents per shard are waiting to be indexed at any time, so the
+     * documents may be read lazily (e.g. streamed from a file).
+     *
+     * @param docs documents to be indexed, as dictionaries.
+     * @param threads number of worker threads, over all the shards.
+     * @param cleaner cleaner of the normalized title and abstract fields, or null if they are indexed as they are.
+     *
+     * @return the number of indexed documents and the time it took to index them; the times spent in each stage are
+     * summed over the shards.
+     *
+     * @throws IOException if the Indexer is closed, or a document cannot be indexed.
+     */
+    public IndexingStats index(Iterable<Map<String, String>> docs, int threads, TextCleanerInterface cleaner)
+            throws IOException {
+        int threadsPerShard = Math.max(1, threads / SHARDS.length);
+        List<BlockingQueue<Map<String, String>>> queues = new ArrayList<>(SHARDS.length);
+        IndexingStats[] shardStats = new IndexingStats[SHARDS.length];
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread[] feeders = new Thread[SHARDS.length];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SHARDS.length; i++) {
+            BlockingQueue<Map<String, String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+
+            int shard = i;
+            feeders[i] = new Thread(() -> {
+                try {
+                    shardStats[shard] = SHARDS[shard].index(() -> new QueueIterator(queue), threadsPerShard, cleaner);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "shard-indexer-" + i);
+            feeders[i].setDaemon(true);
+            feeders[i].start();
+        }
+
+        boolean done = false;
+        try {
+            route:
+            for (Map<String, String> doc : docs) {
+                BlockingQueue<Map<String, String>> queue = queues.get(shardOf(doc.get("id"), SHARDS.length));
+                while (!queue.offer(doc, 100, TimeUnit.MILLISECONDS)) {
+                    if (failure.get() != null) { // stop reading documents once a shard has failed
+                        break route;
+                    }
+                }
+            }
+            for (int i = 0; i < SHARDS.length; i++) {
+                // a shard that has failed has stopped reading its documents
+                while (feeders[i].isAlive() && !queues.get(i).offer(END, 100, TimeUnit.MILLISECONDS)) {
+                }
+            }
+
+            // wait for the shards to index the remaining documents
+            for (Thread feeder : feeders) {
+                feeder.join();
+            }
+            done = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing documents.");
+        } finally {
+            if (!done) {
+                // the documents couldn't be read or routed (or the indexing was interrupted): no shard thread may be
+                // left waiting for the end of its documents
+                stop(feeders);
+            }
+        }
+
+        Exception e = failure.get();
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        } else if (e != null) {
+            throw new IOException("Could not index documents.", e);
+        }
+
+        long documents = 0;
+        long cleaningNanos = 0;
+        long indexingNanos = 0;
+        for (IndexingStats stats : shardStats) {
+            documents += stats.getDocuments();
+            cleaningNanos += TimeUnit.MILLISECONDS.toNanos(stats.getCleaningMillis());
+            indexingNanos += TimeUnit.MILLISECONDS.toNanos(stats.getIndexingMillis());
+        }
+        return new IndexingStats(documents, System.nanoTime() - start, cleaningNanos, indexingNanos);
+    }
+
+    /**
+     * Stops the threads indexing the shards, after a failure: each thread stops reading the documents of its shard once
+     * interrupted. Waits for all of them to stop, even if interrupted meanwhile.
+     *
+     * @param feeders the threads indexing the shards.
+     */
+    private static void stop(Thread[] feeders) {
+        for (Thread feeder : feeders) {
+            feeder.interrupt();
+        }
+
+        boolean interrupted = false;
+        for (Thread feeder : feeders) {
+            while (feeder.isAlive()) {
+                try {
+                    feeder.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param docs documents, as dictionaries.
+     *
+     * @return the documents routed to each shard.
+     */
+    private List<List<Map<String, String>>> partition(List<Map<String, String>> docs) {
+        List<List<Map<String, String>>> partitions = new ArrayList<>(SHARDS.length);
+        for (int i = 0; i < SHARDS.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Map<String, String> doc : docs) {
+            partitions.get(shardOf(doc.get("id"), SHARDS.length)).add(doc);
+        }
+        return partitions;
+    }
+
+    /**
+     * Rolls back the first shards, after a failure.
+     *
+     * @param shards number of shards to be rolled back.
+     *
+     * @throws IOException if a shard cannot be rolled back.
+     */
+    private void rollback(int shards) throws IOException {
+        IOException failure = null;
+        for (int i = 0; i < shards; i++) {
+            try {
+                SHARDS[i].rollback();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Routes a document to a shard. The route only depends on the ID of the document and the number of shards, so
+     * a document is always updated and deleted in the shard it was indexed in.
+     *
+     * @param id ID of the document.
+     * @param shards number of shards.
+     *
+     * @return number of the shard of the document, in [0, shards).
+     */
+    public static int shardOf(String id, int shards) {
+        return Math.floorMod(id.hashCode(), shards);
+    }
+
+    /**
+     * @param indexDir the directory path where the shard directories are hosted.
+     * @param shard number of the shard.
+     *
+     * @return the directory path of the shard.
+     */
+    public static Path shardDirectory(Path indexDir, int shard) {
+        return indexDir.resolve(SHARD_PREFIX + shard);
+    }
+
+    /**
+     * Lists the shard directories of a sharded index.
+     *
+     * @param indexDir the directory path where the shard directories are hosted.
+     *
+     * @return the directory paths of the shards, ordered by the number of the shard, or an empty list if the index
+     * isn't sharded.
+     *
+     * @throws IOException if the directory cannot be listed, or the shards aren't numbered 0, 1, ..., n - 1.
+     */
+    public static List<Path> shardDirectories(Path indexDir) throws IOException {
+        if (!Files.isDirectory(indexDir)) {
+            return List.of();
+        }
+
+        TreeMap<Integer, Path> shards = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(indexDir, SHARD_PREFIX + "*")) {
+            for (Path entry : entries) {
+                String number = entry.getFileName().toString().substring(SHARD_PREFIX.length());
+                if (Files.isDirectory(entry) && number.matches("\\d+")) {
+                    shards.put(Integer.parseInt(number), entry);
+                }
+            }
+        }
+
+        if (!shards.isEmpty() && shards.lastKey() != shards.size() - 1) {
+            throw new IOException("The shards of the index " + indexDir + " aren't numbered 0 to "
+                    + (shards.size() - 1) + ".");
+        }
+        return new ArrayList<>(shards.values());
+    }
+
+    /**
+     * @param indexDir the directory path of an index.
+     *
+     * @return true if the index is sharded, i.e. it has a shard-0 directory.
+     */
+    public static boolean isSharded(Path indexDir) {
+        return Files.isDirectory(shardDirectory(indexDir, 0));
+    }
+
+    /**
+     * Deletes a directory and its files.
+     *
+     * @param dir the directory path.
+     *
+     * @throws IOException if the directory cannot be deleted.
+     */
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Iterator<Path> it = paths.sorted(Comparator.reverseOrder()).iterator(); it.hasNext(); ) {
+                Files.delete(it.next());
+            }
+        }
+    }
+
+    /**
+     * @return the directory path where the shard directories are hosted.
+     */
+    public String getIndexDirectory() {
+        return INDEX_DIR;
+    }
+
+    /**
+     * @return number of shards.
+     */
+    public int getShards() {
+        return SHARDS.length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("[ERROR] ShardedIndexer - usage: ShardedIndexer CISI.ALL indexDir shards [threads]");
+            System.exit(1);
+        }
+
+        int shards = Integer.parseInt(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        ShardedIndexer indexer = new ShardedIndexer(args[1], shards);
+        indexer.create();
+        try (CISIDocumentReader docs = CISIDocumentReader.open(Paths.get(args[0]))) {
+            IndexingStats stats = indexer.index(docs, threads, new TextCleaner(true, true));
+            System.out.println("Indexed " + stats.getDocuments() + " documents into " + shards + " shards in "
+                    + stats.getElapsedMillis() + " ms (" + String.format("%.1f", stats.getDocumentsPerSecond())
+                    + " docs/sec).");
+            System.out.println("Worker time: " + stats.getCleaningMillis() + " ms cleaning, "
+                    + stats.getIndexingMillis() + " ms indexing.");
+            indexer.commit();
+        } finally {
+            indexer.close();
+        }
+    }
+
+    /**
+     * Iterates over the documents routed to a shard, waiting for them until the end of the documents is reached.
+     */
+    private static final class QueueIterator implements Iterator<Map<String, String>> {
+
+        private final BlockingQueue<Map<String, String>> queue;
+        private Map<String, String> next;
+
+        private QueueIterator(BlockingQueue<Map<String, String>> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    next = END;
+                }
+            }
+            return next != END;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, String> doc = next;
+            next = null;
+            return doc;
+        }
+
+    }
+}
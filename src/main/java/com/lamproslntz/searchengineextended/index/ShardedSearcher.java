@@ -0,0 +1,506 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.cleaner.TextCleaner;
+import com.lamproslntz.searchengineextended.cleaner.TextCleanerInterface;
+import com.lamproslntz.searchengineextended.dto.DocumentDTO;
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryVisitor;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents a sharded Searcher module, that searches the shards of an index built by a {@link ShardedIndexer}
+ * concurrently, and merges their top documents. As {@link Searcher}, it queries the normalized title and abstract
+ * fields with the help of {@link MultiFieldQueryParser}, and {@link BM25Similarity} is used for document-query
+ * similarity.
+ * <p>
+ * A query is searched in two rounds. First, the statistics of the query terms (document frequency and total term
+ * frequency) and of the searched fields are summed over the shards; then, each shard scores its documents with these
+ * global statistics instead of its own, so that the scores of all the shards are consistent with each other (and
+ * equal to the scores of the same documents in a single index; see {@link ShardStatistics}), and the top documents
+ * of the shards are merged by score with {@link TopDocs#merge(int, int, TopDocs[], boolean)}.
+ * <p>
+ * Each shard is opened once with its own {@link SearcherManager}, by the {@link DirectoryFactory} of the index, and
+ * refreshed periodically by a background thread.
+ * Optionally, each new searcher of a shard is warmed up by a {@link SearcherWarmer} before it serves any query, as
+ * by {@link Searcher}. The results aren't cached, and the top documents are ranked by BM25 alone.
+ *
+ * @author Lampros Lountzis
+ */
+public class ShardedSearcher implements SearcherInterface {
+
+    private static final String[] FIELDS = {"title_norm", "abstract_norm"}; // the searchable fields
+    private static final int TOTAL_HITS_THRESHOLD = 1000; // hits counted accurately, as by IndexSearcher
+
+    private final String INDEX_DIR;
+    private final long REFRESH_INTERVAL;
+    private Directory[] dirs;
+    private volatile SearcherManager[] managers;
+    private ExecutorService shardExecutor;
+    private ScheduledExecutorService refresher;
+
+    private final Analyzer ANALYZER;
+    private final Similarity SIMILARITY;
+    private final ThreadLocal<QueryParser> PARSER;
+    private final TextCleanerInterface CLEANER;
+    private final SearcherWarmer WARMER;
+    private final DirectoryFactory DIRECTORY;
+
+    private final Logger logger = LoggerFactory.getLogger(ShardedSearcher.class);
+
+    /**
+     * Initializes a ShardedSearcher, that uses the given analyzer for query analysis.
+     *
+     * @param indexDir the directory path where the shard directories are hosted.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     */
+    public ShardedSearcher(String indexDir, Analyzer analyzer, long refreshInterval) {
+        this(indexDir, analyzer, refreshInterval, null);
+    }
+
+    /**
+     * Initializes a ShardedSearcher, that uses the given analyzer for query analysis and warms up each searcher of the
+     * shards.
+     *
+     * @param indexDir the directory path where the shard directories are hosted.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param warmer warms up each searcher of the shards before it serves any query, or null to disable the warm-up.
+     */
+    public ShardedSearcher(String indexDir, Analyzer analyzer, long refreshInterval, SearcherWarmer warmer) {
+        this(indexDir, analyzer, refreshInterval, warmer, DirectoryFactory.DEFAULT);
+    }
+
+    /**
+     * Initializes a ShardedSearcher, that uses the given analyzer for query analysis, warms up each searcher of the
+     * shards and opens the directory of each shard with the given directory factory.
+     *
+     * @param indexDir the directory path where the shard directories are hosted.
+     * @param analyzer analyzer used for the normalization (and expansion) of the queries.
+     * @param refreshInterval interval (in milliseconds) between two consecutive index refresh attempts,
+     *                        or a non-positive value to disable the background refresh.
+     * @param warmer warms up each searcher of the shards before it serves any query, or null to disable the warm-up.
+     * @param directoryFactory opens the directory hosting the files of each shard.
+     */
+    public ShardedSearcher(String indexDir, Analyzer analyzer, long refreshInterval, SearcherWarmer warmer,
+                           DirectoryFactory directoryFactory) {
+        this.INDEX_DIR = indexDir;
+        this.ANALYZER = analyzer;
+        this.REFRESH_INTERVAL = refreshInterval;
+        this.SIMILARITY = new BM25Similarity();
+        // create a query parser on the searchable fields, for each thread searching the index
+        this.PARSER = ThreadLocal.withInitial(() -> new MultiFieldQueryParser(FIELDS, ANALYZER));
+        this.CLEANER = new TextCleaner(true, true);
+        this.WARMER = warmer;
+        this.DIRECTORY = directoryFactory;
+    }
+
+    /**
+     * Searches the shards of the index, as {@link Searcher#search(QueryDTO, int)}.
+     *
+     * @param userQuery the user's query.
+     * @param k number of top documents to be retrieved.
+     *
+     * @return list of top k retrieved documents, with respect to the user's query.
+     *
+     * @throws IOException if the Lucene index cannot be searched.
+     * @throws ParseException if the user's query cannot be parsed.
+     */
+    public List<DocumentDTO> search(QueryDTO userQuery, int k) throws IOException, ParseException {
+        SearchResultDTO result = search(userQuery, 0, k, 0);
+        return result != null ? result.getResults() : null;
+    }
+
+    /**
+     * Searches the shards of the index for a page of relevant documents with respect to the user query. The top
+     * offset + k documents of each shard are retrieved concurrently and merged, and the last k of the top offset + k
+     * merged documents are returned.
+     * <p>
+     * If a timeout is given, it applies to the whole search, from the statistics round to the search of the shards:
+     * each shard collects its documents until it expires (skipping the segments left), and if any shard times out,
+     * the documents scored so far are returned as partial results.
+     *
+     * @param userQuery the user's query.
+     * @param offset number of top documents to be skipped.
+     * @param k number of documents to be retrieved, after the skipped ones.
+     * @param timeoutMillis time (in milliseconds) the search may take, or a non-positive value for no timeout.
+     *
+     * @return the page of retrieved documents, or null if the Searcher isn't open.
+     *
+     * @throws IOException if the Lucene index cannot be searched.
+     * @throws ParseException if the user's query cannot be parsed.
+     */
+    public SearchResultDTO search(QueryDTO userQuery, int offset, int k, long timeoutMillis)
+            throws IOException, ParseException {
+        SearcherManager[] managers = this.managers;
+        if (managers == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        long deadline = timeoutMillis > 0 ? TimeLimitedCollectorManager.deadline(timeoutMillis) : 0;
+        Query query = PARSER.get().parse(CLEANER.clean(userQuery.getQuery()));
+        int n = offset + k;
+
+        // acquire the current searcher of each shard, they must be released once the search is done
+        IndexSearcher[] searchers = new IndexSearcher[managers.length];
+        try {
+            for (int i = 0; i < managers.length; i++) {
+                searchers[i] = managers[i].acquire();
+            }
+
+            // first round: sum the statistics of the query terms and the searched fields over the shards
+            Set<Term> terms = new HashSet<>();
+            query.visit(QueryVisitor.termCollector(terms));
+            List<Callable<ShardStatistics>> statisticsTasks = new ArrayList<>(searchers.length);
+            for (IndexSearcher searcher : searchers) {
+                statisticsTasks.add(() -> ShardStatistics.of(searcher.getIndexReader(), terms));
+            }
+            ShardStatistics statistics = new ShardStatistics();
+            for (ShardStatistics shardStatistics : fanOut(statisticsTasks)) {
+                statistics.add(shardStatistics);
+            }
+
+            // second round: search each shard with the global statistics
+            List<Callable<ShardHits>> searchTasks = new ArrayList<>(searchers.length);
+            for (IndexSearcher searcher : searchers) {
+                searchTasks.add(() -> search(searcher.getIndexReader(), statistics, query, n, deadline));
+            }
+            List<ShardHits> shardHits = fanOut(searchTasks);
+
+            boolean partial = false;
+            TopDocs[] topDocs = new TopDocs[shardHits.size()];
+            for (int i = 0; i < topDocs.length; i++) {
+                topDocs[i] = shardHits.get(i).topDocs;
+                partial |= shardHits.get(i).partial;
+            }
+            // the shard of each document is kept as its shard index
+            TopDocs merged = TopDocs.merge(0, n, topDocs, true);
+
+            // results are of the form: [(doc, score), (doc, score), ...]
+            ScoreDoc[] scoreDocs = merged.scoreDocs;
+            List<DocumentDTO> results = new ArrayList<>(Math.max(0, scoreDocs.length - offset));
+            for (int i = offset; i < scoreDocs.length; i++) {
+                Document doc = searchers[scoreDocs[i].shardIndex].doc(scoreDocs[i].doc);
+                results.add(new DocumentDTO(doc, scoreDocs[i].score));
+            }
+
+            return new SearchResultDTO(userQuery.getQuery(), offset, k, merged.totalHits.value, results, partial,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } finally {
+            for (int i = 0; i < searchers.length; i++) {
+                if (searchers[i] != null) {
+                    managers[i].release(searchers[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches a shard with the global statistics.
+     *
+     * @param reader the reader of the shard.
+     * @param statistics the statistics of the query terms and the searched fields, over all the shards.
+     * @param query the parsed query.
+     * @param n number of top documents to be retrieved.
+     * @param deadline time ({@link TimeLimitedCollectorManager#deadline(long)}) by which the documents are
+     *                 collected, or a non-positive value for no deadline.
+     *
+     * @return the top documents of the shard.
+     *
+     * @throws IOException if the shard cannot be searched.
+     */
+    private ShardHits search(IndexReader reader, ShardStatistics statistics, Query query, int n, long deadline)
+            throws IOException {
+        IndexSearcher searcher = statistics.newSearcher(reader, SIMILARITY);
+
+        if (deadline <= 0) {
+            return new ShardHits(searcher.search(query, n), false);
+        }
+
+        TimeLimitedCollectorManager collectors = new TimeLimitedCollectorManager(n, TOTAL_HITS_THRESHOLD, deadline);
+        TopDocs topDocs = searcher.search(query, collectors);
+        return new ShardHits(topDocs, collectors.isPartial());
+    }
+
+    /**
+     * Runs a task per shard concurrently, and waits for all of them to complete.
+     *
+     * @param tasks the tasks, in the order of the shards.
+     * @param <T> type of the results of the tasks.
+     *
+     * @return the results of the tasks, in the order of the shards.
+     *
+     * @throws IOException if a task has failed.
+     */
+    private <T> List<T> fanOut(List<Callable<T>> tasks) throws IOException {
+        ExecutorService shardExecutor = this.shardExecutor;
+        if (shardExecutor == null) {
+            throw new IOException("The Searcher is closed.");
+        }
+
+        try {
+            List<Future<T>> futures = shardExecutor.invokeAll(tasks);
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while searching the shards.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not search the shards.", e.getCause());
+        }
+    }
+
+    /**
+     * Opens the shards of the Lucene index to be used by this Searcher.
+     * The shards are opened once, by the directory factory, and kept open until {@link #close()} is called. If a
+     * warmer has been given, the searcher of each shard is warmed up before this method returns. If a refresh interval
+     * has been given, a background thread starts checking the shards for changes.
+     *
+     * @throws IOException if the shards cannot be opened or warmed up, or the index isn't sharded.
+     */
+    public synchronized void open() throws IOException {
+        if (managers != null) { // the index is already open
+            return;
+        }
+
+        List<Path> shardDirs = ShardedIndexer.shardDirectories(Paths.get(INDEX_DIR));
+        if (shardDirs.isEmpty()) {
+            throw new IOException("The index " + INDEX_DIR + " has no shards.");
+        }
+
+        Directory[] dirs = new Directory[shardDirs.size()];
+        SearcherManager[] managers = new SearcherManager[shardDirs.size()];
+        // the searchers of the managers are only used to read the shards (they're searched with the global
+        // statistics instead), and to warm up the files of each new version of a shard
+        SearcherFactory factory = new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                searcher.setSimilarity(SIMILARITY);
+                if (WARMER != null) {
+                    WARMER.warm(searcher, text -> PARSER.get().parse(CLEANER.clean(text)));
+                }
+                return searcher;
+            }
+        };
+        try {
+            for (int i = 0; i < dirs.length; i++) {
+                dirs[i] = DIRECTORY.open(shardDirs.get(i));
+                managers[i] = new SearcherManager(dirs[i], factory);
+            }
+        } catch (IOException | RuntimeException e) {
+            close(managers, dirs);
+            throw e;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        shardExecutor = Executors.newFixedThreadPool(dirs.length, runnable -> {
+            Thread thread = new Thread(runnable, "shard-search-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dirs = dirs;
+        this.managers = managers;
+
+        if (REFRESH_INTERVAL > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "searcher-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return true if the shards of the Lucene index are open.
+     */
+    public boolean isReady() {
+        return managers != null;
+    }
+
+    /**
+     * Refreshes the shards of the Lucene index that have changed since they were last opened or refreshed.
+     * The running queries are not blocked; they keep using the searchers they have acquired.
+     *
+     * @throws IOException if a shard cannot be refreshed.
+     */
+    public void maybeRefresh() throws IOException {
+        SearcherManager[] managers = this.managers;
+        if (managers != null) {
+            for (SearcherManager manager : managers) {
+                manager.maybeRefresh();
+            }
+        }
+    }
+
+    /**
+     * Frees persistent resources used by this Searcher.
+     * The shard files are released once the queries that are still running have completed.
+     *
+     * @throws IOException if the Searcher is closed.
+     */
+    public synchronized void close() throws IOException {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+
+        if (shardExecutor != null) {
+            shardExecutor.shutdown();
+            shardExecutor = null;
+        }
+
+        if (managers != null) {
+            SearcherManager[] managers = this.managers;
+            this.managers = null;
+            close(managers, dirs);
+            dirs = null;
+        }
+    }
+
+    /**
+     * Closes the managers and the directories of the shards that have been opened.
+     *
+     * @param managers the searcher managers of the shards.
+     * @param dirs the directories of the shards.
+     *
+     * @throws IOException if a shard cannot be closed.
+     */
+    private static void close(SearcherManager[] managers, Directory[] dirs) throws IOException {
+        IOException failure = null;
+        for (int i = 0; i < dirs.length; i++) {
+            try {
+                if (managers[i] != null) {
+                    managers[i].close();
+                }
+                if (dirs[i] != null) {
+                    dirs[i].close();
+                }
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Background refresh task. Failures are logged, so that the next scheduled refresh is still run.
+     */
+    private void refresh() {
+        try {
+            maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            logger.error("An exception was thrown: Could not refresh Lucene index...", e);
+        }
+    }
+
+    /**
+     * @return the directory path where the shard directories are hosted.
+     */
+    public String getIndexDirectory() {
+        return INDEX_DIR;
+    }
+
+    /**
+     * @return number of shards, or 0 if the Searcher isn't open.
+     */
+    public int getShards() {
+        SearcherManager[] managers = this.managers;
+        return managers != null ? managers.length : 0;
+    }
+
+    /**
+     * @return interval (in milliseconds) between two consecutive index refresh attempts.
+     */
+    public long getRefreshInterval() {
+        return REFRESH_INTERVAL;
+    }
+
+    /**
+     * @return analyzer used for the normalization (and expansion) of the queries.
+     */
+    public Analyzer getAnalyzer() {
+        return ANALYZER;
+    }
+
+    /**
+     * @return opens the directory hosting the files of each shard.
+     */
+    public DirectoryFactory getDirectoryFactory() {
+        return DIRECTORY;
+    }
+
+    /**
+     * @return warms up each searcher of the shards before it serves any query, or null if the warm-up is disabled.
+     */
+    public SearcherWarmer getWarmer() {
+        return WARMER;
+    }
+
+    /**
+     * The top documents of a shard, and whether the shard timed out.
+     */
+    private static final class ShardHits {
+
+        private final TopDocs topDocs;
+        private final boolean partial;
+
+        private ShardHits(TopDocs topDocs, boolean partial) {
+            this.topDocs = topDocs;
+            this.partial = partial;
+        }
+
+    }
+}
@@ -0,0 +1,114 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.TimeLimitingCollector;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.util.Counter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collects the top documents of a query until a deadline, in one or more slices of segments searched concurrently.
+ * Once the deadline has passed, each slice stops collecting (the segments left are skipped) instead of failing, so
+ * that the documents collected so far by all the slices are merged into partial results.
+ * <p>
+ * The deadline is checked against the clock of {@link TimeLimitingCollector}, which is cheap to read for every
+ * collected document. A search that runs several rounds, or searches several shards, computes its deadline once
+ * ({@link #deadline(long)}), so that all of them end by the same time.
+ *
+ * @author Lampros Lountzis
+ */
+public class TimeLimitedCollectorManager implements CollectorManager<Collector, TopDocs> {
+
+    private final CollectorManager<TopScoreDocCollector, TopDocs> topDocs;
+    private final Counter clock;
+    private final long deadline;
+    private volatile boolean partial;
+
+    /**
+     * @param n number of top documents to be collected.
+     * @param totalHitsThreshold number of hits counted accurately.
+     * @param deadline time ({@link #deadline(long)}) by which the documents are collected.
+     */
+    public TimeLimitedCollectorManager(int n, int totalHitsThreshold, long deadline) {
+        this.topDocs = TopScoreDocCollector.createSharedManager(n, null, totalHitsThreshold);
+        this.clock = TimeLimitingCollector.getGlobalCounter();
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param timeoutMillis time (in milliseconds) from now.
+     *
+     * @return the time, on the clock of {@link TimeLimitingCollector}, by which the timeout expires.
+     */
+    public static long deadline(long timeoutMillis) {
+        return TimeLimitingCollector.getGlobalCounter().get() + timeoutMillis;
+    }
+
+    @Override
+    public Collector newCollector() throws IOException {
+        return new DeadlineCollector(topDocs.newCollector());
+    }
+
+    /**
+     * @throws CollectionTerminatedException if the deadline has passed, so that the segment is skipped.
+     */
+    private void checkDeadline() {
+        if (clock.get() > deadline) {
+            partial = true;
+            throw new CollectionTerminatedException();
+        }
+    }
+
+    @Override
+    public TopDocs reduce(Collection<Collector> collectors) throws IOException {
+        List<TopScoreDocCollector> unwrapped = new ArrayList<>(collectors.size());
+        for (Collector collector : collectors) {
+            unwrapped.add(((DeadlineCollector) collector).topDocs);
+        }
+        return topDocs.reduce(unwrapped);
+    }
+
+    /**
+     * @return true if the deadline has passed before all the documents were collected.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Collects the top documents of a slice, until the deadline.
+     */
+    private final class DeadlineCollector extends FilterCollector {
+
+        private final TopScoreDocCollector topDocs;
+
+        private DeadlineCollector(TopScoreDocCollector topDocs) {
+            super(topDocs);
+            this.topDocs = topDocs;
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            checkDeadline();
+            return new FilterLeafCollector(super.getLeafCollector(context)) {
+                @Override
+                public void collect(int doc) throws IOException {
+                    checkDeadline();
+                    super.collect(doc);
+                }
+            };
+        }
+
+    }
+}
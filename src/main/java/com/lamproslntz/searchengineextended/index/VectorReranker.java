@@ -0,0 +1,171 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Re-ranks the top documents of a query by the cosine similarity of their dense vectors to the query vector, both
+ * computed by a {@link DocumentEmbedder}. The document vectors are read from the Lucene index, where they have been
+ * stored by an {@link Indexer} with the same embedder.
+ * <p>
+ * It is the second phase of a two-phase retrieval: the candidates are first retrieved by BM25 without query
+ * expansion, and only the top {@link #getDepth()} of them are re-ranked, so the cost of the re-ranking is fixed per
+ * query. The score of a re-ranked document is {@code weight * cosine + (1 - weight) * bm25 / maxBm25}, where maxBm25
+ * is the BM25 score of the top candidate; documents without a vector have a cosine similarity of 0. If more documents
+ * are retrieved than re-ranked, the candidates below the depth follow the re-ranked ones in their BM25 order.
+ *
+ * @author Lampros Lountzis
+ */
+public class VectorReranker implements RankerInterface {
+
+    /**
+     * Default number of candidates to be re-ranked.
+     */
+    public static final int DEFAULT_DEPTH = 100;
+
+    /**
+     * Default weight of the cosine similarity in the score of a re-ranked document.
+     */
+    public static final float DEFAULT_WEIGHT = 0.5f;
+
+    private final DocumentEmbedder embedder;
+    private final int depth;
+    private final float weight;
+
+    /**
+     * Initializes a VectorReranker, that re-ranks the top {@link #DEFAULT_DEPTH} candidates with a
+     * {@link #DEFAULT_WEIGHT} weight.
+     *
+     * @param embedder computes the query vectors; the same embedder the document vectors were computed with.
+     */
+    public VectorReranker(DocumentEmbedder embedder) {
+        this(embedder, DEFAULT_DEPTH, DEFAULT_WEIGHT);
+    }
+
+    /**
+     * Initializes a VectorReranker.
+     *
+     * @param embedder computes the query vectors; the same embedder the document vectors were computed with.
+     * @param depth number of candidates to be re-ranked.
+     * @param weight weight of the cosine similarity in the score of a re-ranked document, in [0, 1]; 1 re-ranks
+     *               by the cosine similarity only.
+     */
+    public VectorReranker(DocumentEmbedder embedder, int depth, float weight) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The re-ranking depth must be positive.");
+        }
+        if (weight < 0 || weight > 1) {
+            throw new IllegalArgumentException("The weight of the cosine similarity must be in [0, 1].");
+        }
+        this.embedder = embedder;
+        this.depth = depth;
+        this.weight = weight;
+    }
+
+    /**
+     * Retrieves the top candidates of a query by BM25, and re-ranks them.
+     *
+     * @param searcher the searcher of the current version of the index.
+     * @param query the parsed query, without query expansion.
+     * @param text the (cleaned) query text.
+     * @param k number of top documents to be retrieved.
+     *
+     * @return the top k re-ranked documents.
+     *
+     * @throws IOException if the index cannot be searched.
+     */
+    @Override
+    public TopDocs search(IndexSearcher searcher, Query query, String text, int k) throws IOException {
+        return rerank(searcher, searcher.search(query, Math.max(k, depth)), text, k);
+    }
+
+    /**
+     * Re-ranks the candidates of a query.
+     *
+     * @param searcher the searcher the candidates were retrieved with.
+     * @param candidates the candidates, ranked by BM25.
+     * @param text the (cleaned) query text.
+     * @param k number of top documents to be returned.
+     *
+     * @return the top k documents: the re-ranked candidates, followed by the candidates below the depth (scored below
+     * the last re-ranked one, in their BM25 order); the top k candidates, if none of the query words has an
+     * embedding.
+     *
+     * @throws IOException if the document vectors cannot be read.
+     */
+    public TopDocs rerank(IndexSearcher searcher, TopDocs candidates, String text, int k) throws IOException {
+        ScoreDoc[] scoreDocs = candidates.scoreDocs;
+        float[] query = embedder.embed(text);
+        if (query == null || scoreDocs.length == 0) {
+            return new TopDocs(candidates.totalHits, Arrays.copyOf(scoreDocs, Math.min(k, scoreDocs.length)));
+        }
+
+        float maxScore = scoreDocs[0].score;
+        ScoreDoc[] reranked = new ScoreDoc[Math.min(depth, scoreDocs.length)];
+        for (int i = 0; i < reranked.length; i++) {
+            float bm25 = maxScore > 0 ? scoreDocs[i].score / maxScore : 0;
+            reranked[i] = new ScoreDoc(scoreDocs[i].doc, (1 - weight) * bm25);
+        }
+
+        // doc values are read forward only, so the candidates are visited in order of doc ID, segment by segment
+        Arrays.sort(reranked, Comparator.comparingInt(scoreDoc -> scoreDoc.doc));
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        int leaf = -1;
+        LeafReaderContext context = null;
+        BinaryDocValues vectors = null;
+        for (ScoreDoc scoreDoc : reranked) {
+            while (context == null || scoreDoc.doc >= context.docBase + context.reader().maxDoc()) {
+                context = leaves.get(++leaf);
+                vectors = DocValues.getBinary(context.reader(), DocumentVectors.FIELD);
+            }
+
+            if (vectors.advanceExact(scoreDoc.doc - context.docBase)) {
+                scoreDoc.score += weight * DocumentVectors.dot(vectors.binaryValue(), query);
+            }
+        }
+
+        Arrays.sort(reranked, (a, b) -> a.score != b.score ? Float.compare(b.score, a.score) : Integer.compare(a.doc, b.doc));
+
+        // the candidates below the depth keep their BM25 order, below the re-ranked ones
+        ScoreDoc[] top = Arrays.copyOf(reranked, Math.min(k, Math.max(reranked.length, scoreDocs.length)));
+        float score = reranked[reranked.length - 1].score;
+        for (int i = reranked.length; i < top.length; i++) {
+            score = Math.nextDown(score);
+            top[i] = new ScoreDoc(scoreDocs[i].doc, score);
+        }
+        return new TopDocs(candidates.totalHits, top);
+    }
+
+    /**
+     * @return number of candidates to be re-ranked.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return weight of the cosine similarity in the score of a re-ranked document.
+     */
+    public float getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the embedder of the query vectors.
+     */
+    public DocumentEmbedder getEmbedder() {
+        return embedder;
+    }
+
+}
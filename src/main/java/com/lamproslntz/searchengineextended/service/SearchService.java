@@ -0,0 +1,210 @@
+package com.lamproslntz.searchengineextended.service;
+
+import com.lamproslntz.searchengineextended.dto.QueryDTO;
+import com.lamproslntz.searchengineextended.dto.SearchResultDTO;
+import com.lamproslntz.searchengineextended.index.SearcherInterface;
+import org.apache.lucene.queryparser.classic.ParseException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the searches of the web requests on a dedicated, bounded pool of threads, so that the request threads are
+ * released while the index is searched. The searches wait in a bounded queue; once it is full, new searches are
+ * rejected right away (back-pressure), instead of queueing up behind searches that would time out anyway.
+ * <p>
+ * Each search has a deadline, counted from its submission, so the time it waited in the queue counts: the documents
+ * are collected until the deadline, and the documents scored so far are returned as partial results. A search whose
+ * deadline has passed before it started returns no results, as partial.
+ * <p>
+ * The web requests should only be searched once the Searcher is ready (see {@link #isReady()}), i.e. once the index
+ * has been opened and warmed up.
+ *
+ * @author Lampros Lountzis
+ */
+public class SearchService implements Closeable {
+
+    /**
+     * Default maximum number of searches waiting for a thread.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    /**
+     * Default time (in milliseconds) a search may take, from its submission.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private final SearcherInterface searcher;
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long timeoutMillis;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * Initializes a SearchService.
+     *
+     * @param searcher a Searcher, open or being opened.
+     * @param threads number of threads searching the index.
+     * @param queueCapacity maximum number of searches waiting for a thread.
+     * @param timeoutMillis time (in milliseconds) a search may take, from its submission, or a non-positive value for
+     *                      no timeout.
+     */
+    public SearchService(SearcherInterface searcher, int threads, int queueCapacity, long timeoutMillis) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of search threads must be positive.");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("The search queue capacity must be positive.");
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.searcher = searcher;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "search-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.queueCapacity = queueCapacity;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Submits the search of a page of relevant documents with respect to the user query.
+     *
+     * @param userQuery the user's query.
+     * @param offset number of top documents to be skipped.
+     * @param k number of documents to be retrieved, after the skipped ones.
+     *
+     * @return the page of retrieved documents, once searched; it completes exceptionally with a
+     * {@link CompletionException} caused by an {@link IOException} if the index cannot be searched, or by a
+     * {@link ParseException} if the query cannot be parsed.
+     *
+     * @throws RejectedExecutionException if the queue of the searches is full.
+     */
+    public CompletableFuture<SearchResultDTO> search(QueryDTO userQuery, int offset, int k) {
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> search(userQuery, offset, k, submitted), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private SearchResultDTO search(QueryDTO userQuery, int offset, int k, long submitted) {
+        long remainingMillis = 0;
+        if (timeoutMillis > 0) {
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted);
+            remainingMillis = timeoutMillis - waitedMillis;
+            if (remainingMillis <= 0) { // timed out in the queue
+                timedOut.increment();
+                return new SearchResultDTO(userQuery.getQuery(), offset, k, 0, List.of(), true, waitedMillis);
+            }
+        }
+
+        try {
+            SearchResultDTO result = searcher.search(userQuery, offset, k, remainingMillis);
+            if (result == null) {
+                throw new IOException("The Searcher is closed.");
+            }
+            if (result.isPartial()) {
+                timedOut.increment();
+            }
+            return result;
+        } catch (IOException | ParseException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * @return true if the Searcher is ready to serve searches.
+     */
+    public boolean isReady() {
+        return searcher.isReady();
+    }
+
+    /**
+     * @return number of threads searching the index.
+     */
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return approximate number of searches running.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return number of searches waiting for a thread.
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return maximum number of searches waiting for a thread.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return approximate number of searches completed.
+     */
+    public long getCompletedCount() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * @return number of searches rejected, because the queue was full.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of searches that timed out, with partial results.
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * @return time (in milliseconds) a search may take, from its submission.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Stops accepting searches, and waits (up to the timeout of a search) for the submitted ones to complete.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Math.max(timeoutMillis, DEFAULT_TIMEOUT_MILLIS), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.lamproslntz.searchengineextended.synonym;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.lucene.analysis.CharacterUtils;
+import org.apache.lucene.util.ArrayUtil;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Represents a bounded cache of word expansions, to be shared by all the analyzers (and threads) that expand words
+ * with their synonyms. Entries are keyed by the lowercased word, the minimum similarity and the maximum number of the
+ * synonyms, and are evicted with the W-TinyLFU policy of Caffeine, which suits the skewed frequency of the query words.
+ * <p>
+ * Words can be looked up as slices of a character array (e.g. the term buffer of a token), without allocating: each
+ * thread looks up with its own reusable key, and a key is copied only when an expansion is cached.
+ *
+ * @author Lampros Lountzis
+ */
+public class SynonymCache {
+
+    /**
+     * Default maximum number of cached expansions.
+     */
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final Cache<Key, SynonymExpansion> cache;
+    private final ThreadLocal<Key> lookupKey = ThreadLocal.withInitial(Key::new);
+
+    /**
+     * Initializes a SynonymCache, of at most {@link #DEFAULT_MAXIMUM_SIZE} expansions.
+     */
+    public SynonymCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Initializes a SynonymCache.
+     *
+     * @param maximumSize maximum number of cached expansions.
+     */
+    public SynonymCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached expansion of a word, computing (and caching) it if it isn't cached.
+     *
+     * @param word the word to be expanded.
+     * @param minAccuracy minimum similarity of the synonyms to the word.
+     * @param maxSynonyms maximum number of synonyms of the word.
+     * @param expander computes the expansion of the (lowercased) word, on a cache miss.
+     *
+     * @return the expansion of the word.
+     */
+    public SynonymExpansion get(String word, double minAccuracy, int maxSynonyms,
+                                Function<String, SynonymExpansion> expander) {
+        return get(word.toCharArray(), 0, word.length(), minAccuracy, maxSynonyms, expander);
+    }
+
+    /**
+     * Returns the cached expansion of a word, given as a slice of a character array, computing (and caching) it if it
+     * isn't cached. Looking up a cached expansion doesn't allocate. Concurrent misses of the same word may compute its
+     * expansion more than once, but only one expansion is cached and returned.
+     *
+     * @param buffer characters of the word.
+     * @param offset offset of the word's first character in the buffer.
+     * @param length number of characters of the word.
+     * @param minAccuracy minimum similarity of the synonyms to the word.
+     * @param maxSynonyms maximum number of synonyms of the word.
+     * @param expander computes the expansion of the (lowercased) word, on a cache miss.
+     *
+     * @return the expansion of the word.
+     */
+    public SynonymExpansion get(char[] buffer, int offset, int length, double minAccuracy, int maxSynonyms,
+                                Function<String, SynonymExpansion> expander) {
+        Key key = lookupKey.get().set(buffer, offset, length, minAccuracy, maxSynonyms);
+        SynonymExpansion expansion = cache.getIfPresent(key);
+        if (expansion != null) {
+            return expansion;
+        }
+
+        expansion = expander.apply(new String(key.word, 0, key.length));
+        SynonymExpansion cached = cache.asMap().putIfAbsent(key.copy(), expansion);
+        return cached != null ? cached : expansion;
+    }
+
+    /**
+     * Removes all the cached expansions.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return approximate number of cached expansions.
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return number of look-ups that found a cached expansion.
+     */
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+
+    /**
+     * @return number of look-ups that computed the expansion.
+     */
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+
+    /**
+     * @return number of expansions evicted because of the size bound.
+     */
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return hit/miss/eviction counters of the cache.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * A lowercased word, a minimum similarity and a maximum number of synonyms. Cached keys are never modified; lookup keys are reused by their
+     * thread, and are never cached.
+     */
+    private static final class Key {
+
+        private char[] word = new char[0];
+        private int length;
+        private double minAccuracy;
+        private int maxSynonyms;
+        private int hash;
+
+        private Key set(char[] buffer, int offset, int length, double minAccuracy, int maxSynonyms) {
+            word = ArrayUtil.grow(word, length);
+            System.arraycopy(buffer, offset, word, 0, length);
+            CharacterUtils.toLowerCase(word, 0, length);
+
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + word[i];
+            }
+
+            this.length = length;
+            this.minAccuracy = minAccuracy;
+            this.maxSynonyms = maxSynonyms;
+            this.hash = 31 * (31 * hash + Double.hashCode(minAccuracy)) + maxSynonyms;
+            return this;
+        }
+
+        private Key copy() {
+            Key key = new Key();
+            key.word = Arrays.copyOf(word, length);
+            key.length = length;
+            key.minAccuracy = minAccuracy;
+            key.maxSynonyms = maxSynonyms;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            if (Double.compare(key.minAccuracy, minAccuracy) != 0) return false;
+            if (key.maxSynonyms != maxSynonyms) return false;
+            return Arrays.equals(word, 0, length, key.word, 0, key.length);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.lamproslntz.searchengineextended.synonym;
+
+import java.util.Arrays;
+
+/**
+ * Encapsulates the synonyms a word is expanded with.
+ * Each synonym consists of its characters and its (cosine) similarity to the word. Expansions are immutable, so that
+ * they can be cached and shared by all the threads; the synonym characters must not be modified.
+ *
+ * @author Lampros Lountzis
+ */
+public final class SynonymExpansion {
+
+    /**
+     * Expansion of a word without synonyms.
+     */
+    public static final SynonymExpansion EMPTY = new SynonymExpansion(new char[0][], new float[0]);
+
+    private final char[][] synonyms;
+    private final float[] similarities;
+
+    public SynonymExpansion(char[][] synonyms, float[] similarities) {
+        if (synonyms.length != similarities.length) {
+            throw new IllegalArgumentException("Each synonym must have a similarity.");
+        }
+        this.synonyms = synonyms;
+        this.similarities = similarities;
+    }
+
+    /**
+     * @return number of synonyms.
+     */
+    public int size() {
+        return synonyms.length;
+    }
+
+    /**
+     * @param i index of a synonym.
+     *
+     * @return characters of the synonym, not to be modified.
+     */
+    public char[] synonym(int i) {
+        return synonyms[i];
+    }
+
+    /**
+     * @param i index of a synonym.
+     *
+     * @return similarity of the synonym to the word.
+     */
+    public float similarity(int i) {
+        return similarities[i];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SynonymExpansion that = (SynonymExpansion) o;
+
+        if (!Arrays.deepEquals(synonyms, that.synonyms)) return false;
+        return Arrays.equals(similarities, that.similarities);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.deepHashCode(synonyms);
+        result = 31 * result + Arrays.hashCode(similarities);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("SynonymExpansion { ");
+        for (int i = 0; i < synonyms.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(synonyms[i]).append(':').append(similarities[i]);
+        }
+        return builder.append(" }").toString();
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.lamproslntz.searchengineextended.synonym;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.analysis.synonym.SynonymMap;
+import org.apache.lucene.util.CharsRef;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes synonym tables. A synonym table is a text file with one record per word, of the form:
+ * (word, synonym_1:similarity_1, ..., synonym_n:similarity_n), separated by tabs. Lines starting with # are comments.
+ *
+ * @author Lampros Lountzis
+ */
+public final class SynonymTable {
+
+    private SynonymTable() {
+    }
+
+    /**
+     * Loads a synonym table as a {@link SynonymMap}, to be used by a
+     * {@link org.apache.lucene.analysis.synonym.SynonymGraphFilter}. The original words are kept next to their
+     * synonyms.
+     *
+     * @param path synonym table file path.
+     *
+     * @return the synonym map.
+     *
+     * @throws IOException if the synonym table cannot be read.
+     */
+    public static SynonymMap load(Path path) throws IOException {
+        SynonymMap.Builder builder = new SynonymMap.Builder(true);
+        for (Map.Entry<String, List<Pair<String, Float>>> entry : read(path).entrySet()) {
+            CharsRef word = new CharsRef(entry.getKey());
+            for (Pair<String, Float> synonym : entry.getValue()) {
+                builder.add(word, new CharsRef(synonym.getKey()), true);
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Loads a synonym table as the expansions of its words, to be used by a
+     * {@link com.lamproslntz.searchengineextended.filter.Word2VecSynonymFilter}. Unlike {@link #load}, the similarity
+     * of each synonym is kept, so that the synonyms are weighted by it and capped per word and per query, as if they
+     * were looked up in the word embeddings. The synonyms of each word are sorted by descending similarity.
+     *
+     * @param path synonym table file path.
+     *
+     * @return a dictionary of the form {key: word, value: expansion of the word}, looked up by slices of a character
+     * array.
+     *
+     * @throws IOException if the synonym table cannot be read, or is malformed.
+     */
+    public static CharArrayMap<SynonymExpansion> loadExpansions(Path path) throws IOException {
+        Map<String, List<Pair<String, Float>>> table = read(path);
+        CharArrayMap<SynonymExpansion> expansions = new CharArrayMap<>(table.size(), false);
+        for (Map.Entry<String, List<Pair<String, Float>>> entry : table.entrySet()) {
+            List<Pair<String, Float>> synonyms = new ArrayList<>(entry.getValue());
+            synonyms.sort(Comparator.comparing(Pair<String, Float>::getValue).reversed());
+
+            char[][] words = new char[synonyms.size()][];
+            float[] similarities = new float[synonyms.size()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = synonyms.get(i).getKey().toCharArray();
+                similarities[i] = synonyms.get(i).getValue();
+            }
+            expansions.put(entry.getKey(), new SynonymExpansion(words, similarities));
+        }
+
+        return expansions;
+    }
+
+    /**
+     * Reads a synonym table.
+     *
+     * @param path synonym table file path.
+     *
+     * @return a dictionary of the form {key: word, value: list of pairs (synonym, similarity)}, in file order.
+     *
+     * @throws IOException if the synonym table cannot be read, or is malformed.
+     */
+    public static Map<String, List<Pair<String, Float>>> read(Path path) throws IOException {
+        Map<String, List<Pair<String, Float>>> table = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] tokens = line.split("\t");
+                List<Pair<String, Float>> synonyms = new ArrayList<>(tokens.length - 1);
+                for (int i = 1; i < tokens.length; i++) {
+                    int separator = tokens[i].lastIndexOf(':');
+                    if (separator == -1) {
+                        throw new IOException("Malformed synonym \"" + tokens[i] + "\" in " + path + ".");
+                    }
+                    synonyms.add(Pair.of(tokens[i].substring(0, separator),
+                            Float.parseFloat(tokens[i].substring(separator + 1))));
+                }
+                table.put(tokens[0], synonyms);
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Writes a synonym table.
+     *
+     * @param table a dictionary of the form {key: word, value: list of pairs (synonym, similarity)}.
+     * @param comment comment written on the first line of the file, or null.
+     * @param path synonym table file path.
+     *
+     * @throws IOException if the synonym table cannot be written.
+     */
+    public static void write(Map<String, List<Pair<String, Float>>> table, String comment, Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            if (comment != null) {
+                writer.write("# " + comment);
+                writer.newLine();
+            }
+
+            for (Map.Entry<String, List<Pair<String, Float>>> entry : table.entrySet()) {
+                writer.write(entry.getKey());
+                for (Pair<String, Float> synonym : entry.getValue()) {
+                    writer.write("\t" + synonym.getKey() + ":" + synonym.getValue());
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads the comment on the first line of a synonym table.
+     *
+     * @param path synonym table file path.
+     *
+     * @return the comment, or null if the file doesn't exist or doesn't start with a comment.
+     *
+     * @throws IOException if the synonym table cannot be read.
+     */
+    public static String readComment(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line = reader.readLine();
+            return line != null && line.startsWith("# ") ? line.substring(2) : null;
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.lamproslntz.searchengineextended.synonym;
+
+import com.lamproslntz.searchengineextended.ann.ExactNearestNeighbourIndex;
+import com.lamproslntz.searchengineextended.ann.HnswIndex;
+import com.lamproslntz.searchengineextended.ann.NearestNeighbourIndexInterface;
+import com.lamproslntz.searchengineextended.ann.Neighbour;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingStoreInterface;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Builds a synonym table from the vocabulary of a Lucene index, so that the word embedding synonyms are computed
+ * once, offline, instead of at every query. The table is loaded with {@link SynonymTable#loadExpansions} and used by
+ * a {@link com.lamproslntz.searchengineextended.filter.Word2VecSynonymFilter}, so the synonyms are still weighted by
+ * their similarity (or with {@link SynonymTable#load}, by a
+ * {@link org.apache.lucene.analysis.synonym.SynonymGraphFilter}, like the WordNet synonyms).
+ * <p>
+ * The useful synonyms are bounded by the indexed terms: a word of the embedding vocabulary gets an entry only if its
+ * stem is indexed in the searchable fields, and only synonyms whose stem is indexed are kept (any other synonym
+ * can't match a document). The nearest neighbours of each word are also kept in a cache file next to the table
+ * (table path + ".neighbours"), so rebuilding the table only computes the neighbours of the words whose stem was
+ * newly indexed.
+ *
+ * Usage: SynonymTableBuilder indexDir embeddings.emb table [minAccuracy] [maxSynonyms] [graph.hnsw]
+ *
+ * @author Lampros Lountzis
+ */
+public final class SynonymTableBuilder {
+
+    private static final String[] FIELDS = {"title_norm", "abstract_norm"}; // the searchable fields
+
+    private final EmbeddingStoreInterface embeddings;
+    private final NearestNeighbourIndexInterface neighbours;
+    private final double minAccuracy;
+    private final int maxSynonyms;
+
+    // same analysis as the indexed fields
+    private final Analyzer analyzer = new EnglishAnalyzer();
+
+    /**
+     * Initializes a SynonymTableBuilder.
+     *
+     * @param embeddings word embeddings.
+     * @param neighbours nearest neighbour index of the word embeddings.
+     * @param minAccuracy word similarity minimum accuracy for the word embeddings.
+     * @param maxSynonyms maximum number of synonyms per word.
+     */
+    public SynonymTableBuilder(EmbeddingStoreInterface embeddings, NearestNeighbourIndexInterface neighbours,
+                               double minAccuracy, int maxSynonyms) {
+        this.embeddings = embeddings;
+        this.neighbours = neighbours;
+        this.minAccuracy = minAccuracy;
+        this.maxSynonyms = maxSynonyms;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("[ERROR] SynonymTableBuilder - usage: SynonymTableBuilder indexDir embeddings.emb table [minAccuracy] [maxSynonyms] [graph.hnsw]");
+            System.exit(1);
+        }
+
+        double minAccuracy = args.length > 3 ? Double.parseDouble(args[3]) : 0.98;
+        int maxSynonyms = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        try (MappedEmbeddingStore embeddings = MappedEmbeddingStore.open(Paths.get(args[1]));
+             Directory dir = FSDirectory.open(Paths.get(args[0]));
+             IndexReader reader = DirectoryReader.open(dir)) {
+            HnswIndex hnsw = args.length > 5 ? HnswIndex.open(Paths.get(args[5]), embeddings) : null;
+            try {
+                NearestNeighbourIndexInterface neighbours = hnsw != null ? hnsw : new ExactNearestNeighbourIndex(embeddings);
+                long start = System.nanoTime();
+                int computed = new SynonymTableBuilder(embeddings, neighbours, minAccuracy, maxSynonyms)
+                        .build(reader, Paths.get(args[2]));
+                System.out.println("Computed the neighbours of " + computed + " new words in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            } finally {
+                if (hnsw != null) {
+                    hnsw.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds (or incrementally rebuilds) the synonym table of an index.
+     *
+     * @param reader reader of the Lucene index.
+     * @param tablePath synonym table file path.
+     *
+     * @return number of words whose neighbours were computed, i.e. weren't in the neighbours cache.
+     *
+     * @throws IOException if the index cannot be read, or the files cannot be read/written.
+     */
+    public int build(IndexReader reader, Path tablePath) throws IOException {
+        Set<String> indexedStems = indexedTerms(reader);
+
+        // the cached neighbours are reused only if they were computed with the same parameters
+        Path cachePath = tablePath.resolveSibling(tablePath.getFileName() + ".neighbours");
+        String parameters = "minAccuracy=" + minAccuracy + " maxSynonyms=" + maxSynonyms;
+        Map<String, List<Pair<String, Float>>> cache = parameters.equals(SynonymTable.readComment(cachePath))
+                ? new ConcurrentHashMap<>(SynonymTable.read(cachePath))
+                : new ConcurrentHashMap<>();
+
+        // the neighbours of the vocabulary words with an indexed stem, that aren't cached yet
+        int cached = cache.size();
+        try {
+            IntStream.range(0, embeddings.size()).parallel().forEach(index -> {
+                String word = embeddings.wordAt(index);
+                if (cache.containsKey(word) || !word.equals(word.toLowerCase(Locale.ROOT))) {
+                    return;
+                }
+                String stem = stem(word);
+                if (stem != null && indexedStems.contains(stem)) {
+                    cache.put(word, nearestWords(index));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        SynonymTable.write(new TreeMap<>(cache), parameters, cachePath);
+
+        // the table keeps the synonyms that can match a document
+        Map<String, List<Pair<String, Float>>> table = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Pair<String, Float>>> entry : new TreeMap<>(cache).entrySet()) {
+            String stem = stem(entry.getKey());
+            if (!indexedStems.contains(stem)) {
+                continue;
+            }
+
+            List<Pair<String, Float>> synonyms = new ArrayList<>();
+            Set<String> stems = new HashSet<>();
+            stems.add(stem);
+            for (Pair<String, Float> synonym : entry.getValue()) {
+                String synonymStem = stem(synonym.getKey());
+                if (indexedStems.contains(synonymStem) && stems.add(synonymStem)) { // one synonym per stem
+                    synonyms.add(synonym);
+                }
+            }
+            if (!synonyms.isEmpty()) {
+                table.put(entry.getKey(), synonyms);
+            }
+        }
+        SynonymTable.write(table, "built from " + reader.numDocs() + " documents, " + parameters, tablePath);
+
+        return cache.size() - cached;
+    }
+
+    /**
+     * @return the terms of the searchable fields of the index.
+     */
+    private static Set<String> indexedTerms(IndexReader reader) throws IOException {
+        Set<String> terms = new HashSet<>();
+        for (String field : FIELDS) {
+            Terms fieldTerms = MultiTerms.getTerms(reader, field);
+            if (fieldTerms == null) {
+                continue;
+            }
+
+            TermsEnum termsEnum = fieldTerms.iterator();
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                terms.add(term.utf8ToString());
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * @return the nearest words of a vocabulary word, that are query tokens.
+     */
+    private List<Pair<String, Float>> nearestWords(int index) {
+        float[] vector = embeddings.vector(index, new float[embeddings.dimension()]);
+        List<Pair<String, Float>> words = new ArrayList<>();
+        // the word itself is its own nearest neighbour, so one more neighbour is looked up
+        for (Neighbour neighbour : neighbours.search(vector, maxSynonyms + 1, minAccuracy)) {
+            String word = embeddings.wordAt(neighbour.getIndex());
+            if (neighbour.getIndex() != index && isQueryToken(word)) {
+                words.add(Pair.of(word, neighbour.getSimilarity()));
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * @return true if the word can be a token of an analyzed query (a lowercase, single token word).
+     */
+    private boolean isQueryToken(String word) {
+        return word.equals(word.toLowerCase(Locale.ROOT)) && stem(word) != null;
+    }
+
+    /**
+     * Analyzes a word, the same way the searchable fields were analyzed.
+     *
+     * @return the stem of the word, or null if the word isn't analyzed into a single token.
+     */
+    private String stem(String word) {
+        try (TokenStream stream = analyzer.tokenStream(FIELDS[0], word)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            String stem = stream.incrementToken() ? termAtt.toString() : null;
+            if (stem != null && stream.incrementToken()) {
+                stem = null;
+            }
+            stream.end();
+            return stem;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.lamproslntz.searchengineextended.cleaner;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that a {@link ParallelTextCleaner} cleans the documents as a {@link TextCleaner} cleans them sequentially,
+ * whatever the number of threads and the size of the chunks.
+ *
+ * @author Lampros Lountzis
+ */
+class ParallelTextCleanerTest {
+
+    private static final String[] FIELDS = {"title_norm", "abstract_norm"};
+    private static final String[] WORDS = {"Information", "RETRIEVAL", "the", "libraries'", "(1965)", "-", "co-op",
+            "U.S.A.", "\t", "étude", "A/B", "&", "\"index\"", "  "};
+
+    private final TextCleaner cleaner = new TextCleaner(true, true);
+
+    @Test
+    void cleansAsTheSequentialCleaner() {
+        List<Map<String, String>> expected = documents(5000, 42);
+        cleaner.clean(expected, FIELDS);
+
+        for (int parallelism : new int[]{1, 3, 8}) {
+            for (int chunkSize : new int[]{1, 7, ParallelTextCleaner.DEFAULT_CHUNK_SIZE, 10000}) {
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    ParallelTextCleaner parallel = new ParallelTextCleaner(cleaner, pool, chunkSize);
+                    List<Map<String, String>> docs = documents(5000, 42);
+                    parallel.clean(docs, FIELDS);
+
+                    assertEquals(expected, docs, parallelism + " threads, chunks of " + chunkSize);
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    void cleansADocumentListWithoutRandomAccess() {
+        List<Map<String, String>> expected = documents(500, 7);
+        cleaner.clean(expected, FIELDS);
+
+        try (ParallelTextCleaner parallel = new ParallelTextCleaner(cleaner, 4)) {
+            List<Map<String, String>> docs = new LinkedList<>(documents(500, 7));
+            parallel.clean(docs, FIELDS);
+
+            assertEquals(expected, new ArrayList<>(docs));
+        }
+    }
+
+    @Test
+    void countsTheCleanedDocuments() {
+        try (ParallelTextCleaner parallel = new ParallelTextCleaner(cleaner, 2)) {
+            List<Map<String, String>> docs = documents(300, 1);
+            long characters = 0;
+            for (Map<String, String> doc : docs) {
+                for (String field : FIELDS) {
+                    characters += doc.get(field).length();
+                }
+            }
+
+            parallel.clean(docs, FIELDS);
+            parallel.clean(documents(10, 2).subList(0, 0), FIELDS);
+
+            CleaningStats stats = parallel.getStats();
+            assertEquals(300, stats.getDocuments());
+            assertEquals(characters, stats.getCharacters());
+        }
+    }
+
+    @Test
+    void cleansATextOnTheCallingThread() {
+        try (ParallelTextCleaner parallel = new ParallelTextCleaner(cleaner, 2)) {
+            String query = "Information RETRIEVAL (1965) of the U.S.A. libraries'";
+
+            assertEquals(cleaner.clean(query), parallel.clean(query));
+            assertEquals(0, parallel.getStats().getDocuments());
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyChunk() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ParallelTextCleaner(cleaner, ForkJoinPool.commonPool(), 0));
+    }
+
+    private static List<Map<String, String>> documents(int n, long seed) {
+        Random random = new Random(seed);
+        List<Map<String, String>> docs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Map<String, String> doc = new HashMap<>();
+            doc.put("id", String.valueOf(i));
+            for (String field : FIELDS) {
+                StringBuilder text = new StringBuilder();
+                int words = random.nextInt(40);
+                for (int j = 0; j < words; j++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                doc.put(field, text.toString());
+            }
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.lamproslntz.searchengineextended.cleaner;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests that the single pass of a {@link TextCleaner} cleans a text as the regular expressions it replaced did:
+ * lowercasing the text, replacing the symbols and the runs of whitespace characters with a space, and trimming it.
+ * <p>
+ * The random texts leave out the characters that {@link String#toLowerCase(Locale)} lowercases depending on their
+ * context (the capital I with a dot above, and the capital sigma), which are lowercased one at a time instead.
+ *
+ * @author Lampros Lountzis
+ */
+class TextCleanerTest {
+
+    private static final String ALPHABET = "aZ09 \t\n\u000B\f\r\u0001\u001F-_.,'\"()/&éÉß  äß中😀𐐀𐀀";
+
+    @Test
+    void cleansAsTheRegexPipeline() {
+        TextCleaner[] cleaners = {
+                new TextCleaner(true, true),
+                new TextCleaner(true, false),
+                new TextCleaner(false, true),
+                new TextCleaner(false, false)
+        };
+        boolean[][] options = {{true, true}, {true, false}, {false, true}, {false, false}};
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String text = randomText(random, random.nextInt(30));
+            for (int j = 0; j < cleaners.length; j++) {
+                String expected = regexClean(text, options[j][0], options[j][1] ? "[^a-zA-Z0-9]" : null);
+                assertEquals(expected, cleaners[j].clean(text), "\"" + text + "\", " + j);
+            }
+        }
+    }
+
+    @Test
+    void removesTheSymbolsOfARegex() {
+        TextCleaner cleaner = new TextCleaner(true, "[aeiou]");
+
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            String text = randomText(random, random.nextInt(30));
+            assertEquals(regexClean(text, true, "[aeiou]"), cleaner.clean(text), "\"" + text + "\"");
+        }
+        assertEquals("nf rm t n r tr v l", cleaner.clean("  Information RETRIEVAL "));
+    }
+
+    @Test
+    void cleansTheFieldsOfTheDocuments() {
+        Map<String, String> doc = new HashMap<>();
+        doc.put("id", " 1 ");
+        doc.put("title", "  The  Libraries' (1965)\n");
+        doc.put("abstract", "already clean");
+        String clean = doc.get("abstract");
+        List<Map<String, String>> docs = new ArrayList<>(List.of(doc));
+
+        new TextCleaner(true, true).clean(docs, new String[]{"title", "abstract", "author"});
+
+        assertEquals(" 1 ", doc.get("id"));
+        assertEquals("the libraries 1965", doc.get("title"));
+        assertSame(clean, doc.get("abstract"));
+        assertEquals(3, doc.size());
+
+        doc.put("title", "  The  Libraries' (1965)\n");
+        new TextCleaner(true, true).fix(docs, new String[]{"title"});
+        assertEquals("The Libraries' (1965)", doc.get("title"));
+    }
+
+    @Test
+    void streamsTheCleanedText() throws IOException {
+        TextCleaner cleaner = new TextCleaner(true, true);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, random.nextInt(300));
+            try (Reader reader = cleaner.reader(new StringReader(text))) {
+                StringBuilder streamed = new StringBuilder();
+                char[] buffer = new char[1 + random.nextInt(16)];
+                int n;
+                while ((n = reader.read(buffer, 0, buffer.length)) != -1) {
+                    streamed.append(buffer, 0, n);
+                }
+                assertEquals(cleaner.clean(text), streamed.toString(), "\"" + text + "\"");
+            }
+        }
+    }
+
+    /**
+     * Cleans a text as TextCleaner did before its single pass.
+     */
+    private static String regexClean(String text, boolean toLowercase, String symbols) {
+        if (toLowercase) {
+            text = text.toLowerCase(Locale.ROOT);
+        }
+        if (symbols != null) {
+            text = text.replaceAll(symbols, " ");
+        }
+        return text.replaceAll("\\s+", " ").trim();
+    }
+
+    private static String randomText(Random random, int length) {
+        int[] codePoints = ALPHABET.codePoints().toArray();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        }
+        if (random.nextInt(10) == 0 && text.length() > 0) { // an unpaired surrogate
+            text.insert(random.nextInt(text.length()), '\uD83D');
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.lamproslntz.searchengineextended.embedding;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that the vectors written by an {@link EmbeddingWriter} are read back by a {@link MappedEmbeddingStore}, as
+ * floats and as half-precision floats.
+ *
+ * @author Lampros Lountzis
+ */
+class MappedEmbeddingStoreTest {
+
+    private static final String[] WORDS = {"information", "retrieval", "library", "zero", "information"};
+    private static final float[][] VECTORS = {
+            {3, 4, 0},
+            {0, 0, -2},
+            {1, 1, 1},
+            {0, 0, 0},
+            {0, 1, 0}
+    };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTheNormalizedFloatVectors() throws IOException {
+        try (MappedEmbeddingStore store = write(dir.resolve("vectors.emb"), false)) {
+            assertEquals(WORDS.length, store.size());
+            assertEquals(3, store.dimension());
+
+            assertArrayEquals(new float[]{0.6f, 0.8f, 0}, store.vector(0, new float[3]));
+            assertArrayEquals(new float[]{0, 0, -1}, store.vector(1, new float[3]));
+            float third = (float) (1 / Math.sqrt(3));
+            assertArrayEquals(new float[]{third, third, third}, store.vector(2, new float[3]), 1e-7f);
+            assertArrayEquals(new float[]{0, 0, 0}, store.vector(3, new float[3])); // not normalized
+
+            assertEquals(0.8f, store.dot(0, new float[]{0, 1, 0}), 1e-7f);
+        }
+    }
+
+    @Test
+    void readsTheNormalizedHalfFloatVectors() throws IOException {
+        try (MappedEmbeddingStore store = write(dir.resolve("vectors.emb"), true)) {
+            assertEquals(WORDS.length, store.size());
+            assertEquals(3, store.dimension());
+
+            // half-precision floats keep 11 significant bits
+            for (int i = 0; i < VECTORS.length; i++) {
+                float[] expected = normalize(VECTORS[i]);
+                assertArrayEquals(expected, store.vector(i, new float[3]), 1e-3f, WORDS[i]);
+            }
+            assertEquals(0.8f, store.dot(0, new float[]{0, 1, 0}), 1e-3f);
+        }
+    }
+
+    @Test
+    void looksUpTheWords() throws IOException {
+        for (boolean half : new boolean[]{false, true}) {
+            try (MappedEmbeddingStore store = write(dir.resolve("vectors-" + half + ".emb"), half)) {
+                assertEquals(0, store.indexOf("information")); // a duplicate word maps to its first occurrence
+                assertEquals(1, store.indexOf("retrieval"));
+                assertEquals(2, store.indexOf("library".toCharArray(), 0, 7));
+                assertEquals(3, store.indexOf("the zero vector".toCharArray(), 4, 4));
+                assertEquals(-1, store.indexOf("search"));
+
+                for (int i = 0; i < WORDS.length; i++) {
+                    assertEquals(WORDS[i], store.wordAt(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void roundsFloatsToHalfFloats() {
+        float[] exact = {0, 1, -1, 0.5f, -0.25f, 2048, 65504, 6.1035156e-5f, 5.9604645e-8f};
+        for (float value : exact) {
+            assertEquals(value, HalfFloat.toFloat(HalfFloat.fromFloat(value)));
+        }
+        assertEquals(1f / 3, HalfFloat.toFloat(HalfFloat.fromFloat(1f / 3)), 1f / 3 / 1024);
+
+        assertEquals(Float.POSITIVE_INFINITY, HalfFloat.toFloat(HalfFloat.fromFloat(1e6f)));
+        assertEquals(Float.NEGATIVE_INFINITY, HalfFloat.toFloat(HalfFloat.fromFloat(-1e6f)));
+        assertEquals(0f, HalfFloat.toFloat(HalfFloat.fromFloat(1e-9f)));
+        assertEquals(Float.NaN, HalfFloat.toFloat(HalfFloat.fromFloat(Float.NaN)));
+    }
+
+    @Test
+    void rejectsAVectorOfAnotherDimension() throws IOException {
+        try (EmbeddingWriter writer = EmbeddingWriter.create(dir.resolve("vectors.emb"), 3, false)) {
+            assertThrows(IllegalArgumentException.class, () -> writer.add("word", new float[2]));
+        }
+    }
+
+    @Test
+    void convertsTheTextFormat() throws IOException {
+        Path vec = dir.resolve("vectors.vec");
+        Path emb = dir.resolve("vectors.emb");
+        Files.writeString(vec, "3 2\n"
+                + "information 3 4\n"
+                + "malformed 1\n"
+                + "retrieval 0 -2\n");
+
+        assertEquals(2, EmbeddingConverter.convert(vec, emb, false));
+        assertFalse(Files.exists(dir.resolve("vectors.emb.tmp")));
+        try (MappedEmbeddingStore store = MappedEmbeddingStore.open(emb)) {
+            assertEquals(2, store.size());
+            assertArrayEquals(new float[]{0.6f, 0.8f}, store.vector(store.indexOf("information"), new float[2]));
+            assertArrayEquals(new float[]{0, -1}, store.vector(store.indexOf("retrieval"), new float[2]));
+        }
+    }
+
+    private static MappedEmbeddingStore write(Path path, boolean half) throws IOException {
+        try (EmbeddingWriter writer = EmbeddingWriter.create(path, 3, half)) {
+            for (int i = 0; i < WORDS.length; i++) {
+                writer.add(WORDS[i], VECTORS[i]);
+            }
+            assertEquals(WORDS.length, writer.size());
+        }
+
+        return MappedEmbeddingStore.open(path);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.lamproslntz.searchengineextended.evaluation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests P@k, R@k, MAP and nDCG@k against values computed by hand, on a small run and its relevance judgements.
+ * <p>
+ * Query 1 has the relevant documents {2, 5, 9} and the ranking (5, 1, 2, 7, 9), i.e. hits at ranks 1, 3 and 5.
+ * Query 2 has the relevant document {4} and the ranking (3). Query 3 isn't judged, and query 4 isn't in the run.
+ *
+ * @author Lampros Lountzis
+ */
+class EvaluatorTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final int[] RANKING_1 = {5, 1, 2, 7, 9};
+    private static final int[] RELEVANT_1 = {2, 5, 9};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void evaluatesTheTopKDocuments() {
+        Metrics metrics = Evaluator.evaluate(RANKING_1, RELEVANT_1, 5);
+
+        assertEquals(3.0 / 5, metrics.getPrecision(), DELTA);
+        assertEquals(1, metrics.getRecall(), DELTA);
+        assertEquals((1.0 / 1 + 2.0 / 3 + 3.0 / 5) / 3, metrics.getAveragePrecision(), DELTA);
+        double dcg = 1 / log2(2) + 1 / log2(4) + 1 / log2(6);
+        double idcg = 1 / log2(2) + 1 / log2(3) + 1 / log2(4);
+        assertEquals(dcg / idcg, metrics.getNdcg(), DELTA);
+    }
+
+    @Test
+    void cutsTheRankingOffAtK() {
+        Metrics metrics = Evaluator.evaluate(RANKING_1, RELEVANT_1, 2);
+
+        assertEquals(1.0 / 2, metrics.getPrecision(), DELTA);
+        assertEquals(1.0 / 3, metrics.getRecall(), DELTA);
+        assertEquals((1.0 / 1) / 3, metrics.getAveragePrecision(), DELTA);
+        assertEquals(1 / (1 / log2(2) + 1 / log2(3)), metrics.getNdcg(), DELTA); // the ideal ranking has 2 hits
+    }
+
+    @Test
+    void dividesThePrecisionByKForAShortRanking() {
+        Metrics metrics = Evaluator.evaluate(new int[]{2}, RELEVANT_1, 5);
+
+        assertEquals(1.0 / 5, metrics.getPrecision(), DELTA);
+        assertEquals(1.0 / 3, metrics.getRecall(), DELTA);
+        assertEquals((1.0 / 1) / 3, metrics.getAveragePrecision(), DELTA);
+    }
+
+    @Test
+    void scoresZeroWithoutHitsOrRelevantDocuments() {
+        assertEquals(new Metrics(0, 0, 0, 0), Evaluator.evaluate(new int[]{3}, new int[]{4}, 5));
+        assertEquals(new Metrics(0, 0, 0, 0), Evaluator.evaluate(RANKING_1, new int[0], 5));
+    }
+
+    @Test
+    void averagesTheJudgedQueriesOfARun() throws IOException {
+        Path rel = dir.resolve("qrels.REL");
+        Files.writeString(rel, "     1     5\t0\t0.000000\n"
+                + "     1     2\t0\t0.000000\n"
+                + "     1     9\t0\t0.000000\n"
+                + "     1     9\t0\t0.000000\n" // duplicate judgement
+                + "     2     4\t0\t0.000000\n"
+                + "     4     1\t0\t0.000000\n");
+        Qrels qrels = Qrels.read(rel);
+        Map<String, int[]> run = Map.of(
+                "1", RANKING_1,
+                "2", new int[]{3},
+                "3", new int[]{1, 2});
+
+        Metrics metrics = Evaluator.evaluate(run, qrels, 5);
+
+        // the mean of queries 1 and 2; query 3 isn't judged and query 4 has no ranking
+        Metrics query1 = Evaluator.evaluate(RANKING_1, RELEVANT_1, 5);
+        assertEquals(query1.getPrecision() / 2, metrics.getPrecision(), DELTA);
+        assertEquals(1.0 / 2, metrics.getRecall(), DELTA);
+        assertEquals(query1.getAveragePrecision() / 2, metrics.getAveragePrecision(), DELTA);
+        assertEquals(query1.getNdcg() / 2, metrics.getNdcg(), DELTA);
+    }
+
+    @Test
+    void meansEachMetric() {
+        Metrics mean = Metrics.mean(List.of(new Metrics(0.5, 1, 0.25, 0.75), new Metrics(0, 0.5, 0.75, 0.25)));
+
+        assertEquals(new Metrics(0.25, 0.75, 0.5, 0.5), mean);
+        assertEquals(new Metrics(0, 0, 0, 0), Metrics.mean(List.of()));
+    }
+
+    @Test
+    void readsTheRelevantDocuments() throws IOException {
+        Path rel = dir.resolve("qrels.REL");
+        Files.writeString(rel, "1 9 0 0.0\n1 2 0 0.0\n1 9 0 0.0\n\n2 4 0 0.0\n");
+        Qrels cisi = Qrels.read(rel);
+
+        assertEquals(2, cisi.size());
+        assertArrayEquals(new int[]{2, 9}, cisi.relevant("1"));
+        assertArrayEquals(new int[]{4}, cisi.relevant("2"));
+        assertArrayEquals(new int[0], cisi.relevant("3"));
+        assertFalse(cisi.isJudged("3"));
+
+        Path trec = dir.resolve("qrels.txt");
+        Files.writeString(trec, "1 0 9 1\n1 0 2 0\n1 0 5 2\n2 0 4 0\n");
+        Qrels judged = Qrels.read(trec);
+
+        assertEquals(1, judged.size()); // the documents judged non-relevant are skipped
+        assertArrayEquals(new int[]{5, 9}, judged.relevant("1"));
+        assertTrue(judged.isJudged("1"));
+        assertFalse(judged.isJudged("2"));
+    }
+
+    private static double log2(int x) {
+        return Math.log(x) / Math.log(2);
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.lamproslntz.searchengineextended.index;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests that the statistics of two shards, summed and exchanged as a binary stream, are those of a single index of
+ * all their documents, and that the shards score their documents with them as the single index does.
+ *
+ * @author Lampros Lountzis
+ */
+class ShardStatisticsTest {
+
+    private static final String[] TITLES = {
+            "information retrieval",
+            "retrieval of library books",
+            "the library of congress",
+            "information science and information retrieval",
+            "automatic indexing",
+            "library automation and retrieval"
+    };
+    private static final Set<Term> TERMS = Set.of(
+            new Term("title_norm", "retrieval"),
+            new Term("title_norm", "library"),
+            new Term("title_norm", "indexing"),
+            new Term("title_norm", "zebra"),
+            new Term("abstract_norm", "retrieval"));
+
+    private Directory[] shards;
+    private Directory single;
+    private DirectoryReader[] shardReaders;
+    private DirectoryReader singleReader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        shards = new Directory[]{new ByteBuffersDirectory(), new ByteBuffersDirectory()};
+        single = new ByteBuffersDirectory();
+        try (IndexWriter shard0 = writer(shards[0]); IndexWriter shard1 = writer(shards[1]);
+             IndexWriter all = writer(single)) {
+            for (int i = 0; i < TITLES.length; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("id", String.valueOf(i), Field.Store.YES));
+                doc.add(new TextField("title_norm", TITLES[i], Field.Store.NO));
+                (i < 2 ? shard0 : shard1).addDocument(doc);
+                all.addDocument(doc);
+            }
+        }
+
+        shardReaders = new DirectoryReader[]{DirectoryReader.open(shards[0]), DirectoryReader.open(shards[1])};
+        singleReader = DirectoryReader.open(single);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (int i = 0; i < shards.length; i++) {
+            shardReaders[i].close();
+            shards[i].close();
+        }
+        singleReader.close();
+        single.close();
+    }
+
+    @Test
+    void readsTheStatisticsWritten() throws IOException {
+        ShardStatistics statistics = ShardStatistics.of(shardReaders[1], TERMS);
+
+        ShardStatistics read = roundTrip(statistics);
+
+        for (Term term : TERMS) {
+            assertTermStatistics(statistics.termStatistics(term), read.termStatistics(term));
+            assertCollectionStatistics(statistics.collectionStatistics(term.field()),
+                    read.collectionStatistics(term.field()));
+        }
+        assertTermStatistics(new TermStatistics(new BytesRef("library"), 2, 2),
+                read.termStatistics(new Term("title_norm", "library")));
+        assertNull(read.termStatistics(new Term("title_norm", "zebra"))); // doesn't occur in any document
+        assertNull(read.termStatistics(new Term("title_norm", "books"))); // isn't known
+        assertNull(read.collectionStatistics("abstract_norm")); // no document has it
+
+        ShardStatistics empty = roundTrip(new ShardStatistics());
+        assertNull(empty.termStatistics(new Term("title_norm", "library")));
+        assertNull(empty.collectionStatistics("title_norm"));
+    }
+
+    @Test
+    void sumsTheStatisticsOfTheShards() throws IOException {
+        ShardStatistics statistics = new ShardStatistics();
+        for (DirectoryReader reader : shardReaders) {
+            statistics.add(roundTrip(ShardStatistics.of(reader, TERMS)));
+        }
+
+        ShardStatistics expected = ShardStatistics.of(singleReader, TERMS);
+        for (Term term : TERMS) {
+            assertTermStatistics(expected.termStatistics(term), statistics.termStatistics(term));
+        }
+        assertCollectionStatistics(expected.collectionStatistics("title_norm"),
+                statistics.collectionStatistics("title_norm"));
+    }
+
+    @Test
+    void scoresTheShardsAsASingleIndex() throws IOException {
+        ShardStatistics statistics = new ShardStatistics();
+        for (DirectoryReader reader : shardReaders) {
+            statistics.add(roundTrip(ShardStatistics.of(reader, TERMS)));
+        }
+
+        IndexSearcher all = new IndexSearcher(singleReader);
+        all.setSimilarity(new BM25Similarity());
+        for (Term term : TERMS) {
+            TermQuery query = new TermQuery(term);
+            Map<String, Float> expected = scores(all, query);
+
+            Map<String, Float> actual = new HashMap<>();
+            for (DirectoryReader reader : shardReaders) {
+                actual.putAll(scores(statistics.newSearcher(reader, new BM25Similarity()), query));
+            }
+            assertEquals(expected, actual, term.toString());
+        }
+    }
+
+    private static IndexWriter writer(Directory dir) throws IOException {
+        return new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer()));
+    }
+
+    private static ShardStatistics roundTrip(ShardStatistics statistics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            statistics.writeTo(out);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ShardStatistics read = ShardStatistics.readFrom(in);
+        assertEquals(-1, in.read()); // the whole stream has been read
+        return read;
+    }
+
+    private static Map<String, Float> scores(IndexSearcher searcher, TermQuery query) throws IOException {
+        Map<String, Float> scores = new HashMap<>();
+        TopDocs topDocs = searcher.search(query, TITLES.length);
+        for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            scores.put(searcher.doc(scoreDoc.doc).get("id"), scoreDoc.score);
+        }
+        return scores;
+    }
+
+    private static void assertTermStatistics(TermStatistics expected, TermStatistics actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.term(), actual.term());
+        assertEquals(expected.docFreq(), actual.docFreq());
+        assertEquals(expected.totalTermFreq(), actual.totalTermFreq());
+    }
+
+    private static void assertCollectionStatistics(CollectionStatistics expected, CollectionStatistics actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual);
+        assertEquals(expected.field(), actual.field());
+        assertEquals(expected.maxDoc(), actual.maxDoc());
+        assertEquals(expected.docCount(), actual.docCount());
+        assertEquals(expected.sumTotalTermFreq(), actual.sumTotalTermFreq());
+        assertEquals(expected.sumDocFreq(), actual.sumDocFreq());
+    }
+
+}
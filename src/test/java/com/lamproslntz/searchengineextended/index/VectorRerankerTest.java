@@ -0,0 +1,154 @@
+package com.lamproslntz.searchengineextended.index;
+
+import com.lamproslntz.searchengineextended.embedding.DocumentEmbedder;
+import com.lamproslntz.searchengineextended.embedding.EmbeddingWriter;
+import com.lamproslntz.searchengineextended.embedding.MappedEmbeddingStore;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that a {@link VectorReranker} re-ranks the top candidates of a query by their dense vectors, and returns the
+ * candidates below the re-ranking depth after them, in their BM25 order.
+ * <p>
+ * Every document has the word "retrieval" in its title, a different number of times, so that it is ranked by BM25 for
+ * the query "retrieval"; only the second document has the word "library" in its abstract, so that it is ranked
+ * first by its similarity to the query vector of "library".
+ *
+ * @author Lampros Lountzis
+ */
+class VectorRerankerTest {
+
+    private static final String[] TITLES = {
+            "retrieval retrieval retrieval retrieval retrieval",
+            "retrieval retrieval retrieval retrieval",
+            "retrieval retrieval retrieval",
+            "retrieval retrieval",
+            "retrieval",
+            "retrieval books books books books books"
+    };
+    private static final String[] ABSTRACTS = {"books", "library", "books", "books", "books", "books"};
+
+    private static final Query QUERY = new TermQuery(new Term("title_norm", "retriev")); // stemmed as indexed
+
+    @TempDir
+    Path dir;
+
+    private MappedEmbeddingStore embeddings;
+    private Directory index;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private ScoreDoc[] bm25;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path emb = dir.resolve("vectors.emb");
+        try (EmbeddingWriter writer = EmbeddingWriter.create(emb, 3, false)) {
+            writer.add("retrieval", new float[]{0, 0, 1});
+            writer.add("library", new float[]{1, 0, 0});
+            writer.add("books", new float[]{0, 1, 0});
+        }
+        embeddings = MappedEmbeddingStore.open(emb);
+
+        Path indexDir = dir.resolve("index");
+        Indexer indexer = new Indexer(indexDir.toString(), Indexer.DEFAULT_RAM_BUFFER_SIZE_MB,
+                new DocumentEmbedder(embeddings));
+        indexer.create();
+        List<Map<String, String>> docs = new ArrayList<>();
+        for (int i = 0; i < TITLES.length; i++) {
+            docs.add(Map.of("id", String.valueOf(i), "title", TITLES[i], "author", "", "abstract", ABSTRACTS[i]));
+        }
+        indexer.index(docs);
+        indexer.commit();
+        indexer.close();
+
+        index = FSDirectory.open(indexDir);
+        reader = DirectoryReader.open(index);
+        searcher = new IndexSearcher(reader);
+        bm25 = searcher.search(QUERY, TITLES.length).scoreDocs;
+        assertEquals(TITLES.length, bm25.length);
+        assertEquals("1", id(bm25[1])); // the document of "library" is second by BM25
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        reader.close();
+        index.close();
+        embeddings.close();
+    }
+
+    @Test
+    void reranksTheTopCandidates() throws IOException {
+        VectorReranker reranker = new VectorReranker(new DocumentEmbedder(embeddings), 3, 1);
+
+        ScoreDoc[] top = reranker.search(searcher, QUERY, "library", 3).scoreDocs;
+
+        assertEquals(3, top.length);
+        assertEquals("1", id(top[0]));
+        assertEquals(Set.of(bm25[0].doc, bm25[1].doc, bm25[2].doc), docs(top));
+    }
+
+    @Test
+    void appendsTheCandidatesBelowTheDepth() throws IOException {
+        VectorReranker reranker = new VectorReranker(new DocumentEmbedder(embeddings), 2, 1);
+
+        ScoreDoc[] top = reranker.search(searcher, QUERY, "library", 5).scoreDocs;
+
+        assertEquals(5, top.length);
+        assertEquals("1", id(top[0])); // re-ranked above the top BM25 candidate
+        assertEquals(bm25[0].doc, top[1].doc);
+        for (int i = 2; i < top.length; i++) { // the rest in their BM25 order
+            assertEquals(bm25[i].doc, top[i].doc);
+        }
+        for (int i = 1; i < top.length; i++) {
+            assertTrue(top[i].score < top[i - 1].score, "the scores must be decreasing");
+        }
+
+        assertEquals(TITLES.length, reranker.search(searcher, QUERY, "library", 100).scoreDocs.length);
+    }
+
+    @Test
+    void keepsTheBm25RankingWithoutAQueryVector() throws IOException {
+        VectorReranker reranker = new VectorReranker(new DocumentEmbedder(embeddings), 2, 1);
+
+        ScoreDoc[] top = reranker.search(searcher, QUERY, "zebra", 4).scoreDocs;
+
+        assertEquals(4, top.length);
+        for (int i = 0; i < top.length; i++) {
+            assertEquals(bm25[i].doc, top[i].doc);
+        }
+    }
+
+    private String id(ScoreDoc scoreDoc) throws IOException {
+        return searcher.doc(scoreDoc.doc).get("id");
+    }
+
+    private static Set<Integer> docs(ScoreDoc[] scoreDocs) {
+        Set<Integer> docs = new HashSet<>();
+        for (ScoreDoc scoreDoc : scoreDocs) {
+            docs.add(scoreDoc.doc);
+        }
+        return docs;
+    }
+
+}